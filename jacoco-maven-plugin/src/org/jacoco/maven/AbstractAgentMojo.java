@@ -94,12 +94,19 @@ public abstract class AbstractAgentMojo extends AbstractJacocoMojo {
 	 * Output method to use for writing coverage data. Valid options are:
 	 * <ul>
 	 * <li>file: At VM termination execution data is written to a file.</li>
+	 * <li>mapped: Execution data is continuously written to a memory mapped
+	 * file which keeps its content if the VM terminates abnormally.</li>
 	 * <li>tcpserver: The agent listens for incoming connections on the TCP port
 	 * specified by the {@link #address} and {@link #port}. Execution data is
 	 * written to this TCP connection.</li>
+	 * <li>tcpmultiserver: Like tcpserver, but any number of clients can be
+	 * connected at the same time.</li>
 	 * <li>tcpclient: At startup the agent connects to the TCP port specified by
 	 * the {@link #address} and {@link #port}. Execution data is written to this
 	 * TCP connection.</li>
+	 * <li>tcpbatchclient: Every dump is compressed and sent as a batch to the
+	 * TCP port specified by the {@link #address} and {@link #port}. Batches
+	 * are queued in {@link #spoolDir} while the port is not reachable.</li>
 	 * <li>none: Do not produce any output.</li>
 	 * </ul>
 	 */
@@ -120,6 +127,39 @@ public abstract class AbstractAgentMojo extends AbstractJacocoMojo {
 	 */
 	@Parameter(property = "jacoco.port")
 	Integer port;
+	/**
+	 * If set to true every dump only contains classes with probes executed
+	 * since the previous dump of the same output. In file mode all dumps
+	 * after the first one are appended to the execution data file.
+	 */
+	@Parameter(property = "jacoco.delta")
+	Boolean delta;
+	/**
+	 * Directory where the tcpbatchclient output queues batches which could not
+	 * be sent yet. Queued batches are sent by later JVM starts using the same
+	 * directory. If not specified batches are only queued in memory.
+	 */
+	@Parameter(property = "jacoco.spoolDir")
+	File spoolDir;
+	/**
+	 * Maximum total size in bytes of all batches queued by the tcpbatchclient
+	 * output. If the limit is exceeded all queued batches are merged into a
+	 * single batch, therefore no hits are lost.
+	 */
+	@Parameter(property = "jacoco.spoolLimit")
+	Integer spoolLimit;
+	/**
+	 * Interval in seconds in which the tcpbatchclient output sends batches. If
+	 * not specified batches are only sent on explicit dumps and on VM exit.
+	 */
+	@Parameter(property = "jacoco.batchInterval")
+	Integer batchInterval;
+	/**
+	 * Interval in milliseconds in which the mapped output copies the probes to
+	 * the memory mapped file.
+	 */
+	@Parameter(property = "jacoco.syncInterval")
+	Integer syncInterval;
 	/**
 	 * If a directory is specified for this parameter the JaCoCo agent dumps all
 	 * class files it processes to the given location. This can be useful for
@@ -128,11 +168,64 @@ public abstract class AbstractAgentMojo extends AbstractJacocoMojo {
 	 */
 	@Parameter(property = "jacoco.classDumpDir")
 	File classDumpDir;
+	/**
+	 * If a directory is specified for this parameter the JaCoCo agent caches
+	 * instrumented classes in this directory and reuses them on later JVM
+	 * starts. The cache can be shared by JVMs running concurrently.
+	 */
+	@Parameter(property = "jacoco.classCacheDir")
+	File classCacheDir;
 	/**
 	 * If set to true the agent exposes functionality via JMX.
 	 */
 	@Parameter(property = "jacoco.jmx")
 	Boolean jmx;
+	/**
+	 * If set to true instrumented classes obtain their probe arrays through a
+	 * static accessor which is added to the bootstrap class path.
+	 */
+	@Parameter(property = "jacoco.bootstrapAccessor")
+	Boolean bootstrapAccessor;
+	/**
+	 * A list of class names which get multiple probe arrays to reduce
+	 * contention when executed by many threads concurrently. May use wildcard
+	 * characters (* and ?).
+	 */
+	@Parameter(property = "jacoco.stripedClasses")
+	String stripedClasses;
+	/**
+	 * Number of probe arrays for classes selected by stripedClasses. Must be a
+	 * power of two.
+	 */
+	@Parameter(property = "jacoco.probeStripes")
+	Integer probeStripes;
+	/**
+	 * If set to true classes are loaded with an initialization hook only and
+	 * get instrumented when they are initialized. Code executed by static
+	 * initializers is not recorded.
+	 */
+	@Parameter(property = "jacoco.lazyInstrumentation")
+	Boolean lazyInstrumentation;
+	/**
+	 * Interval in seconds in which saturated classes, i.e. classes where all
+	 * probes have been executed, are retransformed into their original
+	 * version. 0 disables detaching.
+	 */
+	@Parameter(property = "jacoco.detachInterval")
+	Integer detachInterval;
+	/**
+	 * Time in seconds after which classes without new executed probes are
+	 * detached like saturated classes. 0 only detaches saturated classes.
+	 */
+	@Parameter(property = "jacoco.detachQuietTime")
+	Integer detachQuietTime;
+	/**
+	 * If set to true probes which are implied by other probes are omitted.
+	 * Reports detect such execution data automatically. Execution data
+	 * recorded with and without this option can't be merged.
+	 */
+	@Parameter(property = "jacoco.probeElision")
+	Boolean probeElision;
 
 	@Override
 	public void executeMojo() {
@@ -201,12 +294,52 @@ public abstract class AbstractAgentMojo extends AbstractJacocoMojo {
 		if (port != null) {
 			agentOptions.setPort(port.intValue());
 		}
+		if (delta != null) {
+			agentOptions.setDelta(delta.booleanValue());
+		}
+		if (spoolDir != null) {
+			agentOptions.setSpoolDir(spoolDir.getAbsolutePath());
+		}
+		if (spoolLimit != null) {
+			agentOptions.setSpoolLimit(spoolLimit.intValue());
+		}
+		if (batchInterval != null) {
+			agentOptions.setBatchInterval(batchInterval.intValue());
+		}
+		if (syncInterval != null) {
+			agentOptions.setSyncInterval(syncInterval.intValue());
+		}
 		if (classDumpDir != null) {
 			agentOptions.setClassDumpDir(classDumpDir.getAbsolutePath());
 		}
+		if (classCacheDir != null) {
+			agentOptions.setClassCacheDir(classCacheDir.getAbsolutePath());
+		}
 		if (jmx != null) {
 			agentOptions.setJmx(jmx.booleanValue());
 		}
+		if (bootstrapAccessor != null) {
+			agentOptions.setBootstrapAccessor(bootstrapAccessor.booleanValue());
+		}
+		if (stripedClasses != null) {
+			agentOptions.setStripedClasses(stripedClasses);
+		}
+		if (probeStripes != null) {
+			agentOptions.setProbeStripes(probeStripes.intValue());
+		}
+		if (lazyInstrumentation != null) {
+			agentOptions.setLazyInstrumentation(lazyInstrumentation
+					.booleanValue());
+		}
+		if (detachInterval != null) {
+			agentOptions.setDetachInterval(detachInterval.intValue());
+		}
+		if (detachQuietTime != null) {
+			agentOptions.setDetachQuietTime(detachQuietTime.intValue());
+		}
+		if (probeElision != null) {
+			agentOptions.setProbeElision(probeElision.booleanValue());
+		}
 		return agentOptions;
 	}
 
@@ -16,6 +16,9 @@ import static java.lang.String.format;
 import java.io.File;
 import java.io.IOException;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
@@ -88,8 +91,54 @@ public class DumpMojo extends AbstractJacocoMojo {
 	@Parameter(property = "jacoco.retryCount", defaultValue = "10")
 	private int retryCount;
 
+	/**
+	 * List of <code>host[:port]</code> end-points separated by commas or
+	 * whitespace. If set, dumps are requested from all end-points concurrently
+	 * instead of the single <code>address</code> and merged into one file.
+	 * End-points without port use <code>port</code>.
+	 */
+	@Parameter(property = "jacoco.targets")
+	private String targets;
+
+	/**
+	 * Maximum number of concurrent connections if multiple
+	 * <code>targets</code> are given.
+	 */
+	@Parameter(property = "jacoco.dumpThreads", defaultValue = "16")
+	private int threads;
+
+	/**
+	 * Java names of the classes to dump, may use wildcard characters (* and ?)
+	 * and list multiple patterns separated by colons. In contrast to
+	 * <code>includes</code> these are no class file patterns. Agents before
+	 * version 0.7.8 do not support dumps of selected classes.
+	 */
+	@Parameter(property = "jacoco.dumpIncludes", defaultValue = "*")
+	private String dumpIncludes;
+
+	/**
+	 * Java names of the classes which should not be dumped. Same syntax as for
+	 * <code>dumpIncludes</code>. By default no classes are excluded.
+	 */
+	@Parameter(property = "jacoco.dumpExcludes")
+	private String dumpExcludes;
+
+	/**
+	 * If set to true only the executed classes are dumped without their
+	 * probes. Together with <code>dumpIncludes</code> and
+	 * <code>dumpExcludes</code>, which select the classes to dump, this
+	 * reduces the amount of transferred data considerably.
+	 */
+	@Parameter(property = "jacoco.classHits", defaultValue = "false")
+	private boolean classHits;
+
 	@Override
 	public void executeMojo() throws MojoExecutionException {
+		if (threads < 1) {
+			throw new MojoExecutionException("Invalid number of threads "
+					+ threads);
+		}
+		final List<String> failures = new ArrayList<String>();
 		final ExecDumpClient client = new ExecDumpClient() {
 			@Override
 			protected void onConnecting(final InetAddress address,
@@ -103,13 +152,32 @@ public class DumpMojo extends AbstractJacocoMojo {
 			protected void onConnectionFailure(final IOException exception) {
 				getLog().info(exception.getMessage());
 			}
+
+			@Override
+			protected void onDumpFailure(final InetSocketAddress target,
+					final IOException exception) {
+				getLog().error(
+						format("Unable to dump %s: %s", target,
+								exception.getMessage()));
+				synchronized (failures) {
+					failures.add(target.toString());
+				}
+			}
 		};
 		client.setDump(dump);
 		client.setReset(reset);
 		client.setRetryCount(retryCount);
+		if (dumpIncludes != null) {
+			client.setIncludes(dumpIncludes);
+		}
+		if (dumpExcludes != null) {
+			client.setExcludes(dumpExcludes);
+		}
+		client.setClassHits(classHits);
 
 		try {
-			final ExecFileLoader loader = client.dump(address, port);
+			final ExecFileLoader loader = targets == null ? client.dump(
+					address, port) : client.dump(parseTargets(), threads);
 			if (dump) {
 				getLog().info(
 						format("Dumping execution data to %s",
@@ -119,6 +187,20 @@ public class DumpMojo extends AbstractJacocoMojo {
 		} catch (final IOException e) {
 			throw new MojoExecutionException("Unable to dump coverage data", e);
 		}
+		// Data of all successful targets has been saved before failing
+		if (!failures.isEmpty()) {
+			throw new MojoExecutionException(format(
+					"Unable to dump coverage data from %s", failures));
+		}
+	}
+
+	private List<InetSocketAddress> parseTargets()
+			throws MojoExecutionException {
+		try {
+			return ExecDumpClient.parseTargets(targets, port);
+		} catch (final IllegalArgumentException e) {
+			throw new MojoExecutionException(e.getMessage(), e);
+		}
 	}
 
 }
@@ -22,7 +22,7 @@ import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.shared.model.fileset.FileSet;
 import org.apache.maven.shared.model.fileset.util.FileSetManager;
-import org.jacoco.core.tools.ExecFileLoader;
+import org.jacoco.core.tools.ExecFileMerger;
 
 /**
  * Mojo for merging a set of execution data files (*.exec) into a single file
@@ -62,6 +62,15 @@ public class MergeMojo extends AbstractJacocoMojo {
 	@Parameter(property = "jacoco.fileSets", required = true)
 	private List<FileSet> fileSets;
 
+	/**
+	 * Number of threads used to merge the execution data files. The input
+	 * files are merged with bounded memory, i.e. the execution data is never
+	 * loaded into memory completely. By default the number of available
+	 * processors is used.
+	 */
+	@Parameter(property = "jacoco.mergeThreads")
+	private int threads = Runtime.getRuntime().availableProcessors();
+
 	@Override
 	protected void executeMojo() throws MojoExecutionException,
 			MojoFailureException {
@@ -80,14 +89,18 @@ public class MergeMojo extends AbstractJacocoMojo {
 	}
 
 	private void executeMerge() throws MojoExecutionException {
-		final ExecFileLoader loader = new ExecFileLoader();
+		if (threads < 1) {
+			throw new MojoExecutionException("Invalid number of threads "
+					+ threads);
+		}
+		final ExecFileMerger merger = new ExecFileMerger(threads);
+		merger.setWriteEmpty(false);
 
-		load(loader);
-		save(loader);
+		load(merger);
+		save(merger);
 	}
 
-	private void load(final ExecFileLoader loader)
-			throws MojoExecutionException {
+	private void load(final ExecFileMerger merger) {
 		final FileSetManager fileSetManager = new FileSetManager(getLog());
 		for (final FileSet fileSet : fileSets) {
 			for (final String includedFilename : fileSetManager
@@ -97,33 +110,29 @@ public class MergeMojo extends AbstractJacocoMojo {
 				if (inputFile.isDirectory()) {
 					continue;
 				}
-				try {
-					getLog().info(
-							"Loading execution data file "
-									+ inputFile.getAbsolutePath());
-					loader.load(inputFile);
-				} catch (final IOException e) {
-					throw new MojoExecutionException("Unable to read "
-							+ inputFile.getAbsolutePath(), e);
-				}
+				getLog().info(
+						"Loading execution data file "
+								+ inputFile.getAbsolutePath());
+				merger.add(inputFile);
 			}
 		}
 	}
 
-	private void save(final ExecFileLoader loader)
+	private void save(final ExecFileMerger merger)
 			throws MojoExecutionException {
-		if (loader.getExecutionDataStore().getContents().isEmpty()) {
-			getLog().info(MSG_SKIPPING);
-			return;
-		}
-		getLog().info(
-				"Writing merged execution data to "
-						+ destFile.getAbsolutePath());
+		final int count;
 		try {
-			loader.save(destFile, false);
+			count = merger.merge(destFile);
 		} catch (final IOException e) {
-			throw new MojoExecutionException("Unable to write merged file "
-					+ destFile.getAbsolutePath(), e);
+			throw new MojoExecutionException(e.getMessage(), e);
+		}
+		if (count == 0) {
+			// Nothing written as the files contain no execution data
+			getLog().info(MSG_SKIPPING);
+		} else {
+			getLog().info(
+					"Writing merged execution data to "
+							+ destFile.getAbsolutePath());
 		}
 	}
 
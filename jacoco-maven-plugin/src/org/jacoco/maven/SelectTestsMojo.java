@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.maven;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Set;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.codehaus.plexus.util.StringUtils;
+import org.jacoco.core.runtime.WildcardMatcher;
+import org.jacoco.core.tools.TestImpactIndex;
+
+/**
+ * Selects the tests which execute a given set of classes, e.g. the classes
+ * changed since the last build, from a test impact index created by the
+ * <code>test-index</code> goal. The names of the selected tests are written
+ * to a file and to a project property, which can be used to configure the
+ * tests to run.
+ * 
+ * @since 0.7.8
+ */
+@Mojo(name = "select-tests", defaultPhase = LifecyclePhase.PROCESS_TEST_CLASSES, threadSafe = true)
+public class SelectTestsMojo extends AbstractJacocoMojo {
+
+	/**
+	 * Path to the test impact index file.
+	 */
+	@Parameter(property = "jacoco.testIndexFile", defaultValue = "${project.build.directory}/jacoco-tests.idx")
+	private File indexFile;
+
+	/**
+	 * Names of the classes to select tests for. The list entries are separated
+	 * by a colon (:) and may use wildcard characters (* and ?).
+	 */
+	@Parameter(property = "jacoco.changedClasses", required = true)
+	private String classes;
+
+	/**
+	 * File the names of the selected tests are written to, one per line.
+	 */
+	@Parameter(property = "jacoco.selectedTestsFile", defaultValue = "${project.build.directory}/jacoco-selected-tests.txt")
+	private File destFile;
+
+	/**
+	 * Name of the project property which is set to the comma separated list
+	 * of the selected tests.
+	 */
+	@Parameter(property = "jacoco.selectedTestsProperty", defaultValue = "jacoco.selectedTests")
+	private String propertyName;
+
+	@Override
+	protected void executeMojo() throws MojoExecutionException,
+			MojoFailureException {
+		if (!indexFile.isFile()) {
+			getLog().info(
+					"Skipping JaCoCo test selection due to missing test index "
+							+ indexFile.getAbsolutePath());
+			return;
+		}
+		final TestImpactIndex index = new TestImpactIndex();
+		try {
+			index.loadIndex(indexFile);
+		} catch (final IOException e) {
+			throw new MojoExecutionException("Unable to read test index "
+					+ indexFile.getAbsolutePath(), e);
+		}
+		final WildcardMatcher matcher = new WildcardMatcher(classes);
+		final Collection<String> names = new ArrayList<String>();
+		for (final String name : index.getClassNames()) {
+			if (matcher.matches(name.replace('/', '.'))) {
+				names.add(name);
+			}
+		}
+		final Set<String> tests = index.getTestsForClasses(names);
+		getLog().info(
+				"Selected " + tests.size() + " of " + index.getTests().size()
+						+ " tests for " + names.size() + " classes");
+		getProject().getProperties().setProperty(propertyName,
+				StringUtils.join(tests.iterator(), ","));
+		write(tests);
+	}
+
+	private void write(final Set<String> tests) throws MojoExecutionException {
+		destFile.getAbsoluteFile().getParentFile().mkdirs();
+		try {
+			final Writer writer = new OutputStreamWriter(new FileOutputStream(
+					destFile), "UTF-8");
+			try {
+				for (final String test : tests) {
+					writer.write(test);
+					writer.write('\n');
+				}
+			} finally {
+				writer.close();
+			}
+		} catch (final IOException e) {
+			throw new MojoExecutionException("Unable to write "
+					+ destFile.getAbsolutePath(), e);
+		}
+	}
+
+}
@@ -0,0 +1,133 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.shared.model.fileset.FileSet;
+import org.apache.maven.shared.model.fileset.util.FileSetManager;
+import org.jacoco.core.tools.TestImpactIndex;
+
+/**
+ * Builds a test impact index from execution data files (*.exec) which contain
+ * a separate session for every test. The index maps every executed class to
+ * the tests which executed it and is used by the <code>select-tests</code>
+ * goal.
+ * 
+ * @since 0.7.8
+ */
+@Mojo(name = "test-index", defaultPhase = LifecyclePhase.VERIFY, threadSafe = true)
+public class TestIndexMojo extends AbstractJacocoMojo {
+
+	private static final String MSG_SKIPPING = "Skipping JaCoCo test index due to missing execution data files";
+
+	/**
+	 * Path to the test impact index file to create.
+	 */
+	@Parameter(property = "jacoco.testIndexFile", defaultValue = "${project.build.directory}/jacoco-tests.idx")
+	private File indexFile;
+
+	/**
+	 * File sets of execution data files with per test sessions. By default
+	 * <code>jacoco.exec</code> in the build directory is used.
+	 * 
+	 * Note that you need an <tt>implementation</tt> hint on <tt>fileset</tt>
+	 * with Maven 2 (not needed with Maven 3):
+	 * 
+	 * <pre>
+	 * <code>
+	 * &lt;fileSets&gt;
+	 *   &lt;fileSet implementation="org.apache.maven.shared.model.fileset.FileSet"&gt;
+	 *     &lt;directory&gt;${project.build.directory}&lt;/directory&gt;
+	 *     &lt;includes&gt;
+	 *       &lt;include&gt;*.exec&lt;/include&gt;
+	 *     &lt;/includes&gt;
+	 *   &lt;/fileSet&gt;
+	 * &lt;/fileSets&gt;
+	 * </code>
+	 * </pre>
+	 */
+	@Parameter
+	private List<FileSet> fileSets;
+
+	/**
+	 * Path to the execution data file used if no file sets are specified.
+	 */
+	@Parameter(property = "jacoco.dataFile", defaultValue = "${project.build.directory}/jacoco.exec")
+	private File dataFile;
+
+	@Override
+	protected void executeMojo() throws MojoExecutionException,
+			MojoFailureException {
+		final TestImpactIndex index = new TestImpactIndex();
+		if (!load(index)) {
+			getLog().info(MSG_SKIPPING);
+			return;
+		}
+		getLog().info(
+				"Writing test index with " + index.getTests().size()
+						+ " tests and " + index.getClassCount()
+						+ " classes to " + indexFile.getAbsolutePath());
+		try {
+			index.save(indexFile);
+		} catch (final IOException e) {
+			throw new MojoExecutionException("Unable to write test index "
+					+ indexFile.getAbsolutePath(), e);
+		}
+	}
+
+	private boolean load(final TestImpactIndex index)
+			throws MojoExecutionException {
+		if (fileSets == null || fileSets.isEmpty()) {
+			if (!dataFile.isFile()) {
+				return false;
+			}
+			load(index, dataFile);
+			return true;
+		}
+		boolean found = false;
+		final FileSetManager fileSetManager = new FileSetManager(getLog());
+		for (final FileSet fileSet : fileSets) {
+			for (final String includedFilename : fileSetManager
+					.getIncludedFiles(fileSet)) {
+				final File inputFile = new File(fileSet.getDirectory(),
+						includedFilename);
+				if (inputFile.isDirectory()) {
+					continue;
+				}
+				load(index, inputFile);
+				found = true;
+			}
+		}
+		return found;
+	}
+
+	private void load(final TestImpactIndex index, final File file)
+			throws MojoExecutionException {
+		getLog().info(
+				"Loading execution data file " + file.getAbsolutePath());
+		try {
+			index.load(file);
+		} catch (final IOException e) {
+			throw new MojoExecutionException("Unable to read "
+					+ file.getAbsolutePath(), e);
+		}
+	}
+
+}
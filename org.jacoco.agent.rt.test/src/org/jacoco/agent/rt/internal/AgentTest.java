@@ -29,8 +29,11 @@ import javax.management.ObjectName;
 
 import org.jacoco.agent.rt.internal.output.IAgentOutput;
 import org.jacoco.agent.rt.internal.output.FileOutput;
+import org.jacoco.agent.rt.internal.output.MappedFileOutput;
 import org.jacoco.agent.rt.internal.output.NoneOutput;
+import org.jacoco.agent.rt.internal.output.TcpBatchClientOutput;
 import org.jacoco.agent.rt.internal.output.TcpClientOutput;
+import org.jacoco.agent.rt.internal.output.TcpMultiServerOutput;
 import org.jacoco.agent.rt.internal.output.TcpServerOutput;
 import org.jacoco.core.JaCoCo;
 import org.jacoco.core.data.ExecutionDataReader;
@@ -73,14 +76,26 @@ public class AgentTest implements IExceptionLogger {
 		assertEquals(FileOutput.class, agent.createAgentOutput()
 				.getClass());
 
+		options.setOutput(OutputMode.mapped);
+		assertEquals(MappedFileOutput.class, agent.createAgentOutput()
+				.getClass());
+
 		options.setOutput(OutputMode.tcpserver);
 		assertEquals(TcpServerOutput.class, agent.createAgentOutput()
 				.getClass());
 
+		options.setOutput(OutputMode.tcpmultiserver);
+		assertEquals(TcpMultiServerOutput.class, agent.createAgentOutput()
+				.getClass());
+
 		options.setOutput(OutputMode.tcpclient);
 		assertEquals(TcpClientOutput.class, agent.createAgentOutput()
 				.getClass());
 
+		options.setOutput(OutputMode.tcpbatchclient);
+		assertEquals(TcpBatchClientOutput.class, agent.createAgentOutput()
+				.getClass());
+
 		options.setOutput(OutputMode.none);
 		assertEquals(NoneOutput.class, agent.createAgentOutput()
 				.getClass());
@@ -226,6 +241,38 @@ public class AgentTest implements IExceptionLogger {
 		assertEquals("agenttestid", sessionStore.getInfos().get(0).getId());
 	}
 
+	@Test
+	public void testTestCapture() throws IOException {
+		Agent agent = new Agent(options, this);
+		agent.startup();
+
+		boolean[] foo = agent.getData()
+				.getExecutionData(Long.valueOf(0x12345678), "Foo", 1)
+				.getProbes();
+		boolean[] bar = agent.getData()
+				.getExecutionData(Long.valueOf(0x87654321), "Bar", 1)
+				.getProbes();
+		bar[0] = true;
+
+		agent.beginTest("test1");
+		assertFalse(bar[0]);
+		foo[0] = true;
+		byte[] data = agent.endTest();
+		assertFalse(foo[0]);
+
+		ExecutionDataStore execStore = new ExecutionDataStore();
+		SessionInfoStore sessionStore = new SessionInfoStore();
+		ExecutionDataReader reader = new ExecutionDataReader(
+				new ByteArrayInputStream(data));
+		reader.setExecutionDataVisitor(execStore);
+		reader.setSessionInfoVisitor(sessionStore);
+		reader.read();
+
+		assertEquals(1, execStore.getContents().size());
+		assertEquals("Foo", execStore.get(0x12345678).getName());
+		assertEquals("test1", sessionStore.getInfos().get(0).getId());
+	}
+
 	@Test
 	public void testDump() throws Exception {
 		final boolean[] called = new boolean[1];
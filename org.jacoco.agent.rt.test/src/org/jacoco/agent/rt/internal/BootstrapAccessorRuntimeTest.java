@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.agent.rt.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.jacoco.core.JaCoCo;
+import org.jacoco.core.runtime.RuntimeData;
+import org.junit.Before;
+import org.junit.Test;
+import org.objectweb.asm.MethodVisitor;
+
+/**
+ * Unit tests for {@link BootstrapAccessorRuntime}. Within the tests the
+ * {@link ProbeAccessor} is loaded by the same class loader as the runtime.
+ */
+public class BootstrapAccessorRuntimeTest {
+
+	private RuntimeData data;
+
+	private BootstrapAccessorRuntime runtime;
+
+	@Before
+	public void setup() throws Exception {
+		data = new RuntimeData();
+		runtime = new BootstrapAccessorRuntime();
+		runtime.startup(data);
+	}
+
+	@Test
+	public void testGetProbes() {
+		final boolean[] probes = ProbeAccessor.getProbes(0x12345678L, "Foo",
+				3);
+		assertEquals(3, probes.length);
+		assertSame(data.getExecutionData(0x12345678L, "Foo", 3).getProbes(),
+				probes);
+		assertSame(probes, ProbeAccessor.getProbes(0x12345678L, "Foo", 3));
+	}
+
+	@Test
+	public void testGenerateDataAccessor() {
+		final String[] owner = new String[1];
+		final int size = runtime.generateDataAccessor(1001, "Target", 5,
+				new MethodVisitor(JaCoCo.ASM_API_VERSION) {
+					@Override
+					public void visitMethodInsn(int opcode, String o,
+							String name, String desc, boolean itf) {
+						owner[0] = o;
+					}
+				});
+		assertEquals(ProbeAccessor.class.getName().replace('.', '/'),
+				owner[0]);
+		assertEquals(4, size);
+	}
+
+}
@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.agent.rt.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+
+import org.jacoco.core.JaCoCo;
+import org.jacoco.core.runtime.RuntimeData;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link ClassDetacher}.
+ */
+public class ClassDetacherTest {
+
+	private ExceptionRecorder recorder;
+
+	private StubInstrumentation inst;
+
+	private RuntimeData data;
+
+	private boolean[] probes;
+
+	@Before
+	public void setup() {
+		recorder = new ExceptionRecorder();
+		inst = new StubInstrumentation();
+		inst.loadedClasses = new Class<?>[] { String.class, JaCoCo.class };
+		data = new RuntimeData();
+		probes = data.getExecutionData(123, "org/jacoco/core/JaCoCo", 2)
+				.getProbes();
+	}
+
+	@After
+	public void teardown() {
+		recorder.assertNoException();
+	}
+
+	@Test
+	public void testSaturated() throws Exception {
+		final ClassDetacher detacher = createDetacher(0);
+		probes[0] = true;
+		detacher.check(0);
+		assertFalse(detacher.isDetached(123));
+		assertTrue(inst.retransformed.isEmpty());
+
+		probes[1] = true;
+		detacher.check(0);
+		assertTrue(detacher.isDetached(123));
+		assertEquals(Arrays.asList(JaCoCo.class), inst.retransformed);
+	}
+
+	@Test
+	public void testDetachOnlyOnce() throws Exception {
+		final ClassDetacher detacher = createDetacher(0);
+		probes[0] = true;
+		probes[1] = true;
+		detacher.check(0);
+		detacher.check(1);
+		assertEquals(Arrays.asList(JaCoCo.class), inst.retransformed);
+	}
+
+	@Test
+	public void testNotSaturatedWithoutQuietTime() throws Exception {
+		final ClassDetacher detacher = createDetacher(0);
+		probes[0] = true;
+		detacher.check(0);
+		detacher.check(Long.MAX_VALUE);
+		assertFalse(detacher.isDetached(123));
+	}
+
+	@Test
+	public void testQuiet() throws Exception {
+		final ClassDetacher detacher = createDetacher(1000);
+		detacher.check(0);
+		probes[0] = true;
+		detacher.check(500);
+		detacher.check(1400);
+		assertFalse(detacher.isDetached(123));
+
+		detacher.check(1500);
+		assertTrue(detacher.isDetached(123));
+		assertEquals(Arrays.asList(JaCoCo.class), inst.retransformed);
+	}
+
+	@Test
+	public void testNotExecutedClassNotQuiet() throws Exception {
+		final ClassDetacher detacher = createDetacher(1000);
+		detacher.check(0);
+		detacher.check(1500);
+		detacher.check(3000);
+		assertFalse(detacher.isDetached(123));
+		assertTrue(inst.retransformed.isEmpty());
+	}
+
+	@Test
+	public void testAttachAfterReset() throws Exception {
+		final ClassDetacher detacher = createDetacher(0);
+		data.setResetListener(detacher);
+		probes[0] = true;
+		probes[1] = true;
+		detacher.check(0);
+		assertTrue(detacher.isDetached(123));
+
+		data.reset();
+		assertFalse(detacher.isDetached(123));
+		assertEquals(Arrays.asList(JaCoCo.class, JaCoCo.class),
+				inst.retransformed);
+
+		probes[0] = true;
+		probes[1] = true;
+		detacher.check(1);
+		assertTrue(detacher.isDetached(123));
+	}
+
+	@Test
+	public void testResetWithoutDetachedClasses() throws Exception {
+		final ClassDetacher detacher = createDetacher(0);
+		data.setResetListener(detacher);
+		data.beginTest("test");
+		assertTrue(inst.retransformed.isEmpty());
+	}
+
+	@Test
+	public void testClassNotLoaded() throws Exception {
+		inst.loadedClasses = new Class<?>[] { String.class };
+		final ClassDetacher detacher = createDetacher(0);
+		probes[0] = true;
+		probes[1] = true;
+		detacher.check(0);
+		assertTrue(detacher.isDetached(123));
+		assertTrue(inst.retransformed.isEmpty());
+	}
+
+	@Test
+	public void testRetransformFailure() throws Exception {
+		inst.failing = true;
+		final ClassDetacher detacher = createDetacher(0);
+		probes[0] = true;
+		probes[1] = true;
+		detacher.check(0);
+		recorder.assertException(InvocationTargetException.class, null,
+				UnsupportedOperationException.class);
+		recorder.clear();
+	}
+
+	private ClassDetacher createDetacher(final long quietTime)
+			throws Exception {
+		return new ClassDetacher(data, inst.createRetransformer(), quietTime,
+				recorder);
+	}
+
+}
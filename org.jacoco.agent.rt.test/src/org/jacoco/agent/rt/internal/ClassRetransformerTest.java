@@ -0,0 +1,72 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.agent.rt.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.security.ProtectionDomain;
+import java.util.Arrays;
+
+import org.jacoco.core.JaCoCo;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link ClassRetransformer}.
+ */
+public class ClassRetransformerTest {
+
+	private StubInstrumentation inst;
+
+	@Before
+	public void setup() {
+		inst = new StubInstrumentation();
+	}
+
+	@Test
+	public void testNotSupported() throws Exception {
+		inst.supported = false;
+		assertNull(inst.createRetransformer());
+	}
+
+	@Test
+	public void testAddTransformer() throws Exception {
+		final ClassFileTransformer t = new ClassFileTransformer() {
+			public byte[] transform(ClassLoader loader, String className,
+					Class<?> classBeingRedefined,
+					ProtectionDomain protectionDomain, byte[] classfileBuffer) {
+				return null;
+			}
+		};
+		inst.createRetransformer().addTransformer(t);
+		assertSame(t, inst.transformer);
+		assertEquals(Boolean.TRUE, inst.canRetransform);
+	}
+
+	@Test
+	public void testRetransform() throws Exception {
+		inst.createRetransformer().retransform(
+				new Class<?>[] { JaCoCo.class });
+		assertEquals(Arrays.asList(JaCoCo.class), inst.retransformed);
+	}
+
+	@Test
+	public void testGetAllLoadedClasses() throws Exception {
+		inst.loadedClasses = new Class<?>[] { JaCoCo.class };
+		assertSame(inst.loadedClasses, inst.createRetransformer()
+				.getAllLoadedClasses());
+	}
+
+}
@@ -13,6 +13,7 @@ package org.jacoco.agent.rt.internal;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -24,14 +25,22 @@ import java.lang.instrument.IllegalClassFormatException;
 import java.security.CodeSource;
 import java.security.ProtectionDomain;
 import java.security.cert.Certificate;
+import java.util.Arrays;
 
 import org.jacoco.core.JaCoCo;
+import org.jacoco.core.internal.data.CRC64;
 import org.jacoco.core.runtime.AbstractRuntime;
 import org.jacoco.core.runtime.AgentOptions;
+import org.jacoco.core.runtime.IRuntime;
+import org.jacoco.core.runtime.RuntimeData;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
 import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
 
 /**
  * Unit tests for {@link CoverageTransformer}.
@@ -122,6 +131,20 @@ public class CoverageTransformerTest {
 				.filter(myClassLoader, "org/example/Foo", protectionDomain));
 	}
 
+	@Test
+	public void testFilterClassLoaderCached() {
+		options.setExclClassloader("org.jacoco.agent.rt.internal.CoverageTransformerTest$*");
+		CoverageTransformer t = createTransformer();
+		ClassLoader myClassLoader = new ClassLoader(null) {
+		};
+		for (int i = 0; i < 3; i++) {
+			assertFalse(t.filter(myClassLoader, "org/example/Foo",
+					protectionDomain));
+			assertTrue(t.filter(classLoader, "org/example/Foo",
+					protectionDomain));
+		}
+	}
+
 	@Test
 	public void testFilterIncludedClassPositive() {
 		options.setIncludes("org.jacoco.core.*:org.jacoco.agent.rt.*");
@@ -230,6 +253,135 @@ public class CoverageTransformerTest {
 				protectionDomain, getClassData(target)));
 	}
 
+	@Test
+	public void testTransformStripedClass() throws Exception {
+		options.setStripedClasses("org.jacoco.core.JaCoCo");
+		CoverageTransformer t = createTransformer();
+		final Class<?> target = JaCoCo.class;
+		final byte[] bytes = t.transform(classLoader, "org/jacoco/core/JaCoCo",
+				null, protectionDomain, getClassData(target));
+		assertEquals("[[Z", getDataFieldDesc(bytes));
+	}
+
+	@Test
+	public void testTransformNotStripedClass() throws Exception {
+		options.setStripedClasses("org.jacoco.core.Other");
+		CoverageTransformer t = createTransformer();
+		final Class<?> target = JaCoCo.class;
+		final byte[] bytes = t.transform(classLoader, "org/jacoco/core/JaCoCo",
+				null, protectionDomain, getClassData(target));
+		assertEquals("[Z", getDataFieldDesc(bytes));
+	}
+
+	@Test
+	public void testTransformLazy() throws Exception {
+		final StubInstrumentation inst = new StubInstrumentation();
+		final LazyInstrumentation lazy = createLazy(inst);
+		CoverageTransformer t = new CoverageTransformer(runtime, options,
+				recorder, lazy, null);
+		final Class<?> target = JaCoCo.class;
+
+		// Initially only the hook is added:
+		byte[] bytes = t.transform(classLoader, "org/jacoco/core/JaCoCo",
+				null, protectionDomain, getClassData(target));
+		assertEquals("[Z", getDataFieldDesc(bytes));
+		assertEquals(0, countInitCalls(bytes));
+
+		// Retransformation before initialization keeps the hook:
+		bytes = t.transform(classLoader, "org/jacoco/core/JaCoCo", target,
+				protectionDomain, getClassData(target));
+		assertEquals(0, countInitCalls(bytes));
+
+		// Full instrumentation after initialization:
+		lazy.classInitialized(0, "org/jacoco/core/JaCoCo");
+		assertEquals(Arrays.asList(target), inst.retransformed);
+		bytes = t.transform(classLoader, "org/jacoco/core/JaCoCo", target,
+				protectionDomain, getClassData(target));
+		assertEquals("[Z", getDataFieldDesc(bytes));
+		assertTrue(countInitCalls(bytes) > 0);
+	}
+
+	@Test
+	public void testTransformLazyInterface() throws Exception {
+		CoverageTransformer t = new CoverageTransformer(runtime, options,
+				recorder, createLazy(new StubInstrumentation()), null);
+		final Class<?> target = IRuntime.class;
+		final byte[] bytes = t.transform(classLoader,
+				"org/jacoco/core/runtime/IRuntime", null, protectionDomain,
+				getClassData(target));
+		assertNotNull(bytes);
+	}
+
+	@Test
+	public void testTransformDetached() throws Exception {
+		final StubInstrumentation inst = new StubInstrumentation();
+		final Class<?> target = JaCoCo.class;
+		inst.loadedClasses = new Class<?>[] { target };
+		final RuntimeData data = new RuntimeData();
+		final ClassDetacher detacher = new ClassDetacher(data,
+				inst.createRetransformer(), 0, recorder);
+		CoverageTransformer t = new CoverageTransformer(runtime, options,
+				recorder, null, detacher);
+
+		byte[] bytes = t.transform(classLoader, "org/jacoco/core/JaCoCo",
+				null, protectionDomain, getClassData(target));
+		assertTrue(countInitCalls(bytes) > 0);
+
+		// Retransformation keeps the probes as long as not detached:
+		bytes = t.transform(classLoader, "org/jacoco/core/JaCoCo", target,
+				protectionDomain, getClassData(target));
+		assertTrue(countInitCalls(bytes) > 0);
+
+		data.getExecutionData(CRC64.checksum(getClassData(target)),
+				"org/jacoco/core/JaCoCo", 1).getProbes()[0] = true;
+		detacher.check(0);
+		assertEquals(Arrays.asList(target), inst.retransformed);
+		bytes = t.transform(classLoader, "org/jacoco/core/JaCoCo", target,
+				protectionDomain, getClassData(target));
+		assertEquals("[Z", getDataFieldDesc(bytes));
+		assertEquals(0, countInitCalls(bytes));
+	}
+
+	private LazyInstrumentation createLazy(final StubInstrumentation inst)
+			throws Exception {
+		return new LazyInstrumentation(inst.createRetransformer(), recorder);
+	}
+
+	private static int countInitCalls(byte[] bytes) {
+		final int[] count = new int[1];
+		new ClassReader(bytes).accept(new ClassVisitor(Opcodes.ASM5) {
+			@Override
+			public MethodVisitor visitMethod(int access, String name,
+					String desc, String signature, String[] exceptions) {
+				return new MethodVisitor(Opcodes.ASM5) {
+					@Override
+					public void visitMethodInsn(int opcode, String owner,
+							String name, String desc, boolean itf) {
+						if ("$jacocoInit".equals(name)) {
+							count[0]++;
+						}
+					}
+				};
+			}
+		}, 0);
+		return count[0];
+	}
+
+	private static String getDataFieldDesc(byte[] bytes) {
+		final String[] desc = new String[1];
+		new ClassReader(bytes).accept(new ClassVisitor(Opcodes.ASM5) {
+			@Override
+			public FieldVisitor visitField(int access, String name,
+					String d, String signature, Object value) {
+				if ("$jacocoData".equals(name)) {
+					desc[0] = d;
+				}
+				return null;
+			}
+		}, 0);
+		return desc[0];
+	}
+
 	private CoverageTransformer createTransformer() {
 		return new CoverageTransformer(runtime, options, recorder);
 	}
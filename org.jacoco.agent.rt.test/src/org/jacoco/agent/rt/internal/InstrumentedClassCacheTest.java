@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.agent.rt.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.jacoco.core.instr.Instrumenter;
+import org.jacoco.core.runtime.SystemPropertiesRuntime;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link InstrumentedClassCache}.
+ */
+public class InstrumentedClassCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private byte[] original;
+
+	private byte[] instrumented;
+
+	private CountingInstrumenter instrumenter;
+
+	private File location;
+
+	@Before
+	public void setup() throws IOException {
+		original = "original bytes".getBytes("UTF-8");
+		instrumented = "instrumented bytes".getBytes("UTF-8");
+		instrumenter = new CountingInstrumenter();
+		location = new File(folder.getRoot(), "cache");
+	}
+
+	@Test
+	public void testCacheHit() throws IOException {
+		final InstrumentedClassCache cache = new InstrumentedClassCache(
+				location.toString(), "strategy");
+		assertArrayEquals(instrumented,
+				cache.instrument(instrumenter, original, "Foo"));
+		assertArrayEquals(instrumented,
+				cache.instrument(instrumenter, original, "Foo"));
+		assertEquals(1, instrumenter.count);
+	}
+
+	@Test
+	public void testCacheHitOtherInstance() throws IOException {
+		new InstrumentedClassCache(location.toString(), "strategy").instrument(
+				instrumenter, original, "Foo");
+		final InstrumentedClassCache cache = new InstrumentedClassCache(
+				location.toString(), "strategy");
+		assertArrayEquals(instrumented,
+				cache.instrument(instrumenter, original, "Foo"));
+		assertEquals(1, instrumenter.count);
+	}
+
+	@Test
+	public void testOtherStrategy() throws IOException {
+		new InstrumentedClassCache(location.toString(), "strategy").instrument(
+				instrumenter, original, "Foo");
+		new InstrumentedClassCache(location.toString(), "other").instrument(
+				instrumenter, original, "Foo");
+		assertEquals(2, instrumenter.count);
+	}
+
+	@Test
+	public void testOtherClass() throws IOException {
+		final InstrumentedClassCache cache = new InstrumentedClassCache(
+				location.toString(), "strategy");
+		cache.instrument(instrumenter, original, "Foo");
+		cache.instrument(instrumenter, "other bytes".getBytes("UTF-8"), "Bar");
+		assertEquals(2, instrumenter.count);
+	}
+
+	@Test
+	public void testCorruptEntry() throws IOException {
+		final InstrumentedClassCache cache = new InstrumentedClassCache(
+				location.toString(), "strategy");
+		cache.instrument(instrumenter, original, "Foo");
+		corruptEntries(location);
+		assertArrayEquals(instrumented,
+				cache.instrument(instrumenter, original, "Foo"));
+		assertEquals(2, instrumenter.count);
+	}
+
+	@Test
+	public void testNoCache() throws IOException {
+		final InstrumentedClassCache cache = new InstrumentedClassCache(null,
+				"strategy");
+		assertArrayEquals(instrumented,
+				cache.instrument(instrumenter, original, "Foo"));
+		assertArrayEquals(instrumented,
+				cache.instrument(instrumenter, original, "Foo"));
+		assertEquals(2, instrumenter.count);
+	}
+
+	private void corruptEntries(final File file) throws IOException {
+		if (file.isDirectory()) {
+			for (final File child : file.listFiles()) {
+				corruptEntries(child);
+			}
+		} else {
+			final OutputStream out = new FileOutputStream(file);
+			out.write("corrupt".getBytes("UTF-8"));
+			out.close();
+		}
+	}
+
+	private class CountingInstrumenter extends Instrumenter {
+
+		int count;
+
+		CountingInstrumenter() {
+			super(new SystemPropertiesRuntime());
+		}
+
+		@Override
+		public byte[] instrument(final byte[] buffer, final String name) {
+			count++;
+			return instrumented;
+		}
+
+	}
+
+}
@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.agent.rt.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+
+import org.jacoco.core.JaCoCo;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link LazyInstrumentation}.
+ */
+public class LazyInstrumentationTest {
+
+	private ExceptionRecorder recorder;
+
+	private StubInstrumentation inst;
+
+	private ClassLoader classLoader;
+
+	@Before
+	public void setup() {
+		recorder = new ExceptionRecorder();
+		inst = new StubInstrumentation();
+		classLoader = JaCoCo.class.getClassLoader();
+	}
+
+	@After
+	public void teardown() {
+		recorder.assertNoException();
+	}
+
+	@Test
+	public void testClassInitialized() throws Exception {
+		final LazyInstrumentation lazy = createLazy();
+		lazy.hooked(classLoader, "org/jacoco/core/JaCoCo");
+		assertFalse(lazy.isActivated(JaCoCo.class));
+
+		lazy.classInitialized(123, "org/jacoco/core/JaCoCo");
+
+		assertTrue(lazy.isActivated(JaCoCo.class));
+		assertEquals(Arrays.asList(JaCoCo.class), inst.retransformed);
+	}
+
+	@Test
+	public void testClassInitializedTwice() throws Exception {
+		final LazyInstrumentation lazy = createLazy();
+		lazy.hooked(classLoader, "org/jacoco/core/JaCoCo");
+		lazy.classInitialized(123, "org/jacoco/core/JaCoCo");
+		lazy.classInitialized(123, "org/jacoco/core/JaCoCo");
+		assertEquals(Arrays.asList(JaCoCo.class), inst.retransformed);
+	}
+
+	@Test
+	public void testClassInitializedNotHooked() throws Exception {
+		final LazyInstrumentation lazy = createLazy();
+		lazy.classInitialized(123, "org/jacoco/core/JaCoCo");
+		assertFalse(lazy.isActivated(JaCoCo.class));
+		assertTrue(inst.retransformed.isEmpty());
+	}
+
+	@Test
+	public void testClassInitializedOtherLoader() throws Exception {
+		final LazyInstrumentation lazy = createLazy();
+		lazy.hooked(new ClassLoader(classLoader) {
+		}, "org/jacoco/core/JaCoCo");
+		lazy.classInitialized(123, "org/jacoco/core/JaCoCo");
+		assertFalse(lazy.isActivated(JaCoCo.class));
+		assertTrue(inst.retransformed.isEmpty());
+	}
+
+	@Test
+	public void testClassInitializedUnknownClass() throws Exception {
+		final LazyInstrumentation lazy = createLazy();
+		lazy.hooked(classLoader, "org/jacoco/core/DoesNotExist");
+		lazy.classInitialized(123, "org/jacoco/core/DoesNotExist");
+		assertTrue(inst.retransformed.isEmpty());
+	}
+
+	@Test
+	public void testRetransformFailure() throws Exception {
+		final LazyInstrumentation lazy = createLazy();
+		lazy.hooked(classLoader, "org/jacoco/core/JaCoCo");
+		inst.failing = true;
+		lazy.classInitialized(123, "org/jacoco/core/JaCoCo");
+		recorder.assertException(InvocationTargetException.class, null,
+				UnsupportedOperationException.class);
+		recorder.clear();
+	}
+
+	private LazyInstrumentation createLazy() throws Exception {
+		return new LazyInstrumentation(inst.createRetransformer(), recorder);
+	}
+
+}
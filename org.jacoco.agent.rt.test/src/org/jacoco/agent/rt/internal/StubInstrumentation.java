@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.agent.rt.internal;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.lang.instrument.Instrumentation;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * {@link Instrumentation} implementation for testing purposes which records
+ * the retransformation API calls.
+ */
+public class StubInstrumentation implements InvocationHandler {
+
+	public boolean supported = true;
+
+	public boolean failing = false;
+
+	public Class<?>[] loadedClasses = new Class<?>[0];
+
+	public final List<Class<?>> retransformed = new ArrayList<Class<?>>();
+
+	public ClassFileTransformer transformer;
+
+	public Boolean canRetransform;
+
+	public Instrumentation create() {
+		return (Instrumentation) Proxy.newProxyInstance(getClass()
+				.getClassLoader(), new Class<?>[] { Instrumentation.class },
+				this);
+	}
+
+	public ClassRetransformer createRetransformer() throws Exception {
+		return ClassRetransformer.createFor(create());
+	}
+
+	public Object invoke(final Object proxy, final Method method,
+			final Object[] args) throws Throwable {
+		final String name = method.getName();
+		if ("isRetransformClassesSupported".equals(name)) {
+			return Boolean.valueOf(supported);
+		}
+		if ("addTransformer".equals(name)) {
+			transformer = (ClassFileTransformer) args[0];
+			canRetransform = (Boolean) args[1];
+			return null;
+		}
+		if ("retransformClasses".equals(name)) {
+			if (failing) {
+				throw new UnsupportedOperationException();
+			}
+			retransformed.addAll(Arrays.asList((Class<?>[]) args[0]));
+			return null;
+		}
+		if ("getAllLoadedClasses".equals(name)) {
+			return loadedClasses;
+		}
+		throw new AssertionError(name);
+	}
+
+}
@@ -15,9 +15,18 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.jacoco.agent.rt.internal.output.FileOutput;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataReader;
+import org.jacoco.core.data.IExecutionDataVisitor;
+import org.jacoco.core.data.SessionInfoStore;
 import org.jacoco.core.runtime.AgentOptions;
 import org.jacoco.core.runtime.RuntimeData;
 import org.junit.Rule;
@@ -62,6 +71,46 @@ public class FileOutputTest {
 				destFile.length() > 0);
 	}
 
+	@Test
+	public void testWriteDelta() throws Exception {
+		File destFile = folder.newFile("jacoco.exec");
+		AgentOptions options = new AgentOptions();
+		options.setDestfile(destFile.getAbsolutePath());
+		options.setAppend(false);
+		options.setDelta(true);
+		RuntimeData data = new RuntimeData();
+		boolean[] probes = data.getExecutionData(123, "Foo", 2).getProbes();
+
+		FileOutput controller = new FileOutput();
+		controller.startup(options, data);
+		probes[0] = true;
+		controller.writeExecutionData(false);
+		controller.writeExecutionData(false);
+		probes[1] = true;
+		controller.writeExecutionData(false);
+		controller.shutdown();
+
+		final List<ExecutionData> dumped = new ArrayList<ExecutionData>();
+		SessionInfoStore sessions = new SessionInfoStore();
+		InputStream in = new FileInputStream(destFile);
+		ExecutionDataReader reader = new ExecutionDataReader(in);
+		reader.setExecutionDataVisitor(new IExecutionDataVisitor() {
+			public void visitClassExecution(ExecutionData data) {
+				dumped.add(data);
+			}
+		});
+		reader.setSessionInfoVisitor(sessions);
+		reader.read();
+		in.close();
+
+		assertEquals(3, sessions.getInfos().size());
+		assertEquals(2, dumped.size());
+		assertTrue(Arrays.equals(new boolean[] { true, false }, dumped.get(0)
+				.getProbes()));
+		assertTrue(Arrays.equals(new boolean[] { true, true }, dumped.get(1)
+				.getProbes()));
+	}
+
 	@Test(expected = IOException.class)
 	public void testInvalidDestFile() throws Exception {
 		AgentOptions options = new AgentOptions();
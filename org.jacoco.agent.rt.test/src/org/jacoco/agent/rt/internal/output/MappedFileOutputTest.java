@@ -0,0 +1,150 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.agent.rt.internal.output;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.jacoco.agent.rt.internal.ExceptionRecorder;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.runtime.AgentOptions;
+import org.jacoco.core.runtime.RuntimeData;
+import org.jacoco.core.tools.ExecFileLoader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link MappedFileOutput}.
+ */
+public class MappedFileOutputTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private ExceptionRecorder logger;
+
+	private File destFile;
+
+	private AgentOptions options;
+
+	private RuntimeData data;
+
+	private MappedFileOutput controller;
+
+	@Before
+	public void setup() throws Exception {
+		logger = new ExceptionRecorder();
+		destFile = new File(folder.getRoot(), "sub/jacoco.map");
+		options = new AgentOptions();
+		options.setDestfile(destFile.getPath());
+		data = new RuntimeData();
+		data.setSessionId("stubid");
+		controller = new MappedFileOutput(logger);
+	}
+
+	@After
+	public void teardown() throws Exception {
+		logger.assertNoException();
+	}
+
+	@Test
+	public void testStartup() throws Exception {
+		data.getExecutionData(Long.valueOf(42), "Foo", 3);
+		controller.startup(options, data);
+
+		final ExecFileLoader loader = load();
+		assertEquals("stubid", loader.getSessionInfoStore().getInfos().get(0)
+				.getId());
+		assertFalse(loader.getExecutionDataStore().get(42).hasHits());
+		controller.shutdown();
+	}
+
+	@Test
+	public void testWriteExecutionData() throws Exception {
+		controller.startup(options, data);
+		final boolean[] probes = data.getExecutionData(Long.valueOf(42),
+				"Foo", 3).getProbes();
+		probes[1] = true;
+
+		controller.writeExecutionData(false);
+		assertTrue(load().getExecutionDataStore().get(42).getProbes()[1]);
+
+		controller.writeExecutionData(true);
+		assertFalse(probes[1]);
+		assertTrue(load().getExecutionDataStore().get(42).getProbes()[1]);
+
+		controller.writeExecutionData(false);
+		assertTrue(load().getExecutionDataStore().get(42).getProbes()[1]);
+		controller.shutdown();
+	}
+
+	@Test
+	public void testSyncAfterReset() throws Exception {
+		controller.startup(options, data);
+		final boolean[] probes = data.getExecutionData(Long.valueOf(42),
+				"Foo", 3).getProbes();
+		probes[0] = true;
+		controller.writeExecutionData(false);
+
+		data.reset();
+		probes[2] = true;
+		controller.writeExecutionData(false);
+
+		final boolean[] actual = load().getExecutionDataStore().get(42)
+				.getProbes();
+		assertTrue(actual[0]);
+		assertFalse(actual[1]);
+		assertTrue(actual[2]);
+		controller.shutdown();
+	}
+
+	@Test
+	public void testPeriodicSync() throws Exception {
+		options.setSyncInterval(10);
+		controller.startup(options, data);
+		data.getExecutionData(Long.valueOf(42), "Foo", 3).getProbes()[2] = true;
+
+		final long timeout = System.currentTimeMillis() + 5000;
+		while (true) {
+			final ExecutionData execData = load().getExecutionDataStore().get(
+					42);
+			if (execData != null && execData.getProbes()[2]) {
+				break;
+			}
+			assertTrue("Timeout", System.currentTimeMillis() < timeout);
+			Thread.sleep(10);
+		}
+		controller.shutdown();
+	}
+
+	@Test
+	public void testShutdown() throws Exception {
+		controller.startup(options, data);
+		data.getExecutionData(Long.valueOf(42), "Foo", 3).getProbes()[0] = true;
+		controller.shutdown();
+
+		assertTrue(load().getExecutionDataStore().get(42).getProbes()[0]);
+	}
+
+	private ExecFileLoader load() throws Exception {
+		final ExecFileLoader loader = new ExecFileLoader();
+		loader.load(destFile);
+		return loader;
+	}
+
+}
@@ -0,0 +1,218 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.agent.rt.internal.output;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataReader;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.data.SessionInfoStore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link SpoolQueue}.
+ */
+public class SpoolQueueTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private SessionInfoStore sessionInfos;
+
+	private ExecutionDataStore executionData;
+
+	@Test
+	public void testMemory() throws IOException {
+		final SpoolQueue queue = new SpoolQueue(null, 100);
+		assertNull(queue.peek());
+		queue.add(new byte[] { 1 });
+		queue.add(new byte[] { 2, 3 });
+		assertEquals(2, queue.getCount());
+		assertEquals(3, queue.getSize());
+
+		assertArrayEquals(new byte[] { 1 }, queue.peek());
+		assertArrayEquals(new byte[] { 1 }, queue.peek());
+		queue.remove();
+		assertArrayEquals(new byte[] { 2, 3 }, queue.peek());
+		queue.remove();
+		assertNull(queue.peek());
+		assertEquals(0, queue.getSize());
+	}
+
+	@Test
+	public void testMemoryLimit() throws IOException {
+		final SpoolQueue queue = new SpoolQueue(null, 1);
+		queue.add(batch("s1", 1, 0));
+		assertEquals(1, queue.getCount());
+		queue.add(batch("s2", 1, 2));
+		queue.add(batch("s3", 2, 1));
+		assertEquals(1, queue.getCount());
+		assertEquals(queue.peek().length, queue.getSize());
+
+		read(queue.peek());
+		assertEquals(3, sessionInfos.getInfos().size());
+		assertEquals(2, executionData.getContents().size());
+		final boolean[] probes = executionData.get(1).getProbes();
+		assertTrue(probes[0]);
+		assertFalse(probes[1]);
+		assertTrue(probes[2]);
+		assertTrue(executionData.get(2).getProbes()[1]);
+	}
+
+	@Test
+	public void testLimitDropsCorruptBatches() throws IOException {
+		final SpoolQueue queue = new SpoolQueue(null, 1);
+		queue.add(new byte[] { 1, 2, 3 });
+		queue.add(batch("s1", 1, 0));
+		assertEquals(1, queue.getCount());
+
+		read(queue.peek());
+		assertEquals(1, sessionInfos.getInfos().size());
+		assertTrue(executionData.get(1).getProbes()[0]);
+	}
+
+	@Test
+	public void testDirectory() throws IOException {
+		final File dir = new File(folder.getRoot(), "spool");
+		final SpoolQueue queue = new SpoolQueue(dir.getPath(), 100);
+		queue.add(new byte[] { 1 });
+		queue.add(new byte[] { 2, 3 });
+		assertEquals(2, dir.list().length);
+
+		assertArrayEquals(new byte[] { 1 }, queue.peek());
+		queue.remove();
+		assertEquals(1, dir.list().length);
+	}
+
+	@Test
+	public void testDirectoryReload() throws IOException {
+		final String dir = folder.getRoot().getPath();
+		final SpoolQueue first = new SpoolQueue(dir, 100);
+		for (int i = 0; i < 20; i++) {
+			first.add(new byte[] { (byte) i });
+		}
+		first.remove();
+
+		final SpoolQueue second = new SpoolQueue(dir, 100);
+		assertEquals(19, second.getCount());
+		assertEquals(19, second.getSize());
+		second.add(new byte[] { 42 });
+		for (int i = 1; i < 20; i++) {
+			assertArrayEquals(new byte[] { (byte) i }, second.peek());
+			second.remove();
+		}
+		assertArrayEquals(new byte[] { 42 }, second.peek());
+	}
+
+	@Test
+	public void testDirectoryReloadLimit() throws IOException {
+		final String dir = folder.getRoot().getPath();
+		final SpoolQueue first = new SpoolQueue(dir, 10000);
+		first.add(batch("s1", 1, 0));
+		first.add(batch("s2", 1, 1));
+		first.add(batch("s3", 2, 2));
+
+		final SpoolQueue second = new SpoolQueue(dir, 1);
+		assertEquals(1, second.getCount());
+		assertEquals(1, folder.getRoot().list().length);
+		read(second.peek());
+		assertEquals(3, sessionInfos.getInfos().size());
+		assertTrue(executionData.get(1).getProbes()[0]);
+		assertTrue(executionData.get(1).getProbes()[1]);
+		assertTrue(executionData.get(2).getProbes()[2]);
+
+		second.add(batch("s4", 3, 0));
+		final SpoolQueue third = new SpoolQueue(dir, 1);
+		assertEquals(1, third.getCount());
+		read(third.peek());
+		assertEquals(4, sessionInfos.getInfos().size());
+		assertEquals(3, executionData.getContents().size());
+	}
+
+	@Test
+	public void testDirectoryIgnoresOtherFiles() throws IOException {
+		folder.newFile("readme.txt");
+		folder.newFile("xyz.batch");
+		final File tmp = folder.newFile("0000000000000000.batch123.tmp");
+
+		final SpoolQueue queue = new SpoolQueue(folder.getRoot().getPath(),
+				100);
+		assertEquals(0, queue.getCount());
+		assertFalse(tmp.exists());
+	}
+
+	@Test
+	public void testDirectoryMissingFile() throws IOException {
+		final SpoolQueue queue = new SpoolQueue(folder.getRoot().getPath(),
+				100);
+		queue.add(new byte[] { 1 });
+		queue.add(new byte[] { 2 });
+		for (final File f : folder.getRoot().listFiles()) {
+			if (f.getName().startsWith("0000000000000000")) {
+				f.delete();
+			}
+		}
+		assertArrayEquals(new byte[] { 2 }, queue.peek());
+		assertEquals(1, queue.getCount());
+	}
+
+	@Test(expected = IOException.class)
+	public void testInvalidDirectory() throws IOException {
+		final File file = folder.newFile("file");
+		new SpoolQueue(file.getPath(), 100);
+	}
+
+	/**
+	 * Creates a batch with a session and class with the given id which has
+	 * the given probe set.
+	 */
+	private static byte[] batch(final String sessionId, final long id,
+			final int probe) throws IOException {
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		final DeflaterOutputStream out = new DeflaterOutputStream(buffer);
+		final ExecutionDataWriter writer = new ExecutionDataWriter(out);
+		writer.visitSessionInfo(new SessionInfo(sessionId, 1, 2));
+		final boolean[] probes = new boolean[3];
+		probes[probe] = true;
+		writer.visitClassExecution(new ExecutionData(id, "Class" + id,
+				probes));
+		out.close();
+		return buffer.toByteArray();
+	}
+
+	private void read(final byte[] batch) throws IOException {
+		sessionInfos = new SessionInfoStore();
+		executionData = new ExecutionDataStore();
+		final ExecutionDataReader reader = new ExecutionDataReader(
+				new InflaterInputStream(new ByteArrayInputStream(batch)));
+		reader.setSessionInfoVisitor(sessionInfos);
+		reader.setExecutionDataVisitor(executionData);
+		reader.read();
+	}
+
+}
@@ -0,0 +1,309 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.agent.rt.internal.output;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jacoco.agent.rt.internal.IExceptionLogger;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.IExecutionDataVisitor;
+import org.jacoco.core.data.ISessionInfoVisitor;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.runtime.AgentOptions;
+import org.jacoco.core.runtime.RemoteControlReader;
+import org.jacoco.core.runtime.RemoteControlWriter;
+import org.jacoco.core.runtime.RuntimeData;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link TcpBatchClientOutput}.
+ */
+public class TcpBatchClientOutputTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private List<Exception> exceptions;
+
+	private IExceptionLogger logger;
+
+	private AgentOptions options;
+
+	private RuntimeData data;
+
+	private Receiver receiver;
+
+	private TcpBatchClientOutput controller;
+
+	@Before
+	public void setup() throws Exception {
+		exceptions = new ArrayList<Exception>();
+		logger = new IExceptionLogger() {
+			public void logExeption(final Exception ex) {
+				exceptions.add(ex);
+			}
+		};
+		receiver = new Receiver(true);
+		options = new AgentOptions();
+		options.setPort(receiver.getPort());
+		data = new RuntimeData();
+		data.setSessionId("stubid");
+		controller = new TcpBatchClientOutput(logger);
+	}
+
+	@After
+	public void teardown() throws Exception {
+		controller.shutdown();
+		receiver.close();
+	}
+
+	@Test
+	public void testWriteExecutionData() throws Exception {
+		controller.startup(options, data);
+		hit(0x12345678, "Foo");
+
+		controller.writeExecutionData(false);
+
+		assertEquals(1, receiver.getBatchCount());
+		assertEquals("Foo", receiver.getData(0x12345678).getName());
+		assertEquals("stubid", receiver.getSessionId());
+		assertEquals(0, exceptions.size());
+	}
+
+	@Test
+	public void testWriteExecutionDataWithoutHits() throws Exception {
+		controller.startup(options, data);
+		data.getExecutionData(Long.valueOf(0x12345678), "Foo", 42);
+
+		controller.writeExecutionData(false);
+
+		assertEquals(0, receiver.getConnectionCount());
+	}
+
+	@Test
+	public void testWriteExecutionDataWithReset() throws Exception {
+		controller.startup(options, data);
+		final boolean[] probes = hit(0x12345678, "Foo");
+
+		controller.writeExecutionData(true);
+
+		assertEquals(1, receiver.getBatchCount());
+		assertFalse(probes[0]);
+	}
+
+	@Test
+	public void testDelta() throws Exception {
+		options.setDelta(true);
+		controller.startup(options, data);
+		hit(1, "Foo");
+		controller.writeExecutionData(false);
+		controller.writeExecutionData(false);
+		hit(2, "Bar");
+		controller.writeExecutionData(false);
+
+		assertEquals(2, receiver.getBatchCount());
+		assertEquals(2, receiver.getConnectionCount());
+	}
+
+	@Test
+	public void testUnreachable() throws Exception {
+		receiver.close();
+		controller.startup(options, data);
+		hit(0x12345678, "Foo");
+
+		controller.writeExecutionData(false);
+		controller.writeExecutionData(false);
+		assertEquals(1, exceptions.size());
+
+		receiver = new Receiver(true);
+		options.setPort(receiver.getPort());
+		controller.writeExecutionData(false);
+
+		assertEquals(3, receiver.getBatchCount());
+		assertEquals(1, receiver.getConnectionCount());
+		assertEquals(1, exceptions.size());
+	}
+
+	@Test
+	public void testNotConfirmed() throws Exception {
+		receiver.close();
+		receiver = new Receiver(false);
+		options.setPort(receiver.getPort());
+		controller.startup(options, data);
+		hit(0x12345678, "Foo");
+
+		controller.writeExecutionData(false);
+
+		assertEquals(1, exceptions.size());
+		assertEquals("Connection closed before batch was confirmed.",
+				exceptions.get(0).getMessage());
+	}
+
+	@Test
+	public void testSpoolDir() throws Exception {
+		receiver.close();
+		options.setSpoolDir(folder.getRoot().getPath());
+		controller.startup(options, data);
+		hit(0x12345678, "Foo");
+		controller.writeExecutionData(false);
+		controller.shutdown();
+		assertEquals(1, folder.getRoot().list().length);
+
+		// New JVM with the same spool directory:
+		receiver = new Receiver(true);
+		options.setPort(receiver.getPort());
+		controller = new TcpBatchClientOutput(logger);
+		controller.startup(options, new RuntimeData());
+		controller.writeExecutionData(false);
+
+		assertEquals(1, receiver.getBatchCount());
+		assertEquals("Foo", receiver.getData(0x12345678).getName());
+		assertEquals(0, folder.getRoot().list().length);
+	}
+
+	@Test
+	public void testBatchInterval() throws Exception {
+		options.setBatchInterval(1);
+		controller.startup(options, data);
+		hit(0x12345678, "Foo");
+
+		final long timeout = System.currentTimeMillis() + 10000;
+		while (receiver.getBatchCount() == 0) {
+			assertTrue("Timeout", System.currentTimeMillis() < timeout);
+			Thread.sleep(50);
+		}
+		controller.shutdown();
+		assertEquals(0, exceptions.size());
+	}
+
+	private boolean[] hit(final long id, final String name) {
+		final boolean[] probes = data.getExecutionData(Long.valueOf(id), name,
+				42).getProbes();
+		probes[0] = true;
+		return probes;
+	}
+
+	/**
+	 * Minimal receiver which confirms every batch or closes the connection
+	 * after the first batch.
+	 */
+	private static class Receiver implements Runnable, ISessionInfoVisitor,
+			IExecutionDataVisitor {
+
+		private final boolean confirm;
+
+		private final ServerSocket serverSocket;
+
+		private final Thread thread;
+
+		private final ExecutionDataStore store = new ExecutionDataStore();
+
+		private String sessionId;
+
+		private int batchCount;
+
+		private int connectionCount;
+
+		Receiver(final boolean confirm) throws IOException {
+			this.confirm = confirm;
+			serverSocket = new ServerSocket(0, 1, InetAddress.getByName(null));
+			thread = new Thread(this);
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		int getPort() {
+			return serverSocket.getLocalPort();
+		}
+
+		void close() throws Exception {
+			serverSocket.close();
+			thread.join();
+		}
+
+		public void run() {
+			try {
+				while (true) {
+					final Socket socket = serverSocket.accept();
+					try {
+						handle(socket);
+					} finally {
+						socket.close();
+					}
+				}
+			} catch (final IOException e) {
+				// Receiver closed
+			}
+		}
+
+		private void handle(final Socket socket) throws IOException {
+			synchronized (this) {
+				connectionCount++;
+			}
+			final RemoteControlReader reader = new RemoteControlReader(
+					socket.getInputStream());
+			reader.setSessionInfoVisitor(this);
+			reader.setExecutionDataVisitor(this);
+			final RemoteControlWriter writer = new RemoteControlWriter(
+					socket.getOutputStream());
+			while (reader.read()) {
+				if (!confirm) {
+					break;
+				}
+				synchronized (this) {
+					batchCount++;
+				}
+				writer.sendCmdOk();
+			}
+		}
+
+		public synchronized void visitSessionInfo(final SessionInfo info) {
+			sessionId = info.getId();
+		}
+
+		public synchronized void visitClassExecution(final ExecutionData data) {
+			store.visitClassExecution(data);
+		}
+
+		synchronized ExecutionData getData(final long id) {
+			return store.get(id);
+		}
+
+		synchronized String getSessionId() {
+			return sessionId;
+		}
+
+		synchronized int getBatchCount() {
+			return batchCount;
+		}
+
+		synchronized int getConnectionCount() {
+			return connectionCount;
+		}
+
+	}
+
+}
@@ -17,12 +17,15 @@ import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Future;
 
+import org.jacoco.core.data.ExecutionData;
 import org.jacoco.core.data.ExecutionDataStore;
 import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.IExecutionDataVisitor;
 import org.jacoco.core.data.SessionInfo;
 import org.jacoco.core.data.SessionInfoStore;
 import org.jacoco.core.runtime.RemoteControlReader;
@@ -175,6 +178,35 @@ public class TcpConnectionTest extends ExecutorTestBase {
 		f.get();
 	}
 
+	@Test
+	public void testRemoteFilteredDump() throws Exception {
+		data.getExecutionData(Long.valueOf(0x12345678), "Foo", 42).getProbes()[0] = true;
+		data.getExecutionData(Long.valueOf(1), "org/Bar", 1).getProbes()[0] = true;
+		data.setSessionId("stubid");
+
+		final RemoteControlWriter remoteWriter = new RemoteControlWriter(
+				mockConnection.getSocketB().getOutputStream());
+
+		final TcpConnection con = new TcpConnection(
+				mockConnection.getSocketA(), data);
+		con.init();
+
+		final Future<Void> f = executor.submit(new Callable<Void>() {
+			public Void call() throws Exception {
+				con.run();
+				return null;
+			}
+		});
+
+		assertBlocks(f);
+
+		remoteWriter.visitFilteredDumpCommand(false, "*", "org.*", false);
+		readAndAssertData();
+
+		con.close();
+		f.get();
+	}
+
 	@Test
 	public void testLocalDump() throws Exception {
 		data.getExecutionData(Long.valueOf(0x12345678), "Foo", 42).getProbes()[0] = true;
@@ -202,6 +234,51 @@ public class TcpConnectionTest extends ExecutorTestBase {
 		f.get();
 	}
 
+	@Test
+	public void testLocalDeltaDump() throws Exception {
+		data.getExecutionData(Long.valueOf(0x12345678), "Foo", 42).getProbes()[0] = true;
+		data.setSessionId("stubid");
+
+		new RemoteControlWriter(mockConnection.getSocketB().getOutputStream());
+
+		final TcpConnection con = new TcpConnection(
+				mockConnection.getSocketA(), data, true);
+		con.init();
+
+		final Future<Void> f = executor.submit(new Callable<Void>() {
+			public Void call() throws Exception {
+				con.run();
+				return null;
+			}
+		});
+
+		assertBlocks(f);
+
+		final RemoteControlReader remoteReader = new RemoteControlReader(
+				mockConnection.getSocketB().getInputStream());
+		final List<ExecutionData> dumped = new ArrayList<ExecutionData>();
+		remoteReader.setExecutionDataVisitor(new IExecutionDataVisitor() {
+			public void visitClassExecution(final ExecutionData data) {
+				dumped.add(data);
+			}
+		});
+		final SessionInfoStore infoStore = new SessionInfoStore();
+		remoteReader.setSessionInfoVisitor(infoStore);
+
+		con.writeExecutionData(false);
+		assertTrue(remoteReader.read());
+		assertEquals(1, dumped.size());
+
+		// Nothing has been executed since the last dump:
+		con.writeExecutionData(false);
+		assertTrue(remoteReader.read());
+		assertEquals(2, infoStore.getInfos().size());
+		assertEquals(1, dumped.size());
+
+		con.close();
+		f.get();
+	}
+
 	@Test
 	public void testLocalDumpWithoutInit() throws Exception {
 		final TcpConnection con = new TcpConnection(
@@ -0,0 +1,297 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.agent.rt.internal.output;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.nio.channels.ServerSocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jacoco.agent.rt.internal.ExceptionRecorder;
+import org.jacoco.core.data.ClassHitStore;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.SessionInfoStore;
+import org.jacoco.core.runtime.AgentOptions;
+import org.jacoco.core.runtime.RemoteControlReader;
+import org.jacoco.core.runtime.RemoteControlWriter;
+import org.jacoco.core.runtime.RuntimeData;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link TcpMultiServerOutput}.
+ */
+public class TcpMultiServerOutputTest {
+
+	private ExceptionRecorder logger;
+
+	private AgentOptions options;
+
+	private ServerSocketChannel serverChannel;
+
+	private TcpMultiServerOutput controller;
+
+	private RuntimeData data;
+
+	private List<Socket> sockets;
+
+	@Before
+	public void setup() throws Exception {
+		options = new AgentOptions();
+		options.setPort(0);
+		logger = new ExceptionRecorder();
+		controller = new TcpMultiServerOutput(logger) {
+			@Override
+			protected ServerSocketChannel createServerChannel(
+					AgentOptions options) throws IOException {
+				serverChannel = super.createServerChannel(options);
+				return serverChannel;
+			}
+		};
+		data = new RuntimeData();
+		data.setSessionId("stubid");
+		data.getExecutionData(Long.valueOf(0x12345678), "Foo", 42).getProbes()[0] = true;
+		controller.startup(options, data);
+		sockets = new ArrayList<Socket>();
+	}
+
+	@After
+	public void teardown() throws IOException {
+		for (final Socket s : sockets) {
+			s.close();
+		}
+	}
+
+	@Test
+	public void testShutdownWithoutConnection() throws Exception {
+		controller.shutdown();
+		logger.assertNoException();
+	}
+
+	@Test
+	public void testShutdownWithConnection() throws Exception {
+		final Client client = new Client();
+		client.nop();
+		controller.shutdown();
+		assertEquals(-1, client.socket.getInputStream().read());
+		logger.assertNoException();
+	}
+
+	@Test
+	public void testRemoteDumpMultipleClients() throws Exception {
+		final Client c1 = new Client();
+		final Client c2 = new Client();
+		final Client c3 = new Client();
+		c1.writer.visitDumpCommand(true, false);
+		c2.writer.visitDumpCommand(true, false);
+		c3.writer.visitDumpCommand(true, false);
+		c3.assertDump();
+		c2.assertDump();
+		c1.assertDump();
+		assertEquals(3, controller.getConnectionCount());
+		logger.assertNoException();
+		controller.shutdown();
+	}
+
+	@Test
+	public void testWriteExecutionDataToAllClients() throws Exception {
+		final Client c1 = new Client();
+		final Client c2 = new Client();
+		c1.nop();
+		c2.nop();
+
+		controller.writeExecutionData(false);
+
+		c1.assertDump();
+		c2.assertDump();
+		logger.assertNoException();
+		controller.shutdown();
+	}
+
+	@Test
+	public void testWriteExecutionDataWithReset() throws Exception {
+		final boolean[] probes = data.getExecutionData(Long.valueOf(0x12345678),
+				"Foo", 42).getProbes();
+		final Client c1 = new Client();
+		final Client c2 = new Client();
+		c1.nop();
+		c2.nop();
+
+		controller.writeExecutionData(true);
+
+		c1.assertDump();
+		c2.assertDump();
+		assertFalse(probes[0]);
+		controller.shutdown();
+	}
+
+	@Test
+	public void testLargeDump() throws Exception {
+		for (int i = 0; i < 2000; i++) {
+			final boolean[] probes = data.getExecutionData(Long.valueOf(i),
+					"Class" + i, 5000).getProbes();
+			probes[i] = true;
+		}
+		final Client c1 = new Client();
+		final Client c2 = new Client();
+		c1.writer.visitDumpCommand(true, false);
+		c2.writer.visitDumpCommand(true, false);
+
+		// Read slowly so that the output must be queued:
+		Thread.sleep(100);
+		assertEquals(2001, c1.dump().getContents().size());
+		assertEquals(2001, c2.dump().getContents().size());
+		logger.assertNoException();
+		controller.shutdown();
+	}
+
+	@Test
+	public void testFilteredDump() throws Exception {
+		data.getExecutionData(Long.valueOf(1), "org/foo/Bar", 1).getProbes()[0] = true;
+		data.getExecutionData(Long.valueOf(2), "org/foo/Baz", 1);
+		// Long patterns exceed the initial input buffer of the connection
+		final StringBuilder excludes = new StringBuilder();
+		for (int i = 0; i < 20; i++) {
+			excludes.append("org.nothing").append(i).append(".*:");
+		}
+		final Client client = new Client();
+		client.writer.visitFilteredDumpCommand(false, "org.foo.*",
+				excludes.toString(), false);
+		final ExecutionDataStore execStore = client.dump();
+		assertEquals(1, execStore.getContents().size());
+		assertEquals("org/foo/Bar", execStore.get(1).getName());
+
+		client.writer.visitFilteredDumpCommand(false, "*", "org.*", true);
+		final ClassHitStore hits = new ClassHitStore();
+		client.reader.setClassHitVisitor(hits);
+		assertTrue(client.dump().getContents().isEmpty());
+		assertEquals("Foo", hits.getName(0x12345678));
+		assertFalse(hits.contains(1));
+
+		logger.assertNoException();
+		controller.shutdown();
+	}
+
+	@Test
+	public void testDumpOnShutdown() throws Exception {
+		final Client client = new Client();
+		client.nop();
+
+		controller.writeExecutionData(false);
+		controller.shutdown();
+
+		client.assertDump();
+	}
+
+	@Test
+	public void testRemoteClose() throws Exception {
+		final Client client = new Client();
+		client.nop();
+		client.socket.close();
+		waitForConnectionCount(0);
+		logger.assertNoException();
+		controller.shutdown();
+	}
+
+	@Test
+	public void testInvalidHeader() throws Exception {
+		final Socket socket = connect();
+		final OutputStream out = socket.getOutputStream();
+		out.write(0xca);
+		out.write(0xfe);
+		out.write(0xba);
+		out.write(0xbe);
+		out.write(0x00);
+		final InputStream in = socket.getInputStream();
+		while (in.read() != -1) {
+		}
+		logger.assertException(IOException.class,
+				"Invalid execution data file.");
+		controller.shutdown();
+	}
+
+	@Test
+	public void testGetInetAddressLoopback() throws UnknownHostException {
+		final InetAddress addr = controller.getInetAddress(null);
+		assertTrue(addr.isLoopbackAddress());
+	}
+
+	@Test
+	public void testGetInetAddressAny() throws UnknownHostException {
+		final InetAddress addr = controller.getInetAddress("*");
+		assertNull(addr);
+	}
+
+	private Socket connect() throws IOException {
+		final Socket socket = new Socket(InetAddress.getByName(null),
+				serverChannel.socket().getLocalPort());
+		sockets.add(socket);
+		return socket;
+	}
+
+	private void waitForConnectionCount(final int count)
+			throws InterruptedException {
+		final long timeout = System.currentTimeMillis() + 5000;
+		while (controller.getConnectionCount() != count) {
+			assertTrue("Timeout", System.currentTimeMillis() < timeout);
+			Thread.sleep(10);
+		}
+	}
+
+	private class Client {
+
+		final Socket socket;
+
+		final RemoteControlWriter writer;
+
+		final RemoteControlReader reader;
+
+		Client() throws IOException {
+			socket = connect();
+			writer = new RemoteControlWriter(socket.getOutputStream());
+			reader = new RemoteControlReader(socket.getInputStream());
+		}
+
+		void nop() throws IOException {
+			writer.visitDumpCommand(false, false);
+			assertTrue(reader.read());
+		}
+
+		ExecutionDataStore dump() throws IOException {
+			final ExecutionDataStore execStore = new ExecutionDataStore();
+			reader.setExecutionDataVisitor(execStore);
+			final SessionInfoStore infoStore = new SessionInfoStore();
+			reader.setSessionInfoVisitor(infoStore);
+			assertTrue(reader.read());
+			assertEquals(1, infoStore.getInfos().size());
+			assertEquals("stubid", infoStore.getInfos().get(0).getId());
+			return execStore;
+		}
+
+		void assertDump() throws IOException {
+			assertEquals("Foo", dump().get(0x12345678).getName());
+		}
+
+	}
+
+}
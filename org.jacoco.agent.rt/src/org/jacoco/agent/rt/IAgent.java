@@ -55,6 +55,27 @@ public interface IAgent {
 	 */
 	byte[] getExecutionData(boolean reset);
 
+	/**
+	 * Starts capturing the execution data of a single test. Execution data
+	 * recorded before is discarded. Unlike {@link #reset()} only the data of
+	 * classes which have actually been executed is cleared.
+	 * 
+	 * @param name
+	 *            name of the test
+	 */
+	void beginTest(String name);
+
+	/**
+	 * Ends capturing the execution data of the current test. The returned data
+	 * only contains the classes executed by the test, the session id is the
+	 * name of the test. The data of these classes is cleared afterwards.
+	 * 
+	 * @return execution data of the test in JaCoCo binary format
+	 * @throws IllegalStateException
+	 *             if no test has been started
+	 */
+	byte[] endTest() throws IllegalStateException;
+
 	/**
 	 * Triggers a dump of the current execution data through the configured
 	 * output.
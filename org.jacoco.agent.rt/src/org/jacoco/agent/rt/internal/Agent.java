@@ -19,8 +19,11 @@ import java.util.concurrent.Callable;
 import org.jacoco.agent.rt.IAgent;
 import org.jacoco.agent.rt.internal.output.FileOutput;
 import org.jacoco.agent.rt.internal.output.IAgentOutput;
+import org.jacoco.agent.rt.internal.output.MappedFileOutput;
 import org.jacoco.agent.rt.internal.output.NoneOutput;
+import org.jacoco.agent.rt.internal.output.TcpBatchClientOutput;
 import org.jacoco.agent.rt.internal.output.TcpClientOutput;
+import org.jacoco.agent.rt.internal.output.TcpMultiServerOutput;
 import org.jacoco.agent.rt.internal.output.TcpServerOutput;
 import org.jacoco.core.JaCoCo;
 import org.jacoco.core.data.ExecutionDataWriter;
@@ -155,10 +158,16 @@ public class Agent implements IAgent {
 		switch (controllerType) {
 		case file:
 			return new FileOutput();
+		case mapped:
+			return new MappedFileOutput(logger);
 		case tcpserver:
 			return new TcpServerOutput(logger);
+		case tcpmultiserver:
+			return new TcpMultiServerOutput(logger);
 		case tcpclient:
 			return new TcpClientOutput(logger);
+		case tcpbatchclient:
+			return new TcpBatchClientOutput(logger);
 		case none:
 			return new NoneOutput();
 		default:
@@ -208,6 +217,22 @@ public class Agent implements IAgent {
 		return buffer.toByteArray();
 	}
 
+	public void beginTest(final String name) {
+		data.beginTest(name);
+	}
+
+	public byte[] endTest() {
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		try {
+			final ExecutionDataWriter writer = new ExecutionDataWriter(buffer);
+			data.endTest(writer, writer);
+		} catch (final IOException e) {
+			// Must not happen with ByteArrayOutputStream
+			throw new AssertionError(e);
+		}
+		return buffer.toByteArray();
+	}
+
 	public void dump(final boolean reset) throws IOException {
 		output.writeExecutionData(reset);
 	}
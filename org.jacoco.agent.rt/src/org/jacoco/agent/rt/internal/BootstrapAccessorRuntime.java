@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.agent.rt.internal;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.instrument.Instrumentation;
+import java.lang.reflect.Method;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import org.jacoco.core.runtime.AbstractRuntime;
+import org.jacoco.core.runtime.IExecutionDataAccessorGenerator;
+import org.jacoco.core.runtime.IRuntime;
+import org.jacoco.core.runtime.RuntimeData;
+import org.jacoco.core.runtime.StaticAccessorGenerator;
+import org.objectweb.asm.MethodVisitor;
+
+/**
+ * This {@link IRuntime} implementation adds the class {@link ProbeAccessor} to
+ * the bootstrap class path. Instrumented classes obtain their probe arrays by a
+ * static call of {@link ProbeAccessor#getProbes(long, String, int)} which
+ * passes all parameters as primitive values and does not allocate any objects.
+ * This runtime requires that the class loaders of all instrumented classes
+ * delegate to the bootstrap class loader for the runtime package, which is not
+ * the case in some module systems like OSGi.
+ */
+public class BootstrapAccessorRuntime extends AbstractRuntime {
+
+	private static final String ACCESSOR_NAME = BootstrapAccessorRuntime.class
+			.getName().replace("BootstrapAccessorRuntime", "ProbeAccessor");
+
+	private final IExecutionDataAccessorGenerator generator;
+
+	/**
+	 * Creates a new runtime. The {@link ProbeAccessor} class must be visible
+	 * to all instrumented classes.
+	 */
+	BootstrapAccessorRuntime() {
+		super();
+		this.generator = new StaticAccessorGenerator(ACCESSOR_NAME.replace(
+				'.', '/'));
+	}
+
+	@Override
+	public void startup(final RuntimeData data) throws Exception {
+		super.startup(data);
+		Adapter.install(data);
+	}
+
+	public void shutdown() {
+		// The accessor stays installed, as classes might still be initialized
+		// during VM shutdown.
+	}
+
+	public int generateDataAccessor(final long classid, final String classname,
+			final int probecount, final MethodVisitor mv) {
+		return generator.generateDataAccessor(classid, classname, probecount,
+				mv);
+	}
+
+	/**
+	 * Creates a new {@link BootstrapAccessorRuntime} and adds the
+	 * {@link ProbeAccessor} class to the bootstrap class path. This method must
+	 * be called before the {@link ProbeAccessor} class is loaded by any other
+	 * class loader. As appending to the bootstrap class path requires Java 6
+	 * the corresponding API is called reflectively.
+	 * 
+	 * @param inst
+	 *            instrumentation interface
+	 * @return new runtime instance
+	 * @throws Exception
+	 *             if the bootstrap class path can not be extended
+	 */
+	public static IRuntime createFor(final Instrumentation inst)
+			throws Exception {
+		final File jar = createAccessorJar();
+		final Method append = Instrumentation.class.getMethod(
+				"appendToBootstrapClassLoaderSearch", JarFile.class);
+		append.invoke(inst, new JarFile(jar));
+		// Fails if the class is not visible from the bootstrap loader:
+		Class.forName(ACCESSOR_NAME, false, null);
+		return new BootstrapAccessorRuntime();
+	}
+
+	private static File createAccessorJar() throws IOException {
+		final String resource = ACCESSOR_NAME.replace('.', '/') + ".class";
+		final InputStream in = BootstrapAccessorRuntime.class
+				.getResourceAsStream("/" + resource);
+		if (in == null) {
+			throw new IOException("Resource not found: " + resource);
+		}
+		final File file = File.createTempFile("jacocoaccessor", ".jar");
+		file.deleteOnExit();
+		final OutputStream fileOut = new FileOutputStream(file);
+		try {
+			final JarOutputStream out = new JarOutputStream(fileOut);
+			out.putNextEntry(new ZipEntry(resource));
+			final byte[] buffer = new byte[1024];
+			int len;
+			while ((len = in.read(buffer)) != -1) {
+				out.write(buffer, 0, len);
+			}
+			out.closeEntry();
+			out.finish();
+		} finally {
+			in.close();
+			fileOut.close();
+		}
+		return file;
+	}
+
+	/**
+	 * Implementation of the accessor. This is a separate class so that
+	 * {@link ProbeAccessor} is not resolved before it has been added to the
+	 * bootstrap class path.
+	 */
+	static class Adapter extends ProbeAccessor {
+
+		private final RuntimeData data;
+
+		private Adapter(final RuntimeData data) {
+			this.data = data;
+		}
+
+		static void install(final RuntimeData data) {
+			ProbeAccessor.install(new Adapter(data));
+		}
+
+		@Override
+		protected boolean[] get(final long classid, final String classname,
+				final int probecount) {
+			return data.getExecutionData(classid, classname, probecount)
+					.getProbes();
+		}
+
+	}
+
+}
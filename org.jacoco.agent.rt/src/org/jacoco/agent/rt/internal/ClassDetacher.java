@@ -0,0 +1,232 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.agent.rt.internal;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.IExecutionDataVisitor;
+import org.jacoco.core.data.ISessionInfoVisitor;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.runtime.IResetListener;
+import org.jacoco.core.runtime.RuntimeData;
+
+/**
+ * Periodically checks the execution data of all classes and retransforms
+ * classes which can not record new coverage any more into a version without
+ * probes. This is the case for saturated classes where all probes have been
+ * executed. Optionally also classes whose execution data did not change for a
+ * given time are detached. The execution data of detached classes stays in
+ * the runtime. Detached classes are identified by their class id, therefore
+ * the transformer can decide on the original class definition which version
+ * to create.
+ * 
+ * When the execution data is reset all detached classes are retransformed
+ * into their instrumented version again, so they record new coverage. Probes
+ * of these classes executed between the reset and the retransformation are
+ * not recorded.
+ */
+class ClassDetacher implements IResetListener {
+
+	private final RuntimeData data;
+
+	private final ClassRetransformer retransformer;
+
+	private final long quietTime;
+
+	private final IExceptionLogger logger;
+
+	/** VM names of the detached classes by class id */
+	private final Map<Long, String> detached = new HashMap<Long, String>();
+
+	/** only accessed while holding the monitor of this instance */
+	private final Map<Long, Observation> observations = new HashMap<Long, Observation>();
+
+	/**
+	 * Creates a new detacher.
+	 * 
+	 * @param data
+	 *            runtime data to observe
+	 * @param retransformer
+	 *            access to the retransformation of classes
+	 * @param quietTime
+	 *            time in milliseconds after which classes without new
+	 *            executed probes are detached, <code>0</code> to only detach
+	 *            saturated classes
+	 * @param logger
+	 *            logger for failed retransformations
+	 */
+	ClassDetacher(final RuntimeData data,
+			final ClassRetransformer retransformer, final long quietTime,
+			final IExceptionLogger logger) {
+		this.data = data;
+		this.retransformer = retransformer;
+		this.quietTime = quietTime;
+		this.logger = logger;
+	}
+
+	/**
+	 * Starts a daemon thread which checks all classes in the given interval.
+	 * 
+	 * @param interval
+	 *            interval in milliseconds
+	 */
+	void start(final long interval) {
+		final Thread worker = new Thread(new Runnable() {
+			public void run() {
+				try {
+					while (true) {
+						Thread.sleep(interval);
+						check(System.currentTimeMillis());
+					}
+				} catch (final InterruptedException e) {
+					// Thread has been interrupted
+				} catch (final RuntimeException e) {
+					logger.logExeption(e);
+				}
+			}
+		});
+		worker.setName(getClass().getName());
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	/**
+	 * Checks whether the class with the given id has been detached.
+	 * 
+	 * @param id
+	 *            class id
+	 * @return <code>true</code> if the class should not get probes
+	 */
+	boolean isDetached(final long id) {
+		synchronized (detached) {
+			return detached.containsKey(Long.valueOf(id));
+		}
+	}
+
+	/**
+	 * Checks all classes once and detaches saturated and quiet classes.
+	 * 
+	 * @param now
+	 *            current time in milliseconds
+	 */
+	synchronized void check(final long now) {
+		final Set<String> names = new HashSet<String>();
+		data.collect(new IExecutionDataVisitor() {
+			public void visitClassExecution(final ExecutionData execData) {
+				if (observe(execData, now)) {
+					names.add(execData.getName());
+				}
+			}
+		}, new ISessionInfoVisitor() {
+			public void visitSessionInfo(final SessionInfo info) {
+				// not required
+			}
+		}, false);
+		if (!names.isEmpty()) {
+			retransform(names);
+		}
+	}
+
+	private boolean observe(final ExecutionData execData, final long now) {
+		final Long id = Long.valueOf(execData.getId());
+		synchronized (detached) {
+			if (detached.containsKey(id)) {
+				return false;
+			}
+		}
+		final int hits = countHits(execData.getProbes());
+		boolean detach = hits == execData.getProbeCount();
+		// Classes which have never been executed are not quiet:
+		if (!detach && quietTime > 0 && hits > 0) {
+			final Observation last = observations.get(id);
+			if (last == null || last.hits != hits) {
+				observations.put(id, new Observation(hits, now));
+			} else {
+				detach = now - last.since >= quietTime;
+			}
+		}
+		if (detach) {
+			observations.remove(id);
+			synchronized (detached) {
+				detached.put(id, execData.getName());
+			}
+		}
+		return detach;
+	}
+
+	/**
+	 * Attaches all detached classes again as their probes have been cleared.
+	 * Synchronized with {@link #check(long)} so that no class is detached
+	 * based on execution data collected before the reset.
+	 */
+	public synchronized void executionDataReset() {
+		final Set<String> names;
+		synchronized (detached) {
+			if (detached.isEmpty()) {
+				return;
+			}
+			names = new HashSet<String>(detached.values());
+			detached.clear();
+		}
+		observations.clear();
+		retransform(names);
+	}
+
+	private static int countHits(final boolean[] probes) {
+		int hits = 0;
+		for (final boolean p : probes) {
+			if (p) {
+				hits++;
+			}
+		}
+		return hits;
+	}
+
+	private void retransform(final Set<String> names) {
+		final List<Class<?>> classes = new ArrayList<Class<?>>();
+		for (final Class<?> c : retransformer.getAllLoadedClasses()) {
+			// Classes with the same name but other ids are instrumented again
+			if (names.contains(c.getName().replace('.', '/'))) {
+				classes.add(c);
+			}
+		}
+		if (classes.isEmpty()) {
+			return;
+		}
+		try {
+			retransformer.retransform(classes.toArray(new Class<?>[classes
+					.size()]));
+		} catch (final Exception e) {
+			logger.logExeption(e);
+		}
+	}
+
+	private static class Observation {
+
+		final int hits;
+
+		final long since;
+
+		Observation(final int hits, final long since) {
+			this.hits = hits;
+			this.since = since;
+		}
+
+	}
+
+}
@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.agent.rt.internal;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.lang.instrument.Instrumentation;
+import java.lang.reflect.Method;
+
+/**
+ * Access to the retransformation of classes. As retransformation requires Java
+ * 6 the corresponding APIs of {@link Instrumentation} are called reflectively.
+ */
+class ClassRetransformer {
+
+	private final Instrumentation inst;
+
+	private final Method addTransformer;
+
+	private final Method retransformClasses;
+
+	private ClassRetransformer(final Instrumentation inst,
+			final Method addTransformer, final Method retransformClasses) {
+		this.inst = inst;
+		this.addTransformer = addTransformer;
+		this.retransformClasses = retransformClasses;
+	}
+
+	/**
+	 * Creates a new instance if the JVM supports the retransformation of
+	 * classes.
+	 * 
+	 * @param inst
+	 *            instrumentation interface
+	 * @return new instance or <code>null</code> if classes can not be
+	 *         retransformed
+	 * @throws Exception
+	 *             if the instrumentation interface can not be accessed
+	 */
+	static ClassRetransformer createFor(final Instrumentation inst)
+			throws Exception {
+		final Class<?> type = Instrumentation.class;
+		final Method supported;
+		try {
+			supported = type.getMethod("isRetransformClassesSupported");
+		} catch (final NoSuchMethodException e) {
+			// Java 5
+			return null;
+		}
+		if (!((Boolean) supported.invoke(inst)).booleanValue()) {
+			return null;
+		}
+		return new ClassRetransformer(inst, type.getMethod("addTransformer",
+				ClassFileTransformer.class, Boolean.TYPE), type.getMethod(
+				"retransformClasses", Class[].class));
+	}
+
+	/**
+	 * Registers the given transformer as capable of retransforming classes.
+	 * 
+	 * @param transformer
+	 *            transformer to register
+	 * @throws Exception
+	 *             if the transformer can not be registered
+	 */
+	void addTransformer(final ClassFileTransformer transformer)
+			throws Exception {
+		addTransformer.invoke(inst, transformer, Boolean.TRUE);
+	}
+
+	/**
+	 * Retransforms the given classes.
+	 * 
+	 * @param classes
+	 *            classes to retransform
+	 * @throws Exception
+	 *             if the classes can not be retransformed
+	 */
+	void retransform(final Class<?>[] classes) throws Exception {
+		retransformClasses.invoke(inst, (Object) classes);
+	}
+
+	/**
+	 * Returns all classes currently loaded by the JVM.
+	 * 
+	 * @return all loaded classes
+	 */
+	Class<?>[] getAllLoadedClasses() {
+		return inst.getAllLoadedClasses();
+	}
+
+}
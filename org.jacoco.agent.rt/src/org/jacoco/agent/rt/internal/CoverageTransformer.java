@@ -15,8 +15,11 @@ import java.lang.instrument.ClassFileTransformer;
 import java.lang.instrument.IllegalClassFormatException;
 import java.security.CodeSource;
 import java.security.ProtectionDomain;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 import org.jacoco.core.instr.Instrumenter;
+import org.jacoco.core.internal.data.CRC64;
 import org.jacoco.core.runtime.AgentOptions;
 import org.jacoco.core.runtime.IRuntime;
 import org.jacoco.core.runtime.WildcardMatcher;
@@ -28,6 +31,8 @@ public class CoverageTransformer implements ClassFileTransformer {
 
 	private static final String AGENT_PREFIX;
 
+	private static final int MAX_CACHED_LOADERS = 256;
+
 	static {
 		final String name = CoverageTransformer.class.getName();
 		AGENT_PREFIX = toVMName(name.substring(0, name.lastIndexOf('.')));
@@ -35,6 +40,8 @@ public class CoverageTransformer implements ClassFileTransformer {
 
 	private final Instrumenter instrumenter;
 
+	private final Instrumenter stripedInstrumenter;
+
 	private final IExceptionLogger logger;
 
 	private final WildcardMatcher includes;
@@ -43,12 +50,25 @@ public class CoverageTransformer implements ClassFileTransformer {
 
 	private final WildcardMatcher exclClassloader;
 
+	/** Cached results of exclClassloader per class loader class */
+	private final Map<Class<?>, Boolean> excludedLoaders = new WeakHashMap<Class<?>, Boolean>();
+
+	private final WildcardMatcher stripedClasses;
+
 	private final ClassFileDumper classFileDumper;
 
+	private final InstrumentedClassCache cache;
+
+	private final InstrumentedClassCache stripedCache;
+
 	private final boolean inclBootstrapClasses;
 
 	private final boolean inclNoLocationClasses;
 
+	private final LazyInstrumentation lazy;
+
+	private final ClassDetacher detacher;
+
 	/**
 	 * New transformer with the given delegates.
 	 * 
@@ -61,13 +81,56 @@ public class CoverageTransformer implements ClassFileTransformer {
 	 */
 	public CoverageTransformer(final IRuntime runtime,
 			final AgentOptions options, final IExceptionLogger logger) {
+		this(runtime, options, logger, null, null);
+	}
+
+	/**
+	 * New transformer with the given delegates. If lazy instrumentation is
+	 * given classes are first defined with an initialization hook only. If a
+	 * detacher is given classes detached by it are retransformed into a
+	 * version without probes. In both cases the transformer must be
+	 * registered as capable of retransforming classes.
+	 * 
+	 * @param runtime
+	 *            coverage runtime
+	 * @param options
+	 *            configuration options for the generator
+	 * @param logger
+	 *            logger for exceptions during instrumentation
+	 * @param lazy
+	 *            lazy instrumentation or <code>null</code> if all classes
+	 *            should be instrumented when they are loaded
+	 * @param detacher
+	 *            detacher or <code>null</code> if classes are never detached
+	 */
+	CoverageTransformer(final IRuntime runtime, final AgentOptions options,
+			final IExceptionLogger logger, final LazyInstrumentation lazy,
+			final ClassDetacher detacher) {
+		this.lazy = lazy;
+		this.detacher = detacher;
+		final boolean retransform = lazy != null || detacher != null;
 		this.instrumenter = new Instrumenter(runtime);
+		this.instrumenter.setHookCompatible(retransform);
+		this.instrumenter.setProbeElision(options.getProbeElision());
+		this.stripedInstrumenter = new Instrumenter(runtime);
+		this.stripedInstrumenter.setProbeStripes(options.getProbeStripes());
+		this.stripedInstrumenter.setProbeElision(options.getProbeElision());
 		this.logger = logger;
 		// Class names will be reported in VM notation:
 		includes = new WildcardMatcher(toVMName(options.getIncludes()));
 		excludes = new WildcardMatcher(toVMName(options.getExcludes()));
+		stripedClasses = new WildcardMatcher(toVMName(options
+				.getStripedClasses()));
 		exclClassloader = new WildcardMatcher(options.getExclClassloader());
 		classFileDumper = new ClassFileDumper(options.getClassDumpDir());
+		String strategy = runtime.getClass().getName();
+		if (options.getProbeElision()) {
+			strategy += ";probeelision";
+		}
+		cache = new InstrumentedClassCache(options.getClassCacheDir(),
+				retransform ? strategy + ";retransform" : strategy);
+		stripedCache = new InstrumentedClassCache(options.getClassCacheDir(),
+				strategy + ";stripes=" + options.getProbeStripes());
 		inclBootstrapClasses = options.getInclBootstrapClasses();
 		inclNoLocationClasses = options.getInclNoLocationClasses();
 	}
@@ -77,8 +140,9 @@ public class CoverageTransformer implements ClassFileTransformer {
 			final ProtectionDomain protectionDomain,
 			final byte[] classfileBuffer) throws IllegalClassFormatException {
 
-		// We do not support class retransformation:
-		if (classBeingRedefined != null) {
+		// Only lazy instrumentation and detaching support class
+		// retransformation:
+		if (classBeingRedefined != null && lazy == null && detacher == null) {
 			return null;
 		}
 
@@ -87,8 +151,34 @@ public class CoverageTransformer implements ClassFileTransformer {
 		}
 
 		try {
-			classFileDumper.dump(classname, classfileBuffer);
-			return instrumenter.instrument(classfileBuffer, classname);
+			if (classBeingRedefined == null) {
+				classFileDumper.dump(classname, classfileBuffer);
+			}
+			if (stripedClasses.matches(classname)) {
+				return stripedCache.instrument(stripedInstrumenter,
+						classfileBuffer, classname);
+			}
+			if (detacher != null && classBeingRedefined != null
+					&& detacher.isDetached(CRC64.checksum(classfileBuffer))) {
+				final byte[] detached = instrumenter.instrumentDetached(
+						classfileBuffer, classname);
+				if (detached != null) {
+					return detached;
+				}
+			}
+			if (lazy != null
+					&& (classBeingRedefined == null || !lazy
+							.isActivated(classBeingRedefined))) {
+				final byte[] hooked = instrumenter.instrumentHook(
+						classfileBuffer, classname);
+				if (hooked != null) {
+					if (classBeingRedefined == null) {
+						lazy.hooked(loader, classname);
+					}
+					return hooked;
+				}
+			}
+			return cache.instrument(instrumenter, classfileBuffer, classname);
 		} catch (final Exception ex) {
 			final IllegalClassFormatException wrapper = new IllegalClassFormatException(
 					ex.getMessage());
@@ -120,7 +210,7 @@ public class CoverageTransformer implements ClassFileTransformer {
 			if (!inclNoLocationClasses && !hasSourceLocation(protectionDomain)) {
 				return false;
 			}
-			if (exclClassloader.matches(loader.getClass().getName())) {
+			if (isExcludedLoader(loader.getClass())) {
 				return false;
 			}
 		}
@@ -151,6 +241,33 @@ public class CoverageTransformer implements ClassFileTransformer {
 		return codeSource.getLocation() != null;
 	}
 
+	/**
+	 * Checks whether classes of the given class loader type are excluded. The
+	 * result is cached per class loader type, as matching the loader name
+	 * for every loaded class is expensive.
+	 * 
+	 * @param loaderClass
+	 *            type of the class loader
+	 * @return <code>true</code> if classes of this loader are excluded
+	 */
+	private boolean isExcludedLoader(final Class<?> loaderClass) {
+		synchronized (excludedLoaders) {
+			final Boolean cached = excludedLoaders.get(loaderClass);
+			if (cached != null) {
+				return cached.booleanValue();
+			}
+		}
+		final boolean excluded = exclClassloader.matches(loaderClass
+				.getName());
+		synchronized (excludedLoaders) {
+			if (excludedLoaders.size() >= MAX_CACHED_LOADERS) {
+				excludedLoaders.clear();
+			}
+			excludedLoaders.put(loaderClass, Boolean.valueOf(excluded));
+		}
+		return excluded;
+	}
+
 	private static String toVMName(final String srcName) {
 		return srcName.replace('.', '/');
 	}
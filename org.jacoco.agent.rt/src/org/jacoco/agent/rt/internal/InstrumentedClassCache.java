@@ -0,0 +1,182 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.agent.rt.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+
+import org.jacoco.core.JaCoCo;
+import org.jacoco.core.instr.Instrumenter;
+import org.jacoco.core.internal.data.CRC64;
+
+/**
+ * Internal cache for instrumented class files. Entries are stored in a
+ * sub-directory of the given location which is specific for the JaCoCo
+ * version and the instrumentation strategy, the file name is the id of the
+ * original class file. New entries are written to temporary files first and
+ * then renamed, therefore multiple JVMs can use the same location
+ * concurrently. Every entry starts with the checksum of the instrumented
+ * class, corrupt entries are ignored. The cache is optional, failures while
+ * reading or writing entries are ignored.
+ */
+class InstrumentedClassCache {
+
+	private static final int CHECKSUM_LENGTH = 8;
+
+	private final File location;
+
+	/**
+	 * Create a new cache for the given location.
+	 * 
+	 * @param location
+	 *            relative path to cache directory. <code>null</code> if no
+	 *            cache should be used
+	 * @param strategy
+	 *            description of all parameters which influence the
+	 *            instrumented class files, e.g. the runtime implementation
+	 */
+	InstrumentedClassCache(final String location, final String strategy) {
+		if (location == null) {
+			this.location = null;
+		} else {
+			final long key = CRC64.checksum(getBytes(JaCoCo.VERSION + "/"
+					+ strategy));
+			this.location = new File(location, String.format("%016x",
+					Long.valueOf(key)));
+		}
+	}
+
+	private static byte[] getBytes(final String s) {
+		try {
+			return s.getBytes("UTF-8");
+		} catch (final UnsupportedEncodingException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	/**
+	 * Returns the instrumented version of the given class. If the class is
+	 * not contained in the cache it is instrumented with the given
+	 * instrumenter and added to the cache.
+	 * 
+	 * @param instrumenter
+	 *            instrumenter used for classes not contained in the cache
+	 * @param buffer
+	 *            original class definition
+	 * @param name
+	 *            a name used for exception messages
+	 * @return instrumented definition
+	 * @throws IOException
+	 *             if the class can't be instrumented
+	 */
+	byte[] instrument(final Instrumenter instrumenter, final byte[] buffer,
+			final String name) throws IOException {
+		if (location == null) {
+			return instrumenter.instrument(buffer, name);
+		}
+		final File file = getFile(CRC64.checksum(buffer));
+		final byte[] cached = read(file);
+		if (cached != null) {
+			return cached;
+		}
+		final byte[] instrumented = instrumenter.instrument(buffer, name);
+		write(file, instrumented);
+		return instrumented;
+	}
+
+	private File getFile(final long id) {
+		final String name = String.format("%016x", Long.valueOf(id));
+		return new File(new File(location, name.substring(0, 2)), name
+				+ ".class");
+	}
+
+	private static byte[] read(final File file) {
+		if (!file.isFile()) {
+			return null;
+		}
+		final byte[] content;
+		try {
+			final InputStream in = new FileInputStream(file);
+			try {
+				content = readFully(in);
+			} finally {
+				in.close();
+			}
+		} catch (final IOException e) {
+			return null;
+		}
+		if (content.length < CHECKSUM_LENGTH) {
+			return null;
+		}
+		final byte[] instrumented = new byte[content.length - CHECKSUM_LENGTH];
+		System.arraycopy(content, CHECKSUM_LENGTH, instrumented, 0,
+				instrumented.length);
+		if (getChecksum(content) != CRC64.checksum(instrumented)) {
+			return null;
+		}
+		return instrumented;
+	}
+
+	private static void write(final File file, final byte[] instrumented) {
+		final File folder = file.getParentFile();
+		folder.mkdirs();
+		File tmp = null;
+		try {
+			tmp = File.createTempFile(file.getName(), ".tmp", folder);
+			final OutputStream out = new FileOutputStream(tmp);
+			try {
+				final long checksum = CRC64.checksum(instrumented);
+				for (int i = CHECKSUM_LENGTH; --i >= 0;) {
+					out.write((int) (checksum >>> (i * 8)));
+				}
+				out.write(instrumented);
+			} finally {
+				out.close();
+			}
+			// Fails if another JVM has written the same entry concurrently
+			if (tmp.renameTo(file)) {
+				tmp = null;
+			}
+		} catch (final IOException e) {
+			// The class is still instrumented, only caching fails
+		} finally {
+			if (tmp != null) {
+				tmp.delete();
+			}
+		}
+	}
+
+	private static long getChecksum(final byte[] content) {
+		long checksum = 0;
+		for (int i = 0; i < CHECKSUM_LENGTH; i++) {
+			checksum = (checksum << 8) | (content[i] & 0xFF);
+		}
+		return checksum;
+	}
+
+	private static byte[] readFully(final InputStream in) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[4096];
+		int len;
+		while ((len = in.read(buffer)) != -1) {
+			out.write(buffer, 0, len);
+		}
+		return out.toByteArray();
+	}
+
+}
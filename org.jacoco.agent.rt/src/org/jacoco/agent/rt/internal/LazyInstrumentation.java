@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.agent.rt.internal;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.jacoco.core.runtime.IClassInitializationListener;
+
+/**
+ * Retransforms classes which have been loaded with an initialization hook into
+ * their fully instrumented version as soon as they are initialized. Hooked
+ * classes are tracked by name and defining class loader, the class loaders are
+ * only weakly referenced.
+ */
+class LazyInstrumentation implements IClassInitializationListener {
+
+	private final ClassRetransformer retransformer;
+
+	private final IExceptionLogger logger;
+
+	/** defining loaders of hooked classes, null for the bootstrap loader */
+	private final Map<String, List<WeakReference<ClassLoader>>> hooked = new HashMap<String, List<WeakReference<ClassLoader>>>();
+
+	private final Map<Class<?>, Boolean> activated = new WeakHashMap<Class<?>, Boolean>();
+
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param retransformer
+	 *            access to the retransformation of classes
+	 * @param logger
+	 *            logger for failed retransformations
+	 */
+	LazyInstrumentation(final ClassRetransformer retransformer,
+			final IExceptionLogger logger) {
+		this.retransformer = retransformer;
+		this.logger = logger;
+	}
+
+	/**
+	 * Records that the class with the given name has been defined with an
+	 * initialization hook.
+	 * 
+	 * @param loader
+	 *            defining loader or <code>null</code> for the bootstrap
+	 *            loader
+	 * @param classname
+	 *            VM name of the class
+	 */
+	void hooked(final ClassLoader loader, final String classname) {
+		synchronized (hooked) {
+			List<WeakReference<ClassLoader>> loaders = hooked.get(classname);
+			if (loaders == null) {
+				loaders = new ArrayList<WeakReference<ClassLoader>>(1);
+				hooked.put(classname, loaders);
+			}
+			loaders.add(loader == null ? null
+					: new WeakReference<ClassLoader>(loader));
+		}
+	}
+
+	/**
+	 * Checks whether the given class has been initialized and therefore
+	 * requires full instrumentation.
+	 * 
+	 * @param clazz
+	 *            class to check
+	 * @return <code>true</code> if the class has been activated
+	 */
+	boolean isActivated(final Class<?> clazz) {
+		synchronized (activated) {
+			return activated.containsKey(clazz);
+		}
+	}
+
+	public void classInitialized(final long id, final String name) {
+		final List<Class<?>> classes = new ArrayList<Class<?>>(1);
+		final List<WeakReference<ClassLoader>> loaders;
+		synchronized (hooked) {
+			loaders = hooked.remove(name);
+		}
+		if (loaders == null) {
+			return;
+		}
+		for (final Iterator<WeakReference<ClassLoader>> i = loaders
+				.iterator(); i.hasNext();) {
+			final WeakReference<ClassLoader> ref = i.next();
+			final ClassLoader loader = ref == null ? null : ref.get();
+			if (ref != null && loader == null) {
+				// Loader has been collected
+				i.remove();
+				continue;
+			}
+			final Class<?> clazz = findClass(name, loader);
+			if (clazz != null) {
+				synchronized (activated) {
+					activated.put(clazz, Boolean.TRUE);
+				}
+				classes.add(clazz);
+				i.remove();
+			}
+		}
+		if (!loaders.isEmpty()) {
+			synchronized (hooked) {
+				final List<WeakReference<ClassLoader>> added = hooked.put(name,
+						loaders);
+				if (added != null) {
+					loaders.addAll(added);
+				}
+			}
+		}
+		if (!classes.isEmpty()) {
+			retransform(classes.toArray(new Class<?>[classes.size()]));
+		}
+	}
+
+	private Class<?> findClass(final String name, final ClassLoader loader) {
+		try {
+			final Class<?> clazz = Class.forName(name.replace('/', '.'), false,
+					loader);
+			return clazz.getClassLoader() == loader ? clazz : null;
+		} catch (final ClassNotFoundException e) {
+			return null;
+		} catch (final LinkageError e) {
+			return null;
+		}
+	}
+
+	private void retransform(final Class<?>[] classes) {
+		try {
+			retransformer.retransform(classes);
+		} catch (final Exception e) {
+			logger.logExeption(e);
+		}
+	}
+
+}
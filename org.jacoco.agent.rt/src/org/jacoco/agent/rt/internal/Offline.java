@@ -48,8 +48,8 @@ public final class Offline {
 	 */
 	public static boolean[] getProbes(final long classid,
 			final String classname, final int probecount) {
-		return DATA.getExecutionData(Long.valueOf(classid), classname,
-				probecount).getProbes();
+		return DATA.getExecutionData(classid, classname, probecount)
+				.getProbes();
 	}
 
 }
@@ -44,14 +44,47 @@ public final class PreMain {
 
 		final Agent agent = Agent.getInstance(agentOptions);
 
-		final IRuntime runtime = createRuntime(inst);
+		final IRuntime runtime = createRuntime(inst, agentOptions);
 		runtime.startup(agent.getData());
-		inst.addTransformer(new CoverageTransformer(runtime, agentOptions,
-				IExceptionLogger.SYSTEM_ERR));
+		ClassRetransformer retransformer = null;
+		if (agentOptions.getLazyInstrumentation()
+				|| agentOptions.getDetachInterval() > 0) {
+			// Falls back to regular instrumentation if not supported:
+			retransformer = ClassRetransformer.createFor(inst);
+		}
+		LazyInstrumentation lazy = null;
+		ClassDetacher detacher = null;
+		if (retransformer != null) {
+			if (agentOptions.getLazyInstrumentation()) {
+				lazy = new LazyInstrumentation(retransformer,
+						IExceptionLogger.SYSTEM_ERR);
+				agent.getData().setInitializationListener(lazy);
+			}
+			if (agentOptions.getDetachInterval() > 0) {
+				detacher = new ClassDetacher(agent.getData(), retransformer,
+						agentOptions.getDetachQuietTime() * 1000L,
+						IExceptionLogger.SYSTEM_ERR);
+				agent.getData().setResetListener(detacher);
+			}
+		}
+		final CoverageTransformer transformer = new CoverageTransformer(
+				runtime, agentOptions, IExceptionLogger.SYSTEM_ERR, lazy,
+				detacher);
+		if (retransformer == null) {
+			inst.addTransformer(transformer);
+		} else {
+			retransformer.addTransformer(transformer);
+		}
+		if (detacher != null) {
+			detacher.start(agentOptions.getDetachInterval() * 1000L);
+		}
 	}
 
-	private static IRuntime createRuntime(final Instrumentation inst)
-			throws Exception {
+	private static IRuntime createRuntime(final Instrumentation inst,
+			final AgentOptions options) throws Exception {
+		if (options.getBootstrapAccessor()) {
+			return BootstrapAccessorRuntime.createFor(inst);
+		}
 		return ModifiedSystemClassRuntime.createFor(inst, "java/util/UUID");
 	}
 
@@ -0,0 +1,67 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.agent.rt.internal;
+
+/**
+ * Static probe array accessor called by classes instrumented for the
+ * {@link BootstrapAccessorRuntime}. This class is loaded by the bootstrap class
+ * loader and therefore must not have any dependencies except the JRE. The
+ * actual implementation is installed by the runtime at startup.
+ */
+public abstract class ProbeAccessor {
+
+	private static volatile ProbeAccessor instance;
+
+	/**
+	 * Installs the implementation which is used by all instrumented classes.
+	 * Note that the implementation is loaded by a different class loader than
+	 * this class, therefore all members used by the implementation must not be
+	 * package private.
+	 * 
+	 * @param accessor
+	 *            accessor implementation or <code>null</code> to uninstall
+	 */
+	protected static void install(final ProbeAccessor accessor) {
+		instance = accessor;
+	}
+
+	/**
+	 * API for instrumented classes.
+	 * 
+	 * @param classid
+	 *            class identifier
+	 * @param classname
+	 *            VM class name
+	 * @param probecount
+	 *            probe count for this class
+	 * @return probe array instance for this class
+	 */
+	public static boolean[] getProbes(final long classid,
+			final String classname, final int probecount) {
+		return instance.get(classid, classname, probecount);
+	}
+
+	/**
+	 * Returns the probe array for the given class.
+	 * 
+	 * @param classid
+	 *            class identifier
+	 * @param classname
+	 *            VM class name
+	 * @param probecount
+	 *            probe count for this class
+	 * @return probe array instance for this class
+	 */
+	protected abstract boolean[] get(long classid, String classname,
+			int probecount);
+
+}
@@ -18,6 +18,7 @@ import java.io.OutputStream;
 
 import org.jacoco.core.data.ExecutionDataWriter;
 import org.jacoco.core.runtime.AgentOptions;
+import org.jacoco.core.runtime.DeltaTracker;
 import org.jacoco.core.runtime.RuntimeData;
 
 /**
@@ -26,6 +27,7 @@ import org.jacoco.core.runtime.RuntimeData;
  * <ul>
  * <li>destfile</li>
  * <li>append</li>
+ * <li>delta</li>
  * </ul>
  */
 public class FileOutput implements IAgentOutput {
@@ -36,11 +38,14 @@ public class FileOutput implements IAgentOutput {
 
 	private boolean append;
 
+	private DeltaTracker tracker;
+
 	public final void startup(final AgentOptions options, final RuntimeData data)
 			throws IOException {
 		this.data = data;
 		this.destFile = new File(options.getDestfile()).getAbsoluteFile();
 		this.append = options.getAppend();
+		this.tracker = options.getDelta() ? new DeltaTracker() : null;
 		final File folder = destFile.getParentFile();
 		if (folder != null) {
 			folder.mkdirs();
@@ -53,10 +58,14 @@ public class FileOutput implements IAgentOutput {
 		final OutputStream output = openFile();
 		try {
 			final ExecutionDataWriter writer = new ExecutionDataWriter(output);
-			data.collect(writer, writer, reset);
+			data.collect(writer, writer, reset, tracker);
 		} finally {
 			output.close();
 		}
+		if (tracker != null) {
+			// Subsequent deltas must not overwrite the previous dumps
+			append = true;
+		}
 	}
 
 	public void shutdown() throws IOException {
@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.agent.rt.internal.output;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.jacoco.agent.rt.internal.IExceptionLogger;
+import org.jacoco.core.data.MappedExecutionDataWriter;
+import org.jacoco.core.runtime.AgentOptions;
+import org.jacoco.core.runtime.RuntimeData;
+
+/**
+ * Local only agent output that continuously writes coverage data to a memory
+ * mapped file. A background thread copies the probes of all classes to the
+ * file in a fixed interval, therefore the file contains the coverage data up
+ * to the last interval even if the VM is killed. Explicit dumps only copy the
+ * probes once more. This controller uses the following agent options:
+ * <ul>
+ * <li>destfile</li>
+ * <li>syncinterval</li>
+ * </ul>
+ */
+public class MappedFileOutput implements IAgentOutput {
+
+	private final IExceptionLogger logger;
+
+	private RuntimeData data;
+
+	private MappedExecutionDataWriter writer;
+
+	private Thread worker;
+
+	/**
+	 * New controller instance.
+	 * 
+	 * @param logger
+	 *            logger to use in case of exceptions is spawned threads
+	 */
+	public MappedFileOutput(final IExceptionLogger logger) {
+		this.logger = logger;
+	}
+
+	public void startup(final AgentOptions options, final RuntimeData data)
+			throws IOException {
+		this.data = data;
+		final File destFile = new File(options.getDestfile())
+				.getAbsoluteFile();
+		final File folder = destFile.getParentFile();
+		if (folder != null) {
+			folder.mkdirs();
+		}
+		writer = new MappedExecutionDataWriter(destFile);
+		sync(false);
+		final long interval = options.getSyncInterval();
+		worker = new Thread(new Runnable() {
+			public void run() {
+				try {
+					while (true) {
+						Thread.sleep(interval);
+						sync(false);
+					}
+				} catch (final InterruptedException e) {
+					// Output has been shut down
+				} catch (final RuntimeException e) {
+					logger.logExeption(e);
+				}
+			}
+		});
+		worker.setName(getClass().getName());
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	public void writeExecutionData(final boolean reset) {
+		sync(reset);
+		writer.flush();
+	}
+
+	public void shutdown() throws Exception {
+		worker.interrupt();
+		worker.join();
+		sync(false);
+		writer.close();
+	}
+
+	private synchronized void sync(final boolean reset) {
+		data.collect(writer, writer, reset);
+	}
+
+}
@@ -0,0 +1,352 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.agent.rt.internal.output;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.LinkedList;
+
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.runtime.DeltaTracker;
+import org.jacoco.core.runtime.DumpFilter;
+import org.jacoco.core.runtime.IRemoteCommandVisitor;
+import org.jacoco.core.runtime.RemoteControlReader;
+import org.jacoco.core.runtime.RemoteControlWriter;
+import org.jacoco.core.runtime.RuntimeData;
+
+/**
+ * Handler for a single non-blocking remote connection of a
+ * {@link TcpMultiServerOutput}. Received bytes are split into complete blocks
+ * which are processed with a {@link RemoteControlReader}. Execution data is
+ * written directly to the socket as long as its buffer has free space, only
+ * the remaining data is queued until the channel becomes writable again.
+ */
+class NioConnection implements IRemoteCommandVisitor {
+
+	private static final int HEADER_LENGTH = 5;
+
+	private static final int COMMAND_LENGTH = 3;
+
+	private static final int CHUNK_SIZE = 0x2000;
+
+	private final SocketChannel channel;
+
+	private final RuntimeData data;
+
+	private final DeltaTracker tracker;
+
+	private final Listener listener;
+
+	private ByteBuffer input = ByteBuffer.allocate(64);
+
+	private final BlockInput blocks = new BlockInput();
+
+	private final LinkedList<ByteBuffer> pending = new LinkedList<ByteBuffer>();
+
+	private final RemoteControlReader reader;
+
+	private final RemoteControlWriter writer;
+
+	private boolean headerReceived;
+
+	/**
+	 * Callback for connections with data which could not be written
+	 * immediately.
+	 */
+	interface Listener {
+
+		/**
+		 * Called when the given connection has pending output. This method
+		 * may be called from any thread.
+		 * 
+		 * @param connection
+		 *            connection with pending output
+		 */
+		void writePending(NioConnection connection);
+
+	}
+
+	/**
+	 * Creates a new handler for the given channel and writes the header.
+	 * 
+	 * @param channel
+	 *            connected non-blocking channel
+	 * @param data
+	 *            execution data to dump
+	 * @param tracker
+	 *            tracker for delta dumps or <code>null</code>
+	 * @param listener
+	 *            callback for pending output
+	 * @throws IOException
+	 *             if the header can't be written
+	 */
+	NioConnection(final SocketChannel channel, final RuntimeData data,
+			final DeltaTracker tracker, final Listener listener)
+			throws IOException {
+		this.channel = channel;
+		this.data = data;
+		this.tracker = tracker;
+		this.listener = listener;
+		this.reader = new RemoteControlReader(blocks);
+		this.reader.setRemoteCommandVisitor(this);
+		synchronized (this) {
+			this.writer = new RemoteControlWriter(new ChannelOutput());
+			writer.flush();
+		}
+	}
+
+	/**
+	 * Returns the underlying channel.
+	 * 
+	 * @return channel of this connection
+	 */
+	SocketChannel getChannel() {
+		return channel;
+	}
+
+	/**
+	 * Reads all available bytes from the channel and executes all complete
+	 * commands. Must only be called from the selector thread.
+	 * 
+	 * @return <code>false</code> if the remote side has closed the connection
+	 * @throws IOException
+	 *             in case of invalid commands or problems with the connection
+	 */
+	boolean read() throws IOException {
+		int n;
+		while ((n = channel.read(input)) > 0) {
+			input.flip();
+			while (input.hasRemaining()) {
+				final int length = getBlockLength(input);
+				if (input.remaining() < length) {
+					break;
+				}
+				final byte[] block = new byte[length];
+				input.get(block);
+				headerReceived = true;
+				blocks.set(block);
+				reader.read();
+			}
+			input.compact();
+			if (!input.hasRemaining()) {
+				// Filtered dump commands may exceed the buffer
+				final ByteBuffer larger = ByteBuffer
+						.allocate(input.capacity() * 2);
+				input.flip();
+				larger.put(input);
+				input = larger;
+			}
+		}
+		return n != -1;
+	}
+
+	private int getBlockLength(final ByteBuffer buffer) {
+		if (!headerReceived) {
+			return HEADER_LENGTH;
+		}
+		switch (buffer.get(buffer.position())) {
+		case ExecutionDataWriter.BLOCK_HEADER:
+			return HEADER_LENGTH;
+		case RemoteControlWriter.BLOCK_CMDDUMP:
+			return COMMAND_LENGTH;
+		case RemoteControlWriter.BLOCK_CMDDUMPFILTERED:
+			return getFilteredCommandLength(buffer);
+		default:
+			// Not expected from clients, the reader will reject it
+			return 1;
+		}
+	}
+
+	/**
+	 * Calculates the length of a filtered dump command from its two UTF
+	 * strings. If the buffer does not contain a length field yet the length up
+	 * to this field is returned, which exceeds the remaining bytes.
+	 */
+	private static int getFilteredCommandLength(final ByteBuffer buffer) {
+		final int start = buffer.position();
+		// block type, reset flag and length of the includes
+		int length = 4;
+		if (buffer.remaining() < length) {
+			return length;
+		}
+		length += (buffer.getShort(start + 2) & 0xFFFF) + 2;
+		if (buffer.remaining() < length) {
+			return length;
+		}
+		length += buffer.getShort(start + length - 2) & 0xFFFF;
+		// class hits flag
+		return length + 1;
+	}
+
+	/**
+	 * Dumps the current execution data to this connection.
+	 * 
+	 * @param reset
+	 *            if <code>true</code> execution data is cleared afterwards
+	 * @throws IOException
+	 *             in case of problems with the connection
+	 */
+	void writeExecutionData(final boolean reset) throws IOException {
+		visitDumpCommand(true, reset);
+	}
+
+	/**
+	 * Writes as much pending output as the channel accepts without blocking.
+	 * 
+	 * @return <code>true</code> if all pending output has been written
+	 * @throws IOException
+	 *             in case of problems with the connection
+	 */
+	synchronized boolean flush() throws IOException {
+		while (!pending.isEmpty()) {
+			final ByteBuffer buffer = pending.getFirst();
+			channel.write(buffer);
+			if (buffer.hasRemaining()) {
+				return false;
+			}
+			pending.removeFirst();
+		}
+		return true;
+	}
+
+	/**
+	 * Writes all pending output and closes the channel. The channel must not
+	 * be registered with a selector any more.
+	 */
+	synchronized void close() {
+		try {
+			if (!pending.isEmpty() && channel.isOpen()) {
+				channel.configureBlocking(true);
+				flush();
+			}
+		} catch (final IOException e) {
+			// The remote side might have closed the connection already
+		} finally {
+			try {
+				channel.close();
+			} catch (final IOException e) {
+				// ignore
+			}
+		}
+	}
+
+	// === IRemoteCommandVisitor ===
+
+	public void visitDumpCommand(final boolean dump, final boolean reset)
+			throws IOException {
+		synchronized (this) {
+			if (dump) {
+				data.collect(writer, writer, reset, tracker);
+			} else {
+				if (reset) {
+					data.reset();
+				}
+			}
+			writer.sendCmdOk();
+			writer.flush();
+		}
+	}
+
+	public void visitFilteredDumpCommand(final boolean reset,
+			final String includes, final String excludes,
+			final boolean classHits) throws IOException {
+		synchronized (this) {
+			// Filtered dumps always contain the complete data of the selected
+			// classes, the delta tracker is not involved
+			data.collect(new DumpFilter(includes, excludes, classHits, writer),
+					writer, reset);
+			writer.sendCmdOk();
+			writer.flush();
+		}
+	}
+
+	/**
+	 * Output stream which writes complete chunks directly to the channel and
+	 * queues what can't be written without blocking.
+	 */
+	private class ChannelOutput extends OutputStream {
+
+		private ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+
+		@Override
+		public void write(final int b) throws IOException {
+			if (!chunk.hasRemaining()) {
+				send();
+			}
+			chunk.put((byte) b);
+		}
+
+		@Override
+		public void write(final byte[] b, int off, int len) throws IOException {
+			while (len > 0) {
+				if (!chunk.hasRemaining()) {
+					send();
+				}
+				final int n = Math.min(len, chunk.remaining());
+				chunk.put(b, off, n);
+				off += n;
+				len -= n;
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			if (chunk.position() > 0) {
+				send();
+			}
+		}
+
+		private void send() throws IOException {
+			chunk.flip();
+			if (pending.isEmpty()) {
+				channel.write(chunk);
+			}
+			if (chunk.hasRemaining()) {
+				pending.add(chunk);
+				chunk = ByteBuffer.allocate(CHUNK_SIZE);
+				listener.writePending(NioConnection.this);
+			} else {
+				chunk.clear();
+			}
+		}
+
+	}
+
+	/**
+	 * Input stream which provides the bytes of complete blocks to the reader.
+	 */
+	private static class BlockInput extends InputStream {
+
+		private InputStream current = new ByteArrayInputStream(new byte[0]);
+
+		void set(final byte[] block) {
+			current = new ByteArrayInputStream(block);
+		}
+
+		@Override
+		public int read() throws IOException {
+			return current.read();
+		}
+
+		@Override
+		public int read(final byte[] b, final int off, final int len)
+				throws IOException {
+			return current.read(b, off, len);
+		}
+
+	}
+
+}
@@ -0,0 +1,281 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.agent.rt.internal.output;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.jacoco.core.data.ExecutionDataReader;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.SessionInfoStore;
+
+/**
+ * Bounded FIFO queue of batches which have not been sent yet. Every batch is
+ * a deflated execution data stream. If a directory is given every batch is
+ * stored in a separate file, named by a sequence number, and batches left by
+ * a previous JVM are loaded on creation. Otherwise batches are only kept in
+ * memory. If the total size of all batches exceeds the limit all batches are
+ * merged into a single batch. As a merged batch contains every class at most
+ * once its size is bounded by the size of the complete execution data,
+ * therefore no hits are lost even if every batch only contains the hits since
+ * the previous batch. Batches which can't be read are dropped. The directory
+ * must not be used by multiple JVMs concurrently.
+ */
+class SpoolQueue {
+
+	private static final String SUFFIX = ".batch";
+
+	private final File directory;
+
+	private final long limit;
+
+	private final LinkedList<Batch> batches = new LinkedList<Batch>();
+
+	private long size;
+
+	private long sequence;
+
+	/**
+	 * Creates a new queue.
+	 * 
+	 * @param location
+	 *            relative path to the spool directory or <code>null</code> if
+	 *            batches should only be kept in memory
+	 * @param limit
+	 *            maximum total size of all batches in bytes
+	 * @throws IOException
+	 *             if the spool directory can't be created
+	 */
+	SpoolQueue(final String location, final long limit) throws IOException {
+		this.limit = limit;
+		if (location == null) {
+			directory = null;
+		} else {
+			directory = new File(location).getAbsoluteFile();
+			directory.mkdirs();
+			if (!directory.isDirectory()) {
+				throw new IOException(String.format(
+						"Can't create spool directory %s.", directory));
+			}
+			load();
+		}
+	}
+
+	private void load() throws IOException {
+		final String[] names = directory.list();
+		Arrays.sort(names);
+		for (final String name : names) {
+			final File file = new File(directory, name);
+			if (name.endsWith(SUFFIX)) {
+				try {
+					sequence = Long.parseLong(
+							name.substring(0, name.length() - SUFFIX.length()),
+							16) + 1;
+					append(new Batch(file, null, file.length()));
+				} catch (final NumberFormatException e) {
+					// Not created by this queue
+				}
+			} else if (name.endsWith(".tmp")) {
+				// Incomplete batch of a previous JVM
+				file.delete();
+			}
+		}
+		trim();
+	}
+
+	/**
+	 * Adds a new batch to the end of the queue. If the limit is exceeded all
+	 * batches are merged.
+	 * 
+	 * @param data
+	 *            content of the batch
+	 * @throws IOException
+	 *             if the batch can't be written to the spool directory
+	 */
+	void add(final byte[] data) throws IOException {
+		store(data);
+		trim();
+	}
+
+	private void store(final byte[] data) throws IOException {
+		if (directory == null) {
+			append(new Batch(null, data, data.length));
+		} else {
+			final File file = new File(directory, String.format("%016x%s",
+					Long.valueOf(sequence++), SUFFIX));
+			final File tmp = File.createTempFile(file.getName(), ".tmp",
+					directory);
+			try {
+				final OutputStream out = new FileOutputStream(tmp);
+				try {
+					out.write(data);
+				} finally {
+					out.close();
+				}
+				if (!tmp.renameTo(file)) {
+					throw new IOException(String.format(
+							"Can't write spool file %s.", file));
+				}
+			} finally {
+				tmp.delete();
+			}
+			append(new Batch(file, null, data.length));
+		}
+	}
+
+	/**
+	 * Returns the content of the oldest batch without removing it. Batches
+	 * which can't be read from the spool directory are dropped.
+	 * 
+	 * @return content of the oldest batch or <code>null</code> if the queue
+	 *         is empty
+	 */
+	byte[] peek() {
+		while (!batches.isEmpty()) {
+			final Batch batch = batches.getFirst();
+			if (batch.data != null) {
+				return batch.data;
+			}
+			try {
+				return readFile(batch.file);
+			} catch (final IOException e) {
+				remove();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Removes the oldest batch, e.g. after it has been sent successfully.
+	 */
+	void remove() {
+		final Batch batch = batches.removeFirst();
+		size -= batch.size;
+		if (batch.file != null) {
+			batch.file.delete();
+		}
+	}
+
+	/**
+	 * Returns the number of batches in this queue.
+	 * 
+	 * @return number of batches
+	 */
+	int getCount() {
+		return batches.size();
+	}
+
+	/**
+	 * Returns the total size of all batches in this queue.
+	 * 
+	 * @return size in bytes
+	 */
+	long getSize() {
+		return size;
+	}
+
+	private void append(final Batch batch) {
+		batches.addLast(batch);
+		size += batch.size;
+	}
+
+	private void trim() throws IOException {
+		if (size <= limit || batches.size() < 2) {
+			return;
+		}
+		final SessionInfoStore sessionInfos = new SessionInfoStore();
+		final ExecutionDataStore executionData = new ExecutionDataStore();
+		byte[] batch;
+		while ((batch = peek()) != null) {
+			read(batch, sessionInfos, executionData);
+			remove();
+		}
+		store(merge(sessionInfos, executionData));
+	}
+
+	private static void read(final byte[] batch,
+			final SessionInfoStore sessionInfos,
+			final ExecutionDataStore executionData) {
+		try {
+			final ExecutionDataReader reader = new ExecutionDataReader(
+					new InflaterInputStream(new ByteArrayInputStream(batch)));
+			reader.setSessionInfoVisitor(sessionInfos);
+			reader.setExecutionDataVisitor(executionData);
+			reader.read();
+		} catch (final IOException e) {
+			// Corrupt batch, e.g. left by a previous JVM
+		} catch (final IllegalStateException e) {
+			// Execution data incompatible with the other batches
+		}
+	}
+
+	private static byte[] merge(final SessionInfoStore sessionInfos,
+			final ExecutionDataStore executionData) throws IOException {
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try {
+			final DeflaterOutputStream out = new DeflaterOutputStream(buffer,
+					deflater);
+			final ExecutionDataWriter writer = new ExecutionDataWriter(out);
+			sessionInfos.accept(writer);
+			executionData.accept(writer);
+			out.finish();
+		} finally {
+			deflater.end();
+		}
+		return buffer.toByteArray();
+	}
+
+	private static byte[] readFile(final File file) throws IOException {
+		final InputStream in = new FileInputStream(file);
+		try {
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[4096];
+			int len;
+			while ((len = in.read(buffer)) != -1) {
+				out.write(buffer, 0, len);
+			}
+			return out.toByteArray();
+		} finally {
+			in.close();
+		}
+	}
+
+	private static class Batch {
+
+		final File file;
+
+		final byte[] data;
+
+		final long size;
+
+		Batch(final File file, final byte[] data, final long size) {
+			this.file = file;
+			this.data = data;
+			this.size = size;
+		}
+
+	}
+
+}
@@ -0,0 +1,215 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.agent.rt.internal.output;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import org.jacoco.agent.rt.internal.IExceptionLogger;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.IExecutionDataVisitor;
+import org.jacoco.core.runtime.AgentOptions;
+import org.jacoco.core.runtime.DeltaTracker;
+import org.jacoco.core.runtime.RemoteControlReader;
+import org.jacoco.core.runtime.RemoteControlWriter;
+import org.jacoco.core.runtime.RuntimeData;
+
+/**
+ * Output that sends every dump as a compressed batch to a TCP port. Batches
+ * are queued until the receiver has confirmed them, therefore no data is lost
+ * if the receiver is temporarily not reachable. A connection is only opened
+ * while batches are sent. For every batch the client writes a
+ * {@link ExecutionDataWriter#BLOCK_DEFLATED} block followed by a
+ * {@link RemoteControlWriter#BLOCK_CMDOK} block and expects a
+ * {@link RemoteControlWriter#BLOCK_CMDOK} block as confirmation. This
+ * controller uses the following agent options:
+ * <ul>
+ * <li>address</li>
+ * <li>port</li>
+ * <li>delta</li>
+ * <li>spooldir</li>
+ * <li>spoollimit</li>
+ * <li>batchinterval</li>
+ * </ul>
+ */
+public class TcpBatchClientOutput implements IAgentOutput {
+
+	private static final int CONNECT_TIMEOUT = 2000;
+
+	private static final int READ_TIMEOUT = 10000;
+
+	private final IExceptionLogger logger;
+
+	private AgentOptions options;
+
+	private RuntimeData data;
+
+	private DeltaTracker tracker;
+
+	private SpoolQueue queue;
+
+	private boolean reachable;
+
+	private Thread worker;
+
+	/**
+	 * New controller instance.
+	 * 
+	 * @param logger
+	 *            logger to use in case of exceptions is spawned threads
+	 */
+	public TcpBatchClientOutput(final IExceptionLogger logger) {
+		this.logger = logger;
+	}
+
+	public void startup(final AgentOptions options, final RuntimeData data)
+			throws IOException {
+		this.options = options;
+		this.data = data;
+		this.tracker = options.getDelta() ? new DeltaTracker() : null;
+		this.queue = new SpoolQueue(options.getSpoolDir(),
+				options.getSpoolLimit());
+		this.reachable = true;
+		final long interval = options.getBatchInterval() * 1000L;
+		if (interval > 0) {
+			worker = new Thread(new Runnable() {
+				public void run() {
+					try {
+						while (true) {
+							Thread.sleep(interval);
+							try {
+								writeExecutionData(false);
+							} catch (final IOException e) {
+								logger.logExeption(e);
+							}
+						}
+					} catch (final InterruptedException e) {
+						// Output has been shut down
+					}
+				}
+			});
+			worker.setName(getClass().getName());
+			worker.setDaemon(true);
+			worker.start();
+		}
+	}
+
+	public void shutdown() throws Exception {
+		if (worker != null) {
+			worker.interrupt();
+			worker.join();
+		}
+	}
+
+	/**
+	 * Queues a new batch, if there is any execution data, and sends all
+	 * queued batches. If the receiver is not reachable the batches stay in the
+	 * queue and are sent with the next batch.
+	 */
+	public synchronized void writeExecutionData(final boolean reset)
+			throws IOException {
+		final byte[] batch = createBatch(reset);
+		if (batch != null) {
+			queue.add(batch);
+		}
+		sendQueue();
+	}
+
+	private byte[] createBatch(final boolean reset) throws IOException {
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		final int[] count = new int[1];
+		try {
+			final DeflaterOutputStream out = new DeflaterOutputStream(buffer,
+					deflater);
+			final ExecutionDataWriter writer = new ExecutionDataWriter(out);
+			data.collect(new IExecutionDataVisitor() {
+				public void visitClassExecution(final ExecutionData data) {
+					if (data.hasHits()) {
+						count[0]++;
+						writer.visitClassExecution(data);
+					}
+				}
+			}, writer, reset, tracker);
+			out.finish();
+		} finally {
+			deflater.end();
+		}
+		return count[0] == 0 ? null : buffer.toByteArray();
+	}
+
+	private void sendQueue() {
+		if (queue.getCount() == 0) {
+			return;
+		}
+		try {
+			final Socket socket = createSocket(options);
+			try {
+				socket.setSoTimeout(READ_TIMEOUT);
+				final RemoteControlWriter writer = new RemoteControlWriter(
+						new BufferedOutputStream(socket.getOutputStream()));
+				final RemoteControlReader reader = new RemoteControlReader(
+						socket.getInputStream());
+				byte[] batch;
+				while ((batch = queue.peek()) != null) {
+					writer.writeDeflated(batch);
+					writer.sendCmdOk();
+					writer.flush();
+					if (!reader.read()) {
+						throw new IOException(
+								"Connection closed before batch was confirmed.");
+					}
+					queue.remove();
+				}
+			} finally {
+				socket.close();
+			}
+			reachable = true;
+		} catch (final IOException e) {
+			// Only report the first failure until the receiver is reachable
+			// again, the batches are sent later
+			if (reachable) {
+				reachable = false;
+				logger.logExeption(e);
+			}
+		}
+	}
+
+	/**
+	 * Open a socket based on the given configuration.
+	 * 
+	 * @param options
+	 *            address and port configuration
+	 * @return opened socket
+	 * @throws IOException
+	 */
+	protected Socket createSocket(final AgentOptions options)
+			throws IOException {
+		final Socket socket = new Socket();
+		try {
+			socket.connect(new InetSocketAddress(InetAddress.getByName(options
+					.getAddress()), options.getPort()), CONNECT_TIMEOUT);
+		} catch (final IOException e) {
+			socket.close();
+			throw e;
+		}
+		return socket;
+	}
+
+}
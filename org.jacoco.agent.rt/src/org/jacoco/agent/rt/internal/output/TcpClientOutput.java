@@ -24,6 +24,7 @@ import org.jacoco.core.runtime.RuntimeData;
  * <ul>
  * <li>address</li>
  * <li>port</li>
+ * <li>delta</li>
  * </ul>
  */
 public class TcpClientOutput implements IAgentOutput {
@@ -47,7 +48,7 @@ public class TcpClientOutput implements IAgentOutput {
 	public void startup(final AgentOptions options, final RuntimeData data)
 			throws IOException {
 		final Socket socket = createSocket(options);
-		connection = new TcpConnection(socket, data);
+		connection = new TcpConnection(socket, data, options.getDelta());
 		connection.init();
 		worker = new Thread(new Runnable() {
 			public void run() {
@@ -15,6 +15,8 @@ import java.io.IOException;
 import java.net.Socket;
 import java.net.SocketException;
 
+import org.jacoco.core.runtime.DeltaTracker;
+import org.jacoco.core.runtime.DumpFilter;
 import org.jacoco.core.runtime.IRemoteCommandVisitor;
 import org.jacoco.core.runtime.RemoteControlReader;
 import org.jacoco.core.runtime.RemoteControlWriter;
@@ -29,6 +31,8 @@ class TcpConnection implements IRemoteCommandVisitor {
 
 	private final Socket socket;
 
+	private final DeltaTracker tracker;
+
 	private RemoteControlWriter writer;
 
 	private RemoteControlReader reader;
@@ -36,8 +40,25 @@ class TcpConnection implements IRemoteCommandVisitor {
 	private boolean initialized;
 
 	public TcpConnection(final Socket socket, final RuntimeData data) {
+		this(socket, data, false);
+	}
+
+	/**
+	 * Creates a new handler for the given socket.
+	 * 
+	 * @param socket
+	 *            socket of the remote connection
+	 * @param data
+	 *            execution data to dump
+	 * @param delta
+	 *            if <code>true</code> every dump only contains classes with
+	 *            probes executed since the previous dump of this connection
+	 */
+	public TcpConnection(final Socket socket, final RuntimeData data,
+			final boolean delta) {
 		this.socket = socket;
 		this.data = data;
+		this.tracker = delta ? new DeltaTracker() : null;
 		this.initialized = false;
 	}
 
@@ -99,7 +120,7 @@ class TcpConnection implements IRemoteCommandVisitor {
 	public void visitDumpCommand(final boolean dump, final boolean reset)
 			throws IOException {
 		if (dump) {
-			data.collect(writer, writer, reset);
+			data.collect(writer, writer, reset, tracker);
 		} else {
 			if (reset) {
 				data.reset();
@@ -108,4 +129,14 @@ class TcpConnection implements IRemoteCommandVisitor {
 		writer.sendCmdOk();
 	}
 
+	public void visitFilteredDumpCommand(final boolean reset,
+			final String includes, final String excludes,
+			final boolean classHits) throws IOException {
+		// Filtered dumps always contain the complete data of the selected
+		// classes, the delta tracker is not involved
+		data.collect(new DumpFilter(includes, excludes, classHits, writer),
+				writer, reset);
+		writer.sendCmdOk();
+	}
+
 }
@@ -0,0 +1,239 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.agent.rt.internal.output;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.jacoco.agent.rt.internal.IExceptionLogger;
+import org.jacoco.core.runtime.AgentOptions;
+import org.jacoco.core.runtime.DeltaTracker;
+import org.jacoco.core.runtime.RuntimeData;
+
+/**
+ * Output that opens a TCP server socket which serves any number of
+ * connections concurrently. All connections are handled by a single thread
+ * with a {@link Selector}. This controller uses the following agent options:
+ * <ul>
+ * <li>address</li>
+ * <li>port</li>
+ * <li>delta</li>
+ * </ul>
+ */
+public class TcpMultiServerOutput implements IAgentOutput,
+		NioConnection.Listener {
+
+	private static final int BACKLOG = 50;
+
+	private final IExceptionLogger logger;
+
+	private final List<NioConnection> connections = new ArrayList<NioConnection>();
+
+	private final ConcurrentLinkedQueue<NioConnection> writePending = new ConcurrentLinkedQueue<NioConnection>();
+
+	private RuntimeData data;
+
+	private boolean delta;
+
+	private Selector selector;
+
+	private ServerSocketChannel serverChannel;
+
+	private Thread worker;
+
+	private volatile boolean running;
+
+	/**
+	 * New controller instance.
+	 * 
+	 * @param logger
+	 *            logger to use in case of exceptions is spawned threads
+	 */
+	public TcpMultiServerOutput(final IExceptionLogger logger) {
+		this.logger = logger;
+	}
+
+	public void startup(final AgentOptions options, final RuntimeData data)
+			throws IOException {
+		this.data = data;
+		this.delta = options.getDelta();
+		selector = Selector.open();
+		serverChannel = createServerChannel(options);
+		serverChannel.configureBlocking(false);
+		serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+		running = true;
+		worker = new Thread(new Runnable() {
+			public void run() {
+				while (running) {
+					try {
+						select();
+					} catch (final IOException e) {
+						logger.logExeption(e);
+					}
+				}
+			}
+		});
+		worker.setName(getClass().getName());
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	public void shutdown() throws Exception {
+		running = false;
+		selector.wakeup();
+		worker.join();
+		// Closing the selector deregisters all channels
+		selector.close();
+		serverChannel.close();
+		for (final NioConnection connection : getConnections()) {
+			connection.close();
+		}
+	}
+
+	public void writeExecutionData(final boolean reset) throws IOException {
+		final List<NioConnection> list = getConnections();
+		// Reset only once after all connections got the current data:
+		for (int i = 0; i < list.size(); i++) {
+			try {
+				list.get(i).writeExecutionData(reset && i == list.size() - 1);
+			} catch (final IOException e) {
+				// The connection is closed by the selector thread
+				logger.logExeption(e);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of currently open connections.
+	 * 
+	 * @return number of connections
+	 */
+	public int getConnectionCount() {
+		return getConnections().size();
+	}
+
+	private List<NioConnection> getConnections() {
+		synchronized (connections) {
+			return new ArrayList<NioConnection>(connections);
+		}
+	}
+
+	public void writePending(final NioConnection connection) {
+		writePending.add(connection);
+		selector.wakeup();
+	}
+
+	private void select() throws IOException {
+		selector.select();
+		NioConnection pending;
+		while ((pending = writePending.poll()) != null) {
+			final SelectionKey key = pending.getChannel().keyFor(selector);
+			if (key != null && key.isValid()) {
+				key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+			}
+		}
+		final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+		while (keys.hasNext()) {
+			final SelectionKey key = keys.next();
+			keys.remove();
+			if (key.isValid() && key.isAcceptable()) {
+				accept();
+			} else if (key.isValid()) {
+				handle(key, (NioConnection) key.attachment());
+			}
+		}
+	}
+
+	private void accept() throws IOException {
+		final SocketChannel channel = serverChannel.accept();
+		if (channel == null) {
+			return;
+		}
+		channel.configureBlocking(false);
+		final SelectionKey key = channel.register(selector,
+				SelectionKey.OP_READ);
+		final NioConnection connection = new NioConnection(channel, data,
+				delta ? new DeltaTracker() : null, this);
+		key.attach(connection);
+		synchronized (connections) {
+			connections.add(connection);
+		}
+	}
+
+	private void handle(final SelectionKey key, final NioConnection connection) {
+		try {
+			if (key.isReadable() && !connection.read()) {
+				close(key, connection);
+				return;
+			}
+			if (key.isWritable() && connection.flush()) {
+				key.interestOps(SelectionKey.OP_READ);
+			}
+		} catch (final IOException e) {
+			logger.logExeption(e);
+			close(key, connection);
+		}
+	}
+
+	private void close(final SelectionKey key, final NioConnection connection) {
+		key.cancel();
+		synchronized (connections) {
+			connections.remove(connection);
+		}
+		connection.close();
+	}
+
+	/**
+	 * Opens a server channel based on the given configuration.
+	 * 
+	 * @param options
+	 *            address and port configuration
+	 * @return opened server channel
+	 * @throws IOException
+	 */
+	protected ServerSocketChannel createServerChannel(
+			final AgentOptions options) throws IOException {
+		final ServerSocketChannel channel = ServerSocketChannel.open();
+		final InetAddress inetAddr = getInetAddress(options.getAddress());
+		channel.socket().bind(
+				new InetSocketAddress(inetAddr, options.getPort()), BACKLOG);
+		return channel;
+	}
+
+	/**
+	 * Returns the {@link InetAddress} object to open the server socket on.
+	 * 
+	 * @param address
+	 *            address specified as a string
+	 * @return address to open the server socket
+	 * @throws UnknownHostException
+	 */
+	protected InetAddress getInetAddress(final String address)
+			throws UnknownHostException {
+		if ("*".equals(address)) {
+			return null;
+		} else {
+			return InetAddress.getByName(address);
+		}
+	}
+
+}
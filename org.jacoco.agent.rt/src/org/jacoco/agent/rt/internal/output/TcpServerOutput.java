@@ -26,6 +26,7 @@ import org.jacoco.core.runtime.RuntimeData;
  * <ul>
  * <li>address</li>
  * <li>port</li>
+ * <li>delta</li>
  * </ul>
  */
 public class TcpServerOutput implements IAgentOutput {
@@ -51,13 +52,14 @@ public class TcpServerOutput implements IAgentOutput {
 	public void startup(final AgentOptions options, final RuntimeData data)
 			throws IOException {
 		serverSocket = createServerSocket(options);
+		final boolean delta = options.getDelta();
 		worker = new Thread(new Runnable() {
 			public void run() {
 				while (!serverSocket.isClosed()) {
 					try {
 						synchronized (serverSocket) {
 							connection = new TcpConnection(
-									serverSocket.accept(), data);
+									serverSocket.accept(), data, delta);
 						}
 						connection.init();
 						connection.run();
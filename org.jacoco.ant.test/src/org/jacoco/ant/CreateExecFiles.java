@@ -17,6 +17,7 @@ import java.io.OutputStream;
 
 import org.jacoco.core.data.ExecutionData;
 import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.SessionInfo;
 
 /**
  * Utility class to create exec files required for some Ant tests.
@@ -41,6 +42,16 @@ public class CreateExecFiles {
 		writer.visitClassExecution(new ExecutionData(0,
 				"org/jacoco/ant/TestTarget", new boolean[0]));
 		out.close();
+
+		out = new FileOutputStream(BASE_LOCATION + "tests.exec");
+		writer = new ExecutionDataWriter(out);
+		writer.visitSessionInfo(new SessionInfo("test1", 0, 0));
+		writer.visitClassExecution(new ExecutionData(1,
+				"org/jacoco/ant/TestTarget", new boolean[] { true }));
+		writer.visitSessionInfo(new SessionInfo("test2", 0, 0));
+		writer.visitClassExecution(new ExecutionData(2,
+				"org/jacoco/ant/RemoveDebugInfos", new boolean[] { true }));
+		out.close();
 	}
 
 }
@@ -189,6 +189,61 @@ public class AbstractCoverageTask extends Task {
 		agentOptions.setPort(port);
 	}
 
+	/**
+	 * Sets whether every dump should only contain classes with probes executed
+	 * since the previous dump. Default is <code>false</code>
+	 * 
+	 * @param delta
+	 *            <code>true</code> if delta dumps should be enabled
+	 */
+	public void setDelta(final boolean delta) {
+		agentOptions.setDelta(delta);
+	}
+
+	/**
+	 * Sets the directory where the tcpbatchclient output queues batches which
+	 * could not be sent yet. Default is <code>null</code> (queue in memory)
+	 * 
+	 * @param dir
+	 *            spool location
+	 */
+	public void setSpooldir(final File dir) {
+		agentOptions.setSpoolDir(dir.getAbsolutePath());
+	}
+
+	/**
+	 * Sets the maximum total size in bytes of all batches queued by the
+	 * tcpbatchclient output. Default is <code>16777216</code>
+	 * 
+	 * @param limit
+	 *            maximum size in bytes
+	 */
+	public void setSpoollimit(final int limit) {
+		agentOptions.setSpoolLimit(limit);
+	}
+
+	/**
+	 * Sets the interval in seconds in which the tcpbatchclient output sends
+	 * batches. Default is <code>0</code> (only on explicit dumps)
+	 * 
+	 * @param interval
+	 *            interval in seconds
+	 */
+	public void setBatchinterval(final int interval) {
+		agentOptions.setBatchInterval(interval);
+	}
+
+	/**
+	 * Sets the interval in milliseconds in which the mapped output copies the
+	 * probes to the memory mapped file. Default is <code>1000</code>
+	 * 
+	 * @param interval
+	 *            interval in milliseconds
+	 */
+	public void setSyncinterval(final int interval) {
+		agentOptions.setSyncInterval(interval);
+	}
+
 	/**
 	 * Sets the directory where all class files seen by the agent should be
 	 * dumped to.
@@ -200,6 +255,17 @@ public class AbstractCoverageTask extends Task {
 		agentOptions.setClassDumpDir(dir.getAbsolutePath());
 	}
 
+	/**
+	 * Sets the directory where instrumented class files are cached for later
+	 * JVM starts.
+	 * 
+	 * @param dir
+	 *            cache location
+	 */
+	public void setClasscachedir(final File dir) {
+		agentOptions.setClassCacheDir(dir.getAbsolutePath());
+	}
+
 	/**
 	 * Sets whether the agent should expose functionality via JMX.
 	 * 
@@ -210,6 +276,82 @@ public class AbstractCoverageTask extends Task {
 		agentOptions.setJmx(jmx);
 	}
 
+	/**
+	 * Sets whether probe arrays should be obtained through a static accessor
+	 * on the bootstrap class path.
+	 * 
+	 * @param bootstrapAccessor
+	 *            <code>true</code> if the static accessor should be used
+	 */
+	public void setBootstrapaccessor(final boolean bootstrapAccessor) {
+		agentOptions.setBootstrapAccessor(bootstrapAccessor);
+	}
+
+	/**
+	 * Sets the expression for classes with striped probe arrays.
+	 * 
+	 * @param stripedClasses
+	 *            wildcard expression for striped classes
+	 */
+	public void setStripedclasses(final String stripedClasses) {
+		agentOptions.setStripedClasses(stripedClasses);
+	}
+
+	/**
+	 * Sets the number of probe arrays for striped classes.
+	 * 
+	 * @param probeStripes
+	 *            number of probe arrays, must be a power of two
+	 */
+	public void setProbestripes(final int probeStripes) {
+		agentOptions.setProbeStripes(probeStripes);
+	}
+
+	/**
+	 * Sets whether classes should be instrumented lazily when they get
+	 * initialized.
+	 * 
+	 * @param lazyInstrumentation
+	 *            <code>true</code> if classes should be instrumented lazily
+	 */
+	public void setLazyinstrumentation(final boolean lazyInstrumentation) {
+		agentOptions.setLazyInstrumentation(lazyInstrumentation);
+	}
+
+	/**
+	 * Sets the interval in which saturated classes are detached.
+	 * 
+	 * @param interval
+	 *            interval in seconds or <code>0</code> if classes should
+	 *            never be detached
+	 */
+	public void setDetachinterval(final int interval) {
+		agentOptions.setDetachInterval(interval);
+	}
+
+	/**
+	 * Sets the time after which classes without new executed probes are
+	 * detached.
+	 * 
+	 * @param time
+	 *            time in seconds or <code>0</code> if only saturated classes
+	 *            should be detached
+	 */
+	public void setDetachquiettime(final int time) {
+		agentOptions.setDetachQuietTime(time);
+	}
+
+	/**
+	 * Sets whether probes which are implied by other probes should be
+	 * omitted.
+	 * 
+	 * @param probeElision
+	 *            <code>true</code> if implied probes should be omitted
+	 */
+	public void setProbeelision(final boolean probeElision) {
+		agentOptions.setProbeElision(probeElision);
+	}
+
 	/**
 	 * Creates JVM argument to launch with the specified JaCoCo agent jar and
 	 * the current options
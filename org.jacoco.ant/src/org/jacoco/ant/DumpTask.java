@@ -16,6 +16,9 @@ import static java.lang.String.format;
 import java.io.File;
 import java.io.IOException;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.Task;
@@ -36,6 +39,11 @@ public class DumpTask extends Task {
 	private int port = AgentOptions.DEFAULT_PORT;
 	private int retryCount = 10;
 	private boolean append = true;
+	private String targets = null;
+	private int threads = 16;
+	private String includes = "*";
+	private String excludes = "";
+	private boolean classHits = false;
 
 	/**
 	 * Sets the location of the execution data file to write. This parameter is
@@ -69,6 +77,64 @@ public class DumpTask extends Task {
 		this.port = port;
 	}
 
+	/**
+	 * Sets a list of <code>host[:port]</code> end-points separated by commas
+	 * or whitespace. If set, dumps are requested from all end-points
+	 * concurrently instead of the single <code>address</code>, end-points
+	 * without port use <code>port</code>.
+	 * 
+	 * @param targets
+	 *            list of end-points
+	 */
+	public void setTargets(final String targets) {
+		this.targets = targets;
+	}
+
+	/**
+	 * Sets the maximum number of concurrent connections if multiple
+	 * <code>targets</code> are given. Default is <code>16</code>
+	 * 
+	 * @param threads
+	 *            maximum number of concurrent connections
+	 */
+	public void setThreads(final int threads) {
+		this.threads = threads;
+	}
+
+	/**
+	 * Sets the Java names of the classes to dump, may use wildcard characters
+	 * (* and ?) and list multiple patterns separated by colons. Default is
+	 * <code>*</code>
+	 * 
+	 * @param includes
+	 *            classes to dump
+	 */
+	public void setIncludes(final String includes) {
+		this.includes = includes;
+	}
+
+	/**
+	 * Sets the Java names of the classes which should not be dumped. Same
+	 * syntax as for includes. Default is no exclusion
+	 * 
+	 * @param excludes
+	 *            classes not to dump
+	 */
+	public void setExcludes(final String excludes) {
+		this.excludes = excludes;
+	}
+
+	/**
+	 * Sets whether only the executed classes should be dumped without their
+	 * probes. Defaults to <code>false</code>
+	 * 
+	 * @param classHits
+	 *            <code>true</code> to dump executed classes only
+	 */
+	public void setClassHits(final boolean classHits) {
+		this.classHits = classHits;
+	}
+
 	/**
 	 * Number of retries which the goal will attempt to establish a connection.
 	 * This can be used to wait until the target JVM is successfully launched.
@@ -125,7 +191,12 @@ public class DumpTask extends Task {
 					"Destination file is required when dumping execution data",
 					getLocation());
 		}
+		if (threads < 1) {
+			throw new BuildException(format("Invalid number of threads %s",
+					Integer.valueOf(threads)), getLocation());
+		}
 
+		final List<String> failures = new ArrayList<String>();
 		final ExecDumpClient client = new ExecDumpClient() {
 			@Override
 			protected void onConnecting(final InetAddress address,
@@ -138,13 +209,27 @@ public class DumpTask extends Task {
 			protected void onConnectionFailure(final IOException exception) {
 				log(exception.getMessage());
 			}
+
+			@Override
+			protected void onDumpFailure(final InetSocketAddress target,
+					final IOException exception) {
+				log(format("Unable to dump %s: %s", target,
+						exception.getMessage()));
+				synchronized (failures) {
+					failures.add(target.toString());
+				}
+			}
 		};
 		client.setDump(dump);
 		client.setReset(reset);
 		client.setRetryCount(retryCount);
+		client.setIncludes(includes);
+		client.setExcludes(excludes);
+		client.setClassHits(classHits);
 
 		try {
-			final ExecFileLoader loader = client.dump(address, port);
+			final ExecFileLoader loader = targets == null ? client.dump(
+					address, port) : client.dump(parseTargets(), threads);
 			if (dump) {
 				log(format("Dumping execution data to %s",
 						destfile.getAbsolutePath()));
@@ -154,6 +239,20 @@ public class DumpTask extends Task {
 			throw new BuildException("Unable to dump coverage data", e,
 					getLocation());
 		}
+		// Data of all successful targets has been saved before failing
+		if (!failures.isEmpty()) {
+			throw new BuildException(format(
+					"Unable to dump coverage data from %s", failures),
+					getLocation());
+		}
+	}
+
+	private List<InetSocketAddress> parseTargets() {
+		try {
+			return ExecDumpClient.parseTargets(targets, port);
+		} catch (final IllegalArgumentException e) {
+			throw new BuildException(e.getMessage(), getLocation());
+		}
 	}
 
 }
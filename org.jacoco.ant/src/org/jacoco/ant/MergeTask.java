@@ -14,17 +14,22 @@ package org.jacoco.ant;
 import static java.lang.String.format;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.Task;
 import org.apache.tools.ant.types.Resource;
 import org.apache.tools.ant.types.ResourceCollection;
+import org.apache.tools.ant.types.resources.FileResource;
 import org.apache.tools.ant.types.resources.Union;
 import org.apache.tools.ant.util.FileUtils;
-import org.jacoco.core.tools.ExecFileLoader;
+import org.jacoco.core.tools.ExecFileMerger;
 
 /**
  * Task for merging a set of execution data files (*.exec) into a single file
@@ -33,6 +38,8 @@ public class MergeTask extends Task {
 
 	private File destfile;
 
+	private int threads = Runtime.getRuntime().availableProcessors();
+
 	private final Union files = new Union();
 
 	/**
@@ -45,6 +52,16 @@ public class MergeTask extends Task {
 		this.destfile = destfile;
 	}
 
+	/**
+	 * Sets the number of threads used to merge the execution data files.
+	 * 
+	 * @param threads
+	 *            number of threads
+	 */
+	public void setThreads(final int threads) {
+		this.threads = threads;
+	}
+
 	/**
 	 * This task accepts any number of execution data resources.
 	 * 
@@ -61,14 +78,24 @@ public class MergeTask extends Task {
 			throw new BuildException("Destination file must be supplied",
 					getLocation());
 		}
+		if (threads < 1) {
+			throw new BuildException(format("Invalid number of threads %s",
+					Integer.valueOf(threads)), getLocation());
+		}
 
-		final ExecFileLoader loader = new ExecFileLoader();
-
-		load(loader);
-		save(loader);
+		final ExecFileMerger merger = new ExecFileMerger(threads);
+		final List<File> tempFiles = new ArrayList<File>();
+		try {
+			load(merger, tempFiles);
+			save(merger);
+		} finally {
+			for (final File file : tempFiles) {
+				file.delete();
+			}
+		}
 	}
 
-	private void load(final ExecFileLoader loader) {
+	private void load(final ExecFileMerger merger, final List<File> tempFiles) {
 		final Iterator<?> resourceIterator = files.iterator();
 		while (resourceIterator.hasNext()) {
 			final Resource resource = (Resource) resourceIterator.next();
@@ -79,27 +106,48 @@ public class MergeTask extends Task {
 
 			log(format("Loading execution data file %s", resource));
 
-			InputStream resourceStream = null;
-			try {
-				resourceStream = resource.getInputStream();
-				loader.load(resourceStream);
-			} catch (final IOException e) {
-				throw new BuildException(format("Unable to read %s", resource),
-						e, getLocation());
-			} finally {
-				FileUtils.close(resourceStream);
+			if (resource instanceof FileResource) {
+				merger.add(((FileResource) resource).getFile());
+			} else {
+				merger.add(copy(resource, tempFiles));
 			}
 		}
 	}
 
-	private void save(final ExecFileLoader loader) {
+	/**
+	 * Resources which are not files, e.g. archive entries, are copied to
+	 * temporary files first as the merger reads the files in parallel.
+	 */
+	private File copy(final Resource resource, final List<File> tempFiles) {
+		InputStream resourceStream = null;
+		OutputStream tempStream = null;
+		try {
+			final File file = File.createTempFile("jacoco", ".exec");
+			tempFiles.add(file);
+			resourceStream = resource.getInputStream();
+			tempStream = new FileOutputStream(file);
+			final byte[] buffer = new byte[4096];
+			int len;
+			while ((len = resourceStream.read(buffer)) != -1) {
+				tempStream.write(buffer, 0, len);
+			}
+			return file;
+		} catch (final IOException e) {
+			throw new BuildException(format("Unable to read %s", resource),
+					e, getLocation());
+		} finally {
+			FileUtils.close(resourceStream);
+			FileUtils.close(tempStream);
+		}
+	}
+
+	private void save(final ExecFileMerger merger) {
 		log(format("Writing merged execution data to %s",
 				destfile.getAbsolutePath()));
 		try {
-			loader.save(destfile, false);
+			merger.merge(destfile);
 		} catch (final IOException e) {
-			throw new BuildException(format("Unable to write merged file %s",
-					destfile.getAbsolutePath()), e, getLocation());
+			throw new BuildException(e.getMessage(), e, getLocation());
 		}
 	}
 
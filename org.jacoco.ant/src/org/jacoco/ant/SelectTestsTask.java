@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.ant;
+
+import static java.lang.String.format;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Set;
+
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.Task;
+import org.jacoco.core.runtime.WildcardMatcher;
+import org.jacoco.core.tools.TestImpactIndex;
+
+/**
+ * Task for selecting the tests which execute a given set of classes, e.g. the
+ * classes changed since the last build. The tests are looked up in an index
+ * created with the <code>testindex</code> task.
+ */
+public class SelectTestsTask extends Task {
+
+	private File indexfile;
+
+	private String classes;
+
+	private String property;
+
+	private File destfile;
+
+	/**
+	 * Sets the location of the test impact index.
+	 * 
+	 * @param indexfile
+	 *            index file location
+	 */
+	public void setIndexfile(final File indexfile) {
+		this.indexfile = indexfile;
+	}
+
+	/**
+	 * Sets the names of the classes to select tests for. The list entries are
+	 * separated by a colon (<code>:</code>) and may use wildcard characters
+	 * (<code>*</code> and <code>?</code>).
+	 * 
+	 * @param classes
+	 *            wildcard expression for class names
+	 */
+	public void setClasses(final String classes) {
+		this.classes = classes;
+	}
+
+	/**
+	 * Sets the name of a property which is set to the comma separated list
+	 * of the selected tests.
+	 * 
+	 * @param property
+	 *            property name
+	 */
+	public void setProperty(final String property) {
+		this.property = property;
+	}
+
+	/**
+	 * Sets a file the names of the selected tests are written to, one per
+	 * line.
+	 * 
+	 * @param destfile
+	 *            destination file
+	 */
+	public void setDestfile(final File destfile) {
+		this.destfile = destfile;
+	}
+
+	@Override
+	public void execute() throws BuildException {
+		if (indexfile == null) {
+			throw new BuildException("Index file must be supplied",
+					getLocation());
+		}
+		if (classes == null) {
+			throw new BuildException("Classes must be supplied", getLocation());
+		}
+		final TestImpactIndex index = new TestImpactIndex();
+		try {
+			index.loadIndex(indexfile);
+		} catch (final IOException e) {
+			throw new BuildException(format("Unable to read test index %s",
+					indexfile.getAbsolutePath()), e, getLocation());
+		}
+		final WildcardMatcher matcher = new WildcardMatcher(classes);
+		final Collection<String> names = new ArrayList<String>();
+		for (final String name : index.getClassNames()) {
+			if (matcher.matches(name.replace('/', '.'))) {
+				names.add(name);
+			}
+		}
+		final Set<String> tests = index.getTestsForClasses(names);
+		log(format("Selected %s of %s tests for %s classes",
+				Integer.valueOf(tests.size()),
+				Integer.valueOf(index.getTests().size()),
+				Integer.valueOf(names.size())));
+		if (property != null) {
+			getProject().setNewProperty(property, join(tests, ","));
+		}
+		if (destfile != null) {
+			write(tests);
+		}
+	}
+
+	private void write(final Set<String> tests) {
+		try {
+			final Writer writer = new OutputStreamWriter(new FileOutputStream(
+					destfile), "UTF-8");
+			try {
+				for (final String test : tests) {
+					writer.write(test);
+					writer.write('\n');
+				}
+			} finally {
+				writer.close();
+			}
+		} catch (final IOException e) {
+			throw new BuildException(format("Unable to write %s",
+					destfile.getAbsolutePath()), e, getLocation());
+		}
+	}
+
+	private static String join(final Set<String> values,
+			final String separator) {
+		final StringBuilder result = new StringBuilder();
+		for (final String value : values) {
+			if (result.length() > 0) {
+				result.append(separator);
+			}
+			result.append(value);
+		}
+		return result.toString();
+	}
+
+}
@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.ant;
+
+import static java.lang.String.format;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.Task;
+import org.apache.tools.ant.types.Resource;
+import org.apache.tools.ant.types.ResourceCollection;
+import org.apache.tools.ant.types.resources.Union;
+import org.apache.tools.ant.util.FileUtils;
+import org.jacoco.core.tools.TestImpactIndex;
+
+/**
+ * Task for building a test impact index from execution data files (*.exec)
+ * which contain a separate session for every test.
+ */
+public class TestIndexTask extends Task {
+
+	private File destfile;
+
+	private final Union files = new Union();
+
+	/**
+	 * Sets the location of the index file to create
+	 * 
+	 * @param destfile
+	 *            index file location
+	 */
+	public void setDestfile(final File destfile) {
+		this.destfile = destfile;
+	}
+
+	/**
+	 * This task accepts any number of execution data resources.
+	 * 
+	 * @param resources
+	 *            Execution data resources
+	 */
+	public void addConfigured(final ResourceCollection resources) {
+		files.add(resources);
+	}
+
+	@Override
+	public void execute() throws BuildException {
+		if (destfile == null) {
+			throw new BuildException("Destination file must be supplied",
+					getLocation());
+		}
+		final TestImpactIndex index = new TestImpactIndex();
+		final Iterator<?> resourceIterator = files.iterator();
+		while (resourceIterator.hasNext()) {
+			final Resource resource = (Resource) resourceIterator.next();
+			if (resource.isDirectory()) {
+				continue;
+			}
+			log(format("Loading execution data file %s", resource));
+			InputStream in = null;
+			try {
+				in = resource.getInputStream();
+				index.load(in);
+			} catch (final IOException e) {
+				throw new BuildException(format("Unable to read %s", resource),
+						e, getLocation());
+			} finally {
+				FileUtils.close(in);
+			}
+		}
+		log(format("Writing test index with %s tests and %s classes to %s",
+				Integer.valueOf(index.getTests().size()),
+				Integer.valueOf(index.getClassCount()),
+				destfile.getAbsolutePath()));
+		try {
+			index.save(destfile);
+		} catch (final IOException e) {
+			throw new BuildException(format("Unable to write test index %s",
+					destfile.getAbsolutePath()), e, getLocation());
+		}
+	}
+
+}
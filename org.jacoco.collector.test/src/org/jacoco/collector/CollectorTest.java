@@ -0,0 +1,353 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.collector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.runtime.RemoteControlReader;
+import org.jacoco.core.runtime.RemoteControlWriter;
+import org.jacoco.core.tools.ExecDumpClient;
+import org.jacoco.core.tools.ExecFileLoader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link Collector}.
+ */
+public class CollectorTest {
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private final List<Exception> exceptions = new ArrayList<Exception>();
+
+	private File destfile;
+
+	private Collector collector;
+
+	@Before
+	public void setup() throws Exception {
+		destfile = new File(folder.getRoot(), "jacoco.exec");
+		collector = createCollector();
+	}
+
+	@After
+	public void teardown() throws Exception {
+		if (collector != null) {
+			collector.stop();
+		}
+	}
+
+	@Test
+	public void testConcurrentAgents() throws Exception {
+		collector.start();
+		final int agentCount = 10;
+		final List<Thread> agents = new ArrayList<Thread>();
+		final List<Exception> failures = new ArrayList<Exception>();
+		for (int a = 0; a < agentCount; a++) {
+			final int probe = a;
+			agents.add(new Thread() {
+				@Override
+				public void run() {
+					try {
+						final boolean[] probes = new boolean[agentCount];
+						probes[probe] = true;
+						send(new SessionInfo("agent" + probe, probe, 100),
+								new ExecutionData(42, "Foo", probes));
+					} catch (final Exception e) {
+						synchronized (failures) {
+							failures.add(e);
+						}
+					}
+				}
+			});
+		}
+		for (final Thread t : agents) {
+			t.start();
+		}
+		for (final Thread t : agents) {
+			t.join();
+		}
+		assertEquals(new ArrayList<Exception>(), failures);
+
+		final ExecFileLoader loader = dump(false);
+		assertEquals(agentCount, loader.getSessionInfoStore().getInfos()
+				.size());
+		final boolean[] probes = loader.getExecutionDataStore().get(42)
+				.getProbes();
+		for (final boolean p : probes) {
+			assertTrue(p);
+		}
+	}
+
+	@Test
+	public void testSameSession() throws Exception {
+		collector.start();
+		send(new SessionInfo("id", 10, 20), new ExecutionData(1, "Foo",
+				new boolean[] { true, false }));
+		send(new SessionInfo("id", 5, 15), new ExecutionData(1, "Foo",
+				new boolean[] { false, true }));
+
+		final ExecFileLoader loader = dump(false);
+		final List<SessionInfo> infos = loader.getSessionInfoStore()
+				.getInfos();
+		assertEquals(1, infos.size());
+		assertEquals(5, infos.get(0).getStartTimeStamp());
+		assertEquals(20, infos.get(0).getDumpTimeStamp());
+		final boolean[] probes = loader.getExecutionDataStore().get(1)
+				.getProbes();
+		assertTrue(probes[0]);
+		assertTrue(probes[1]);
+	}
+
+	@Test
+	public void testDeflatedBatch() throws Exception {
+		collector.start();
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		final DeflaterOutputStream deflater = new DeflaterOutputStream(buffer);
+		final ExecutionDataWriter batch = new ExecutionDataWriter(deflater);
+		batch.visitSessionInfo(new SessionInfo("batch", 1, 2));
+		batch.visitClassExecution(new ExecutionData(7, "Bar",
+				new boolean[] { true }));
+		deflater.finish();
+
+		final Socket socket = new Socket("localhost", collector.getPort());
+		try {
+			final RemoteControlWriter writer = new RemoteControlWriter(
+					socket.getOutputStream());
+			writer.writeDeflated(buffer.toByteArray());
+			writer.sendCmdOk();
+			final RemoteControlReader reader = new RemoteControlReader(
+					socket.getInputStream());
+			assertTrue(reader.read());
+		} finally {
+			socket.close();
+		}
+
+		final ExecFileLoader loader = dump(false);
+		assertEquals("batch", loader.getSessionInfoStore().getInfos().get(0)
+				.getId());
+		assertTrue(loader.getExecutionDataStore().get(7).getProbes()[0]);
+	}
+
+	@Test
+	public void testDumpWithReset() throws Exception {
+		collector.start();
+		send(new SessionInfo("id", 1, 2), new ExecutionData(1, "Foo",
+				new boolean[] { true }));
+
+		final ExecFileLoader first = dump(true);
+		assertTrue(first.getExecutionDataStore().get(1).getProbes()[0]);
+
+		// Classes without hits are not written
+		final ExecFileLoader second = dump(false);
+		assertTrue(second.getSessionInfoStore().isEmpty());
+		assertNull(second.getExecutionDataStore().get(1));
+	}
+
+	@Test
+	public void testFilteredDump() throws Exception {
+		collector.start();
+		send(new SessionInfo("id", 1, 2), new ExecutionData(1, "org/Foo",
+				new boolean[] { true }));
+		send(new SessionInfo("id", 1, 2), new ExecutionData(2, "com/Bar",
+				new boolean[] { true }));
+
+		final ExecDumpClient client = new ExecDumpClient();
+		client.setIncludes("org.*");
+		client.setClassHits(true);
+		final ExecFileLoader loader = client.dump("localhost",
+				collector.getPort());
+		assertTrue(loader.getClassHitStore().contains(1));
+		assertFalse(loader.getClassHitStore().contains(2));
+		assertTrue(loader.getExecutionDataStore().getContents().isEmpty());
+	}
+
+	@Test
+	public void testCheckpointOnStop() throws Exception {
+		collector.setDestfile(destfile);
+		collector.start();
+		send(new SessionInfo("id", 1, 2), new ExecutionData(1, "Foo",
+				new boolean[] { true }));
+		collector.stop();
+		collector = null;
+
+		final ExecFileLoader loader = new ExecFileLoader();
+		loader.load(destfile);
+		assertEquals("id", loader.getSessionInfoStore().getInfos().get(0)
+				.getId());
+		assertTrue(loader.getExecutionDataStore().get(1).getProbes()[0]);
+	}
+
+	@Test
+	public void testCheckpointReplacesFile() throws Exception {
+		collector.setDestfile(destfile);
+		collector.start();
+		send(new SessionInfo("id", 1, 2), new ExecutionData(1, "Foo",
+				new boolean[] { true }));
+		collector.checkpoint();
+		send(new SessionInfo("id", 1, 3), new ExecutionData(2, "Bar",
+				new boolean[] { true }));
+		collector.checkpoint();
+
+		final ExecFileLoader loader = load(destfile);
+		assertTrue(loader.getExecutionDataStore().contains("Foo"));
+		assertTrue(loader.getExecutionDataStore().contains("Bar"));
+		assertEquals(1, destfile.getParentFile().list().length);
+	}
+
+	@Test
+	public void testPeriodicCheckpoint() throws Exception {
+		collector.setDestfile(destfile);
+		collector.setInterval(10);
+		collector.start();
+		send(new SessionInfo("id", 1, 2), new ExecutionData(1, "Foo",
+				new boolean[] { true }));
+
+		for (int i = 0; i < 500; i++) {
+			if (destfile.isFile() && load(destfile).getExecutionDataStore()
+					.contains("Foo")) {
+				return;
+			}
+			Thread.sleep(10);
+		}
+		throw new AssertionError("No checkpoint written.");
+	}
+
+	@Test
+	public void testLoadCheckpoint() throws Exception {
+		collector.setDestfile(destfile);
+		collector.start();
+		send(new SessionInfo("id", 1, 2), new ExecutionData(1, "Foo",
+				new boolean[] { true, false }));
+		collector.stop();
+
+		collector = createCollector();
+		collector.setDestfile(destfile);
+		collector.start();
+		send(new SessionInfo("id", 1, 3), new ExecutionData(1, "Foo",
+				new boolean[] { false, true }));
+
+		final ExecFileLoader loader = dump(false);
+		assertEquals(3, loader.getSessionInfoStore().getInfos().get(0)
+				.getDumpTimeStamp());
+		final boolean[] probes = loader.getExecutionDataStore().get(1)
+				.getProbes();
+		assertTrue(probes[0]);
+		assertTrue(probes[1]);
+	}
+
+	@Test
+	public void testIncompatibleData() throws Exception {
+		collector.start();
+		send(new SessionInfo("id", 1, 2), new ExecutionData(1, "Foo",
+				new boolean[] { true, true }));
+		final Socket socket = new Socket("localhost", collector.getPort());
+		final RemoteControlWriter writer = new RemoteControlWriter(
+				socket.getOutputStream());
+		writer.visitClassExecution(new ExecutionData(1, "Foo", new boolean[] {
+				true, true, true }));
+		writer.sendCmdOk();
+		// The collector closes the connection
+		final RemoteControlReader reader = new RemoteControlReader(
+				socket.getInputStream());
+		assertFalse(reader.read());
+		socket.close();
+
+		collector.stop();
+		collector = null;
+		assertEquals(1, exceptions.size());
+		assertEquals(IllegalStateException.class, exceptions.get(0)
+				.getClass());
+	}
+
+	@Test
+	public void testInvalidHeader() throws Exception {
+		collector.start();
+		final Socket socket = new Socket("localhost", collector.getPort());
+		socket.getOutputStream().write(new byte[] { 0x01, 0x00, 0x00, 0x00,
+				0x00 });
+		final RemoteControlReader reader = new RemoteControlReader(
+				socket.getInputStream());
+		assertFalse(reader.read());
+		socket.close();
+
+		collector.stop();
+		collector = null;
+		assertEquals(1, exceptions.size());
+		assertTrue(exceptions.get(0) instanceof IOException);
+	}
+
+	private Collector createCollector() {
+		final Collector c = new Collector(new CoverageStore()) {
+			@Override
+			protected void logException(final Exception e) {
+				synchronized (exceptions) {
+					exceptions.add(e);
+				}
+			}
+		};
+		c.setAddress("localhost");
+		c.setPort(0);
+		return c;
+	}
+
+	/**
+	 * Sends the given data like an agent and waits for the confirmation.
+	 */
+	private void send(final SessionInfo info, final ExecutionData data)
+			throws IOException {
+		final Socket socket = new Socket("localhost", collector.getPort());
+		try {
+			final RemoteControlWriter writer = new RemoteControlWriter(
+					socket.getOutputStream());
+			writer.visitSessionInfo(info);
+			writer.visitClassExecution(data);
+			writer.sendCmdOk();
+			final RemoteControlReader reader = new RemoteControlReader(
+					socket.getInputStream());
+			assertTrue(reader.read());
+		} finally {
+			socket.close();
+		}
+	}
+
+	private ExecFileLoader dump(final boolean reset) throws IOException {
+		final ExecDumpClient client = new ExecDumpClient();
+		client.setReset(reset);
+		return client.dump("localhost", collector.getPort());
+	}
+
+	private static ExecFileLoader load(final File file) throws IOException {
+		final ExecFileLoader loader = new ExecFileLoader();
+		loader.load(file);
+		return loader;
+	}
+
+}
@@ -0,0 +1,153 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.collector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.IExecutionDataVisitor;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.data.SessionInfoStore;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link CoverageStore}.
+ */
+public class CoverageStoreTest {
+
+	private CoverageStore store;
+
+	@Before
+	public void setup() {
+		store = new CoverageStore();
+	}
+
+	@Test
+	public void testMergeExecutionData() {
+		store.visitClassExecution(new ExecutionData(1, "Foo", new boolean[] {
+				true, false, false }));
+		store.visitClassExecution(new ExecutionData(1, "Foo", new boolean[] {
+				false, false, true }));
+		store.visitClassExecution(new ExecutionData(2, "Bar",
+				new boolean[] { true }));
+
+		final ExecutionDataStore actual = new ExecutionDataStore();
+		store.accept(actual, new SessionInfoStore(), false);
+		assertEquals(2, store.getClassCount());
+		final boolean[] foo = actual.get(1).getProbes();
+		assertTrue(foo[0]);
+		assertFalse(foo[1]);
+		assertTrue(foo[2]);
+		assertTrue(actual.get(2).getProbes()[0]);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testIncompatibleExecutionData() {
+		store.visitClassExecution(new ExecutionData(1, "Foo", new boolean[2]));
+		store.visitClassExecution(new ExecutionData(1, "Foo", new boolean[3]));
+	}
+
+	@Test
+	public void testMergeSessionInfos() {
+		store.visitSessionInfo(new SessionInfo("a", 100, 200));
+		store.visitSessionInfo(new SessionInfo("a", 50, 150));
+		store.visitSessionInfo(new SessionInfo("b", 10, 20));
+
+		final SessionInfoStore actual = new SessionInfoStore();
+		store.accept(new ExecutionDataStore(), actual, false);
+		assertEquals(2, store.getSessionCount());
+		final List<SessionInfo> infos = actual.getInfos();
+		assertEquals("b", infos.get(0).getId());
+		assertEquals("a", infos.get(1).getId());
+		assertEquals(50, infos.get(1).getStartTimeStamp());
+		assertEquals(200, infos.get(1).getDumpTimeStamp());
+	}
+
+	@Test
+	public void testAcceptWithReset() {
+		store.visitSessionInfo(new SessionInfo("a", 1, 2));
+		store.visitClassExecution(new ExecutionData(1, "Foo",
+				new boolean[] { true }));
+
+		final List<Boolean> first = new ArrayList<Boolean>();
+		store.accept(new IExecutionDataVisitor() {
+			public void visitClassExecution(final ExecutionData data) {
+				first.add(Boolean.valueOf(data.getProbes()[0]));
+			}
+		}, new SessionInfoStore(), true);
+		assertEquals(Arrays.asList(Boolean.TRUE), first);
+
+		final ExecutionDataStore second = new ExecutionDataStore();
+		final SessionInfoStore sessions = new SessionInfoStore();
+		store.accept(second, sessions, false);
+		assertFalse(second.get(1).getProbes()[0]);
+		assertTrue(sessions.isEmpty());
+	}
+
+	@Test
+	public void testReset() {
+		store.visitSessionInfo(new SessionInfo("a", 1, 2));
+		store.visitClassExecution(new ExecutionData(1, "Foo",
+				new boolean[] { true }));
+		store.reset();
+
+		final ExecutionDataStore actual = new ExecutionDataStore();
+		store.accept(actual, new SessionInfoStore(), false);
+		assertFalse(actual.get(1).getProbes()[0]);
+		assertEquals(0, store.getSessionCount());
+	}
+
+	@Test
+	public void testConcurrentMerge() throws Exception {
+		final int threadCount = 8;
+		final int classCount = 500;
+		final List<Thread> threads = new ArrayList<Thread>();
+		for (int t = 0; t < threadCount; t++) {
+			final int probe = t;
+			threads.add(new Thread() {
+				@Override
+				public void run() {
+					for (int c = 0; c < classCount; c++) {
+						final boolean[] probes = new boolean[threadCount];
+						probes[probe] = true;
+						store.visitClassExecution(new ExecutionData(c, "C" + c,
+								probes));
+					}
+				}
+			});
+		}
+		for (final Thread t : threads) {
+			t.start();
+		}
+		for (final Thread t : threads) {
+			t.join();
+		}
+
+		final ExecutionDataStore actual = new ExecutionDataStore();
+		store.accept(actual, new SessionInfoStore(), false);
+		assertEquals(classCount, actual.getContents().size());
+		for (final ExecutionData data : actual.getContents()) {
+			for (final boolean p : data.getProbes()) {
+				assertTrue(p);
+			}
+		}
+	}
+
+}
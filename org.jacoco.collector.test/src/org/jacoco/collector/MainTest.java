@@ -0,0 +1,67 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.collector;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link Main}.
+ */
+public class MainTest {
+
+	@Test
+	public void testDefaults() throws Exception {
+		final Collector collector = Main.createCollector(new String[0]);
+		collector.setPort(0);
+		collector.start();
+		try {
+			assertEquals(true, collector.getPort() > 0);
+		} finally {
+			collector.stop();
+		}
+	}
+
+	@Test
+	public void testArguments() throws Exception {
+		final Collector collector = Main.createCollector(new String[] {
+				"--address", "localhost", "--port", "0", "--interval", "5" });
+		collector.start();
+		try {
+			assertEquals(true, collector.getPort() > 0);
+		} finally {
+			collector.stop();
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownArgument() {
+		Main.createCollector(new String[] { "--foo", "bar" });
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMissingValue() {
+		Main.createCollector(new String[] { "--port" });
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidNumber() {
+		Main.createCollector(new String[] { "--port", "abc" });
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeNumber() {
+		Main.createCollector(new String[] { "--interval", "-1" });
+	}
+
+}
@@ -0,0 +1,308 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.collector;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.jacoco.core.data.ExecutionDataReader;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.runtime.AgentOptions;
+
+/**
+ * TCP server which accepts any number of concurrent connections and merges
+ * all execution data received into a {@link CoverageStore}. Supported
+ * clients are agents with output mode <code>tcpclient</code> or
+ * <code>tcpbatchclient</code> and dump clients like
+ * {@link org.jacoco.core.tools.ExecDumpClient} which receive the merged
+ * content of the store. If a destination file is set the store is written to
+ * this file periodically and when the collector is stopped. An existing
+ * destination file is loaded on startup.
+ */
+public class Collector {
+
+	private final CoverageStore store;
+
+	private String address;
+
+	private int port;
+
+	private File destfile;
+
+	private long interval;
+
+	private ServerSocket serverSocket;
+
+	private Thread acceptor;
+
+	private ExecutorService connectionExecutor;
+
+	private ScheduledExecutorService checkpointExecutor;
+
+	private final Set<CollectorConnection> connections = new HashSet<CollectorConnection>();
+
+	/**
+	 * Creates a new collector for the given store which listens on
+	 * {@link AgentOptions#DEFAULT_PORT} of all local addresses.
+	 * 
+	 * @param store
+	 *            store to merge all received data into
+	 */
+	public Collector(final CoverageStore store) {
+		this.store = store;
+		this.address = null;
+		this.port = AgentOptions.DEFAULT_PORT;
+		this.destfile = null;
+		this.interval = 0;
+	}
+
+	/**
+	 * Sets the local address to listen on. <code>null</code> or
+	 * <code>*</code> binds all local addresses.
+	 * 
+	 * @param address
+	 *            local address or <code>null</code>
+	 */
+	public void setAddress(final String address) {
+		this.address = address;
+	}
+
+	/**
+	 * Sets the port to listen on. With port 0 a free port is chosen, see
+	 * {@link #getPort()}.
+	 * 
+	 * @param port
+	 *            local port
+	 */
+	public void setPort(final int port) {
+		this.port = port;
+	}
+
+	/**
+	 * Sets the exec file the store is written to.
+	 * 
+	 * @param destfile
+	 *            exec file or <code>null</code> for no checkpoints
+	 */
+	public void setDestfile(final File destfile) {
+		this.destfile = destfile;
+	}
+
+	/**
+	 * Sets the interval for periodic checkpoints.
+	 * 
+	 * @param interval
+	 *            interval in milliseconds or 0 to write the destination file
+	 *            only when the collector is stopped
+	 */
+	public void setInterval(final long interval) {
+		this.interval = interval;
+	}
+
+	/**
+	 * Returns the store of this collector.
+	 * 
+	 * @return store with all merged data
+	 */
+	public CoverageStore getStore() {
+		return store;
+	}
+
+	/**
+	 * Returns the port this collector listens on.
+	 * 
+	 * @return local port
+	 */
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	/**
+	 * Loads an existing destination file and starts accepting connections.
+	 * 
+	 * @throws IOException
+	 *             if the destination file can't be read or the server socket
+	 *             can't be opened
+	 */
+	public void start() throws IOException {
+		if (destfile != null && destfile.isFile()) {
+			load();
+		}
+		serverSocket = createServerSocket();
+		connectionExecutor = Executors.newCachedThreadPool();
+		acceptor = new Thread(new Runnable() {
+			public void run() {
+				accept();
+			}
+		});
+		acceptor.setName(getClass().getName());
+		acceptor.start();
+		if (destfile != null && interval > 0) {
+			checkpointExecutor = Executors.newSingleThreadScheduledExecutor();
+			checkpointExecutor.scheduleWithFixedDelay(new Runnable() {
+				public void run() {
+					try {
+						checkpoint();
+					} catch (final IOException e) {
+						logException(e);
+					}
+				}
+			}, interval, interval, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Closes the server socket and all open connections and writes the final
+	 * checkpoint.
+	 * 
+	 * @throws IOException
+	 *             if the destination file can't be written
+	 * @throws InterruptedException
+	 *             if the calling thread is interrupted while waiting for the
+	 *             collector threads
+	 */
+	public void stop() throws IOException, InterruptedException {
+		serverSocket.close();
+		acceptor.join();
+		if (checkpointExecutor != null) {
+			checkpointExecutor.shutdown();
+			checkpointExecutor.awaitTermination(Long.MAX_VALUE,
+					TimeUnit.MILLISECONDS);
+		}
+		synchronized (connections) {
+			for (final CollectorConnection c : connections) {
+				c.close();
+			}
+		}
+		connectionExecutor.shutdown();
+		connectionExecutor.awaitTermination(Long.MAX_VALUE,
+				TimeUnit.MILLISECONDS);
+		if (destfile != null) {
+			checkpoint();
+		}
+	}
+
+	/**
+	 * Writes the current content of the store to the destination file. The
+	 * file is replaced atomically if the file system supports this. Otherwise
+	 * the old file is deleted before the new file is moved to its place.
+	 * 
+	 * @throws IOException
+	 *             if the destination file can't be written
+	 */
+	public synchronized void checkpoint() throws IOException {
+		final File folder = destfile.getAbsoluteFile().getParentFile();
+		if (folder != null) {
+			folder.mkdirs();
+		}
+		final File tmp = File.createTempFile(destfile.getName(), ".tmp",
+				folder);
+		try {
+			final OutputStream out = new BufferedOutputStream(
+					new FileOutputStream(tmp));
+			try {
+				final ExecutionDataWriter writer = new ExecutionDataWriter(out);
+				store.accept(writer, writer, false);
+			} finally {
+				out.close();
+			}
+			// Some platforms like Windows can't rename onto an existing file
+			if (!tmp.renameTo(destfile)
+					&& !(destfile.delete() && tmp.renameTo(destfile))) {
+				throw new IOException(String.format(
+						"Unable to write checkpoint %s.", destfile));
+			}
+		} finally {
+			tmp.delete();
+		}
+	}
+
+	/**
+	 * Creates the server socket. Can be overwritten in tests.
+	 * 
+	 * @return server socket bound to the configured address and port
+	 * @throws IOException
+	 *             if the socket can't be opened
+	 */
+	protected ServerSocket createServerSocket() throws IOException {
+		final InetAddress inetAddr = address == null || "*".equals(address) ? null
+				: InetAddress.getByName(address);
+		// Many agents may connect at the same time, use the default backlog
+		return new ServerSocket(port, 0, inetAddr);
+	}
+
+	/**
+	 * Reports problems of individual connections or checkpoints. The default
+	 * implementation prints the stack trace to <code>System.err</code>.
+	 * 
+	 * @param e
+	 *            exception to report
+	 */
+	protected void logException(final Exception e) {
+		e.printStackTrace();
+	}
+
+	void closed(final CollectorConnection connection) {
+		synchronized (connections) {
+			connections.remove(connection);
+		}
+	}
+
+	private void load() throws IOException {
+		final InputStream in = new BufferedInputStream(new FileInputStream(
+				destfile));
+		try {
+			final ExecutionDataReader reader = new ExecutionDataReader(in);
+			reader.setSessionInfoVisitor(store);
+			reader.setExecutionDataVisitor(store);
+			reader.read();
+		} finally {
+			in.close();
+		}
+	}
+
+	private void accept() {
+		while (true) {
+			final Socket socket;
+			try {
+				socket = serverSocket.accept();
+			} catch (final IOException e) {
+				if (!serverSocket.isClosed()) {
+					logException(e);
+				}
+				return;
+			}
+			final CollectorConnection connection = new CollectorConnection(
+					socket, store, this);
+			synchronized (connections) {
+				connections.add(connection);
+			}
+			connectionExecutor.execute(connection);
+		}
+	}
+
+}
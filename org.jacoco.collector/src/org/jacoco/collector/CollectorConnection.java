@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.collector;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.net.SocketException;
+
+import org.jacoco.core.runtime.DumpFilter;
+import org.jacoco.core.runtime.IRemoteCommandVisitor;
+import org.jacoco.core.runtime.RemoteControlReader;
+import org.jacoco.core.runtime.RemoteControlWriter;
+
+/**
+ * Handler for a single connection to the collector. All execution data
+ * received is merged into the store. Every <code>OK</code> command is
+ * confirmed with an <code>OK</code> command, dump commands are answered with
+ * the merged content of the store.
+ */
+class CollectorConnection implements Runnable, IRemoteCommandVisitor {
+
+	private final Socket socket;
+
+	private final CoverageStore store;
+
+	private final Collector collector;
+
+	private RemoteControlWriter writer;
+
+	/**
+	 * Creates a new handler for the given socket.
+	 * 
+	 * @param socket
+	 *            socket of the remote connection
+	 * @param store
+	 *            store to merge received data into
+	 * @param collector
+	 *            collector owning this connection
+	 */
+	CollectorConnection(final Socket socket, final CoverageStore store,
+			final Collector collector) {
+		this.socket = socket;
+		this.store = store;
+		this.collector = collector;
+	}
+
+	public void run() {
+		try {
+			writer = new RemoteControlWriter(socket.getOutputStream());
+			final RemoteControlReader reader = new RemoteControlReader(
+					socket.getInputStream());
+			reader.setSessionInfoVisitor(store);
+			reader.setExecutionDataVisitor(store);
+			reader.setRemoteCommandVisitor(this);
+			while (reader.read()) {
+				writer.sendCmdOk();
+			}
+		} catch (final SocketException e) {
+			// Agents simply disconnect when their VM terminates
+		} catch (final IOException e) {
+			collector.logException(e);
+		} catch (final RuntimeException e) {
+			// e.g. incompatible execution data for the same class id
+			collector.logException(e);
+		} finally {
+			close();
+			collector.closed(this);
+		}
+	}
+
+	/**
+	 * Closes the underlying socket if not closed yet.
+	 */
+	void close() {
+		try {
+			socket.close();
+		} catch (final IOException e) {
+			// nothing to do
+		}
+	}
+
+	// === IRemoteCommandVisitor ===
+
+	public void visitDumpCommand(final boolean dump, final boolean reset)
+			throws IOException {
+		if (dump) {
+			store.accept(writer, writer, reset);
+		} else if (reset) {
+			store.reset();
+		}
+		writer.sendCmdOk();
+	}
+
+	public void visitFilteredDumpCommand(final boolean reset,
+			final String includes, final String excludes,
+			final boolean classHits) throws IOException {
+		store.accept(new DumpFilter(includes, excludes, classHits, writer),
+				writer, reset);
+		writer.sendCmdOk();
+	}
+
+}
@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.collector;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.jacoco.core.data.ConcurrentExecutionDataStore;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.IExecutionDataVisitor;
+import org.jacoco.core.data.ISessionInfoVisitor;
+import org.jacoco.core.data.SessionInfo;
+
+/**
+ * Thread-safe in-memory store which merges execution data received from many
+ * agents. Execution data is merged by class id into a
+ * {@link ConcurrentExecutionDataStore} without locking, session infos with
+ * the same id are combined into a single session covering the earliest start
+ * and the latest dump time stamp.
+ */
+public class CoverageStore implements ISessionInfoVisitor,
+		IExecutionDataVisitor {
+
+	private final ConcurrentExecutionDataStore executionData = new ConcurrentExecutionDataStore();
+
+	private final Map<String, SessionInfo> sessionInfos = new HashMap<String, SessionInfo>();
+
+	/**
+	 * Merges are shared, a dump with reset is exclusive so that no probes
+	 * merged in between are lost.
+	 */
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/**
+	 * Writes the current content of the store to the given visitors. Session
+	 * infos are written first.
+	 * 
+	 * @param executionDataVisitor
+	 *            visitor for execution data
+	 * @param sessionInfoVisitor
+	 *            visitor for session infos
+	 * @param reset
+	 *            if <code>true</code> the store is cleared afterwards
+	 */
+	public void accept(final IExecutionDataVisitor executionDataVisitor,
+			final ISessionInfoVisitor sessionInfoVisitor, final boolean reset) {
+		if (reset) {
+			lock.writeLock().lock();
+			try {
+				write(executionDataVisitor, sessionInfoVisitor);
+				clear();
+			} finally {
+				lock.writeLock().unlock();
+			}
+		} else {
+			write(executionDataVisitor, sessionInfoVisitor);
+		}
+	}
+
+	/**
+	 * Clears the store: All session infos are removed and all probes are
+	 * marked as not executed.
+	 */
+	public void reset() {
+		lock.writeLock().lock();
+		try {
+			clear();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of classes contained in the store.
+	 * 
+	 * @return number of classes
+	 */
+	public int getClassCount() {
+		return executionData.size();
+	}
+
+	/**
+	 * Returns the number of distinct sessions contained in the store.
+	 * 
+	 * @return number of sessions
+	 */
+	public int getSessionCount() {
+		synchronized (sessionInfos) {
+			return sessionInfos.size();
+		}
+	}
+
+	private void write(final IExecutionDataVisitor executionDataVisitor,
+			final ISessionInfoVisitor sessionInfoVisitor) {
+		final List<SessionInfo> infos;
+		synchronized (sessionInfos) {
+			infos = new ArrayList<SessionInfo>(sessionInfos.values());
+		}
+		Collections.sort(infos);
+		for (final SessionInfo info : infos) {
+			sessionInfoVisitor.visitSessionInfo(info);
+		}
+		executionData.accept(executionDataVisitor);
+	}
+
+	private void clear() {
+		synchronized (sessionInfos) {
+			sessionInfos.clear();
+		}
+		executionData.reset();
+	}
+
+	// === ISessionInfoVisitor ===
+
+	public void visitSessionInfo(final SessionInfo info) {
+		final String id = info.getId();
+		lock.readLock().lock();
+		try {
+			synchronized (sessionInfos) {
+				final SessionInfo existing = sessionInfos.get(id);
+				if (existing == null) {
+					sessionInfos.put(id, info);
+				} else {
+					sessionInfos.put(id, new SessionInfo(id, Math.min(
+							existing.getStartTimeStamp(),
+							info.getStartTimeStamp()), Math.max(
+							existing.getDumpTimeStamp(),
+							info.getDumpTimeStamp())));
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	// === IExecutionDataVisitor ===
+
+	public void visitClassExecution(final ExecutionData data) {
+		lock.readLock().lock();
+		try {
+			executionData.get(data.getId(), data.getName(),
+					data.getProbeCount()).merge(data);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+}
@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.collector;
+
+import java.io.File;
+import java.io.PrintStream;
+
+/**
+ * Command line entry point of the collector. Supported arguments:
+ * 
+ * <pre>
+ * [--address &lt;address&gt;] [--port &lt;port&gt;] [--destfile &lt;path&gt;] [--interval &lt;seconds&gt;]
+ * </pre>
+ * 
+ * The collector runs until the VM is terminated, the final checkpoint is
+ * written by a shutdown hook.
+ */
+public final class Main {
+
+	private Main() {
+	}
+
+	/**
+	 * Starts a collector with the given arguments.
+	 * 
+	 * @param args
+	 *            command line arguments
+	 * @throws Exception
+	 *             if the collector can't be started
+	 */
+	public static void main(final String[] args) throws Exception {
+		final Collector collector;
+		try {
+			collector = createCollector(args);
+		} catch (final IllegalArgumentException e) {
+			printUsage(System.err, e.getMessage());
+			System.exit(1);
+			return;
+		}
+		collector.start();
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			@Override
+			public void run() {
+				try {
+					collector.stop();
+				} catch (final Exception e) {
+					e.printStackTrace();
+				}
+			}
+		});
+		System.out.printf("Collecting execution data on port %s.%n",
+				Integer.valueOf(collector.getPort()));
+	}
+
+	static Collector createCollector(final String[] args)
+			throws IllegalArgumentException {
+		final Collector collector = new Collector(new CoverageStore());
+		for (int i = 0; i < args.length; i++) {
+			final String arg = args[i];
+			if (i + 1 == args.length) {
+				throw new IllegalArgumentException("Missing value for " + arg);
+			}
+			final String value = args[++i];
+			if ("--address".equals(arg)) {
+				collector.setAddress(value);
+			} else if ("--port".equals(arg)) {
+				collector.setPort(parseNumber(arg, value));
+			} else if ("--destfile".equals(arg)) {
+				collector.setDestfile(new File(value));
+			} else if ("--interval".equals(arg)) {
+				collector.setInterval(parseNumber(arg, value) * 1000L);
+			} else {
+				throw new IllegalArgumentException("Unknown argument " + arg);
+			}
+		}
+		return collector;
+	}
+
+	private static int parseNumber(final String arg, final String value) {
+		final int number;
+		try {
+			number = Integer.parseInt(value);
+		} catch (final NumberFormatException e) {
+			throw new IllegalArgumentException(String.format(
+					"Invalid value %s for %s", value, arg));
+		}
+		if (number < 0) {
+			throw new IllegalArgumentException(String.format(
+					"Invalid value %s for %s", value, arg));
+		}
+		return number;
+	}
+
+	private static void printUsage(final PrintStream out, final String message) {
+		out.println(message);
+		out.println("Usage: java -jar jacococollector.jar [--address <address>]"
+				+ " [--port <port>] [--destfile <path>] [--interval <seconds>]");
+	}
+
+}
@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.core.benchmark;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jacoco.core.analysis.Analyzer;
+import org.jacoco.core.analysis.IClassCoverage;
+import org.jacoco.core.analysis.ICoverageVisitor;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Time to analyze all classes of a target with
+ * {@link Analyzer#analyzeClass(byte[], String)} for execution data with the
+ * given percentage of executed probes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+@Fork(2)
+public class AnalyzerBenchmark {
+
+	@Param({ Targets.ASM, Targets.CORE })
+	public String target;
+
+	@Param({ "0", "50", "100" })
+	public int coverage;
+
+	private List<byte[]> classes;
+
+	private ExecutionDataStore executionData;
+
+	@Setup
+	public void setup() throws IOException {
+		classes = Targets.load(target);
+		executionData = Targets.createExecutionData(classes, coverage, 1);
+	}
+
+	@Benchmark
+	public void analyze(final Blackhole blackhole) throws IOException {
+		final Analyzer analyzer = new Analyzer(executionData,
+				new ICoverageVisitor() {
+					public void visitCoverage(final IClassCoverage coverage) {
+						blackhole.consume(coverage);
+					}
+				});
+		for (final byte[] c : classes) {
+			analyzer.analyzeClass(c, "benchmark");
+		}
+	}
+
+}
@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.core.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.jacoco.core.data.ExecutionDataReader;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.data.SessionInfoStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to write and read the execution data of all classes of a target with
+ * {@link ExecutionDataWriter} and {@link ExecutionDataReader}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+@Fork(2)
+public class ExecutionDataIOBenchmark {
+
+	@Param({ Targets.ASM, Targets.CORE })
+	public String target;
+
+	@Param({ "10", "50", "100" })
+	public int coverage;
+
+	private ExecutionDataStore executionData;
+
+	private byte[] file;
+
+	@Setup
+	public void setup() throws IOException {
+		executionData = Targets.createExecutionData(Targets.load(target),
+				coverage, 1);
+		file = write().toByteArray();
+	}
+
+	@Benchmark
+	public ByteArrayOutputStream write() throws IOException {
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		final ExecutionDataWriter writer = new ExecutionDataWriter(buffer);
+		writer.visitSessionInfo(new SessionInfo("benchmark", 1, 2));
+		executionData.accept(writer);
+		return buffer;
+	}
+
+	@Benchmark
+	public ExecutionDataStore read() throws IOException {
+		return read(file);
+	}
+
+	@Benchmark
+	public ExecutionDataStore roundTrip() throws IOException {
+		return read(write().toByteArray());
+	}
+
+	private static ExecutionDataStore read(final byte[] file)
+			throws IOException {
+		final ExecutionDataReader reader = new ExecutionDataReader(
+				new ByteArrayInputStream(file));
+		final ExecutionDataStore store = new ExecutionDataStore();
+		reader.setSessionInfoVisitor(new SessionInfoStore());
+		reader.setExecutionDataVisitor(store);
+		reader.read();
+		return store;
+	}
+
+}
@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.core.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to add the execution data of all classes of a target to an
+ * {@link ExecutionDataStore}: Either to an empty store (<code>put</code>) or
+ * to a store which already contains data for all classes (<code>merge</code>).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+@Fork(2)
+public class ExecutionDataStoreBenchmark {
+
+	@Param({ Targets.ASM, Targets.CORE })
+	public String target;
+
+	private List<ExecutionData> data;
+
+	private ExecutionDataStore store;
+
+	@Setup
+	public void setup() throws IOException {
+		final List<byte[]> classes = Targets.load(target);
+		data = new ArrayList<ExecutionData>(Targets.createExecutionData(
+				classes, 50, 1).getContents());
+		store = Targets.createExecutionData(classes, 50, 2);
+	}
+
+	@Benchmark
+	public ExecutionDataStore put() {
+		final ExecutionDataStore target = new ExecutionDataStore();
+		for (final ExecutionData d : data) {
+			target.put(d);
+		}
+		return target;
+	}
+
+	@Benchmark
+	public ExecutionDataStore merge() {
+		// The first invocation modifies the stored data, the work
+		// performed by subsequent invocations is still the same.
+		for (final ExecutionData d : data) {
+			store.put(d);
+		}
+		return store;
+	}
+
+}
@@ -0,0 +1,70 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.core.benchmark;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jacoco.core.instr.Instrumenter;
+import org.jacoco.core.runtime.OfflineInstrumentationAccessGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Time to instrument all classes of a target with
+ * {@link Instrumenter#instrument(byte[], String)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+@Fork(2)
+public class InstrumenterBenchmark {
+
+	@Param({ Targets.ASM, Targets.CORE })
+	public String target;
+
+	@Param({ "1", "8" })
+	public int probeStripes;
+
+	private List<byte[]> classes;
+
+	private Instrumenter instrumenter;
+
+	@Setup
+	public void setup() throws IOException {
+		classes = Targets.load(target);
+		instrumenter = new Instrumenter(
+				new OfflineInstrumentationAccessGenerator());
+		instrumenter.setProbeStripes(probeStripes);
+	}
+
+	@Benchmark
+	public void instrument(final Blackhole blackhole) throws IOException {
+		for (final byte[] c : classes) {
+			blackhole.consume(instrumenter.instrument(c, "benchmark"));
+		}
+	}
+
+}
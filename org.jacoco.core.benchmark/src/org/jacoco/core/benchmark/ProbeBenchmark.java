@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.core.benchmark;
+
+import java.io.InputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.jacoco.core.instr.Instrumenter;
+import org.jacoco.core.runtime.IRuntime;
+import org.jacoco.core.runtime.LoggerRuntime;
+import org.jacoco.core.runtime.RuntimeData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Overhead of executed probes: Executes {@link ProbeTarget} in its original
+ * version (<code>none</code>) and instrumented with the probe array strategy
+ * for regular classes (<code>field</code>) or with striped probe arrays
+ * (<code>striped</code>), both from a single thread and from multiple threads
+ * concurrently.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+@Fork(2)
+public class ProbeBenchmark {
+
+	@Param({ "none", "field", "striped" })
+	public String strategy;
+
+	private IRuntime runtime;
+
+	private Callable<Integer> target;
+
+	@Setup
+	@SuppressWarnings("unchecked")
+	public void setup() throws Exception {
+		runtime = new LoggerRuntime();
+		runtime.startup(new RuntimeData());
+		final String name = ProbeTarget.class.getName();
+		final InputStream in = ProbeTarget.class
+				.getResourceAsStream("ProbeTarget.class");
+		byte[] bytes;
+		try {
+			bytes = Targets.readFully(in);
+		} finally {
+			in.close();
+		}
+		if (!"none".equals(strategy)) {
+			final Instrumenter instrumenter = new Instrumenter(runtime);
+			if ("striped".equals(strategy)) {
+				instrumenter.setProbeStripes(8);
+			}
+			bytes = instrumenter.instrument(bytes, name);
+		}
+		target = (Callable<Integer>) new TargetLoader().add(name, bytes)
+				.newInstance();
+	}
+
+	@TearDown
+	public void teardown() {
+		runtime.shutdown();
+	}
+
+	@Benchmark
+	@Threads(1)
+	public Integer execute() throws Exception {
+		return target.call();
+	}
+
+	@Benchmark
+	@Threads(4)
+	public Integer executeConcurrent() throws Exception {
+		return target.call();
+	}
+
+}
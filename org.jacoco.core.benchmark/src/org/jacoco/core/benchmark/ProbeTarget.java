@@ -0,0 +1,43 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.core.benchmark;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Workload for {@link ProbeBenchmark} with loops, branches and short method
+ * calls, i.e. with a high density of probes.
+ */
+public class ProbeTarget implements Callable<Integer> {
+
+	public Integer call() {
+		int sum = 0;
+		for (int i = 1; i < 200; i++) {
+			sum += collatz(i);
+		}
+		return Integer.valueOf(sum);
+	}
+
+	private static int collatz(long n) {
+		int steps = 0;
+		while (n != 1) {
+			n = isEven(n) ? n / 2 : 3 * n + 1;
+			steps++;
+		}
+		return steps;
+	}
+
+	private static boolean isEven(final long n) {
+		return (n & 1) == 0;
+	}
+
+}
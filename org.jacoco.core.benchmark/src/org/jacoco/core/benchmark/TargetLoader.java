@@ -0,0 +1,40 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.core.benchmark;
+
+/**
+ * Class loader which defines classes from given class file contents. All
+ * other classes are loaded from the parent loader.
+ */
+public class TargetLoader extends ClassLoader {
+
+	/**
+	 * Creates a new loader which delegates to the loader of this class.
+	 */
+	public TargetLoader() {
+		super(TargetLoader.class.getClassLoader());
+	}
+
+	/**
+	 * Defines a class from the given class file contents.
+	 * 
+	 * @param name
+	 *            Java name of the class
+	 * @param bytes
+	 *            class file contents
+	 * @return new class
+	 */
+	public Class<?> add(final String name, final byte[] bytes) {
+		return defineClass(name, bytes, 0, bytes.length);
+	}
+
+}
@@ -0,0 +1,207 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.core.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.instr.Instrumenter;
+import org.jacoco.core.runtime.IExecutionDataAccessorGenerator;
+import org.jacoco.core.runtime.OfflineInstrumentationAccessGenerator;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.MethodVisitor;
+
+/**
+ * Class files used as input for the benchmarks. A target is either the name
+ * of a library which is available on the benchmark class path (
+ * <code>asm</code> or <code>core</code>) or the path to a JAR file or a
+ * directory containing class files.
+ */
+public final class Targets {
+
+	/** Name of the ASM library target */
+	public static final String ASM = "asm";
+
+	/** Name of the JaCoCo core library target */
+	public static final String CORE = "core";
+
+	private Targets() {
+	}
+
+	/**
+	 * Loads all class files of the given target.
+	 * 
+	 * @param target
+	 *            library name or path to a JAR file or directory
+	 * @return contents of all class files
+	 * @throws IOException
+	 *             if the class files can't be read
+	 */
+	public static List<byte[]> load(final String target) throws IOException {
+		if (ASM.equals(target)) {
+			return load(getLocation(ClassReader.class), "org/objectweb/asm/",
+					null);
+		}
+		if (CORE.equals(target)) {
+			return load(getLocation(Instrumenter.class), "org/jacoco/core/",
+					"org/jacoco/core/benchmark/");
+		}
+		return load(new File(target), "", null);
+	}
+
+	private static File getLocation(final Class<?> type) throws IOException {
+		try {
+			return new File(type.getProtectionDomain().getCodeSource()
+					.getLocation().toURI());
+		} catch (final URISyntaxException e) {
+			throw new IOException(e);
+		}
+	}
+
+	private static List<byte[]> load(final File file, final String prefix,
+			final String exclude) throws IOException {
+		final List<byte[]> classes = new ArrayList<byte[]>();
+		if (file.isDirectory()) {
+			loadDirectory(file, "", prefix, exclude, classes);
+		} else {
+			loadArchive(file, prefix, exclude, classes);
+		}
+		if (classes.isEmpty()) {
+			throw new IOException(String.format("No class files found in %s.",
+					file));
+		}
+		return classes;
+	}
+
+	private static void loadDirectory(final File dir, final String path,
+			final String prefix, final String exclude,
+			final List<byte[]> classes) throws IOException {
+		for (final File file : dir.listFiles()) {
+			final String name = path + file.getName();
+			if (file.isDirectory()) {
+				loadDirectory(file, name + "/", prefix, exclude, classes);
+			} else if (matches(name, prefix, exclude)) {
+				final InputStream in = new FileInputStream(file);
+				try {
+					classes.add(readFully(in));
+				} finally {
+					in.close();
+				}
+			}
+		}
+	}
+
+	private static void loadArchive(final File file, final String prefix,
+			final String exclude, final List<byte[]> classes)
+			throws IOException {
+		final ZipInputStream in = new ZipInputStream(new FileInputStream(file));
+		try {
+			ZipEntry entry;
+			while ((entry = in.getNextEntry()) != null) {
+				if (matches(entry.getName(), prefix, exclude)) {
+					classes.add(readFully(in));
+				}
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	private static boolean matches(final String name, final String prefix,
+			final String exclude) {
+		return name.endsWith(".class") && name.startsWith(prefix)
+				&& (exclude == null || !name.startsWith(exclude));
+	}
+
+	static byte[] readFully(final InputStream in) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[4096];
+		int len;
+		while ((len = in.read(buffer)) != -1) {
+			out.write(buffer, 0, len);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Creates execution data for the given classes. The probe arrays have the
+	 * actual size for the respective class and are filled randomly with the
+	 * given ratio of executed probes.
+	 * 
+	 * @param classes
+	 *            class files to create execution data for
+	 * @param coverage
+	 *            percentage of executed probes
+	 * @param seed
+	 *            seed for the random distribution of executed probes
+	 * @return execution data for all classes with probes
+	 * @throws IOException
+	 *             if a class can't be instrumented
+	 */
+	public static ExecutionDataStore createExecutionData(
+			final List<byte[]> classes, final int coverage, final long seed)
+			throws IOException {
+		final ProbeCountRecorder recorder = new ProbeCountRecorder();
+		final Instrumenter instrumenter = new Instrumenter(recorder);
+		for (final byte[] c : classes) {
+			instrumenter.instrument(c, "benchmark");
+		}
+		final Random random = new Random(seed);
+		final ExecutionDataStore store = new ExecutionDataStore();
+		for (final Map.Entry<Long, ExecutionData> entry : recorder.data
+				.entrySet()) {
+			final ExecutionData data = entry.getValue();
+			final boolean[] probes = new boolean[data.getProbes().length];
+			for (int i = 0; i < probes.length; i++) {
+				probes[i] = random.nextInt(100) < coverage;
+			}
+			store.put(new ExecutionData(data.getId(), data.getName(), probes));
+		}
+		return store;
+	}
+
+	/**
+	 * Accessor generator which records the probe count of every instrumented
+	 * class.
+	 */
+	private static class ProbeCountRecorder implements
+			IExecutionDataAccessorGenerator {
+
+		private final IExecutionDataAccessorGenerator delegate = new OfflineInstrumentationAccessGenerator();
+
+		private final Map<Long, ExecutionData> data = new HashMap<Long, ExecutionData>();
+
+		public int generateDataAccessor(final long classid,
+				final String classname, final int probecount,
+				final MethodVisitor mv) {
+			data.put(Long.valueOf(classid), new ExecutionData(classid,
+					classname, probecount));
+			return delegate.generateDataAccessor(classid, classname,
+					probecount, mv);
+		}
+
+	}
+
+}
@@ -0,0 +1,239 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.core.analysis;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.internal.data.CRC64;
+import org.jacoco.core.test.TargetLoader;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link AnalysisCache}.
+ */
+public class AnalysisCacheTest {
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private static final Class<?>[] CLASSES = new Class<?>[] { Analyzer.class,
+			AnalysisCache.class, CoverageBuilder.class, CounterComparator.class,
+			AnalysisCacheTest.class };
+
+	private File file;
+
+	private ExecutionDataStore executionData;
+
+	@Before
+	public void setup() throws IOException {
+		file = new File(folder.getRoot(), "analysis.cache");
+		executionData = new ExecutionDataStore();
+		for (final Class<?> c : CLASSES) {
+			final byte[] bytes = TargetLoader.getClassDataAsBytes(c);
+			final boolean[] probes = new boolean[1000];
+			for (int i = 0; i < probes.length; i++) {
+				probes[i] = (i * 7 + c.getName().length()) % 3 == 0;
+			}
+			executionData.put(new ExecutionData(CRC64.checksum(bytes), c
+					.getName().replace('.', '/'), probes));
+		}
+	}
+
+	@Test
+	public void testSameCoverage() throws IOException {
+		final List<IClassCoverage> expected = analyze(null);
+
+		final AnalysisCache cache = new AnalysisCache(file);
+		assertCoverage(expected, analyze(cache));
+		assertEquals(0, cache.getHitCount());
+		assertEquals(CLASSES.length, cache.getMissCount());
+		assertCoverage(expected, analyze(cache));
+		assertEquals(CLASSES.length, cache.getHitCount());
+		cache.save();
+
+		final AnalysisCache loaded = new AnalysisCache(file);
+		assertCoverage(expected, analyze(loaded));
+		assertEquals(CLASSES.length, loaded.getHitCount());
+		assertEquals(0, loaded.getMissCount());
+	}
+
+	@Test
+	public void testNoExecutionData() throws IOException {
+		executionData = new ExecutionDataStore();
+		final List<IClassCoverage> expected = analyze(null);
+		final AnalysisCache cache = new AnalysisCache(file);
+		analyze(cache);
+		assertCoverage(expected, analyze(cache));
+	}
+
+	@Test
+	public void testNoMatch() throws IOException {
+		final AnalysisCache cache = new AnalysisCache(file);
+		analyze(cache);
+		final ExecutionDataStore other = new ExecutionDataStore();
+		other.put(new ExecutionData(42, "org/jacoco/core/analysis/Analyzer",
+				new boolean[] { true }));
+		executionData = other;
+		final List<IClassCoverage> result = analyze(cache);
+		assertEquals(CLASSES.length, cache.getHitCount());
+		assertTrue(result.get(0).isNoMatch());
+		assertFalse(result.get(1).isNoMatch());
+	}
+
+	@Test
+	public void testSaveDropsUnusedEntries() throws IOException {
+		final AnalysisCache cache = new AnalysisCache(file);
+		analyze(cache);
+		cache.save();
+
+		final AnalysisCache second = new AnalysisCache(file);
+		final Analyzer analyzer = new Analyzer(executionData,
+				new CoverageBuilder());
+		analyzer.setCache(second);
+		analyzer.analyzeClass(TargetLoader.getClassDataAsBytes(Analyzer.class),
+				"Test");
+		assertEquals(1, second.getHitCount());
+		second.save();
+
+		final AnalysisCache third = new AnalysisCache(file);
+		analyze(third);
+		assertEquals(1, third.getHitCount());
+		assertEquals(CLASSES.length - 1, third.getMissCount());
+	}
+
+	@Test
+	public void testCorruptFile() throws IOException {
+		final FileWriter writer = new FileWriter(file);
+		writer.write("Invalid Content");
+		writer.close();
+
+		final AnalysisCache cache = new AnalysisCache(file);
+		assertCoverage(analyze(null), analyze(cache));
+		assertEquals(CLASSES.length, cache.getMissCount());
+		cache.save();
+
+		assertCoverage(analyze(null), analyze(new AnalysisCache(file)));
+	}
+
+	@Test
+	public void testParallelAnalyzer() throws IOException {
+		final File bin = folder.newFolder("bin");
+		for (final Class<?> c : CLASSES) {
+			final File f = new File(bin, c.getSimpleName() + ".class");
+			final OutputStream out = new FileOutputStream(f);
+			out.write(TargetLoader.getClassDataAsBytes(c));
+			out.close();
+		}
+		final AnalysisCache cache = new AnalysisCache(file);
+		final List<IClassCoverage> expected = new ArrayList<IClassCoverage>();
+		final ParallelAnalyzer cold = new ParallelAnalyzer(executionData,
+				new Collector(expected), 3);
+		cold.setCache(cache);
+		cold.analyzeAll(bin);
+		assertEquals(CLASSES.length, cache.getMissCount());
+
+		final List<IClassCoverage> actual = new ArrayList<IClassCoverage>();
+		final ParallelAnalyzer warm = new ParallelAnalyzer(executionData,
+				new Collector(actual), 3);
+		warm.setCache(cache);
+		warm.analyzeAll(bin);
+		assertEquals(CLASSES.length, cache.getHitCount());
+		assertCoverage(expected, actual);
+	}
+
+	private List<IClassCoverage> analyze(final AnalysisCache cache)
+			throws IOException {
+		final List<IClassCoverage> result = new ArrayList<IClassCoverage>();
+		final Analyzer analyzer = new Analyzer(executionData, new Collector(
+				result));
+		analyzer.setCache(cache);
+		for (final Class<?> c : CLASSES) {
+			analyzer.analyzeClass(TargetLoader.getClassDataAsBytes(c), "Test");
+		}
+		return result;
+	}
+
+	private static void assertCoverage(final List<IClassCoverage> expected,
+			final List<IClassCoverage> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			final IClassCoverage e = expected.get(i);
+			final IClassCoverage a = actual.get(i);
+			assertEquals(e.getName(), a.getName());
+			assertEquals(e.getId(), a.getId());
+			assertEquals(e.isNoMatch(), a.isNoMatch());
+			assertEquals(e.getSignature(), a.getSignature());
+			assertEquals(e.getSuperName(), a.getSuperName());
+			assertArrayEquals(e.getInterfaceNames(), a.getInterfaceNames());
+			assertEquals(e.getSourceFileName(), a.getSourceFileName());
+			assertNode(e, a);
+			assertEquals(e.getMethods().size(), a.getMethods().size());
+			final Iterator<IMethodCoverage> ei = e.getMethods().iterator();
+			final Iterator<IMethodCoverage> ai = a.getMethods().iterator();
+			while (ei.hasNext()) {
+				final IMethodCoverage em = ei.next();
+				final IMethodCoverage am = ai.next();
+				assertEquals(em.getName(), am.getName());
+				assertEquals(em.getDesc(), am.getDesc());
+				assertEquals(em.getSignature(), am.getSignature());
+				assertNode(em, am);
+			}
+		}
+	}
+
+	private static void assertNode(final ISourceNode e, final ISourceNode a) {
+		for (final ICoverageNode.CounterEntity entity : ICoverageNode.CounterEntity
+				.values()) {
+			assertEquals(e.getCounter(entity), a.getCounter(entity));
+		}
+		assertEquals(e.getFirstLine(), a.getFirstLine());
+		assertEquals(e.getLastLine(), a.getLastLine());
+		for (int line = e.getFirstLine(); line <= e.getLastLine(); line++) {
+			assertEquals(e.getLine(line).getInstructionCounter(),
+					a.getLine(line).getInstructionCounter());
+			assertEquals(e.getLine(line).getBranchCounter(), a.getLine(line)
+					.getBranchCounter());
+		}
+	}
+
+	private static class Collector implements ICoverageVisitor {
+
+		private final List<IClassCoverage> result;
+
+		Collector(final List<IClassCoverage> result) {
+			this.result = result;
+		}
+
+		public void visitCoverage(final IClassCoverage coverage) {
+			result.add(coverage);
+		}
+
+	}
+
+}
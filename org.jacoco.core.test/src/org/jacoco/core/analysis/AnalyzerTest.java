@@ -24,10 +24,12 @@ import java.io.FileOutputStream;
 import java.io.InputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.jar.JarInputStream;
 import java.util.jar.Pack200;
@@ -35,13 +37,19 @@ import java.util.zip.GZIPOutputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
+import org.jacoco.core.data.ExecutionData;
 import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.IExecutionDataProvider;
+import org.jacoco.core.instr.Instrumenter;
 import org.jacoco.core.internal.data.CRC64;
+import org.jacoco.core.runtime.IExecutionDataAccessorGenerator;
 import org.jacoco.core.test.TargetLoader;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
 
 /**
  * Unit tests for {@link Analyzer}.
@@ -100,6 +108,28 @@ public class AnalyzerTest {
 				.isNoMatch());
 	}
 
+	@Test
+	public void testAnalyzeClassWithProvider() throws IOException {
+		final byte[] bytes = TargetLoader
+				.getClassDataAsBytes(AnalyzerTest.class);
+		final long id = CRC64.checksum(bytes);
+		final List<Long> requested = new ArrayList<Long>();
+		analyzer = new Analyzer(new IExecutionDataProvider() {
+			public ExecutionData get(long classid) {
+				requested.add(Long.valueOf(classid));
+				return null;
+			}
+
+			public boolean contains(String name) {
+				return true;
+			}
+		}, new EmptyStructureVisitor());
+		analyzer.analyzeClass(bytes, "Test");
+		assertEquals(Collections.singletonList(Long.valueOf(id)), requested);
+		assertTrue(classes.get("org/jacoco/core/analysis/AnalyzerTest")
+				.isNoMatch());
+	}
+
 	@Test
 	public void testAnalyzeClassNoIdMatch() throws IOException {
 		executionData.get(Long.valueOf(0),
@@ -110,6 +140,67 @@ public class AnalyzerTest {
 				.isNoMatch());
 	}
 
+	public static class LoopTarget {
+
+		public static int sum(final int[] values) {
+			int sum = 0;
+			for (final int v : values) {
+				sum += v;
+			}
+			return sum;
+		}
+
+	}
+
+	@Test
+	public void testAnalyzeClassWithProbeElision() throws IOException {
+		assertLoopTargetWithProbeElision();
+	}
+
+	@Test
+	public void testAnalyzeClassWithDeclaredProbeElision() throws IOException {
+		analyzer.setProbeElision(true);
+		assertLoopTargetWithProbeElision();
+	}
+
+	private void assertLoopTargetWithProbeElision() throws IOException {
+		final byte[] bytes = TargetLoader
+				.getClassDataAsBytes(LoopTarget.class);
+		final int full = getProbeCount(bytes, false);
+		final int elided = getProbeCount(bytes, true);
+		assertTrue(elided < full);
+
+		final boolean[] probes = executionData.get(
+				Long.valueOf(CRC64.checksum(bytes)),
+				"org/jacoco/core/analysis/AnalyzerTest$LoopTarget", elided)
+				.getProbes();
+		Arrays.fill(probes, true);
+		analyzer.analyzeClass(bytes, "Test");
+		final IClassCoverage coverage = classes
+				.get("org/jacoco/core/analysis/AnalyzerTest$LoopTarget");
+		assertFalse(coverage.isNoMatch());
+		assertEquals(0, coverage.getInstructionCounter().getMissedCount());
+		assertEquals(0, coverage.getBranchCounter().getMissedCount());
+	}
+
+	private static int getProbeCount(final byte[] bytes,
+			final boolean probeElision) throws IOException {
+		final int[] count = new int[1];
+		final Instrumenter instrumenter = new Instrumenter(
+				new IExecutionDataAccessorGenerator() {
+					public int generateDataAccessor(final long classid,
+							final String classname, final int probecount,
+							final MethodVisitor mv) {
+						count[0] = probecount;
+						mv.visitInsn(Opcodes.ACONST_NULL);
+						return 1;
+					}
+				});
+		instrumenter.setProbeElision(probeElision);
+		instrumenter.instrument(bytes, "Test");
+		return count[0];
+	}
+
 	@Test
 	public void testAnalyzeClass_Broken() throws IOException {
 		final byte[] brokenclass = TargetLoader
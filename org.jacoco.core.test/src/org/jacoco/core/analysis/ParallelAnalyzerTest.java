@@ -0,0 +1,195 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.analysis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.internal.data.CRC64;
+import org.jacoco.core.test.TargetLoader;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link ParallelAnalyzer}.
+ */
+public class ParallelAnalyzerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static final Class<?>[] CLASSES = new Class<?>[] { Analyzer.class,
+			ParallelAnalyzer.class, CoverageBuilder.class,
+			CounterComparator.class, NodeComparator.class,
+			ParallelAnalyzerTest.class };
+
+	private ExecutionDataStore executionData;
+
+	private List<String> names;
+
+	private ParallelAnalyzer analyzer;
+
+	@Before
+	public void setup() {
+		executionData = new ExecutionDataStore();
+		names = new ArrayList<String>();
+		analyzer = new ParallelAnalyzer(executionData, new ICoverageVisitor() {
+			public void visitCoverage(final IClassCoverage coverage) {
+				names.add(coverage.getName());
+			}
+		}, 4);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidThreads() {
+		new ParallelAnalyzer(executionData, null, 0);
+	}
+
+	@Test
+	public void testAnalyzeAll_Folder() throws IOException {
+		for (int i = 0; i < CLASSES.length; i++) {
+			createClassfile("bin" + i, CLASSES[i]);
+		}
+		final int count = analyzer.analyzeAll(folder.getRoot());
+		assertEquals(CLASSES.length, count);
+		assertSameOrder();
+	}
+
+	@Test
+	public void testAnalyzeAll_Zip() throws IOException {
+		createZip("lib.jar");
+		createClassfile("bin", ParallelAnalyzerTest.class);
+		final int count = analyzer.analyzeAll(folder.getRoot());
+		assertEquals(CLASSES.length + 1, count);
+		assertSameOrder();
+	}
+
+	@Test
+	public void testAnalyzeAll_Path() throws IOException {
+		createZip("lib.jar");
+		createClassfile("bin", ParallelAnalyzerTest.class);
+		final String path = "bin" + File.pathSeparator + "lib.jar";
+		final int count = analyzer.analyzeAll(path, folder.getRoot());
+		assertEquals(CLASSES.length + 1, count);
+		assertEquals("org/jacoco/core/analysis/ParallelAnalyzerTest",
+				names.get(0));
+		assertEquals("org/jacoco/core/analysis/Analyzer", names.get(1));
+	}
+
+	@Test
+	public void testAnalyzeAll_ExecutionData() throws IOException {
+		final byte[] bytes = TargetLoader
+				.getClassDataAsBytes(ParallelAnalyzerTest.class);
+		final ExecutionData data = new ExecutionData(CRC64.checksum(bytes),
+				"org/jacoco/core/analysis/ParallelAnalyzerTest", new long[2],
+				100);
+		executionData.put(data);
+		final CoverageBuilder builder = new CoverageBuilder();
+		createClassfile("bin", ParallelAnalyzerTest.class);
+		new ParallelAnalyzer(executionData, builder, 2).analyzeAll(folder
+				.getRoot());
+		assertEquals(1, builder.getClasses().size());
+		assertFalse(builder.getClasses().iterator().next().isNoMatch());
+	}
+
+	@Test
+	public void testAnalyzeAll_BrokenClassFileInZip() throws IOException {
+		final File file = new File(folder.getRoot(), "broken.zip");
+		final ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(
+				file));
+		zip.putNextEntry(new ZipEntry("org/jacoco/core/analysis/Analyzer.class"));
+		zip.write(TargetLoader.getClassDataAsBytes(Analyzer.class));
+		zip.putNextEntry(new ZipEntry("Broken.class"));
+		final byte[] brokenclass = TargetLoader
+				.getClassDataAsBytes(AnalyzerTest.class);
+		brokenclass[10] = 0x23;
+		zip.write(brokenclass);
+		zip.close();
+		try {
+			analyzer.analyzeAll(file);
+			fail("expected exception");
+		} catch (IOException e) {
+			assertEquals("Error while analyzing " + file.getPath()
+					+ "@Broken.class.", e.getMessage());
+		}
+		assertEquals(Arrays.asList("org/jacoco/core/analysis/Analyzer"), names);
+	}
+
+	@Test
+	public void testAnalyzeAll_BrokenZip() throws IOException {
+		final File file = new File(folder.getRoot(), "broken.zip");
+		final OutputStream out = new FileOutputStream(file);
+		final byte[] buffer = new byte[30];
+		buffer[0] = 0x50;
+		buffer[1] = 0x4b;
+		buffer[2] = 0x03;
+		buffer[3] = 0x04;
+		Arrays.fill(buffer, 4, buffer.length, (byte) 0x42);
+		out.write(buffer);
+		out.close();
+		try {
+			analyzer.analyzeAll(file);
+			fail("expected exception");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().startsWith("Error while analyzing"));
+		}
+	}
+
+	private void assertSameOrder() throws IOException {
+		final List<String> expected = new ArrayList<String>();
+		new Analyzer(executionData, new ICoverageVisitor() {
+			public void visitCoverage(final IClassCoverage coverage) {
+				expected.add(coverage.getName());
+			}
+		}).analyzeAll(folder.getRoot());
+		assertEquals(expected, names);
+	}
+
+	private void createZip(final String name) throws IOException {
+		final ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(
+				new File(folder.getRoot(), name)));
+		zip.putNextEntry(new ZipEntry("META-INF/"));
+		for (final Class<?> c : CLASSES) {
+			zip.putNextEntry(new ZipEntry(c.getName().replace('.', '/')
+					+ ".class"));
+			zip.write(TargetLoader.getClassDataAsBytes(c));
+		}
+		zip.close();
+	}
+
+	private void createClassfile(final String dir, final Class<?> source)
+			throws IOException {
+		File file = new File(folder.getRoot(), dir);
+		file.mkdirs();
+		file = new File(file, "some.class");
+		OutputStream out = new FileOutputStream(file);
+		out.write(TargetLoader.getClassDataAsBytes(source));
+		out.close();
+	}
+
+}
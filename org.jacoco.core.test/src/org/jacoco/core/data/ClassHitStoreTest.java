@@ -0,0 +1,72 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.core.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link ClassHitStore}.
+ */
+public class ClassHitStoreTest {
+
+	private ClassHitStore store;
+
+	@Before
+	public void setup() {
+		store = new ClassHitStore();
+	}
+
+	@Test
+	public void testEmpty() {
+		assertTrue(store.isEmpty());
+		assertFalse(store.contains(1));
+		assertNull(store.getName(1));
+		assertTrue(store.getIds().isEmpty());
+	}
+
+	@Test
+	public void testVisitClassHit() {
+		store.visitClassHit(2, "Foo");
+		store.visitClassHit(1, "Bar");
+		store.visitClassHit(2, "Foo");
+
+		assertFalse(store.isEmpty());
+		assertTrue(store.contains(1));
+		assertEquals("Foo", store.getName(2));
+		assertEquals(Arrays.asList(Long.valueOf(1), Long.valueOf(2)),
+				new ArrayList<Long>(store.getIds()));
+	}
+
+	@Test
+	public void testAccept() {
+		store.visitClassHit(2, "Foo");
+		store.visitClassHit(-1, "Bar");
+		final List<String> visited = new ArrayList<String>();
+		store.accept(new IClassHitVisitor() {
+			public void visitClassHit(long id, String name) {
+				visited.add(id + ":" + name);
+			}
+		});
+		assertEquals(Arrays.asList("-1:Bar", "2:Foo"), visited);
+	}
+
+}
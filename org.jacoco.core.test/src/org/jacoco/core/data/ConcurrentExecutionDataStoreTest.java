@@ -0,0 +1,167 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link ConcurrentExecutionDataStore}.
+ */
+public class ConcurrentExecutionDataStoreTest implements IExecutionDataVisitor {
+
+	private ConcurrentExecutionDataStore store;
+
+	private Map<Long, ExecutionData> dataOutput;
+
+	@Before
+	public void setup() {
+		store = new ConcurrentExecutionDataStore(4);
+		dataOutput = new HashMap<Long, ExecutionData>();
+	}
+
+	@Test
+	public void testEmpty() {
+		assertNull(store.get(123));
+		assertEquals(0, store.size());
+		store.accept(this);
+		assertTrue(dataOutput.isEmpty());
+	}
+
+	@Test
+	public void testGetWithCreate() {
+		final ExecutionData data = store.get(1000, "Sample", 3);
+		assertEquals(1000, data.getId());
+		assertEquals("Sample", data.getName());
+		assertEquals(3, data.getProbes().length);
+		assertSame(data, store.get(1000, "Sample", 3));
+		assertSame(data, store.get(1000));
+		assertEquals(1, store.size());
+	}
+
+	@Test
+	public void testGetWithZeroId() {
+		final ExecutionData data = store.get(0, "Sample", 3);
+		assertSame(data, store.get(0));
+		assertSame(data, store.get(0, "Sample", 3));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testGetNegative() {
+		store.get(1000, "Sample", 3);
+		store.get(1000, "Sample", 4);
+	}
+
+	@Test
+	public void testPutAndMerge() {
+		final boolean[] probes = new boolean[] { false, false, true };
+		store.put(new ExecutionData(1000, "Sample", probes));
+		store.put(new ExecutionData(1000, "Sample", new boolean[] { true,
+				false, false }));
+		final ExecutionData data = store.get(1000);
+		assertSame(probes, data.getProbes());
+		assertTrue(Arrays.equals(new boolean[] { true, false, true }, probes));
+	}
+
+	@Test
+	public void testResize() {
+		for (int i = 0; i < 1000; i++) {
+			store.get(i * 31L, "Sample" + i, 1).getProbes()[0] = true;
+		}
+		assertEquals(1000, store.size());
+		for (int i = 0; i < 1000; i++) {
+			assertEquals("Sample" + i, store.get(i * 31L).getName());
+		}
+		store.accept(this);
+		assertEquals(1000, dataOutput.size());
+	}
+
+	@Test
+	public void testReset() {
+		final ExecutionData data = store.get(1000, "Sample", 2);
+		data.getProbes()[1] = true;
+		store.reset();
+		assertFalse(data.getProbes()[0]);
+		assertFalse(data.getProbes()[1]);
+		assertSame(data, store.get(1000));
+	}
+
+	@Test
+	public void testGetContents() {
+		final ExecutionData a = store.get(1000, "A", 0);
+		final ExecutionData b = store.get(1001, "B", 0);
+		final Set<ExecutionData> expected = new HashSet<ExecutionData>(
+				Arrays.asList(a, b));
+		assertEquals(expected,
+				new HashSet<ExecutionData>(store.getContents()));
+	}
+
+	@Test
+	public void testConcurrentGet() throws Exception {
+		final int threadCount = 8;
+		final int classCount = 2000;
+		final CountDownLatch start = new CountDownLatch(1);
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		final ExecutionData[][] results = new ExecutionData[threadCount][classCount];
+		final Thread[] threads = new Thread[threadCount];
+		for (int t = 0; t < threadCount; t++) {
+			final ExecutionData[] result = results[t];
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						for (int i = 0; i < classCount; i++) {
+							result[i] = store.get(i, "Sample" + i, 1);
+						}
+					} catch (final Throwable e) {
+						failure.set(e);
+					}
+				}
+			};
+			threads[t].start();
+		}
+		start.countDown();
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+		assertNull(failure.get());
+		assertEquals(classCount, store.size());
+		for (int i = 0; i < classCount; i++) {
+			for (int t = 1; t < threadCount; t++) {
+				assertSame(results[0][i], results[t][i]);
+			}
+			assertSame(results[0][i], store.get(i));
+		}
+	}
+
+	// === IExecutionDataVisitor ===
+
+	public void visitClassExecution(final ExecutionData data) {
+		dataOutput.put(Long.valueOf(data.getId()), data);
+	}
+
+}
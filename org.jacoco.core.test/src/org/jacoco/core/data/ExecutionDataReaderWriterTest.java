@@ -24,6 +24,7 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Arrays;
 import java.util.Random;
+import java.util.zip.DeflaterOutputStream;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -282,6 +283,99 @@ public class ExecutionDataReaderWriterTest {
 		assertArrayEquals(data, store.get(123).getProbes());
 	}
 
+	@Test
+	public void testReadBits() throws IOException {
+		final boolean[] data = createData(130);
+		writer.visitClassExecution(new ExecutionData(123, "Sample", data));
+		final ExecutionData[] result = new ExecutionData[1];
+		final ExecutionDataReader reader = createReader();
+		reader.setExecutionDataVisitor(new IExecutionDataVisitor() {
+			public void visitClassExecution(ExecutionData data) {
+				result[0] = data;
+			}
+		});
+		assertFalse(reader.read());
+		assertEquals(3, result[0].getBits().length);
+		assertEquals(130, result[0].getProbeCount());
+		assertArrayEquals(data, result[0].getProbes());
+	}
+
+	@Test
+	public void testWriteBits() throws IOException {
+		final long[] bits = new long[] { 0x8000000000000001L, 0x0L, 0x3L };
+		writer.visitClassExecution(new ExecutionData(123, "Sample", bits, 130));
+		assertFalse(createReaderWithVisitors().read());
+		final boolean[] expected = new boolean[130];
+		expected[0] = true;
+		expected[63] = true;
+		expected[128] = true;
+		expected[129] = true;
+		assertArrayEquals(expected, store.get(123).getProbes());
+	}
+
+	// === Deflated Blocks ===
+
+	@Test
+	public void testDeflated() throws IOException {
+		final boolean[] data1 = createData(15);
+		final boolean[] data2 = createData(3599);
+		final ByteArrayOutputStream deflated = new ByteArrayOutputStream();
+		final DeflaterOutputStream deflater = new DeflaterOutputStream(
+				deflated);
+		final ExecutionDataWriter nested = new ExecutionDataWriter(deflater);
+		nested.visitSessionInfo(new SessionInfo("TestSession", 1, 2));
+		nested.visitClassExecution(new ExecutionData(333, "Sample", data1));
+		deflater.finish();
+		writer.writeDeflated(deflated.toByteArray());
+		writer.visitClassExecution(new ExecutionData(-45, "Sample", data2));
+
+		assertFalse(createReaderWithVisitors().read());
+		assertEquals("TestSession", sessionInfo.getId());
+		assertArrayEquals(data1, store.get(333).getProbes());
+		assertArrayEquals(data2, store.get(-45).getProbes());
+	}
+
+	@Test(expected = IOException.class)
+	public void testDeflatedInvalidContent() throws IOException {
+		writer.writeDeflated(new byte[] { 1, 2, 3 });
+		createReaderWithVisitors().read();
+	}
+
+	@Test(expected = IOException.class)
+	public void testNoClassHitVisitor() throws IOException {
+		writer.visitClassHit(1, "Sample");
+		createReaderWithVisitors().read();
+	}
+
+	@Test
+	public void testClassHits() throws IOException {
+		writer.visitClassHit(Long.MIN_VALUE, "Sample1");
+		writer.visitClassHit(42, "Sample2");
+		final ExecutionDataReader reader = createReaderWithVisitors();
+		final ClassHitStore hits = new ClassHitStore();
+		reader.setClassHitVisitor(hits);
+
+		assertFalse(reader.read());
+		assertEquals("Sample1", hits.getName(Long.MIN_VALUE));
+		assertEquals("Sample2", hits.getName(42));
+		assertTrue(store.getContents().isEmpty());
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void testClassHitIOException() throws IOException {
+		final boolean[] broken = new boolean[1];
+		final ExecutionDataWriter writer = createWriter(new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				if (broken[0]) {
+					throw new IOException();
+				}
+			}
+		});
+		broken[0] = true;
+		writer.visitClassHit(3, "Sample");
+	}
+
 	@Test(expected = RuntimeException.class)
 	public void testExecutionDataIOException() throws IOException {
 		final boolean[] broken = new boolean[1];
@@ -16,6 +16,14 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import org.junit.Test;
 
 /**
@@ -111,6 +119,136 @@ public class ExecutionDataTest {
 		assertTrue(b.getProbes()[3]);
 	}
 
+	@Test
+	public void testCreateWithBits() {
+		final ExecutionData e = new ExecutionData(5, "Example", new long[] {
+				0x8000000000000001L, 0x2L }, 66);
+		assertEquals(66, e.getProbeCount());
+		assertTrue(e.hasHits());
+		assertEquals(3, e.getHitCount());
+		final boolean[] probes = e.getProbes();
+		assertEquals(66, probes.length);
+		assertTrue(probes[0]);
+		assertFalse(probes[1]);
+		assertTrue(probes[63]);
+		assertFalse(probes[64]);
+		assertTrue(probes[65]);
+		assertSame(probes, e.getProbes());
+	}
+
+	@Test
+	public void testExpandBitsConcurrently() throws Exception {
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			for (int run = 0; run < 200; run++) {
+				final ExecutionData e = new ExecutionData(5, "Example",
+						new long[] { 0x5L }, 3);
+				final List<Future<boolean[]>> results = new ArrayList<Future<boolean[]>>();
+				for (int i = 0; i < 4; i++) {
+					results.add(executor.submit(new Callable<boolean[]>() {
+						public boolean[] call() {
+							assertTrue(e.hasHits());
+							assertEquals(2, e.getHitCount());
+							return e.getProbes();
+						}
+					}));
+				}
+				final boolean[] probes = results.get(0).get();
+				assertTrue(Arrays.equals(new boolean[] { true, false, true },
+						probes));
+				for (final Future<boolean[]> f : results) {
+					assertSame(probes, f.get());
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testCreateWithBitsNegative() {
+		new ExecutionData(5, "Example", new long[2], 64);
+	}
+
+	@Test
+	public void testResetBits() {
+		final ExecutionData e = new ExecutionData(5, "Example",
+				new long[] { 0x5L }, 3);
+		e.reset();
+		assertFalse(e.hasHits());
+		assertEquals(0, e.getHitCount());
+	}
+
+	@Test
+	public void testHasHitsBits() {
+		assertFalse(new ExecutionData(5, "Example", new long[2], 100)
+				.hasHits());
+		assertFalse(new ExecutionData(5, "Example", new long[0], 0).hasHits());
+	}
+
+	@Test
+	public void testGetHitCount() {
+		final ExecutionData e = new ExecutionData(5, "Example", new boolean[] {
+				true, false, true });
+		assertEquals(2, e.getHitCount());
+	}
+
+	@Test
+	public void testMergeBits() {
+		final ExecutionData a = new ExecutionData(5, "Example",
+				new long[] { 0xAL }, 4);
+		final ExecutionData b = new ExecutionData(5, "Example",
+				new long[] { 0xCL }, 4);
+		a.merge(b);
+		assertEquals(0xEL, a.getBits()[0]);
+		assertEquals(0xCL, b.getBits()[0]);
+	}
+
+	@Test
+	public void testMergeSubtractBits() {
+		final ExecutionData a = new ExecutionData(5, "Example",
+				new long[] { 0xAL }, 4);
+		final ExecutionData b = new ExecutionData(5, "Example",
+				new long[] { 0xCL }, 4);
+		a.merge(b, false);
+		assertEquals(0x2L, a.getBits()[0]);
+		assertEquals(0xCL, b.getBits()[0]);
+	}
+
+	@Test
+	public void testMergeBitsIntoProbes() {
+		final ExecutionData a = new ExecutionData(5, "Example", new boolean[] {
+				false, true, false, true });
+		final ExecutionData b = new ExecutionData(5, "Example",
+				new long[] { 0xCL }, 4);
+		a.merge(b);
+		assertTrue(Arrays.equals(new boolean[] { false, true, true, true },
+				a.getProbes()));
+		a.merge(b, false);
+		assertTrue(Arrays.equals(new boolean[] { false, true, false, false },
+				a.getProbes()));
+	}
+
+	@Test
+	public void testMergeProbesIntoBits() {
+		final ExecutionData a = new ExecutionData(5, "Example",
+				new long[] { 0xAL }, 4);
+		final ExecutionData b = new ExecutionData(5, "Example", new boolean[] {
+				false, false, true, true });
+		a.merge(b);
+		assertEquals(0xEL, a.getBits()[0]);
+		a.merge(b, false);
+		assertEquals(0x2L, a.getBits()[0]);
+	}
+
+	@Test
+	public void testGetWordCount() {
+		assertEquals(0, ExecutionData.getWordCount(0));
+		assertEquals(1, ExecutionData.getWordCount(1));
+		assertEquals(1, ExecutionData.getWordCount(64));
+		assertEquals(2, ExecutionData.getWordCount(65));
+	}
+
 	@Test
 	public void testAssertCompatibility() {
 		final ExecutionData a = new ExecutionData(5, "Example",
@@ -0,0 +1,163 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.core.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link MappedExecutionDataWriter}.
+ */
+public class MappedExecutionDataWriterTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File file;
+
+	private MappedExecutionDataWriter writer;
+
+	private ExecutionDataStore store;
+
+	private SessionInfoStore sessionInfos;
+
+	@Before
+	public void setup() throws IOException {
+		file = new File(folder.getRoot(), "jacoco.map");
+		writer = new MappedExecutionDataWriter(file);
+	}
+
+	@After
+	public void teardown() throws IOException {
+		writer.close();
+	}
+
+	@Test
+	public void testEmpty() throws IOException {
+		read();
+		assertEquals(0, store.getContents().size());
+		assertEquals(1, sessionInfos.getInfos().size());
+		assertEquals("", sessionInfos.getInfos().get(0).getId());
+	}
+
+	@Test
+	public void testSessionInfo() throws IOException {
+		writer.visitSessionInfo(new SessionInfo("first", 1, 2));
+		writer.visitSessionInfo(new SessionInfo("second", 3, 4));
+		read();
+		final SessionInfo info = sessionInfos.getInfos().get(0);
+		assertEquals("second", info.getId());
+		assertEquals(3, info.getStartTimeStamp());
+		assertEquals(4, info.getDumpTimeStamp());
+	}
+
+	@Test
+	public void testLongSessionId() throws IOException {
+		final char[] id = new char[1000];
+		Arrays.fill(id, '\u00e4');
+		writer.visitSessionInfo(new SessionInfo(new String(id), 1, 2));
+		read();
+		final String actual = sessionInfos.getInfos().get(0).getId();
+		assertEquals(127, actual.length());
+		assertEquals('\u00e4', actual.charAt(0));
+	}
+
+	@Test
+	public void testUpdateProbes() throws IOException {
+		final boolean[] probes = new boolean[130];
+		final ExecutionData data = new ExecutionData(42, "Foo", probes);
+		writer.visitClassExecution(data);
+		read();
+		assertFalse(store.get(42).hasHits());
+
+		probes[0] = true;
+		probes[64] = true;
+		probes[129] = true;
+		writer.visitClassExecution(data);
+		read();
+		assertEquals("Foo", store.get(42).getName());
+		assertTrue(Arrays.equals(probes, store.get(42).getProbes()));
+
+		Arrays.fill(probes, false);
+		probes[1] = true;
+		writer.visitClassExecution(data);
+		read();
+		final boolean[] merged = store.get(42).getProbes();
+		assertTrue(merged[0]);
+		assertTrue(merged[1]);
+		assertTrue(merged[64]);
+		assertTrue(merged[129]);
+		assertEquals(4, store.get(42).getHitCount());
+	}
+
+	@Test
+	public void testGrow() throws IOException {
+		for (int i = 0; i < 5000; i++) {
+			final boolean[] probes = new boolean[i % 100 + 1];
+			probes[i % probes.length] = true;
+			writer.visitClassExecution(new ExecutionData(i, "Class" + i,
+					probes));
+		}
+		writer.visitClassExecution(new ExecutionData(-1, "Big",
+				new boolean[200000]));
+		read();
+		assertEquals(5001, store.getContents().size());
+		for (int i = 0; i < 5000; i++) {
+			final boolean[] probes = store.get(i).getProbes();
+			assertEquals("Class" + i, store.get(i).getName());
+			assertEquals(i % 100 + 1, probes.length);
+			assertTrue(probes[i % probes.length]);
+		}
+		assertEquals(200000, store.get(-1).getProbeCount());
+	}
+
+	@Test
+	public void testOverwrite() throws IOException {
+		writer.visitClassExecution(new ExecutionData(1, "Foo",
+				new boolean[] { true }));
+		writer.close();
+		writer = new MappedExecutionDataWriter(file);
+		read();
+		assertEquals(0, store.getContents().size());
+	}
+
+	private void read() throws IOException {
+		store = new ExecutionDataStore();
+		sessionInfos = new SessionInfoStore();
+		final InputStream in = new BufferedInputStream(new FileInputStream(
+				file));
+		try {
+			final ExecutionDataReader reader = new ExecutionDataReader(in);
+			reader.setExecutionDataVisitor(store);
+			reader.setSessionInfoVisitor(sessionInfos);
+			assertFalse(reader.read());
+			assertEquals(-1, in.read());
+		} finally {
+			in.close();
+		}
+	}
+
+}
@@ -13,6 +13,7 @@ package org.jacoco.core.instr;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.ByteArrayInputStream;
@@ -23,6 +24,10 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.jar.JarInputStream;
 import java.util.jar.JarOutputStream;
 import java.util.jar.Pack200;
@@ -32,13 +37,25 @@ import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
+import org.jacoco.core.JaCoCo;
 import org.jacoco.core.analysis.AnalyzerTest;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.SessionInfoStore;
+import org.jacoco.core.internal.Java9Support;
+import org.jacoco.core.internal.data.CRC64;
+import org.jacoco.core.runtime.IClassInitializationListener;
+import org.jacoco.core.runtime.IRuntime;
 import org.jacoco.core.runtime.RuntimeData;
 import org.jacoco.core.runtime.SystemPropertiesRuntime;
 import org.jacoco.core.test.TargetLoader;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
 
 /**
  * Unit tests for {@link Instrumenter}.
@@ -65,15 +82,29 @@ public class InstrumenterTest {
 
 	}
 
+	public static class InitializerTarget {
+
+		private static final String PREFIX = String.valueOf("Value");
+
+		@Override
+		public String toString() {
+			return PREFIX;
+		}
+
+	}
+
 	private SystemPropertiesRuntime runtime;
 
+	private RuntimeData data;
+
 	private Instrumenter instrumenter;
 
 	@Before
 	public void setup() throws Exception {
 		runtime = new SystemPropertiesRuntime();
 		instrumenter = new Instrumenter(runtime);
-		runtime.startup(new RuntimeData());
+		data = new RuntimeData();
+		runtime.startup(data);
 	}
 
 	@After
@@ -91,6 +122,204 @@ public class InstrumenterTest {
 		assertEquals("org.jacoco.core.instr.InstrumenterTest", clazz.getName());
 	}
 
+	@Test
+	public void testInstrumentJava9Class() throws Exception {
+		byte[] source = TargetLoader
+				.getClassDataAsBytes(InstrumenterTest.class);
+		Java9Support.upgrade(source);
+
+		byte[] bytes = instrumenter.instrument(source, "Test");
+
+		assertEquals(Java9Support.V1_9, getVersion(source));
+		assertEquals(Java9Support.V1_9, getVersion(bytes));
+	}
+
+	@Test
+	public void testInstrumentJava9ClassFromStream() throws Exception {
+		byte[] source = TargetLoader
+				.getClassDataAsBytes(InstrumenterTest.class);
+		Java9Support.upgrade(source);
+
+		byte[] bytes = instrumenter.instrument(
+				new ByteArrayInputStream(source), "Test");
+
+		assertEquals(Java9Support.V1_9, getVersion(bytes));
+		Java9Support.downgradeInPlace(bytes);
+		TargetLoader loader = new TargetLoader();
+		loader.add(InstrumenterTest.class, bytes);
+	}
+
+	private static int getVersion(final byte[] bytes) {
+		return ((bytes[6] & 0xFF) << 8) | (bytes[7] & 0xFF);
+	}
+
+	@Test
+	public void testInstrumentClassWithProbeStripes() throws Exception {
+		instrumenter.setProbeStripes(4);
+		byte[] bytes = instrumenter.instrument(
+				TargetLoader.getClassData(SerializationTarget.class), "Test");
+		TargetLoader loader = new TargetLoader();
+		Object obj = loader.add(SerializationTarget.class, bytes)
+				.getConstructor(String.class, Integer.TYPE)
+				.newInstance("Hello", Integer.valueOf(42));
+		assertEquals("Hello42", obj.toString());
+
+		final ExecutionDataStore store = new ExecutionDataStore();
+		data.collect(store, new SessionInfoStore(), false);
+		assertEquals(1, store.getContents().size());
+		final ExecutionData execData = store.getContents().iterator().next();
+		assertEquals(
+				"org/jacoco/core/instr/InstrumenterTest$SerializationTarget",
+				execData.getName());
+		assertTrue(execData.hasHits());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSetInvalidProbeStripes() {
+		instrumenter.setProbeStripes(3);
+	}
+
+	@Test
+	public void testInstrumentHook() throws Exception {
+		final List<String> initialized = new ArrayList<String>();
+		data.setInitializationListener(new IClassInitializationListener() {
+			public void classInitialized(final long id, final String name) {
+				initialized.add(String.format("%016x %s", Long.valueOf(id),
+						name));
+			}
+		});
+		final byte[] original = TargetLoader
+				.getClassDataAsBytes(SerializationTarget.class);
+		final byte[] bytes = instrumenter.instrumentHook(original, "Test");
+		TargetLoader loader = new TargetLoader();
+		Object obj = loader.add(SerializationTarget.class, bytes)
+				.getConstructor(String.class, Integer.TYPE)
+				.newInstance("Hello", Integer.valueOf(42));
+		assertEquals("Hello42", obj.toString());
+
+		assertEquals(1, initialized.size());
+		assertEquals(String.format("%016x %s",
+				Long.valueOf(CRC64.checksum(original)),
+				"org/jacoco/core/instr/InstrumenterTest$SerializationTarget"),
+				initialized.get(0));
+		final ExecutionDataStore store = new ExecutionDataStore();
+		data.collect(store, new SessionInfoStore(), false);
+		assertTrue(store.getContents().isEmpty());
+	}
+
+	@Test
+	public void testInstrumentHookWithInitializer() throws Exception {
+		final List<String> initialized = new ArrayList<String>();
+		data.setInitializationListener(new IClassInitializationListener() {
+			public void classInitialized(final long id, final String name) {
+				initialized.add(name);
+			}
+		});
+		final byte[] bytes = instrumenter.instrumentHook(
+				TargetLoader.getClassDataAsBytes(InitializerTarget.class),
+				"Test");
+		TargetLoader loader = new TargetLoader();
+		Object obj = loader.add(InitializerTarget.class, bytes).newInstance();
+		assertEquals("Value", obj.toString());
+		assertEquals(1, initialized.size());
+	}
+
+	@Test
+	public void testInstrumentHookWithoutListener() throws Exception {
+		final byte[] bytes = instrumenter.instrumentHook(
+				TargetLoader.getClassDataAsBytes(InitializerTarget.class),
+				"Test");
+		TargetLoader loader = new TargetLoader();
+		Object obj = loader.add(InitializerTarget.class, bytes).newInstance();
+		assertEquals("Value", obj.toString());
+	}
+
+	@Test
+	public void testInstrumentHookNotPossible() throws Exception {
+		assertNull(instrumenter.instrumentHook(
+				TargetLoader.getClassDataAsBytes(IRuntime.class), "Test"));
+		instrumenter.setProbeStripes(2);
+		assertNull(instrumenter.instrumentHook(
+				TargetLoader.getClassDataAsBytes(InitializerTarget.class),
+				"Test"));
+	}
+
+	@Test
+	public void testInstrumentHookCompatible() throws Exception {
+		instrumenter.setHookCompatible(true);
+		for (Class<?> c : new Class<?>[] { SerializationTarget.class,
+				InitializerTarget.class }) {
+			final byte[] original = TargetLoader.getClassDataAsBytes(c);
+			assertEquals(getMembers(instrumenter.instrumentHook(original,
+					"Test")), getMembers(instrumenter.instrument(original,
+					"Test")));
+		}
+	}
+
+	@Test
+	public void testInstrumentHookCompatibleProbes() throws Exception {
+		final byte[] original = TargetLoader
+				.getClassDataAsBytes(InitializerTarget.class);
+		TargetLoader loader = new TargetLoader();
+		loader.add(InitializerTarget.class,
+				instrumenter.instrument(original, "Test")).newInstance();
+		instrumenter.setHookCompatible(true);
+		loader = new TargetLoader();
+		loader.add(InitializerTarget.class,
+				instrumenter.instrument(original, "Test")).newInstance();
+
+		final ExecutionDataStore store = new ExecutionDataStore();
+		data.collect(store, new SessionInfoStore(), false);
+		assertEquals(1, store.getContents().size());
+		final ExecutionData execData = store.get(CRC64.checksum(original));
+		assertTrue(execData.hasHits());
+	}
+
+	@Test
+	public void testInstrumentDetached() throws Exception {
+		instrumenter.setHookCompatible(true);
+		final byte[] original = TargetLoader
+				.getClassDataAsBytes(SerializationTarget.class);
+		final byte[] bytes = instrumenter.instrumentDetached(original, "Test");
+		assertEquals(getMembers(instrumenter.instrument(original, "Test")),
+				getMembers(bytes));
+
+		TargetLoader loader = new TargetLoader();
+		Object obj = loader.add(SerializationTarget.class, bytes)
+				.getConstructor(String.class, Integer.TYPE)
+				.newInstance("Hello", Integer.valueOf(42));
+		assertEquals("Hello42", obj.toString());
+		final ExecutionDataStore store = new ExecutionDataStore();
+		data.collect(store, new SessionInfoStore(), false);
+		assertTrue(store.getContents().isEmpty());
+	}
+
+	@Test
+	public void testInstrumentDetachedNotPossible() throws Exception {
+		assertNull(instrumenter.instrumentDetached(
+				TargetLoader.getClassDataAsBytes(IRuntime.class), "Test"));
+	}
+
+	private static Set<String> getMembers(final byte[] bytes) {
+		final Set<String> members = new HashSet<String>();
+		new ClassReader(bytes).accept(new ClassVisitor(JaCoCo.ASM_API_VERSION) {
+			@Override
+			public FieldVisitor visitField(int access, String name,
+					String desc, String signature, Object value) {
+				members.add(access + " " + name + desc);
+				return null;
+			}
+
+			@Override
+			public MethodVisitor visitMethod(int access, String name,
+					String desc, String signature, String[] exceptions) {
+				members.add(access + " " + name + desc);
+				return null;
+			}
+		}, 0);
+		return members;
+	}
+
 	@Test
 	public void testInstrumentBrokenClass1() throws IOException {
 		final byte[] brokenclass = TargetLoader
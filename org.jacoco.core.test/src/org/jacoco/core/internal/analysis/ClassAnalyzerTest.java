@@ -87,4 +87,28 @@ public class ClassAnalyzerTest {
 		assertEquals(1, coverage.getMethods().size());
 	}
 
+	@Test
+	public void testStructureOnly() {
+		analyzer = new ClassAnalyzer("Foo", new StringPool());
+		analyzer.visit(Opcodes.V1_5, Opcodes.ACC_PUBLIC, "Foo", null,
+				"java/lang/Object", null);
+		analyzer.visitSource("Foo.java", null);
+		MethodProbesVisitor mv = analyzer.visitMethod(0, "foo", "()V", null,
+				null);
+		mv.visitCode();
+		mv.visitInsn(Opcodes.RETURN);
+		mv.visitEnd();
+		mv = analyzer.visitMethod(0, "bar", "()V", null, null);
+		mv.visitEnd();
+		analyzer.visitTotalProbeCount(1);
+
+		final ClassCoverageImpl c = analyzer.getStructure().createCoverage(
+				0x1234, false, null);
+		assertEquals("Foo", c.getName());
+		assertEquals("java/lang/Object", c.getSuperName());
+		assertEquals("Foo.java", c.getSourceFileName());
+		assertEquals(1, c.getMethods().size());
+		assertEquals(1, analyzer.getStructure().getProbeCount());
+	}
+
 }
@@ -11,6 +11,7 @@
  *******************************************************************************/
 package org.jacoco.core.internal.data;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 import java.io.IOException;
@@ -105,6 +106,54 @@ public class CompactDataInputOutputTest {
 				true);
 	}
 
+	@Test
+	public void testBitArrayEmpty() throws IOException {
+		testBitArray();
+	}
+
+	@Test
+	public void testBitArray9() throws IOException {
+		testBitArray(true, false, false, true, false, false, true, false, true);
+	}
+
+	@Test
+	public void testBitArray130() throws IOException {
+		final boolean[] values = new boolean[130];
+		for (int i = 0; i < values.length; i += 3) {
+			values[i] = true;
+		}
+		testBitArray(values);
+	}
+
+	@Test
+	public void testBitArrayFromBooleanArray() throws IOException {
+		out.writeBooleanArray(new boolean[] { true, false, true });
+		out.writeByte(0xFF);
+		out.close();
+		assertEquals(3, in.readVarInt());
+		assertArrayEquals(new long[] { 0x5L }, in.readBitArray(3));
+		assertEquals(0xFF, in.readUnsignedByte());
+	}
+
+	@Test
+	public void testBitArrayIgnorePadding() throws IOException {
+		out.writeByte(0xFF);
+		out.close();
+		assertArrayEquals(new long[] { 0x7L }, in.readBitArray(3));
+	}
+
+	private void testBitArray(boolean... values) throws IOException {
+		final long[] bits = new long[(values.length + 63) / 64];
+		for (int i = 0; i < values.length; i++) {
+			if (values[i]) {
+				bits[i / 64] |= 1L << i;
+			}
+		}
+		out.writeBitArray(bits, values.length);
+		out.close();
+		assertArrayEquals(bits, in.readBitArray(values.length));
+	}
+
 	private void testPackedBoolean(boolean... values) throws IOException {
 		out.writeBooleanArray(values);
 		out.close();
@@ -20,6 +20,7 @@ import static org.junit.Assert.assertTrue;
 import org.junit.Before;
 import org.junit.Test;
 import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
 
 /**
  * Unit tests for {@link LabelInfoTest}.
@@ -42,6 +43,7 @@ public class LabelInfoTest {
 		assertEquals(LabelInfo.NO_PROBE, LabelInfo.getProbeId(label));
 		assertNull(LabelInfo.getIntermediateLabel(label));
 		assertNull(LabelInfo.getInstruction(label));
+		assertNull(LabelInfo.getFrame(label));
 	}
 
 	@Test
@@ -164,4 +166,14 @@ public class LabelInfoTest {
 		assertSame(instruction, LabelInfo.getInstruction(label));
 	}
 
+	@Test
+	public void testSetFrame() {
+		final IFrame frame = new IFrame() {
+			public void accept(MethodVisitor mv) {
+			}
+		};
+		LabelInfo.setFrame(label, frame);
+		assertSame(frame, LabelInfo.getFrame(label));
+	}
+
 }
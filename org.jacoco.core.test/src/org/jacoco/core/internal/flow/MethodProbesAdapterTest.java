@@ -34,6 +34,8 @@ public class MethodProbesAdapterTest implements IProbeIdGenerator {
 
 	private int id;
 
+	private boolean omitProbes;
+
 	private MethodRecorder expected, actual;
 
 	private MethodProbesVisitor expectedVisitor;
@@ -95,6 +97,7 @@ public class MethodProbesAdapterTest implements IProbeIdGenerator {
 	public void setup() {
 		label = new Label();
 		id = 1000;
+		omitProbes = false;
 		expected = new MethodRecorder();
 		expectedVisitor = new TraceAdapter(expected);
 		actual = new MethodRecorder();
@@ -145,6 +148,17 @@ public class MethodProbesAdapterTest implements IProbeIdGenerator {
 		expectedVisitor.visitLabel(label);
 	}
 
+	@Test
+	public void testVisitProbeOmitted() {
+		LabelInfo.setTarget(label);
+		LabelInfo.setSuccessor(label);
+		omitProbes = true;
+
+		adapter.visitLabel(label);
+
+		expectedVisitor.visitLabel(label);
+	}
+
 	@Test
 	public void testVisitInsn1() {
 		adapter.visitInsn(Opcodes.RETURN);
@@ -217,6 +231,17 @@ public class MethodProbesAdapterTest implements IProbeIdGenerator {
 				0, null);
 	}
 
+	@Test
+	public void testVisitJumpInsnProbeOmitted() {
+		LabelInfo.setTarget(label);
+		LabelInfo.setTarget(label);
+		omitProbes = true;
+
+		adapter.visitJumpInsn(Opcodes.GOTO, label);
+
+		expectedVisitor.visitJumpInsn(Opcodes.GOTO, label);
+	}
+
 	@Test
 	public void testVisitLookupSwitchInsn1() {
 		LabelInfo.setTarget(label);
@@ -312,6 +337,21 @@ public class MethodProbesAdapterTest implements IProbeIdGenerator {
 		expectedVisitor.visitTableSwitchInsn(0, 1, label, labels);
 	}
 
+	@Test
+	public void testVisitTableSwitchInsnProbesOmitted() {
+		LabelInfo.setTarget(label);
+		LabelInfo.setTarget(label);
+		omitProbes = true;
+
+		final Label[] labels = new Label[] { label, label };
+		adapter.visitInsn(Opcodes.ICONST_0);
+		adapter.visitTableSwitchInsn(0, 1, label, labels);
+
+		expectedVisitor.visitInsn(Opcodes.ICONST_0);
+		expectedVisitor.visitTableSwitchInsn(0, 1, label, labels);
+		assertEquals(LabelInfo.NO_PROBE, LabelInfo.getProbeId(label));
+	}
+
 	@Test
 	public void testVisitTryCatchBlockNoProbe() {
 		Label start = new Label();
@@ -371,7 +411,7 @@ public class MethodProbesAdapterTest implements IProbeIdGenerator {
 	// === IProbeIdGenerator ===
 
 	public int nextId() {
-		return id++;
+		return omitProbes ? LabelInfo.NO_PROBE : id++;
 	}
 
 }
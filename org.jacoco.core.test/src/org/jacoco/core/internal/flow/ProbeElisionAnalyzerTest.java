@@ -0,0 +1,193 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.core.internal.flow;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.MethodNode;
+
+/**
+ * Unit tests for {@link ProbeElisionAnalyzer}.
+ */
+public class ProbeElisionAnalyzerTest implements IProbeIdGenerator {
+
+	private MethodNode method;
+
+	private int id;
+
+	@Before
+	public void setup() {
+		method = new MethodNode(0, "test", "()V", null, null);
+		id = 1000;
+	}
+
+	public int nextId() {
+		return id++;
+	}
+
+	@Test
+	public void testLinearCode() {
+		method.visitInsn(Opcodes.RETURN);
+
+		assertIds(1000);
+	}
+
+	@Test
+	public void testLoop() {
+		final Label body = new Label();
+		final Label condition = new Label();
+		method.visitJumpInsn(Opcodes.GOTO, condition);
+		method.visitLabel(body);
+		method.visitIincInsn(1, 1);
+		method.visitLabel(condition);
+		method.visitVarInsn(Opcodes.ILOAD, 1);
+		method.visitJumpInsn(Opcodes.IFNE, body);
+		method.visitInsn(Opcodes.RETURN);
+
+		// The jump into the loop is the only way to enter it
+		assertIds(LabelInfo.NO_PROBE, 1000, 1001);
+	}
+
+	@Test
+	public void testLoopWithMethodInvocationLine() {
+		final Label body = new Label();
+		final Label condition = new Label();
+		method.visitJumpInsn(Opcodes.GOTO, condition);
+		method.visitLabel(body);
+		method.visitIincInsn(1, 1);
+		method.visitLabel(condition);
+		method.visitLineNumber(1002, condition);
+		method.visitMethodInsn(Opcodes.INVOKESTATIC, "Foo", "test", "()Z",
+				false);
+		method.visitJumpInsn(Opcodes.IFNE, body);
+		method.visitInsn(Opcodes.RETURN);
+
+		// The invocation might throw an exception
+		assertIds(1000, 1001, 1002);
+	}
+
+	@Test
+	public void testIfElse() {
+		final Label elseBranch = new Label();
+		final Label end = new Label();
+		method.visitVarInsn(Opcodes.ILOAD, 1);
+		method.visitJumpInsn(Opcodes.IFEQ, elseBranch);
+		method.visitIincInsn(1, 1);
+		method.visitJumpInsn(Opcodes.GOTO, end);
+		method.visitLabel(elseBranch);
+		method.visitIincInsn(1, 2);
+		method.visitLabel(end);
+		method.visitInsn(Opcodes.RETURN);
+
+		assertIds(1000, 1001, 1002);
+	}
+
+	@Test
+	public void testDoWhileLoop() {
+		final Label body = new Label();
+		method.visitLabel(body);
+		method.visitIincInsn(1, 1);
+		method.visitVarInsn(Opcodes.ILOAD, 1);
+		method.visitJumpInsn(Opcodes.IFNE, body);
+		method.visitInsn(Opcodes.RETURN);
+
+		// The backward jump does not dominate the loop body
+		assertIds(1000, 1001, 1002);
+	}
+
+	@Test
+	public void testTryBlockStart() {
+		final Label body = new Label();
+		final Label condition = new Label();
+		final Label end = new Label();
+		final Label handler = new Label();
+		method.visitTryCatchBlock(condition, end, handler, null);
+		method.visitJumpInsn(Opcodes.GOTO, condition);
+		method.visitLabel(body);
+		method.visitIincInsn(1, 1);
+		method.visitLabel(condition);
+		method.visitVarInsn(Opcodes.ILOAD, 1);
+		method.visitJumpInsn(Opcodes.IFNE, body);
+		method.visitLabel(end);
+		method.visitInsn(Opcodes.RETURN);
+		method.visitLabel(handler);
+		method.visitInsn(Opcodes.ATHROW);
+
+		assertIds(1000, 1001, 1002, 1003);
+	}
+
+	@Test
+	public void testLoopInHandler() {
+		final Label start = new Label();
+		final Label end = new Label();
+		final Label handler = new Label();
+		final Label body = new Label();
+		final Label condition = new Label();
+		method.visitTryCatchBlock(start, end, handler, null);
+		method.visitLabel(start);
+		method.visitInsn(Opcodes.NOP);
+		method.visitLabel(end);
+		method.visitInsn(Opcodes.RETURN);
+		method.visitLabel(handler);
+		method.visitInsn(Opcodes.POP);
+		method.visitJumpInsn(Opcodes.GOTO, condition);
+		method.visitLabel(body);
+		method.visitIincInsn(1, 1);
+		method.visitLabel(condition);
+		method.visitVarInsn(Opcodes.ILOAD, 1);
+		method.visitJumpInsn(Opcodes.IFNE, body);
+		method.visitInsn(Opcodes.RETURN);
+
+		assertIds(1000, LabelInfo.NO_PROBE, 1001, 1002);
+	}
+
+	@Test
+	public void testSwitch() {
+		final Label case1 = new Label();
+		final Label end = new Label();
+		method.visitVarInsn(Opcodes.ILOAD, 1);
+		method.visitTableSwitchInsn(0, 1, end, case1, end);
+		method.visitLabel(case1);
+		method.visitIincInsn(1, 1);
+		method.visitLabel(end);
+		method.visitInsn(Opcodes.RETURN);
+
+		assertIds(1000, 1001, 1002);
+	}
+
+	@Test
+	public void testUnreachableCode() {
+		final Label target = new Label();
+		method.visitJumpInsn(Opcodes.GOTO, target);
+		method.visitInsn(Opcodes.NOP);
+		method.visitJumpInsn(Opcodes.GOTO, target);
+		method.visitLabel(target);
+		method.visitInsn(Opcodes.RETURN);
+
+		// The second jump is never executed
+		assertIds(LabelInfo.NO_PROBE, 1000, 1001);
+	}
+
+	private void assertIds(final int... expected) {
+		LabelFlowAnalyzer.markLabels(method);
+		final IProbeIdGenerator generator = ProbeElisionAnalyzer
+				.createIdGenerator(method, this);
+		for (final int e : expected) {
+			assertEquals(e, generator.nextId());
+		}
+	}
+
+}
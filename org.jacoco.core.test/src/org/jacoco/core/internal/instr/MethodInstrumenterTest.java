@@ -33,6 +33,8 @@ public class MethodInstrumenterTest {
 
 	private MethodVisitor expectedVisitor;
 
+	private IProbeInserter probeInserter;
+
 	private IFrame frame;
 
 	@Before
@@ -40,7 +42,7 @@ public class MethodInstrumenterTest {
 		actual = new MethodRecorder();
 		expected = new MethodRecorder();
 		expectedVisitor = expected.getVisitor();
-		final IProbeInserter probeInserter = new IProbeInserter() {
+		probeInserter = new IProbeInserter() {
 
 			public void insertProbe(int id) {
 				actual.getVisitor().visitLdcInsn("Probe " + id);
@@ -188,6 +190,61 @@ public class MethodInstrumenterTest {
 		assertEquals(expected, actual);
 	}
 
+	@Test
+	public void testVisitJumpInsnWithProbe_Trampoline() {
+		instrumenter = new MethodInstrumenter(actual.getVisitor(),
+				probeInserter, true);
+		final Label label = new Label();
+		LabelInfo.setFrame(label, frame);
+		instrumenter.visitJumpInsnWithProbe(Opcodes.IFEQ, label, 3, frame);
+		instrumenter.visitInsn(Opcodes.RETURN);
+		instrumenter.visitMaxs(1, 2);
+
+		final Label trampoline = new Label();
+		expectedVisitor.visitJumpInsn(Opcodes.IFEQ, trampoline);
+		expectedVisitor.visitInsn(Opcodes.RETURN);
+		expectedVisitor.visitLabel(trampoline);
+		expectedVisitor.visitFrame(Opcodes.F_FULL, 0, null, 0, null);
+		expectedVisitor.visitLdcInsn("Probe 3");
+		expectedVisitor.visitJumpInsn(Opcodes.GOTO, label);
+		expectedVisitor.visitMaxs(1, 2);
+
+		assertEquals(expected, actual);
+	}
+
+	@Test
+	public void testVisitJumpInsnWithProbe_TrampolineWithoutFrame() {
+		instrumenter = new MethodInstrumenter(actual.getVisitor(),
+				probeInserter, true);
+		final Label label = new Label();
+		instrumenter.visitJumpInsnWithProbe(Opcodes.IFEQ, label, 3, frame);
+		instrumenter.visitMaxs(1, 2);
+
+		final Label trampoline = new Label();
+		expectedVisitor.visitJumpInsn(Opcodes.IFEQ, trampoline);
+		expectedVisitor.visitLabel(trampoline);
+		expectedVisitor.visitLdcInsn("Probe 3");
+		expectedVisitor.visitJumpInsn(Opcodes.GOTO, label);
+		expectedVisitor.visitMaxs(1, 2);
+
+		assertEquals(expected, actual);
+	}
+
+	@Test
+	public void testVisitJumpInsnWithProbe_TrampolineGOTO() {
+		instrumenter = new MethodInstrumenter(actual.getVisitor(),
+				probeInserter, true);
+		final Label label = new Label();
+		instrumenter.visitJumpInsnWithProbe(Opcodes.GOTO, label, 3, frame);
+		instrumenter.visitMaxs(1, 2);
+
+		expectedVisitor.visitLdcInsn("Probe 3");
+		expectedVisitor.visitJumpInsn(Opcodes.GOTO, label);
+		expectedVisitor.visitMaxs(1, 2);
+
+		assertEquals(expected, actual);
+	}
+
 	@Test
 	public void testVisitTableSwitchInsnWithProbes() {
 		final Label L0 = new Label();
@@ -236,4 +293,36 @@ public class MethodInstrumenterTest {
 		assertEquals(expected, actual);
 	}
 
+	@Test
+	public void testVisitTableSwitchInsnWithProbes_Trampolines() {
+		instrumenter = new MethodInstrumenter(actual.getVisitor(),
+				probeInserter, true);
+		final Label L0 = new Label();
+		final Label L1 = new Label();
+		final Label L2 = new Label();
+		LabelInfo.setProbeId(L0, 0);
+		LabelInfo.setProbeId(L1, 1);
+		LabelInfo.setFrame(L0, frame);
+		LabelInfo.setFrame(L1, frame);
+		instrumenter.visitTableSwitchInsnWithProbes(3, 5, L0, new Label[] { L1,
+				L1, L2 }, frame);
+		instrumenter.visitMaxs(1, 2);
+
+		final Label T0 = new Label();
+		final Label T1 = new Label();
+		expectedVisitor.visitTableSwitchInsn(3, 5, T0, new Label[] { T1, T1,
+				L2 });
+		expectedVisitor.visitLabel(T0);
+		expectedVisitor.visitFrame(Opcodes.F_FULL, 0, null, 0, null);
+		expectedVisitor.visitLdcInsn("Probe 0");
+		expectedVisitor.visitJumpInsn(Opcodes.GOTO, L0);
+		expectedVisitor.visitLabel(T1);
+		expectedVisitor.visitFrame(Opcodes.F_FULL, 0, null, 0, null);
+		expectedVisitor.visitLdcInsn("Probe 1");
+		expectedVisitor.visitJumpInsn(Opcodes.GOTO, L1);
+		expectedVisitor.visitMaxs(1, 2);
+
+		assertEquals(expected, actual);
+	}
+
 }
@@ -103,6 +103,31 @@ public class ProbeArrayStrategyFactoryTest {
 		assertFalse(cv.interfaceMethod);
 	}
 
+	@Test
+	public void testStripedClass7() {
+		final IProbeArrayStrategy strategy = test(Opcodes.V1_7, 0, false,
+				true, 4);
+		assertTrue(strategy instanceof StripedProbeArrayStrategy);
+		assertDataField(InstrSupport.DATAFIELD_ACC);
+		assertEquals(InstrSupport.STRIPED_DATAFIELD_DESC, cv.fieldDesc);
+		assertInitMethod(true);
+	}
+
+	@Test
+	public void testStripedClass5() {
+		test(Opcodes.V1_5, 0, false, true, 4);
+		assertDataField(InstrSupport.DATAFIELD_ACC);
+		assertInitMethod(false);
+	}
+
+	@Test
+	public void testStripedInterface8() {
+		final IProbeArrayStrategy strategy = test(Opcodes.V1_8,
+				Opcodes.ACC_INTERFACE, false, true, 4);
+		assertFalse(strategy instanceof StripedProbeArrayStrategy);
+		assertDataField(InstrSupport.DATAFIELD_INTF_ACC);
+	}
+
 	@Test
 	public void testInterface7() {
 		test(Opcodes.V1_7, Opcodes.ACC_INTERFACE, true, false);
@@ -150,8 +175,29 @@ public class ProbeArrayStrategyFactoryTest {
 		assertNoInitMethod();
 	}
 
+	@Test
+	public void testAbstractInterface8() {
+		ClassWriter writer = new ClassWriter(0);
+		writer.visit(Opcodes.V1_8, Opcodes.ACC_INTERFACE, "Foo",
+				"java/lang/Object", null, null);
+		writer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT, "doit",
+				"()V", null, null).visitEnd();
+		writer.visitEnd();
+
+		ProbeArrayStrategyFactory.createFor(
+				new ClassReader(writer.toByteArray()), generator, 1)
+				.addMembers(cv, 0);
+		assertNoDataField();
+		assertNoInitMethod();
+	}
+
 	private IProbeArrayStrategy test(int version, int access, boolean clinit,
 			boolean method) {
+		return test(version, access, clinit, method, 1);
+	}
+
+	private IProbeArrayStrategy test(int version, int access, boolean clinit,
+			boolean method, int stripes) {
 		ClassWriter writer = new ClassWriter(0);
 		writer.visit(version, access, "Foo", "java/lang/Object", null, null);
 		if (clinit) {
@@ -173,7 +219,8 @@ public class ProbeArrayStrategyFactoryTest {
 		writer.visitEnd();
 
 		final IProbeArrayStrategy strategy = ProbeArrayStrategyFactory
-				.createFor(new ClassReader(writer.toByteArray()), generator);
+				.createFor(new ClassReader(writer.toByteArray()), generator,
+						stripes);
 
 		strategy.addMembers(cv, 123);
 		return strategy;
@@ -183,6 +230,7 @@ public class ProbeArrayStrategyFactoryTest {
 
 		private int fieldAccess;
 		private String fieldName;
+		private String fieldDesc;
 
 		private int methodAccess;
 		private String methodName;
@@ -200,6 +248,7 @@ public class ProbeArrayStrategyFactoryTest {
 			assertNull(fieldName);
 			fieldAccess = access;
 			fieldName = name;
+			fieldDesc = desc;
 			return null;
 		}
 
@@ -18,6 +18,7 @@ import static org.junit.Assert.assertTrue;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.objectweb.asm.Opcodes;
 
 /**
  * Unit tests for {@link ProbeCounter}.
@@ -34,6 +35,7 @@ public class ProbeCounterTest {
 	@Test
 	public void testInitial() {
 		assertFalse(counter.hasMethods());
+		assertFalse(counter.hasCode());
 		assertEquals(0, counter.getCount());
 	}
 
@@ -53,6 +55,22 @@ public class ProbeCounterTest {
 	public void testVisitMethod() {
 		assertNull(counter.visitMethod(0, "foo", null, null, null));
 		assertTrue(counter.hasMethods());
+		assertTrue(counter.hasCode());
+	}
+
+	@Test
+	public void testVisitAbstractMethod() {
+		assertNull(counter.visitMethod(Opcodes.ACC_ABSTRACT, "foo", null,
+				null, null));
+		assertTrue(counter.hasMethods());
+		assertFalse(counter.hasCode());
+	}
+
+	@Test
+	public void testVisitNativeMethod() {
+		assertNull(counter.visitMethod(Opcodes.ACC_NATIVE, "foo", null, null,
+				null));
+		assertFalse(counter.hasCode());
 	}
 
 }
@@ -12,12 +12,15 @@
 package org.jacoco.core.internal.instr;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 import org.jacoco.core.instr.MethodRecorder;
+import org.jacoco.core.internal.flow.LabelInfo;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Label;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 
@@ -57,8 +60,8 @@ public class ProbeInserterTest {
 
 	@Test
 	public void testVariableStatic() {
-		ProbeInserter pi = new ProbeInserter(Opcodes.ACC_STATIC, "()V",
-				actualVisitor, arrayStrategy);
+		ProbeInserter pi = new ProbeInserter("Foo", Opcodes.ACC_STATIC, "m",
+				"()V", actualVisitor, arrayStrategy);
 		pi.insertProbe(0);
 
 		expectedVisitor.visitVarInsn(Opcodes.ALOAD, 0);
@@ -69,8 +72,8 @@ public class ProbeInserterTest {
 
 	@Test
 	public void testVariableNonStatic() {
-		ProbeInserter pi = new ProbeInserter(0, "()V", actualVisitor,
-				arrayStrategy);
+		ProbeInserter pi = new ProbeInserter("Foo", 0, "m", "()V",
+				actualVisitor, arrayStrategy);
 		pi.insertProbe(0);
 
 		expectedVisitor.visitVarInsn(Opcodes.ALOAD, 1);
@@ -81,8 +84,8 @@ public class ProbeInserterTest {
 
 	@Test
 	public void testVariableNonStatic_IZObject() {
-		ProbeInserter pi = new ProbeInserter(0, "(IZLjava/lang/Object;)V",
-				actualVisitor, arrayStrategy);
+		ProbeInserter pi = new ProbeInserter("Foo", 0, "m",
+				"(IZLjava/lang/Object;)V", actualVisitor, arrayStrategy);
 		pi.insertProbe(0);
 
 		expectedVisitor.visitVarInsn(Opcodes.ALOAD, 4);
@@ -93,8 +96,8 @@ public class ProbeInserterTest {
 
 	@Test
 	public void testVariableNonStatic_JD() {
-		ProbeInserter pi = new ProbeInserter(0, "(JD)V", actualVisitor,
-				arrayStrategy);
+		ProbeInserter pi = new ProbeInserter("Foo", 0, "m", "(JD)V",
+				actualVisitor, arrayStrategy);
 		pi.insertProbe(0);
 
 		expectedVisitor.visitVarInsn(Opcodes.ALOAD, 5);
@@ -105,8 +108,8 @@ public class ProbeInserterTest {
 
 	@Test
 	public void testVisitCode() {
-		ProbeInserter pi = new ProbeInserter(0, "()V", actualVisitor,
-				arrayStrategy);
+		ProbeInserter pi = new ProbeInserter("Foo", 0, "m", "()V",
+				actualVisitor, arrayStrategy);
 		pi.visitCode();
 
 		expectedVisitor.visitLdcInsn("init");
@@ -114,8 +117,8 @@ public class ProbeInserterTest {
 
 	@Test
 	public void testVisitVarIns() {
-		ProbeInserter pi = new ProbeInserter(0, "(II)V", actualVisitor,
-				arrayStrategy);
+		ProbeInserter pi = new ProbeInserter("Foo", 0, "m", "(II)V",
+				actualVisitor, arrayStrategy);
 
 		pi.visitVarInsn(Opcodes.ALOAD, 0);
 		pi.visitVarInsn(Opcodes.ILOAD, 1);
@@ -135,8 +138,8 @@ public class ProbeInserterTest {
 
 	@Test
 	public void testVisitIincInsn() {
-		ProbeInserter pi = new ProbeInserter(0, "(II)V", actualVisitor,
-				arrayStrategy);
+		ProbeInserter pi = new ProbeInserter("Foo", 0, "m", "(II)V",
+				actualVisitor, arrayStrategy);
 		pi.visitIincInsn(0, 100);
 		pi.visitIincInsn(1, 101);
 		pi.visitIincInsn(2, 102);
@@ -155,8 +158,8 @@ public class ProbeInserterTest {
 
 	@Test
 	public void testVisitLocalVariable() {
-		ProbeInserter pi = new ProbeInserter(0, "(II)V", actualVisitor,
-				arrayStrategy);
+		ProbeInserter pi = new ProbeInserter("Foo", 0, "m", "(II)V",
+				actualVisitor, arrayStrategy);
 
 		pi.visitLocalVariable(null, null, null, null, null, 0);
 		pi.visitLocalVariable(null, null, null, null, null, 1);
@@ -176,8 +179,8 @@ public class ProbeInserterTest {
 
 	@Test
 	public void testVisitMaxs1() {
-		ProbeInserter pi = new ProbeInserter(0, "(II)V", actualVisitor,
-				arrayStrategy);
+		ProbeInserter pi = new ProbeInserter("Foo", 0, "m", "(II)V",
+				actualVisitor, arrayStrategy);
 		pi.visitCode();
 		pi.visitMaxs(0, 8);
 
@@ -187,8 +190,8 @@ public class ProbeInserterTest {
 
 	@Test
 	public void testVisitMaxs2() {
-		ProbeInserter pi = new ProbeInserter(0, "(II)V", actualVisitor,
-				arrayStrategy);
+		ProbeInserter pi = new ProbeInserter("Foo", 0, "m", "(II)V",
+				actualVisitor, arrayStrategy);
 		pi.visitCode();
 		pi.visitMaxs(10, 8);
 
@@ -198,8 +201,8 @@ public class ProbeInserterTest {
 
 	@Test
 	public void testVisitFrame() {
-		ProbeInserter pi = new ProbeInserter(0, "(J)V", actualVisitor,
-				arrayStrategy);
+		ProbeInserter pi = new ProbeInserter("Foo", 0, "m", "(J)V",
+				actualVisitor, arrayStrategy);
 
 		pi.visitFrame(Opcodes.F_NEW, 3, new Object[] { "Foo", Opcodes.LONG,
 				"java/lang/String" }, 0, new Object[0]);
@@ -210,8 +213,8 @@ public class ProbeInserterTest {
 
 	@Test
 	public void testVisitFrameNoLocals() {
-		ProbeInserter pi = new ProbeInserter(Opcodes.ACC_STATIC, "()V",
-				actualVisitor, arrayStrategy);
+		ProbeInserter pi = new ProbeInserter("Foo", Opcodes.ACC_STATIC, "m",
+				"()V", actualVisitor, arrayStrategy);
 
 		pi.visitFrame(Opcodes.F_NEW, 0, new Object[] {}, 0, new Object[0]);
 
@@ -221,8 +224,8 @@ public class ProbeInserterTest {
 
 	@Test
 	public void testVisitFrameProbeAt0() {
-		ProbeInserter pi = new ProbeInserter(Opcodes.ACC_STATIC, "()V",
-				actualVisitor, arrayStrategy);
+		ProbeInserter pi = new ProbeInserter("Foo", Opcodes.ACC_STATIC, "m",
+				"()V", actualVisitor, arrayStrategy);
 
 		pi.visitFrame(Opcodes.F_NEW, 2, new Object[] { Opcodes.DOUBLE, "Foo" },
 				0, new Object[0]);
@@ -233,8 +236,8 @@ public class ProbeInserterTest {
 
 	@Test
 	public void testFillOneWord() {
-		ProbeInserter pi = new ProbeInserter(Opcodes.ACC_STATIC, "(I)V",
-				actualVisitor, arrayStrategy);
+		ProbeInserter pi = new ProbeInserter("Foo", Opcodes.ACC_STATIC, "m",
+				"(I)V", actualVisitor, arrayStrategy);
 
 		pi.visitFrame(Opcodes.F_NEW, 0, new Object[] {}, 0, new Object[] {});
 
@@ -245,8 +248,8 @@ public class ProbeInserterTest {
 
 	@Test
 	public void testFillTwoWord() {
-		ProbeInserter pi = new ProbeInserter(Opcodes.ACC_STATIC, "(J)V",
-				actualVisitor, arrayStrategy);
+		ProbeInserter pi = new ProbeInserter("Foo", Opcodes.ACC_STATIC, "m",
+				"(J)V", actualVisitor, arrayStrategy);
 
 		pi.visitFrame(Opcodes.F_NEW, 0, new Object[] {}, 0, new Object[] {});
 
@@ -257,8 +260,8 @@ public class ProbeInserterTest {
 
 	@Test
 	public void testFillPartly() {
-		ProbeInserter pi = new ProbeInserter(Opcodes.ACC_STATIC, "(DIJ)V",
-				actualVisitor, arrayStrategy);
+		ProbeInserter pi = new ProbeInserter("Foo", Opcodes.ACC_STATIC, "m",
+				"(DIJ)V", actualVisitor, arrayStrategy);
 
 		pi.visitFrame(Opcodes.F_NEW, 1, new Object[] { Opcodes.DOUBLE }, 0,
 				new Object[] {});
@@ -271,9 +274,128 @@ public class ProbeInserterTest {
 
 	@Test(expected = IllegalArgumentException.class)
 	public void testVisitFrame_invalidType() {
-		ProbeInserter pi = new ProbeInserter(0, "()V", actualVisitor,
-				arrayStrategy);
+		ProbeInserter pi = new ProbeInserter("Foo", 0, "m", "()V",
+				actualVisitor, arrayStrategy);
+		pi.visitFrame(42, 0, null, 0, null);
+	}
+
+	@Test
+	public void testVisitCompressedFrameSame() {
+		ProbeInserter pi = new ProbeInserter("Foo", 0, "m", "(J)V",
+				actualVisitor, arrayStrategy);
+
 		pi.visitFrame(Opcodes.F_SAME, 0, null, 0, null);
+		pi.visitFrame(Opcodes.F_SAME, 0, null, 0, null);
+
+		// The first frame is relative to the implicit frame without probes
+		expectedVisitor.visitFrame(Opcodes.F_APPEND, 1, new Object[] { "[Z" },
+				0, null);
+		expectedVisitor.visitFrame(Opcodes.F_SAME, 0, null, 0, null);
+	}
+
+	@Test
+	public void testVisitCompressedFrameSame1() {
+		ProbeInserter pi = new ProbeInserter("Foo", 0, "m", "(J)V",
+				actualVisitor, arrayStrategy);
+
+		pi.visitFrame(Opcodes.F_SAME1, 0, null, 1,
+				new Object[] { Opcodes.INTEGER });
+		pi.visitFrame(Opcodes.F_SAME1, 0, null, 1,
+				new Object[] { Opcodes.FLOAT });
+
+		expectedVisitor.visitFrame(Opcodes.F_FULL, 3, new Object[] { "Foo",
+				Opcodes.LONG, "[Z" }, 1, new Object[] { Opcodes.INTEGER });
+		expectedVisitor.visitFrame(Opcodes.F_SAME1, 0, null, 1,
+				new Object[] { Opcodes.FLOAT });
+	}
+
+	@Test
+	public void testVisitCompressedFrameImplicit() {
+		ProbeInserter pi = new ProbeInserter("Foo", 0, "<init>",
+				"(ZBCSIFJD[ILjava/lang/String;)V", actualVisitor,
+				arrayStrategy);
+
+		pi.visitFrame(Opcodes.F_SAME1, 0, null, 1, new Object[] { "Bar" });
+
+		expectedVisitor.visitFrame(Opcodes.F_FULL, 12, new Object[] {
+				Opcodes.UNINITIALIZED_THIS, Opcodes.INTEGER, Opcodes.INTEGER,
+				Opcodes.INTEGER, Opcodes.INTEGER, Opcodes.INTEGER,
+				Opcodes.FLOAT, Opcodes.LONG, Opcodes.DOUBLE, "[I",
+				"java/lang/String", "[Z" }, 1, new Object[] { "Bar" });
+	}
+
+	@Test
+	public void testVisitCompressedFrameAppend() {
+		ProbeInserter pi = new ProbeInserter("Foo", Opcodes.ACC_STATIC, "m",
+				"(I)V", actualVisitor, arrayStrategy);
+
+		pi.visitFrame(Opcodes.F_APPEND, 2, new Object[] { Opcodes.INTEGER,
+				"Bar" }, 0, null);
+		pi.visitFrame(Opcodes.F_APPEND, 1, new Object[] { Opcodes.LONG }, 0,
+				null);
+
+		expectedVisitor.visitFrame(Opcodes.F_APPEND, 3, new Object[] { "[Z",
+				Opcodes.INTEGER, "Bar" }, 0, null);
+		expectedVisitor.visitFrame(Opcodes.F_APPEND, 1,
+				new Object[] { Opcodes.LONG }, 0, null);
+	}
+
+	@Test
+	public void testVisitCompressedFrameAppendFull() {
+		ProbeInserter pi = new ProbeInserter("Foo", Opcodes.ACC_STATIC, "m",
+				"(I)V", actualVisitor, arrayStrategy);
+
+		pi.visitFrame(Opcodes.F_APPEND, 3, new Object[] { Opcodes.INTEGER,
+				"Bar", Opcodes.FLOAT }, 0, null);
+
+		// The probe variable does not fit into a single append frame
+		expectedVisitor.visitFrame(Opcodes.F_FULL, 5, new Object[] {
+				Opcodes.INTEGER, "[Z", Opcodes.INTEGER, "Bar", Opcodes.FLOAT },
+				0, null);
+	}
+
+	@Test
+	public void testVisitCompressedFrameChop() {
+		ProbeInserter pi = new ProbeInserter("Foo", Opcodes.ACC_STATIC, "m",
+				"(I)V", actualVisitor, arrayStrategy);
+
+		pi.visitFrame(Opcodes.F_APPEND, 2, new Object[] { "Bar", "Bar" }, 0,
+				null);
+		pi.visitFrame(Opcodes.F_CHOP, 1, null, 0, null);
+		pi.visitFrame(Opcodes.F_CHOP, 2, null, 0, null);
+		pi.visitFrame(Opcodes.F_APPEND, 1, new Object[] { "Bar" }, 0, null);
+
+		expectedVisitor.visitFrame(Opcodes.F_APPEND, 3, new Object[] { "[Z",
+				"Bar", "Bar" }, 0, null);
+		expectedVisitor.visitFrame(Opcodes.F_CHOP, 1, null, 0, null);
+		// Chopping the argument also removes the probe variable
+		expectedVisitor.visitFrame(Opcodes.F_FULL, 2, new Object[] {
+				Opcodes.TOP, "[Z" }, 0, null);
+		expectedVisitor.visitFrame(Opcodes.F_FULL, 2, new Object[] { "Bar",
+				"[Z" }, 0, null);
+	}
+
+	@Test
+	public void testTargetFrame() {
+		ProbeInserter pi = new ProbeInserter("Foo", Opcodes.ACC_STATIC, "m",
+				"(I)V", actualVisitor, arrayStrategy);
+		final Label target = new Label();
+		LabelInfo.setTarget(target);
+		LabelInfo.setTarget(target);
+		final Label other = new Label();
+
+		pi.visitLabel(target);
+		pi.visitLabel(other);
+		pi.visitFrame(Opcodes.F_SAME1, 0, null, 1, new Object[] { "Bar" });
+		assertNull(LabelInfo.getFrame(other));
+		LabelInfo.getFrame(target).accept(pi);
+
+		expectedVisitor.visitLabel(target);
+		expectedVisitor.visitLabel(other);
+		expectedVisitor.visitFrame(Opcodes.F_FULL, 2, new Object[] {
+				Opcodes.INTEGER, "[Z" }, 1, new Object[] { "Bar" });
+		expectedVisitor.visitFrame(Opcodes.F_FULL, 2, new Object[] {
+				Opcodes.INTEGER, "[Z" }, 1, new Object[] { "Bar" });
 	}
 
 }
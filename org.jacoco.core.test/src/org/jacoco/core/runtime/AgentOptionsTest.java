@@ -51,7 +51,22 @@ public class AgentOptionsTest {
 		assertEquals(AgentOptions.DEFAULT_ADDRESS, options.getAddress());
 		assertEquals(AgentOptions.DEFAULT_PORT, options.getPort());
 		assertNull(options.getClassDumpDir());
+		assertNull(options.getClassCacheDir());
+		assertFalse(options.getDelta());
+		assertNull(options.getSpoolDir());
+		assertEquals(AgentOptions.DEFAULT_SPOOLLIMIT, options.getSpoolLimit());
+		assertEquals(0, options.getBatchInterval());
+		assertEquals(AgentOptions.DEFAULT_SYNCINTERVAL,
+				options.getSyncInterval());
 		assertFalse(options.getJmx());
+		assertFalse(options.getBootstrapAccessor());
+		assertEquals("", options.getStripedClasses());
+		assertEquals(AgentOptions.DEFAULT_PROBESTRIPES,
+				options.getProbeStripes());
+		assertFalse(options.getLazyInstrumentation());
+		assertEquals(0, options.getDetachInterval());
+		assertEquals(0, options.getDetachQuietTime());
+		assertFalse(options.getProbeElision());
 
 		assertEquals("", options.toString());
 	}
@@ -384,6 +399,120 @@ public class AgentOptionsTest {
 		assertEquals("classdumpdir=target/dump", options.toString());
 	}
 
+	@Test
+	public void testGetDelta() {
+		AgentOptions options = new AgentOptions("delta=true");
+		assertTrue(options.getDelta());
+	}
+
+	@Test
+	public void testSetDelta() {
+		AgentOptions options = new AgentOptions();
+		options.setDelta(true);
+		assertTrue(options.getDelta());
+		assertEquals("delta=true", options.toString());
+	}
+
+	@Test
+	public void testGetSpoolDir() {
+		AgentOptions options = new AgentOptions("spooldir=target/spool");
+		assertEquals("target/spool", options.getSpoolDir());
+	}
+
+	@Test
+	public void testSetSpoolDir() {
+		AgentOptions options = new AgentOptions();
+		options.setSpoolDir("target/spool");
+		assertEquals("target/spool", options.getSpoolDir());
+		assertEquals("spooldir=target/spool", options.toString());
+	}
+
+	@Test
+	public void testGetSpoolLimit() {
+		AgentOptions options = new AgentOptions("spoollimit=1024");
+		assertEquals(1024, options.getSpoolLimit());
+	}
+
+	@Test
+	public void testSetSpoolLimit() {
+		AgentOptions options = new AgentOptions();
+		options.setSpoolLimit(2048);
+		assertEquals(2048, options.getSpoolLimit());
+		assertEquals("spoollimit=2048", options.toString());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidSpoolLimitOptionValue() {
+		new AgentOptions("spoollimit=0");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSetInvalidSpoolLimit() {
+		new AgentOptions().setSpoolLimit(-1);
+	}
+
+	@Test
+	public void testGetBatchInterval() {
+		AgentOptions options = new AgentOptions("batchinterval=60");
+		assertEquals(60, options.getBatchInterval());
+	}
+
+	@Test
+	public void testSetBatchInterval() {
+		AgentOptions options = new AgentOptions();
+		options.setBatchInterval(30);
+		assertEquals(30, options.getBatchInterval());
+		assertEquals("batchinterval=30", options.toString());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidBatchIntervalOptionValue() {
+		new AgentOptions("batchinterval=-1");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSetInvalidBatchInterval() {
+		new AgentOptions().setBatchInterval(-5);
+	}
+
+	@Test
+	public void testGetSyncInterval() {
+		AgentOptions options = new AgentOptions("syncinterval=250");
+		assertEquals(250, options.getSyncInterval());
+	}
+
+	@Test
+	public void testSetSyncInterval() {
+		AgentOptions options = new AgentOptions();
+		options.setSyncInterval(500);
+		assertEquals(500, options.getSyncInterval());
+		assertEquals("syncinterval=500", options.toString());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidSyncIntervalOptionValue() {
+		new AgentOptions("syncinterval=0");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSetInvalidSyncInterval() {
+		new AgentOptions().setSyncInterval(-1);
+	}
+
+	@Test
+	public void testGetClassCacheDir() {
+		AgentOptions options = new AgentOptions("classcachedir=target/cache");
+		assertEquals("target/cache", options.getClassCacheDir());
+	}
+
+	@Test
+	public void testSetClassCacheDir() {
+		AgentOptions options = new AgentOptions();
+		options.setClassCacheDir("target/cache");
+		assertEquals("target/cache", options.getClassCacheDir());
+		assertEquals("classcachedir=target/cache", options.toString());
+	}
+
 	@Test
 	public void testGetJmx() {
 		AgentOptions options = new AgentOptions("jmx=true");
@@ -397,6 +526,124 @@ public class AgentOptionsTest {
 		assertTrue(options.getJmx());
 	}
 
+	@Test
+	public void testGetBootstrapAccessor() {
+		AgentOptions options = new AgentOptions("bootstrapaccessor=true");
+		assertTrue(options.getBootstrapAccessor());
+	}
+
+	@Test
+	public void testSetBootstrapAccessor() {
+		AgentOptions options = new AgentOptions();
+		options.setBootstrapAccessor(true);
+		assertTrue(options.getBootstrapAccessor());
+		assertEquals("bootstrapaccessor=true", options.toString());
+	}
+
+	@Test
+	public void testGetStripedClasses() {
+		AgentOptions options = new AgentOptions("stripedclasses=*.Hot*");
+		assertEquals("*.Hot*", options.getStripedClasses());
+	}
+
+	@Test
+	public void testSetStripedClasses() {
+		AgentOptions options = new AgentOptions();
+		options.setStripedClasses("org.example.*");
+		assertEquals("org.example.*", options.getStripedClasses());
+		assertEquals("stripedclasses=org.example.*", options.toString());
+	}
+
+	@Test
+	public void testGetProbeStripes() {
+		AgentOptions options = new AgentOptions("probestripes=16");
+		assertEquals(16, options.getProbeStripes());
+	}
+
+	@Test
+	public void testSetProbeStripes() {
+		AgentOptions options = new AgentOptions();
+		options.setProbeStripes(4);
+		assertEquals(4, options.getProbeStripes());
+		assertEquals("probestripes=4", options.toString());
+	}
+
+	@Test
+	public void testGetLazyInstrumentation() {
+		AgentOptions options = new AgentOptions("lazyinstrumentation=true");
+		assertTrue(options.getLazyInstrumentation());
+	}
+
+	@Test
+	public void testSetLazyInstrumentation() {
+		AgentOptions options = new AgentOptions();
+		options.setLazyInstrumentation(true);
+		assertTrue(options.getLazyInstrumentation());
+		assertEquals("lazyinstrumentation=true", options.toString());
+	}
+
+	@Test
+	public void testGetDetachInterval() {
+		AgentOptions options = new AgentOptions("detachinterval=60");
+		assertEquals(60, options.getDetachInterval());
+	}
+
+	@Test
+	public void testSetDetachInterval() {
+		AgentOptions options = new AgentOptions();
+		options.setDetachInterval(30);
+		assertEquals(30, options.getDetachInterval());
+		assertEquals("detachinterval=30", options.toString());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidDetachIntervalOptionValue() {
+		new AgentOptions("detachinterval=-1");
+	}
+
+	@Test
+	public void testGetDetachQuietTime() {
+		AgentOptions options = new AgentOptions("detachquiettime=600");
+		assertEquals(600, options.getDetachQuietTime());
+	}
+
+	@Test
+	public void testSetDetachQuietTime() {
+		AgentOptions options = new AgentOptions();
+		options.setDetachQuietTime(300);
+		assertEquals(300, options.getDetachQuietTime());
+		assertEquals("detachquiettime=300", options.toString());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidDetachQuietTimeOptionValue() {
+		new AgentOptions("detachquiettime=-1");
+	}
+
+	@Test
+	public void testGetProbeElision() {
+		AgentOptions options = new AgentOptions("probeelision=true");
+		assertTrue(options.getProbeElision());
+	}
+
+	@Test
+	public void testSetProbeElision() {
+		AgentOptions options = new AgentOptions();
+		options.setProbeElision(true);
+		assertTrue(options.getProbeElision());
+		assertEquals("probeelision=true", options.toString());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidProbeStripesOptionValue() {
+		new AgentOptions("probestripes=6");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSetInvalidProbeStripes() {
+		new AgentOptions().setProbeStripes(0);
+	}
+
 	@Test
 	public void testGetVMArgumentWithNoOptions() {
 		AgentOptions options = new AgentOptions();
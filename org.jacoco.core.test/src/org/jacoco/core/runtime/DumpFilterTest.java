@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.core.runtime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.jacoco.core.data.ClassHitStore;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataReader;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link DumpFilter}.
+ */
+public class DumpFilterTest {
+
+	private ByteArrayOutputStream buffer;
+
+	private ExecutionDataWriter writer;
+
+	private ExecutionDataStore executionData;
+
+	private ClassHitStore classHits;
+
+	@Before
+	public void setup() throws IOException {
+		buffer = new ByteArrayOutputStream();
+		writer = new ExecutionDataWriter(buffer);
+		executionData = new ExecutionDataStore();
+		classHits = new ClassHitStore();
+	}
+
+	@Test
+	public void testIncludes() throws IOException {
+		visit(new DumpFilter("org.foo.*", "", false, writer));
+
+		assertTrue(executionData.contains("org/foo/A"));
+		assertTrue(executionData.contains("org/foo/bar/B"));
+		assertFalse(executionData.contains("org/bar/C"));
+		assertTrue(classHits.isEmpty());
+	}
+
+	@Test
+	public void testExcludes() throws IOException {
+		visit(new DumpFilter("*", "*.bar.*:org.bar.*", false, writer));
+
+		assertTrue(executionData.contains("org/foo/A"));
+		assertFalse(executionData.contains("org/foo/bar/B"));
+		assertFalse(executionData.contains("org/bar/C"));
+	}
+
+	@Test
+	public void testClassHits() throws IOException {
+		visit(new DumpFilter("org.*", "", true, writer));
+
+		assertTrue(executionData.getContents().isEmpty());
+		assertTrue(classHits.contains(1));
+		assertTrue(classHits.contains(2));
+		assertTrue(classHits.contains(3));
+		// Classes without hits are not reported
+		assertFalse(classHits.contains(4));
+		assertEquals("org/bar/C", classHits.getName(3));
+	}
+
+	private void visit(final DumpFilter filter) throws IOException {
+		filter.visitClassExecution(new ExecutionData(1, "org/foo/A",
+				new boolean[] { true }));
+		filter.visitClassExecution(new ExecutionData(2, "org/foo/bar/B",
+				new boolean[] { true }));
+		filter.visitClassExecution(new ExecutionData(3, "org/bar/C",
+				new boolean[] { false, true }));
+		filter.visitClassExecution(new ExecutionData(4, "org/foo/D",
+				new boolean[] { false }));
+		final ExecutionDataReader reader = new ExecutionDataReader(
+				new ByteArrayInputStream(buffer.toByteArray()));
+		reader.setExecutionDataVisitor(executionData);
+		reader.setClassHitVisitor(classHits);
+		reader.read();
+	}
+
+}
@@ -14,6 +14,7 @@ package org.jacoco.core.runtime;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
@@ -79,11 +80,56 @@ public class RemoteControlReaderWriterTest extends
 			public void visitDumpCommand(boolean dump, boolean reset) {
 				calls.append("cmd(" + dump + "," + reset + ")");
 			}
+
+			public void visitFilteredDumpCommand(boolean reset,
+					String includes, String excludes, boolean classHits) {
+				fail();
+			}
 		});
 		assertFalse(reader.read());
 		assertEquals("cmd(" + doDump + "," + doReset + ")", calls.toString());
 	}
 
+	@Test
+	public void testVisitFilteredDump1() throws IOException {
+		testVisitFilteredDump(false, "org.foo.*", "", false);
+	}
+
+	@Test
+	public void testVisitFilteredDump2() throws IOException {
+		testVisitFilteredDump(true, "*", "*Test:*IT", true);
+	}
+
+	@Test(expected = IOException.class)
+	public void testNoRemoteCommandVisitorFiltered() throws IOException {
+		writer.visitFilteredDumpCommand(false, "*", "", false);
+		final RemoteControlReader reader = createReader();
+		reader.read();
+	}
+
+	private void testVisitFilteredDump(boolean doReset, String doIncludes,
+			String doExcludes, boolean doClassHits) throws IOException {
+		writer.visitFilteredDumpCommand(doReset, doIncludes, doExcludes,
+				doClassHits);
+		final RemoteControlReader reader = createReader();
+		final StringBuilder calls = new StringBuilder();
+		reader.setRemoteCommandVisitor(new IRemoteCommandVisitor() {
+
+			public void visitDumpCommand(boolean dump, boolean reset) {
+				fail();
+			}
+
+			public void visitFilteredDumpCommand(boolean reset,
+					String includes, String excludes, boolean classHits) {
+				calls.append("cmd(" + reset + "," + includes + "," + excludes
+						+ "," + classHits + ")");
+			}
+		});
+		assertFalse(reader.read());
+		assertEquals("cmd(" + doReset + "," + doIncludes + "," + doExcludes
+				+ "," + doClassHits + ")", calls.toString());
+	}
+
 	@Test
 	public void testSendCmdOk() throws IOException {
 		writer.sendCmdOk();
@@ -14,11 +14,18 @@ package org.jacoco.core.runtime;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.Callable;
 
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.IExecutionDataVisitor;
+import org.jacoco.core.internal.instr.InstrSupport;
 import org.jacoco.core.test.TargetLoader;
 import org.junit.Before;
 import org.junit.Test;
@@ -63,10 +70,97 @@ public class RuntimeDataTest {
 		assertFalse(data[0]);
 		assertFalse(data[1]);
 		assertFalse(data[2]);
-		assertSame(storage.getData(123).getProbes(), data);
+		assertTrue(Arrays.equals(storage.getData(123).getProbes(), data));
 		assertEquals("Foo", storage.getData(123).getName());
 	}
 
+	@Test
+	public void testGetStripe() {
+		final ExecutionData stripe = data.getExecutionData(123,
+				InstrSupport.getStripeName("Foo", 1), 3);
+		assertNotSame(stripe, data.getExecutionData(123, "Foo", 3));
+		assertSame(stripe, data.getExecutionData(123,
+				InstrSupport.getStripeName("Foo", 1), 3));
+		assertNotSame(stripe, data.getExecutionData(123,
+				InstrSupport.getStripeName("Foo", 2), 3));
+	}
+
+	@Test
+	public void testCollectStripes() {
+		data.getExecutionData(123, InstrSupport.getStripeName("Foo", 0), 3)
+				.getProbes()[0] = true;
+		data.getExecutionData(123, InstrSupport.getStripeName("Foo", 1), 3)
+				.getProbes()[2] = true;
+		data.getExecutionData(456, InstrSupport.getStripeName("Bar", 0), 1);
+
+		data.collect(storage, storage, false);
+
+		storage.assertSize(2);
+		assertTrue(Arrays.equals(new boolean[] { true, false, true }, storage
+				.getData(123).getProbes()));
+		assertTrue(Arrays.equals(new boolean[] { false }, storage.getData(456)
+				.getProbes()));
+		assertEquals("Foo", storage.getData(123).getName());
+	}
+
+	@Test
+	public void testCollectStripesWithReset() {
+		final boolean[] probes = data.getExecutionData(123,
+				InstrSupport.getStripeName("Foo", 3), 1).getProbes();
+		probes[0] = true;
+
+		data.collect(storage, storage, true);
+		assertFalse(probes[0]);
+
+		final TestStorage storage2 = new TestStorage();
+		data.collect(storage2, storage2, false);
+		assertTrue(Arrays.equals(new boolean[] { false }, storage2
+				.getData(123).getProbes()));
+	}
+
+	@Test
+	public void testInitializationHook() {
+		final List<String> initialized = new ArrayList<String>();
+		data.setInitializationListener(new IClassInitializationListener() {
+			public void classInitialized(final long id, final String name) {
+				initialized.add(id + " " + name);
+			}
+		});
+		final ExecutionData hook = data.getExecutionData(123, "Foo",
+				InstrSupport.HOOK_PROBECOUNT);
+		assertEquals(0, hook.getProbes().length);
+		assertEquals(Arrays.asList("123 Foo"), initialized);
+
+		data.collect(storage, storage, false);
+		storage.assertSize(0);
+	}
+
+	@Test
+	public void testInitializationHookWithoutListener() {
+		data.getExecutionData(123, "Foo", InstrSupport.HOOK_PROBECOUNT);
+		data.collect(storage, storage, false);
+		storage.assertSize(0);
+	}
+
+	@Test
+	public void testResetListener() {
+		final List<String> resets = new ArrayList<String>();
+		data.setResetListener(new IResetListener() {
+			public void executionDataReset() {
+				resets.add("reset");
+			}
+		});
+		data.collect(storage, storage, false);
+		assertEquals(0, resets.size());
+		data.collect(storage, storage, true);
+		assertEquals(1, resets.size());
+		data.reset();
+		assertEquals(2, resets.size());
+		data.beginTest("test1");
+		data.endTest(storage, storage);
+		assertEquals(4, resets.size());
+	}
+
 	@Test
 	public void testCollectEmpty() {
 		data.collect(storage, storage, false);
@@ -99,6 +193,178 @@ public class RuntimeDataTest {
 		assertEquals("testsession", storage.getSessionInfo().getId());
 	}
 
+	@Test
+	public void testCollectSnapshot() {
+		final boolean[] probes = data.getExecutionData(123, "Foo", 2)
+				.getProbes();
+		probes[0] = true;
+
+		data.collect(new IExecutionDataVisitor() {
+			public void visitClassExecution(final ExecutionData d) {
+				// Executed while the data is written:
+				probes[1] = true;
+				storage.visitClassExecution(d);
+			}
+		}, storage, true);
+
+		assertTrue(Arrays.equals(new boolean[] { true, false }, storage
+				.getData(123).getProbes()));
+		final TestStorage storage2 = new TestStorage();
+		data.collect(storage2, storage2, false);
+		assertTrue(Arrays.equals(new boolean[] { false, true }, storage2
+				.getData(123).getProbes()));
+	}
+
+	@Test
+	public void testCollectDoesNotBlockNewClasses() throws Exception {
+		data.getExecutionData(123, "Foo", 1);
+		final Thread loader = new Thread() {
+			@Override
+			public void run() {
+				// Enough classes to grow the store:
+				for (int i = 0; i < 5000; i++) {
+					data.getExecutionData(1000 + i, "Class" + i, 1);
+				}
+			}
+		};
+		data.collect(new IExecutionDataVisitor() {
+			public void visitClassExecution(final ExecutionData d) {
+				loader.start();
+				try {
+					loader.join(5000);
+				} catch (final InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		}, storage, false);
+		assertFalse(loader.isAlive());
+
+		final TestStorage storage2 = new TestStorage();
+		data.collect(storage2, storage2, false);
+		storage2.assertSize(5001);
+	}
+
+	@Test
+	public void testTestCapture() {
+		final boolean[] foo = data.getExecutionData(123, "Foo", 2).getProbes();
+		final boolean[] bar = data.getExecutionData(456, "Bar", 1).getProbes();
+		data.getExecutionData(789, "Baz", 1);
+		foo[0] = true;
+
+		data.beginTest("test1");
+		assertFalse(foo[0]);
+		foo[1] = true;
+		bar[0] = true;
+		data.endTest(storage, storage);
+
+		storage.assertSize(2);
+		assertTrue(Arrays.equals(new boolean[] { false, true }, storage
+				.getData(123).getProbes()));
+		assertTrue(Arrays.equals(new boolean[] { true }, storage.getData(456)
+				.getProbes()));
+		assertEquals("test1", storage.getSessionInfo().getId());
+		assertFalse(foo[1]);
+		assertFalse(bar[0]);
+	}
+
+	@Test
+	public void testTestCaptureStripes() {
+		data.getExecutionData(123, InstrSupport.getStripeName("Foo", 2), 2)
+				.getProbes()[1] = true;
+		data.getExecutionData(456, "Bar", 1);
+
+		data.beginTest("test1");
+		final boolean[] stripe = data.getExecutionData(123,
+				InstrSupport.getStripeName("Foo", 2), 2).getProbes();
+		assertFalse(stripe[1]);
+		stripe[0] = true;
+		data.endTest(storage, storage);
+
+		storage.assertSize(1);
+		assertEquals("Foo", storage.getData(123).getName());
+		assertTrue(Arrays.equals(new boolean[] { true, false }, storage
+				.getData(123).getProbes()));
+		assertFalse(stripe[0]);
+	}
+
+	@Test
+	public void testTestCaptureResetsDeltaTracker() {
+		final DeltaTracker tracker = new DeltaTracker();
+		final boolean[] probes = data.getExecutionData(123, "Foo", 1)
+				.getProbes();
+		probes[0] = true;
+		data.collect(storage, storage, false, tracker);
+
+		data.beginTest("test1");
+		probes[0] = true;
+		data.endTest(new TestStorage(), new TestStorage());
+
+		probes[0] = true;
+		final TestStorage storage2 = new TestStorage();
+		data.collect(storage2, storage2, false, tracker);
+		storage2.assertSize(1);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testEndTestWithoutBegin() {
+		data.endTest(storage, storage);
+	}
+
+	@Test
+	public void testCollectDelta() {
+		final DeltaTracker tracker = new DeltaTracker();
+		final boolean[] foo = data.getExecutionData(123, "Foo", 2).getProbes();
+		final boolean[] bar = data.getExecutionData(456, "Bar", 1).getProbes();
+		data.getExecutionData(789, "Baz", 1);
+		foo[0] = true;
+		bar[0] = true;
+
+		data.collect(storage, storage, false, tracker);
+		storage.assertSize(2);
+		assertNotNull(storage.getSessionInfo());
+
+		final TestStorage storage2 = new TestStorage();
+		data.collect(storage2, storage2, false, tracker);
+		storage2.assertSize(0);
+		assertNotNull(storage2.getSessionInfo());
+
+		foo[1] = true;
+		final TestStorage storage3 = new TestStorage();
+		data.collect(storage3, storage3, false, tracker);
+		storage3.assertSize(1);
+		assertTrue(Arrays.equals(new boolean[] { true, true }, storage3
+				.getData(123).getProbes()));
+	}
+
+	@Test
+	public void testCollectDeltaAfterReset() {
+		final DeltaTracker tracker = new DeltaTracker();
+		final boolean[] probes = data.getExecutionData(123, "Foo", 2)
+				.getProbes();
+		probes[0] = true;
+		probes[1] = true;
+		data.collect(storage, storage, true, tracker);
+		storage.assertSize(1);
+
+		// Fewer hits than before the reset must be reported:
+		probes[1] = true;
+		final TestStorage storage2 = new TestStorage();
+		data.collect(storage2, storage2, false, tracker);
+		storage2.assertSize(1);
+		assertTrue(Arrays.equals(new boolean[] { false, true }, storage2
+				.getData(123).getProbes()));
+	}
+
+	@Test
+	public void testCollectDeltaWithIndependentTrackers() {
+		data.getExecutionData(123, "Foo", 1).getProbes()[0] = true;
+		data.collect(storage, storage, false, new DeltaTracker());
+		final TestStorage storage2 = new TestStorage();
+		data.collect(storage2, storage2, false, new DeltaTracker());
+		storage.assertSize(1);
+		storage2.assertSize(1);
+	}
+
 	@Test
 	public void testEquals() {
 		assertTrue(data.equals(data));
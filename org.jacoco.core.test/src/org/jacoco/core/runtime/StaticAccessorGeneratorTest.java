@@ -0,0 +1,70 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.core.runtime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.jacoco.core.JaCoCo;
+import org.jacoco.core.instr.MethodRecorder;
+import org.junit.Before;
+import org.junit.Test;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Unit tests for {@link StaticAccessorGenerator}.
+ */
+public class StaticAccessorGeneratorTest {
+
+	private IExecutionDataAccessorGenerator generator;
+
+	@Before
+	public void setup() {
+		generator = new StaticAccessorGenerator("foo/Accessor");
+	}
+
+	@Test
+	public void testGenerateDataAccessor() {
+		MethodRecorder actual = new MethodRecorder();
+		int size = generator.generateDataAccessor(987654321, "foo/Bar", 300,
+				actual.getVisitor());
+
+		MethodRecorder expected = new MethodRecorder();
+		expected.getVisitor().visitLdcInsn(Long.valueOf(987654321));
+		expected.getVisitor().visitLdcInsn("foo/Bar");
+		expected.getVisitor().visitIntInsn(Opcodes.SIPUSH, 300);
+		expected.getVisitor().visitMethodInsn(Opcodes.INVOKESTATIC,
+				"foo/Accessor", "getProbes", "(JLjava/lang/String;I)[Z", false);
+
+		assertEquals(expected, actual);
+		assertEquals(4, size);
+	}
+
+	@Test
+	public void testNoAllocationInDataAccessor() {
+		generator.generateDataAccessor(1001, "Target", 5, new MethodVisitor(
+				JaCoCo.ASM_API_VERSION) {
+			@Override
+			public void visitTypeInsn(int opcode, String type) {
+				fail("No allocation allowed.");
+			}
+
+			@Override
+			public void visitMethodInsn(int opcode, String owner,
+					String name, String desc, boolean itf) {
+				assertEquals("foo/Accessor", owner);
+			}
+		});
+	}
+
+}
@@ -11,9 +11,16 @@
  *******************************************************************************/
 package org.jacoco.core.runtime;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
 import org.junit.Test;
 
 public class WildcardMatcherTest {
@@ -69,4 +76,119 @@ public class WildcardMatcherTest {
 				.matches("org/example/Enity$$$generated123"));
 	}
 
+	@Test
+	public void testEmptyParts() {
+		assertTrue(new WildcardMatcher(":").matches(""));
+		assertTrue(new WildcardMatcher("a::b").matches(""));
+		assertFalse(new WildcardMatcher("a:").matches(""));
+	}
+
+	@Test
+	public void testCollection() {
+		final WildcardMatcher matcher = new WildcardMatcher(Arrays.asList(
+				"org.example.*", "*Test", "a:b"));
+		assertTrue(matcher.matches("org.example.Foo"));
+		assertTrue(matcher.matches("org.other.FooTest"));
+		assertTrue(matcher.matches("a:b"));
+		assertFalse(matcher.matches("a"));
+		assertFalse(new WildcardMatcher(new ArrayList<String>()).matches(""));
+	}
+
+	@Test
+	public void testNonAscii() {
+		assertTrue(new WildcardMatcher("*\u00e4?").matches("\u00e4\u00e4\u00e4"));
+		assertFalse(new WildcardMatcher("\u00e4").matches("a"));
+	}
+
+	@Test
+	public void testManyExpressions() {
+		final StringBuilder expression = new StringBuilder();
+		for (int i = 0; i < 300; i++) {
+			expression.append("org.example.pkg").append(i).append(".*:");
+			expression.append("*.Generated").append(i).append("$*:");
+		}
+		final WildcardMatcher matcher = new WildcardMatcher(
+				expression.toString());
+		assertTrue(matcher.matches("org.example.pkg17.Foo"));
+		assertTrue(matcher.matches("com.Generated299$1"));
+		assertFalse(matcher.matches("org.example.pkg300.Foo"));
+		assertFalse(matcher.matches("org.example.pkg1"));
+	}
+
+	@Test
+	public void testSameAsRegularExpressions() {
+		final Random random = new Random(42);
+		final String alphabet = "ab.$";
+		for (int i = 0; i < 200; i++) {
+			final List<String> parts = new ArrayList<String>();
+			final int count = 1 + random.nextInt(4);
+			for (int j = 0; j < count; j++) {
+				parts.add(randomString(random, alphabet + "*?", 6));
+			}
+			final WildcardMatcher matcher = new WildcardMatcher(parts);
+			final Pattern pattern = toPattern(parts);
+			for (int k = 0; k < 50; k++) {
+				final String s = randomString(random, alphabet, 10);
+				assertEquals(parts + " " + s, pattern.matcher(s).matches(),
+						matcher.matches(s));
+			}
+		}
+	}
+
+	@Test
+	public void testStateLimit() {
+		// All words "a" followed by exactly ten characters: the automaton has
+		// to remember the last eleven characters, i.e. more than 1024 states
+		final List<String> expressions = new ArrayList<String>();
+		for (int i = 0; i < 1024; i++) {
+			final StringBuilder expression = new StringBuilder("*a");
+			for (int j = 0; j < 10; j++) {
+				expression.append((i >> j & 1) == 0 ? 'a' : 'b');
+			}
+			expressions.add(expression.toString());
+		}
+		final WildcardMatcher matcher = new WildcardMatcher(expressions);
+		final Pattern pattern = Pattern.compile(".*a[ab]{10}");
+		final Random random = new Random(7);
+		for (int i = 0; i < 5000; i++) {
+			final String s = randomString(random, "ab", 30);
+			assertEquals(s, pattern.matcher(s).matches(), matcher.matches(s));
+		}
+	}
+
+	private static String randomString(final Random random,
+			final String alphabet, final int maxLength) {
+		final StringBuilder s = new StringBuilder();
+		final int length = random.nextInt(maxLength + 1);
+		for (int i = 0; i < length; i++) {
+			s.append(alphabet.charAt(random.nextInt(alphabet.length())));
+		}
+		return s.toString();
+	}
+
+	private static Pattern toPattern(final List<String> parts) {
+		final StringBuilder regex = new StringBuilder();
+		for (final String part : parts) {
+			if (regex.length() > 0) {
+				regex.append('|');
+			}
+			regex.append('(');
+			for (final char c : part.toCharArray()) {
+				switch (c) {
+				case '?':
+					regex.append(".?");
+					break;
+				case '*':
+					regex.append(".*");
+					break;
+				default:
+					regex.append(Pattern.quote(String.valueOf(c)));
+					break;
+				}
+			}
+			regex.append(')');
+		}
+		return Pattern.compile(regex.toString());
+	}
+
 }
@@ -0,0 +1,27 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.core.test.validation;
+
+import org.jacoco.core.instr.Instrumenter;
+
+/**
+ * Runs {@link ExceptionsTest} with probe elision, the analysis must report the
+ * same coverage.
+ */
+public class ExceptionsProbeElisionTest extends ExceptionsTest {
+
+	@Override
+	protected void configure(final Instrumenter instrumenter) {
+		instrumenter.setProbeElision(true);
+	}
+
+}
@@ -11,11 +11,7 @@
  *******************************************************************************/
 package org.jacoco.core.test.validation;
 
-import static org.junit.Assert.assertEquals;
-
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.io.StringWriter;
 
 import org.jacoco.core.JaCoCo;
 import org.jacoco.core.instr.Instrumenter;
@@ -38,79 +34,45 @@ import org.junit.Test;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
-import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
-import org.objectweb.asm.util.TraceClassVisitor;
 
 /**
- * Tests whether stackmap frames are correctly adjusted.
+ * Tests whether stackmap frames are correctly adjusted. Probes of branches are
+ * inserted in trampolines which use the frame of the branch target, therefore
+ * the frames of instrumented classes differ from frames calculated by ASM.
+ * Instead the instrumented classes are checked by the type checking verifier
+ * of the JVM.
  */
 public class FramesTest {
 
-	/**
-	 * Stack sizes calculated for instrumented classes might be sometimes bigger
-	 * than actually needed. This is an acceptable tradeoff in favor of keeping
-	 * track of the actual stack sizes. For test assertions we need to replace
-	 * max stack sizes with constant value.
-	 */
-	private static class MaxStackEliminator extends ClassVisitor {
-		public MaxStackEliminator(ClassVisitor cv) {
-			super(JaCoCo.ASM_API_VERSION, cv);
-		}
-
-		@Override
-		public MethodVisitor visitMethod(int access, String name, String desc,
-				String signature, String[] exceptions) {
-			final MethodVisitor mv = super.visitMethod(access, name, desc,
-					signature, exceptions);
-			return new MethodVisitor(JaCoCo.ASM_API_VERSION, mv) {
-				@Override
-				public void visitMaxs(int maxStack, int maxLocals) {
-					super.visitMaxs(-1, maxLocals);
-				}
-			};
-		}
-	}
-
 	private void testFrames(Class<?> target) throws IOException {
-		testFrames(TargetLoader.getClassDataAsBytes(target));
-	}
-
-	private void testFrames(byte[] source) throws IOException {
 		IRuntime runtime = new SystemPropertiesRuntime();
 		Instrumenter instrumenter = new Instrumenter(runtime);
-		source = calculateFrames(source);
+		byte[] source = calculateFrames(TargetLoader
+				.getClassDataAsBytes(target));
 		byte[] actual = instrumenter.instrument(source, "TestTarget");
-		byte[] expected = calculateFrames(actual);
 
-		assertEquals(dump(expected), dump(actual));
+		// Linking the class triggers verification:
+		new TargetLoader().add(target, actual).getDeclaredMethods();
 	}
 
 	private byte[] calculateFrames(byte[] source) {
 		ClassReader rc = new ClassReader(source);
 		ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
 
-		// Adjust Version to 1.6 to enable frames:
+		// Adjust Version to 1.7 to enforce the type checking verifier:
 		rc.accept(new ClassVisitor(JaCoCo.ASM_API_VERSION, cw) {
 
 			@Override
 			public void visit(int version, int access, String name,
 					String signature, String superName, String[] interfaces) {
-				super.visit(Opcodes.V1_6, access, name, signature, superName,
+				super.visit(Opcodes.V1_7, access, name, signature, superName,
 						interfaces);
 			}
 		}, 0);
 		return cw.toByteArray();
 	}
 
-	private String dump(byte[] bytes) {
-		final StringWriter buffer = new StringWriter();
-		final PrintWriter writer = new PrintWriter(buffer);
-		new ClassReader(bytes).accept(new MaxStackEliminator(
-				new TraceClassVisitor(writer)), ClassReader.EXPAND_FRAMES);
-		return buffer.toString();
-	}
-
 	@Test
 	public void testTarget01() throws IOException {
 		testFrames(Target01.class);
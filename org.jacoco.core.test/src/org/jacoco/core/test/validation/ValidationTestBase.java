@@ -83,7 +83,9 @@ public abstract class ValidationTestBase {
 		RuntimeData data = new RuntimeData();
 		IRuntime runtime = new SystemPropertiesRuntime();
 		runtime.startup(data);
-		final byte[] bytes = new Instrumenter(runtime).instrument(reader);
+		final Instrumenter instrumenter = new Instrumenter(runtime);
+		configure(instrumenter);
+		final byte[] bytes = instrumenter.instrument(reader);
 		run(loader.add(target, bytes));
 		final ExecutionDataStore store = new ExecutionDataStore();
 		data.collect(store, new SessionInfoStore(), false);
@@ -91,6 +93,15 @@ public abstract class ValidationTestBase {
 		return store;
 	}
 
+	/**
+	 * Hook to configure the instrumenter used for the target class.
+	 * 
+	 * @param instrumenter
+	 *            instrumenter with default settings
+	 */
+	protected void configure(final Instrumenter instrumenter) {
+	}
+
 	protected abstract void run(final Class<?> targetClass) throws Exception;
 
 	private void analyze(final ClassReader reader,
@@ -19,12 +19,18 @@ import static org.junit.Assert.fail;
 import java.io.IOException;
 import java.net.ConnectException;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataWriter;
 import org.jacoco.core.data.SessionInfo;
 import org.jacoco.core.runtime.IRemoteCommandVisitor;
 import org.jacoco.core.runtime.RemoteControlReader;
@@ -43,9 +49,15 @@ public class ExecDumpClientTest {
 
 	private boolean dumpRequested;
 	private boolean resetRequested;
+	private String filterRequested;
 
 	private ServerSocket server;
 
+	private final List<ServerSocket> servers = new ArrayList<ServerSocket>();
+
+	private final List<InetSocketAddress> failures = Collections
+			.synchronizedList(new ArrayList<InetSocketAddress>());
+
 	@Before
 	public void setup() {
 		callbacks = new ArrayList<String>();
@@ -59,6 +71,12 @@ public class ExecDumpClientTest {
 			protected void onConnectionFailure(IOException exception) {
 				callbacks.add("onConnectionFailure");
 			}
+
+			@Override
+			protected void onDumpFailure(InetSocketAddress target,
+					IOException exception) {
+				failures.add(target);
+			}
 		};
 	}
 
@@ -67,6 +85,9 @@ public class ExecDumpClientTest {
 		if (server != null) {
 			server.close();
 		}
+		for (final ServerSocket s : servers) {
+			s.close();
+		}
 	}
 
 	@Test
@@ -126,6 +147,295 @@ public class ExecDumpClientTest {
 		assertTrue(resetRequested);
 	}
 
+	@Test
+	public void testDumpFiltered() throws IOException {
+		int port = createExecServer();
+		client.setIncludes("org.foo.*");
+		client.setReset(true);
+		ExecFileLoader loader = client.dump((String) null, port);
+		assertEquals("org.foo.*||false", filterRequested);
+		assertTrue(resetRequested);
+		assertTrue(loader.getExecutionDataStore().contains("Foo"));
+	}
+
+	@Test
+	public void testDumpExcludes() throws IOException {
+		int port = createExecServer();
+		client.setExcludes("*Test");
+		client.dump((String) null, port);
+		assertEquals("*|*Test|false", filterRequested);
+	}
+
+	@Test
+	public void testDumpClassHits() throws IOException {
+		int port = createExecServer();
+		client.setClassHits(true);
+		ExecFileLoader loader = client.dump((String) null, port);
+		assertEquals("*||true", filterRequested);
+		assertEquals("Foo", loader.getClassHitStore().getName(42));
+		assertTrue(loader.getExecutionDataStore().getContents().isEmpty());
+	}
+
+	@Test
+	public void testNoDumpIgnoresFilter() throws IOException {
+		int port = createExecServer();
+		client.setDump(false);
+		client.setIncludes("org.foo.*");
+		client.dump((String) null, port);
+		assertEquals(null, filterRequested);
+		assertFalse(dumpRequested);
+	}
+
+	@Test
+	public void testFilteredDumpNotSupported() throws IOException {
+		// Agents without support reject the command and close the socket
+		server = new ServerSocket(0, 0, InetAddress.getByName(null));
+		new Thread(new Runnable() {
+			public void run() {
+				try {
+					final Socket socket = server.accept();
+					new RemoteControlWriter(socket.getOutputStream());
+					final byte[] buffer = new byte[6];
+					new java.io.DataInputStream(socket.getInputStream())
+							.readFully(buffer);
+					socket.close();
+				} catch (IOException e) {
+					// ignore
+				}
+			}
+		}).start();
+		client.setIncludes("org.foo.*");
+		try {
+			client.dump((String) null, server.getLocalPort());
+			fail("IOException expected");
+		} catch (IOException e) {
+			assertEquals(
+					"Filtered dump failed, the agent might not support filtered dumps.",
+					e.getMessage());
+		}
+	}
+
+	@Test
+	public void testDumpMultipleTargets() throws IOException {
+		final List<InetSocketAddress> targets = new ArrayList<InetSocketAddress>();
+		for (int i = 0; i < 5; i++) {
+			targets.add(InetSocketAddress.createUnresolved("localhost",
+					createMultiServer(i, null)));
+		}
+		final ExecFileLoader loader = client.dump(targets, 2);
+
+		assertEquals(5, loader.getSessionInfoStore().getInfos().size());
+		final boolean[] probes = loader.getExecutionDataStore().get(42)
+				.getProbes();
+		assertEquals(5, probes.length);
+		for (final boolean p : probes) {
+			assertTrue(p);
+		}
+		assertEquals(Collections.emptyList(), failures);
+	}
+
+	@Test(timeout = 10000)
+	public void testDumpMultipleTargetsConcurrently() throws IOException {
+		// Every server only answers when all targets are connected
+		final CountDownLatch connected = new CountDownLatch(4);
+		final List<InetSocketAddress> targets = new ArrayList<InetSocketAddress>();
+		for (int i = 0; i < 4; i++) {
+			targets.add(new InetSocketAddress(InetAddress.getByName(null),
+					createMultiServer(i, connected)));
+		}
+		final ExecFileLoader loader = client.dump(targets, 4);
+
+		assertEquals(4, loader.getSessionInfoStore().getInfos().size());
+		assertEquals(Collections.emptyList(), failures);
+	}
+
+	@Test
+	public void testDumpMultipleTargetsWithFailure() throws IOException {
+		final InetSocketAddress failing = new InetSocketAddress(
+				InetAddress.getByName(null), getFreePort());
+		final List<InetSocketAddress> targets = Arrays.asList(
+				new InetSocketAddress(InetAddress.getByName(null),
+						createMultiServer(0, null)), failing,
+				new InetSocketAddress(InetAddress.getByName(null),
+						createMultiServer(1, null)));
+		final ExecFileLoader loader = client.dump(targets, 3);
+
+		assertEquals(2, loader.getSessionInfoStore().getInfos().size());
+		assertEquals(Arrays.asList(failing), failures);
+	}
+
+	@Test
+	public void testDumpMultipleTargetsDiscardsPartialData()
+			throws IOException {
+		final InetSocketAddress broken = new InetSocketAddress(
+				InetAddress.getByName(null), createBrokenServer(3));
+		final List<InetSocketAddress> targets = Arrays.asList(
+				new InetSocketAddress(InetAddress.getByName(null),
+						createMultiServer(0, null)), broken);
+		final ExecFileLoader loader = client.dump(targets, 2);
+
+		assertEquals(1, loader.getSessionInfoStore().getInfos().size());
+		assertEquals("id0", loader.getSessionInfoStore().getInfos().get(0)
+				.getId());
+		final boolean[] probes = loader.getExecutionDataStore().get(42)
+				.getProbes();
+		assertTrue(probes[0]);
+		assertFalse(probes[3]);
+		assertEquals(Arrays.asList(broken), failures);
+	}
+
+	@Test
+	public void testDumpNoTargets() throws IOException {
+		final ExecFileLoader loader = client.dump(
+				Collections.<InetSocketAddress> emptyList(), 4);
+		assertTrue(loader.getSessionInfoStore().isEmpty());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDumpInvalidThreads() throws IOException {
+		client.dump(Collections.<InetSocketAddress> emptyList(), 0);
+	}
+
+	@Test
+	public void testParseTargets() {
+		final List<InetSocketAddress> targets = ExecDumpClient.parseTargets(
+				" host1, host2:1234\nhost3:5 [::1]:7 ::1 [::2],", 6300);
+		assertEquals(6, targets.size());
+		assertTarget("host1", 6300, targets.get(0));
+		assertTarget("host2", 1234, targets.get(1));
+		assertTarget("host3", 5, targets.get(2));
+		assertTarget("::1", 7, targets.get(3));
+		assertTarget("::1", 6300, targets.get(4));
+		assertTarget("::2", 6300, targets.get(5));
+	}
+
+	@Test
+	public void testParseTargetsEmpty() {
+		assertEquals(0, ExecDumpClient.parseTargets("", 6300).size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testParseTargetsInvalidPort() {
+		ExecDumpClient.parseTargets("host:abc", 6300);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testParseTargetsPortOutOfRange() {
+		ExecDumpClient.parseTargets("host:70000", 6300);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testParseTargetsUnclosedBracket() {
+		ExecDumpClient.parseTargets("[::1", 6300);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testParseTargetsInvalidSuffix() {
+		ExecDumpClient.parseTargets("[::1]7", 6300);
+	}
+
+	private static void assertTarget(final String host, final int port,
+			final InetSocketAddress actual) {
+		assertTrue(actual.isUnresolved());
+		assertEquals(host, actual.getHostName());
+		assertEquals(port, actual.getPort());
+	}
+
+	/**
+	 * Creates a server which answers a single dump request with a session and
+	 * the given probe of class 42 set.
+	 */
+	private int createMultiServer(final int probe, final CountDownLatch latch)
+			throws IOException {
+		final ServerSocket s = new ServerSocket(0, 0,
+				InetAddress.getByName(null));
+		servers.add(s);
+		new Thread(new Runnable() {
+			public void run() {
+				try {
+					final Socket socket = s.accept();
+					if (latch != null) {
+						latch.countDown();
+						latch.await(5, TimeUnit.SECONDS);
+					}
+					final RemoteControlWriter writer = new RemoteControlWriter(
+							socket.getOutputStream());
+					final RemoteControlReader reader = new RemoteControlReader(
+							socket.getInputStream());
+					reader.setRemoteCommandVisitor(new IRemoteCommandVisitor() {
+						public void visitFilteredDumpCommand(boolean reset,
+								String includes, String excludes,
+								boolean classHits) {
+							fail();
+						}
+
+						public void visitDumpCommand(boolean dump,
+								boolean reset) throws IOException {
+							writer.visitSessionInfo(new SessionInfo("id"
+									+ probe, 100, 200));
+							final boolean[] probes = new boolean[5];
+							probes[probe] = true;
+							writer.visitClassExecution(new ExecutionData(42,
+									"Foo", probes));
+							writer.sendCmdOk();
+						}
+					});
+					reader.read();
+					socket.close();
+				} catch (Exception e) {
+					// ignore
+				}
+			}
+		}).start();
+		return s.getLocalPort();
+	}
+
+	/**
+	 * Creates a server which sends a session and class 42 with the given probe
+	 * set and then closes the connection in the middle of the next block.
+	 */
+	private int createBrokenServer(final int probe) throws IOException {
+		final ServerSocket s = new ServerSocket(0, 0,
+				InetAddress.getByName(null));
+		servers.add(s);
+		new Thread(new Runnable() {
+			public void run() {
+				try {
+					final Socket socket = s.accept();
+					final RemoteControlWriter writer = new RemoteControlWriter(
+							socket.getOutputStream());
+					final RemoteControlReader reader = new RemoteControlReader(
+							socket.getInputStream());
+					reader.setRemoteCommandVisitor(new IRemoteCommandVisitor() {
+						public void visitFilteredDumpCommand(boolean reset,
+								String includes, String excludes,
+								boolean classHits) {
+							fail();
+						}
+
+						public void visitDumpCommand(boolean dump,
+								boolean reset) throws IOException {
+							writer.visitSessionInfo(new SessionInfo("broken",
+									100, 200));
+							final boolean[] probes = new boolean[5];
+							probes[probe] = true;
+							writer.visitClassExecution(new ExecutionData(42,
+									"Foo", probes));
+							writer.flush();
+							socket.getOutputStream().write(
+									ExecutionDataWriter.BLOCK_EXECUTIONDATA);
+							socket.close();
+						}
+					});
+					reader.read();
+				} catch (Exception e) {
+					// ignore
+				}
+			}
+		}).start();
+		return s.getLocalPort();
+	}
+
 	private int getFreePort() throws IOException {
 		final ServerSocket server = new ServerSocket(0, 0,
 				InetAddress.getByName(null));
@@ -163,6 +473,21 @@ public class ExecDumpClientTest {
 				}
 				writer.sendCmdOk();
 			}
+
+			public void visitFilteredDumpCommand(boolean reset,
+					String includes, String excludes, boolean classHits)
+					throws IOException {
+				resetRequested = reset;
+				filterRequested = includes + "|" + excludes + "|" + classHits;
+				writer.visitSessionInfo(new SessionInfo("TestId", 100, 200));
+				if (classHits) {
+					writer.visitClassHit(42, "Foo");
+				} else {
+					writer.visitClassExecution(new ExecutionData(42, "Foo",
+							new boolean[] { true }));
+				}
+				writer.sendCmdOk();
+			}
 		});
 		reader.read();
 	}
@@ -113,6 +113,24 @@ public class ExecFileLoaderTest {
 		assertFileContents(file, "a");
 	}
 
+	@Test
+	public void testClassHits() throws IOException {
+		final File file = new File(sourceFolder.getRoot(), "hits.exec");
+		final FileOutputStream out = new FileOutputStream(file);
+		final ExecutionDataWriter writer = new ExecutionDataWriter(out);
+		writer.visitClassHit(7, "Foo");
+		out.close();
+
+		loader.load(file);
+		assertEquals("Foo", loader.getClassHitStore().getName(7));
+
+		final File target = new File(sourceFolder.getRoot(), "target.exec");
+		loader.save(target, false);
+		final ExecFileLoader reloaded = new ExecFileLoader();
+		reloaded.load(target);
+		assertEquals("Foo", reloaded.getClassHitStore().getName(7));
+	}
+
 	private File createFile(String id) throws IOException {
 		final File file = new File(sourceFolder.getRoot(), id + ".exec");
 		final FileOutputStream out = new FileOutputStream(file);
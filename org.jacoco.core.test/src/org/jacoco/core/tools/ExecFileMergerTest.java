@@ -0,0 +1,277 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.core.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataReader;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.IExecutionDataVisitor;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.data.SessionInfoStore;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link ExecFileMerger}.
+ */
+public class ExecFileMergerTest {
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private File tempDirectory;
+
+	private List<ExecutionData> result;
+
+	private SessionInfoStore sessionInfos;
+
+	@Before
+	public void setup() throws IOException {
+		tempDirectory = folder.newFolder("tmp");
+		result = new ArrayList<ExecutionData>();
+		sessionInfos = new SessionInfoStore();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidThreads() {
+		new ExecFileMerger(0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidRunSize() {
+		new ExecFileMerger(1).setRunSize(0);
+	}
+
+	@Test
+	public void testMergeNothing() throws IOException {
+		final ExecFileMerger merger = new ExecFileMerger(2);
+		assertEquals(0, merge(merger));
+		assertTrue(result.isEmpty());
+		assertTrue(sessionInfos.isEmpty());
+	}
+
+	@Test
+	public void testMerge() throws IOException {
+		final ExecFileMerger merger = new ExecFileMerger(1);
+		merger.add(createFile("a.exec", "s1", 0, 5, 3, 1));
+		merger.add(createFile("b.exec", "s2", 1, 1, 7));
+
+		assertEquals(4, merge(merger));
+
+		assertEquals(Arrays.asList(Long.valueOf(1), Long.valueOf(3),
+				Long.valueOf(5), Long.valueOf(7)), getIds());
+		assertProbes(1, true, true, false);
+		assertProbes(3, true, false, false);
+		assertProbes(7, false, true, false);
+		assertEquals(2, sessionInfos.getInfos().size());
+	}
+
+	@Test
+	public void testMergeWithSmallRunsAndThreads() throws IOException {
+		final ExecutionDataStore expected = new ExecutionDataStore();
+		final ExecFileMerger merger = new ExecFileMerger(3);
+		merger.setRunSize(2);
+		merger.setTempDirectory(tempDirectory);
+		for (int i = 0; i < 10; i++) {
+			final long[] ids = new long[20];
+			for (int j = 0; j < ids.length; j++) {
+				ids[j] = ((j * 7 + i * 3) % 25) - 12;
+			}
+			final File file = createFile("in" + i + ".exec", "s" + i, i, ids);
+			final ExecFileLoader loader = new ExecFileLoader();
+			loader.load(file);
+			loader.getExecutionDataStore().accept(expected);
+			merger.add(file);
+		}
+
+		final int count = merge(merger);
+
+		assertEquals(expected.getContents().size(), count);
+		long lastId = Long.MIN_VALUE;
+		for (final ExecutionData data : result) {
+			assertTrue(data.getId() > lastId);
+			lastId = data.getId();
+			final ExecutionData e = expected.get(data.getId());
+			assertEquals(e.getName(), data.getName());
+			assertTrue(Arrays.equals(e.getProbes(), data.getProbes()));
+		}
+		assertEquals(10, sessionInfos.getInfos().size());
+		assertEquals(0, tempDirectory.list().length);
+	}
+
+	@Test
+	public void testMergeToFile() throws IOException {
+		final ExecFileMerger merger = new ExecFileMerger(2);
+		final File file = createFile("a.exec", "s1", 0, 2, 1);
+		merger.add(file);
+		merger.add(createFile("b.exec", "s2", 1, 2));
+
+		final File destfile = new File(folder.getRoot(), "out/merged.exec");
+		assertEquals(2, merger.merge(destfile));
+
+		final ExecFileLoader loader = new ExecFileLoader();
+		loader.load(destfile);
+		final ExecutionData data = loader.getExecutionDataStore().get(2);
+		assertTrue(Arrays.equals(new boolean[] { true, true, false },
+				data.getProbes()));
+		assertEquals(2, loader.getSessionInfoStore().getInfos().size());
+	}
+
+	@Test
+	public void testMergeSessionsOnlyToFile() throws IOException {
+		final ExecFileMerger merger = new ExecFileMerger(2);
+		merger.add(createFile("a.exec", "s1", 0));
+		merger.add(createFile("b.exec", "s2", 0));
+
+		final File destfile = new File(folder.getRoot(), "merged.exec");
+		assertEquals(0, merger.merge(destfile));
+		assertTrue(destfile.isFile());
+	}
+
+	@Test
+	public void testMergeSessionsOnlyWithoutWriteEmpty() throws IOException {
+		final ExecFileMerger merger = new ExecFileMerger(2);
+		merger.setWriteEmpty(false);
+		merger.add(createFile("a.exec", "s1", 0));
+		merger.add(createFile("b.exec", "s2", 0));
+
+		final File destfile = new File(folder.getRoot(), "merged.exec");
+		assertEquals(0, merger.merge(destfile));
+		assertFalse(destfile.exists());
+
+		merger.add(createFile("c.exec", "s3", 0, 1));
+		assertEquals(1, merger.merge(destfile));
+		assertTrue(destfile.isFile());
+	}
+
+	@Test
+	public void testMergeIntoInput() throws IOException {
+		final ExecFileMerger merger = new ExecFileMerger(1);
+		final File file = createFile("a.exec", "s1", 0, 1);
+		merger.add(file);
+		merger.add(createFile("b.exec", "s2", 1, 1));
+
+		assertEquals(1, merger.merge(file));
+
+		final ExecFileLoader loader = new ExecFileLoader();
+		loader.load(file);
+		assertTrue(Arrays.equals(new boolean[] { true, true, false }, loader
+				.getExecutionDataStore().get(1).getProbes()));
+	}
+
+	@Test
+	public void testIncompatibleData() throws IOException {
+		final ExecFileMerger merger = new ExecFileMerger(2);
+		merger.setTempDirectory(tempDirectory);
+		merger.add(createFile("a.exec", "s1", 0, 1));
+		final File file = new File(folder.getRoot(), "b.exec");
+		final OutputStream out = new FileOutputStream(file);
+		new ExecutionDataWriter(out).visitClassExecution(new ExecutionData(1,
+				"Other", new boolean[] { true, false, false }));
+		out.close();
+		merger.add(file);
+		try {
+			merge(merger);
+			fail("IllegalStateException expected");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		assertEquals(0, tempDirectory.list().length);
+	}
+
+	@Test
+	public void testInvalidFile() throws IOException {
+		final ExecFileMerger merger = new ExecFileMerger(2);
+		merger.setTempDirectory(tempDirectory);
+		merger.add(createFile("a.exec", "s1", 0, 1));
+		merger.add(new File(folder.getRoot(), "doesnotexist.exec"));
+		try {
+			merge(merger);
+			fail("IOException expected");
+		} catch (IOException e) {
+			// expected
+		}
+		assertEquals(0, tempDirectory.list().length);
+	}
+
+	private int merge(final ExecFileMerger merger) throws IOException {
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		final int count = merger.merge(buffer);
+		final ExecutionDataReader reader = new ExecutionDataReader(
+				new ByteArrayInputStream(buffer.toByteArray()));
+		reader.setSessionInfoVisitor(sessionInfos);
+		reader.setExecutionDataVisitor(new IExecutionDataVisitor() {
+			public void visitClassExecution(final ExecutionData data) {
+				result.add(data);
+			}
+		});
+		reader.read();
+		return count;
+	}
+
+	private List<Long> getIds() {
+		final List<Long> ids = new ArrayList<Long>();
+		for (final ExecutionData data : result) {
+			ids.add(Long.valueOf(data.getId()));
+		}
+		return ids;
+	}
+
+	private void assertProbes(final long id, final boolean... expected) {
+		for (final ExecutionData data : result) {
+			if (data.getId() == id) {
+				assertTrue(Arrays.equals(expected, data.getProbes()));
+				return;
+			}
+		}
+		fail("No data for " + id);
+	}
+
+	/**
+	 * Creates a exec file with data for the given class ids. Every class has
+	 * three probes, the probe with index <code>probe % 3</code> is set.
+	 */
+	private File createFile(final String name, final String sessionId,
+			final int probe, final long... ids) throws IOException {
+		final File file = new File(folder.getRoot(), name);
+		final OutputStream out = new FileOutputStream(file);
+		final ExecutionDataWriter writer = new ExecutionDataWriter(out);
+		writer.visitSessionInfo(new SessionInfo(sessionId, 1, 2));
+		for (final long id : ids) {
+			final boolean[] probes = new boolean[3];
+			probes[probe % 3] = true;
+			writer.visitClassExecution(new ExecutionData(id, "Class" + id,
+					probes));
+		}
+		out.close();
+		return file;
+	}
+
+}
@@ -0,0 +1,298 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.IncompatibleExecDataVersionException;
+import org.jacoco.core.data.MappedExecutionDataWriter;
+import org.jacoco.core.data.SessionInfo;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link IndexedExecFile}.
+ */
+public class IndexedExecFileTest {
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testGet() throws IOException {
+		final File file = createFile();
+		final IndexedExecFile exec = new IndexedExecFile(file);
+
+		assertEquals(4, exec.getBlockCount());
+		assertTrue(Arrays.equals(new boolean[] { true, false, true },
+				exec.get(1).getProbes()));
+		assertEquals("Foo", exec.get(1).getName());
+		assertTrue(Arrays.equals(new boolean[] { false, true },
+				exec.get(-2).getProbes()));
+		assertNull(exec.get(3));
+		exec.close();
+	}
+
+	@Test
+	public void testGetMergesBlocks() throws IOException {
+		final IndexedExecFile exec = new IndexedExecFile(createFile());
+		final ExecutionData data = exec.get(200);
+		assertEquals(130, data.getProbeCount());
+		final boolean[] probes = data.getProbes();
+		assertTrue(probes[0]);
+		assertTrue(probes[129]);
+		assertEquals(2, data.getHitCount());
+		exec.close();
+	}
+
+	@Test
+	public void testContains() throws IOException {
+		final IndexedExecFile exec = new IndexedExecFile(createFile());
+		assertTrue(exec.contains("Foo"));
+		assertTrue(exec.contains("Baz"));
+		assertFalse(exec.contains("Other"));
+		exec.close();
+	}
+
+	@Test
+	public void testGetSessionInfos() throws IOException {
+		final IndexedExecFile exec = new IndexedExecFile(createFile());
+		final List<SessionInfo> infos = exec.getSessionInfos();
+		assertEquals(2, infos.size());
+		assertEquals("s1", infos.get(0).getId());
+		assertEquals(10, infos.get(0).getStartTimeStamp());
+		assertEquals(20, infos.get(0).getDumpTimeStamp());
+		assertEquals("s2", infos.get(1).getId());
+		exec.close();
+	}
+
+	@Test
+	public void testMappedFile() throws IOException {
+		final File file = new File(folder.getRoot(), "test.map");
+		final MappedExecutionDataWriter writer = new MappedExecutionDataWriter(
+				file);
+		writer.visitSessionInfo(new SessionInfo("mapped", 10, 20));
+		writer.visitClassExecution(new ExecutionData(1, "Foo", new boolean[] {
+				true, false, true }));
+		final boolean[] big = new boolean[130];
+		writer.visitClassExecution(new ExecutionData(200, "Baz", big));
+		big[129] = true;
+		writer.visitClassExecution(new ExecutionData(200, "Baz", big));
+		writer.close();
+
+		for (int i = 0; i < 2; i++) {
+			// Second iteration uses the index file
+			final IndexedExecFile exec = new IndexedExecFile(file);
+			assertEquals(2, exec.getBlockCount());
+			assertTrue(Arrays.equals(new boolean[] { true, false, true },
+					exec.get(1).getProbes()));
+			assertTrue(Arrays.equals(big, exec.get(200).getProbes()));
+			assertTrue(exec.contains("Baz"));
+			final List<SessionInfo> infos = exec.getSessionInfos();
+			assertEquals(1, infos.size());
+			assertEquals("mapped", infos.get(0).getId());
+			assertEquals(10, infos.get(0).getStartTimeStamp());
+			assertEquals(20, infos.get(0).getDumpTimeStamp());
+			exec.close();
+		}
+	}
+
+	@Test
+	public void testDeflatedBlocks() throws IOException {
+		final File file = new File(folder.getRoot(), "deflated.exec");
+		final OutputStream out = new FileOutputStream(file);
+		final ExecutionDataWriter writer = new ExecutionDataWriter(out);
+		writer.visitClassExecution(new ExecutionData(1, "Foo", new boolean[] {
+				true, false, false }));
+		writer.writeDeflated(deflate(new SessionInfo("batch", 10, 20),
+				new ExecutionData(1, "Foo", new boolean[] { false, false,
+						true }), new ExecutionData(2, "Bar",
+						new boolean[] { true })));
+		writer.writeDeflated(deflate(new SessionInfo("batch2", 30, 40),
+				new ExecutionData(3, "Baz", new boolean[] { false, true })));
+		out.close();
+
+		for (int i = 0; i < 2; i++) {
+			// Second iteration uses the index file
+			final IndexedExecFile exec = new IndexedExecFile(file);
+			assertEquals(4, exec.getBlockCount());
+			assertTrue(Arrays.equals(new boolean[] { true, false, true },
+					exec.get(1).getProbes()));
+			assertTrue(Arrays.equals(new boolean[] { true }, exec.get(2)
+					.getProbes()));
+			assertTrue(Arrays.equals(new boolean[] { false, true },
+					exec.get(3).getProbes()));
+			assertTrue(exec.contains("Bar"));
+			assertTrue(exec.contains("Baz"));
+			final List<SessionInfo> infos = exec.getSessionInfos();
+			assertEquals(2, infos.size());
+			assertEquals("batch", infos.get(0).getId());
+			assertEquals("batch2", infos.get(1).getId());
+			assertEquals(30, infos.get(1).getStartTimeStamp());
+			exec.close();
+		}
+	}
+
+	private static byte[] deflate(final SessionInfo info,
+			final ExecutionData... data) throws IOException {
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		final DeflaterOutputStream out = new DeflaterOutputStream(buffer);
+		final ExecutionDataWriter writer = new ExecutionDataWriter(out);
+		writer.visitSessionInfo(info);
+		for (final ExecutionData d : data) {
+			writer.visitClassExecution(d);
+		}
+		out.close();
+		return buffer.toByteArray();
+	}
+
+	@Test
+	public void testIndexFile() throws IOException {
+		final File file = createFile();
+		final File indexFile = new File(file.getPath()
+				+ IndexedExecFile.INDEX_SUFFIX);
+		assertFalse(indexFile.exists());
+		new IndexedExecFile(file).close();
+		assertTrue(indexFile.isFile());
+
+		final IndexedExecFile exec = new IndexedExecFile(file);
+		assertEquals(4, exec.getBlockCount());
+		assertEquals("Bar", exec.get(-2).getName());
+		assertEquals(2, exec.getSessionInfos().size());
+		exec.close();
+	}
+
+	@Test
+	public void testOutdatedIndexFile() throws IOException {
+		final File file = createFile();
+		new IndexedExecFile(file).close();
+
+		final OutputStream out = new FileOutputStream(file, true);
+		final ExecutionDataWriter writer = new ExecutionDataWriter(out);
+		writer.visitClassExecution(new ExecutionData(3, "New",
+				new boolean[] { true }));
+		out.close();
+
+		final IndexedExecFile exec = new IndexedExecFile(file);
+		assertEquals(5, exec.getBlockCount());
+		assertEquals("New", exec.get(3).getName());
+		exec.close();
+	}
+
+	@Test
+	public void testCorruptIndexFile() throws IOException {
+		final File file = createFile();
+		final FileWriter writer = new FileWriter(file.getPath()
+				+ IndexedExecFile.INDEX_SUFFIX);
+		writer.write("Invalid Content");
+		writer.close();
+
+		final IndexedExecFile exec = new IndexedExecFile(file);
+		assertEquals(4, exec.getBlockCount());
+		exec.close();
+	}
+
+	@Test
+	public void testEmptyFile() throws IOException {
+		final File file = folder.newFile("empty.exec");
+		final IndexedExecFile exec = new IndexedExecFile(file);
+		assertEquals(0, exec.getBlockCount());
+		assertNull(exec.get(1));
+		assertTrue(exec.getSessionInfos().isEmpty());
+		exec.close();
+	}
+
+	@Test
+	public void testClose() throws IOException {
+		final File file = createFile();
+		final IndexedExecFile exec = new IndexedExecFile(file);
+		exec.close();
+		try {
+			exec.get(1);
+			fail("IllegalStateException expected");
+		} catch (IllegalStateException e) {
+			assertEquals("Exec file has been closed.", e.getMessage());
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testInvalidFile() throws IOException {
+		final File file = new File(folder.getRoot(), "broken.exec");
+		final FileWriter writer = new FileWriter(file);
+		writer.write("Invalid Content");
+		writer.close();
+		new IndexedExecFile(file).close();
+	}
+
+	@Test(expected = IncompatibleExecDataVersionException.class)
+	public void testInvalidVersion() throws IOException {
+		final File file = new File(folder.getRoot(), "old.exec");
+		final OutputStream out = new FileOutputStream(file);
+		out.write(new byte[] { ExecutionDataWriter.BLOCK_HEADER, (byte) 0xC0,
+				(byte) 0xC0, 0x10, 0x06 });
+		out.close();
+		new IndexedExecFile(file).close();
+	}
+
+	@Test(expected = IOException.class)
+	public void testTruncatedFile() throws IOException {
+		final File file = createFile();
+		final File truncated = new File(folder.getRoot(), "truncated.exec");
+		final byte[] content = new byte[(int) file.length() - 1];
+		final FileInputStream in = new FileInputStream(file);
+		in.read(content);
+		in.close();
+		final OutputStream out = new FileOutputStream(truncated);
+		out.write(content);
+		out.close();
+		new IndexedExecFile(truncated).close();
+	}
+
+	private File createFile() throws IOException {
+		final File file = new File(folder.getRoot(), "test.exec");
+		final OutputStream out = new FileOutputStream(file);
+		final ExecutionDataWriter writer = new ExecutionDataWriter(out);
+		writer.visitSessionInfo(new SessionInfo("s1", 10, 20));
+		writer.visitClassExecution(new ExecutionData(1, "Foo", new boolean[] {
+				true, false, true }));
+		final boolean[] big1 = new boolean[130];
+		big1[0] = true;
+		writer.visitClassExecution(new ExecutionData(200, "Baz", big1));
+		writer.visitSessionInfo(new SessionInfo("s2", 30, 40));
+		writer.visitClassExecution(new ExecutionData(-2, "Bar", new boolean[] {
+				false, true }));
+		final boolean[] big2 = new boolean[130];
+		big2[129] = true;
+		writer.visitClassExecution(new ExecutionData(200, "Baz", big2));
+		out.close();
+		return file;
+	}
+
+}
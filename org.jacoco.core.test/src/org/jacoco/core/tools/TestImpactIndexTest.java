@@ -0,0 +1,175 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.core.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.SessionInfo;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link TestImpactIndex}.
+ */
+public class TestImpactIndexTest {
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private TestImpactIndex index;
+
+	@Before
+	public void setup() {
+		index = new TestImpactIndex();
+	}
+
+	@Test
+	public void testEmpty() {
+		assertEquals(0, index.getTests().size());
+		assertEquals(0, index.getClassCount());
+		assertTrue(index.getTestsForClass(1).isEmpty());
+	}
+
+	@Test
+	public void testLoad() throws IOException {
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		final ExecutionDataWriter writer = new ExecutionDataWriter(buffer);
+		// Data before the first test is ignored:
+		writer.visitClassExecution(hit(1, "Foo"));
+		writer.visitSessionInfo(new SessionInfo("test1", 0, 0));
+		writer.visitClassExecution(hit(1, "Foo"));
+		writer.visitClassExecution(new ExecutionData(2, "Bar", 1));
+		writer.visitSessionInfo(new SessionInfo("test2", 0, 0));
+		writer.visitClassExecution(hit(1, "Foo"));
+		writer.visitClassHit(3, "Baz");
+		// Appended data of a second dump:
+		final ExecutionDataWriter writer2 = new ExecutionDataWriter(buffer);
+		writer2.visitSessionInfo(new SessionInfo("test3", 0, 0));
+		writer2.visitClassExecution(hit(4, "Foo"));
+
+		index.load(new ByteArrayInputStream(buffer.toByteArray()));
+
+		assertEquals(Arrays.asList("test1", "test2", "test3"),
+				index.getTests());
+		assertEquals(3, index.getClassCount());
+		assertEquals(set("test1", "test2"), index.getTestsForClass(1));
+		assertEquals(set(), index.getTestsForClass(2));
+		assertEquals(set("test2"), index.getTestsForClass(3));
+		assertEquals(set("test1", "test2", "test3"),
+				index.getTestsForClasses(Collections.singleton("Foo")));
+		assertEquals(set("Foo", "Baz"), index.getClassNames());
+	}
+
+	@Test
+	public void testLoadFile() throws IOException {
+		final File file = new File(folder.getRoot(), "tests.exec");
+		final OutputStream out = new FileOutputStream(file);
+		final ExecutionDataWriter writer = new ExecutionDataWriter(out);
+		writer.visitSessionInfo(new SessionInfo("test1", 0, 0));
+		writer.visitClassExecution(hit(1, "Foo"));
+		out.close();
+
+		index.load(file);
+
+		assertEquals(set("test1"), index.getTestsForClass(1));
+	}
+
+	@Test
+	public void testAdd() {
+		index.add("b", 1, "Foo");
+		index.add("a", 1, "Foo");
+		index.add("b", 1, "Foo");
+		index.add("a", 2, "Bar");
+
+		assertEquals(Arrays.asList("b", "a"), index.getTests());
+		assertEquals(set("a", "b"), index.getTestsForClass(1));
+		assertEquals(set("a", "b"),
+				index.getTestsForClasses(Arrays.asList("Bar", "Foo", "Baz")));
+		assertEquals(set(), index.getTestsForClasses(Arrays.asList("Baz")));
+	}
+
+	@Test
+	public void testSaveLoadIndex() throws IOException {
+		// Sparse and dense test lists:
+		for (int t = 0; t < 1000; t++) {
+			index.add("test" + t, 1, "Dense");
+			if (t % 100 == 0) {
+				index.add("test" + t, 2, "Sparse");
+			}
+		}
+		final File file = new File(folder.getRoot(), "sub/tests.idx");
+		index.save(file);
+		// Dense lists are stored as bitmap with 125 bytes:
+		int names = 0;
+		for (final String test : index.getTests()) {
+			names += 2 + test.length();
+		}
+		assertTrue(file.length() < names + 200);
+
+		final TestImpactIndex loaded = new TestImpactIndex();
+		loaded.loadIndex(file);
+
+		assertEquals(index.getTests(), loaded.getTests());
+		assertEquals(index.getTestsForClass(1), loaded.getTestsForClass(1));
+		assertEquals(1000, loaded.getTestsForClass(1).size());
+		assertEquals(set("test0", "test100", "test200", "test300", "test400",
+				"test500", "test600", "test700", "test800", "test900"),
+				loaded.getTestsForClass(2));
+	}
+
+	@Test
+	public void testMergeIndex() throws IOException {
+		index.add("a", 1, "Foo");
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		index.save(buffer);
+
+		final TestImpactIndex other = new TestImpactIndex();
+		other.add("b", 1, "Foo");
+		other.add("b", 2, "Bar");
+		other.loadIndex(new ByteArrayInputStream(buffer.toByteArray()));
+
+		assertEquals(Arrays.asList("b", "a"), other.getTests());
+		assertEquals(set("a", "b"), other.getTestsForClass(1));
+		assertEquals(set("b"), other.getTestsForClass(2));
+	}
+
+	@Test(expected = IOException.class)
+	public void testLoadInvalidIndex() throws IOException {
+		index.loadIndex(new ByteArrayInputStream(new byte[] { 1, 2, 3, 4, 5,
+				6, 7, 8 }));
+	}
+
+	private static ExecutionData hit(final long id, final String name) {
+		return new ExecutionData(id, name, new boolean[] { true });
+	}
+
+	private static Set<String> set(final String... values) {
+		return new TreeSet<String>(Arrays.asList(values));
+	}
+
+}
@@ -0,0 +1,207 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.core.analysis;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jacoco.core.JaCoCo;
+import org.jacoco.core.internal.analysis.ClassStructure;
+import org.jacoco.core.internal.analysis.StringPool;
+import org.jacoco.core.internal.data.CompactDataInput;
+import org.jacoco.core.internal.data.CompactDataOutput;
+
+/**
+ * Persistent cache for the structure of analyzed classes. The cache maps the
+ * id of a class, i.e. the CRC64 checksum of its class file, to a compact form
+ * of the instructions, branches, lines and probes of all methods. If a cache
+ * is set for an {@link Analyzer} the coverage of classes which are contained
+ * in the cache is calculated from the cached structure without parsing the
+ * class file again.
+ * 
+ * The cache is stored in a single file. When the cache is saved only the
+ * classes which have been requested through this instance are written, i.e.
+ * entries for classes which do not exist any more are dropped. Cache files
+ * created by a different JaCoCo version are ignored. Instances of this class
+ * can be used by multiple {@link Analyzer} instances concurrently.
+ */
+public class AnalysisCache {
+
+	private static final int MAGIC = 0x4A434143;
+
+	private static final int FORMAT_VERSION = 2;
+
+	private final File file;
+
+	private final Map<Long, byte[]> stored = new HashMap<Long, byte[]>();
+
+	private final Map<Long, byte[]> current = new HashMap<Long, byte[]>();
+
+	private int hitCount;
+
+	private int missCount;
+
+	/**
+	 * Creates a cache which is backed by the given file. If the file exists
+	 * and has been created by the same JaCoCo version its entries are loaded.
+	 * Invalid or outdated files are ignored and will be overwritten by
+	 * {@link #save()}.
+	 * 
+	 * @param file
+	 *            cache file
+	 */
+	public AnalysisCache(final File file) {
+		this.file = file;
+		load();
+	}
+
+	private void load() {
+		if (!file.isFile()) {
+			return;
+		}
+		try {
+			final DataInputStream in = new DataInputStream(
+					new BufferedInputStream(new FileInputStream(file)));
+			try {
+				if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION
+						|| !JaCoCo.VERSION.equals(in.readUTF())) {
+					return;
+				}
+				final int count = in.readInt();
+				for (int i = 0; i < count; i++) {
+					final long id = in.readLong();
+					final byte[] data = new byte[in.readInt()];
+					in.readFully(data);
+					stored.put(Long.valueOf(id), data);
+				}
+			} finally {
+				in.close();
+			}
+		} catch (final IOException e) {
+			// Corrupt or unreadable cache files are simply recreated
+			stored.clear();
+		}
+	}
+
+	/**
+	 * Writes all entries which have been requested or added since this
+	 * instance has been created to the cache file. The file is replaced
+	 * atomically if the file system supports this.
+	 * 
+	 * @throws IOException
+	 *             if the cache file can't be written
+	 */
+	public synchronized void save() throws IOException {
+		final File folder = file.getAbsoluteFile().getParentFile();
+		if (folder != null) {
+			folder.mkdirs();
+		}
+		final File tmp = File.createTempFile(file.getName(), ".tmp", folder);
+		try {
+			final DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(tmp)));
+			try {
+				out.writeInt(MAGIC);
+				out.writeInt(FORMAT_VERSION);
+				out.writeUTF(JaCoCo.VERSION);
+				out.writeInt(current.size());
+				for (final Map.Entry<Long, byte[]> entry : current.entrySet()) {
+					out.writeLong(entry.getKey().longValue());
+					out.writeInt(entry.getValue().length);
+					out.write(entry.getValue());
+				}
+			} finally {
+				out.close();
+			}
+			file.delete();
+			if (!tmp.renameTo(file)) {
+				throw new IOException(String.format(
+						"Unable to write analysis cache %s.", file));
+			}
+		} finally {
+			tmp.delete();
+		}
+	}
+
+	/**
+	 * Returns the number of classes which have been found in the cache.
+	 * 
+	 * @return number of cache hits
+	 */
+	public synchronized int getHitCount() {
+		return hitCount;
+	}
+
+	/**
+	 * Returns the number of classes which have not been found in the cache.
+	 * 
+	 * @return number of cache misses
+	 */
+	public synchronized int getMissCount() {
+		return missCount;
+	}
+
+	ClassStructure get(final long id, final StringPool stringPool) {
+		final byte[] data = lookup(Long.valueOf(id));
+		if (data == null) {
+			return null;
+		}
+		try {
+			return ClassStructure.read(new CompactDataInput(
+					new ByteArrayInputStream(data)), stringPool);
+		} catch (final IOException e) {
+			// Corrupt entries are replaced by a new analysis of the class
+			return null;
+		}
+	}
+
+	private synchronized byte[] lookup(final Long id) {
+		byte[] data = current.get(id);
+		if (data == null) {
+			data = stored.remove(id);
+			if (data == null) {
+				missCount++;
+				return null;
+			}
+			current.put(id, data);
+		}
+		hitCount++;
+		return data;
+	}
+
+	void put(final long id, final ClassStructure structure) {
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		try {
+			final CompactDataOutput out = new CompactDataOutput(buffer);
+			structure.write(out);
+			out.flush();
+		} catch (final IOException e) {
+			// Can't happen for in-memory streams
+			throw new IllegalStateException(e);
+		}
+		final byte[] data = buffer.toByteArray();
+		synchronized (this) {
+			current.put(Long.valueOf(id), data);
+		}
+	}
+
+}
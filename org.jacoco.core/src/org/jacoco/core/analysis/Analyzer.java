@@ -22,33 +22,40 @@ import java.util.zip.ZipInputStream;
 
 import org.jacoco.core.data.ExecutionData;
 import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.IExecutionDataProvider;
 import org.jacoco.core.internal.ContentTypeDetector;
 import org.jacoco.core.internal.Java9Support;
 import org.jacoco.core.internal.Pack200Streams;
 import org.jacoco.core.internal.analysis.ClassAnalyzer;
-import org.jacoco.core.internal.analysis.ClassCoverageImpl;
+import org.jacoco.core.internal.analysis.ClassStructure;
 import org.jacoco.core.internal.analysis.StringPool;
 import org.jacoco.core.internal.data.CRC64;
 import org.jacoco.core.internal.flow.ClassProbesAdapter;
 import org.objectweb.asm.ClassReader;
-import org.objectweb.asm.ClassVisitor;
 
 /**
  * An {@link Analyzer} instance processes a set of Java class files and
  * calculates coverage data for them. For each class file the result is reported
  * to a given {@link ICoverageVisitor} instance. In addition the
- * {@link Analyzer} requires a {@link ExecutionDataStore} instance that holds
- * the execution data for the classes to analyze. The {@link Analyzer} offers
- * several methods to analyze classes from a variety of sources.
+ * {@link Analyzer} requires a {@link ExecutionDataStore} instance or another
+ * {@link IExecutionDataProvider} that holds the execution data for the classes
+ * to analyze. The {@link Analyzer} offers several methods to analyze classes
+ * from a variety of sources.
  */
 public class Analyzer {
 
-	private final ExecutionDataStore executionData;
+	private final IExecutionDataProvider executionData;
 
 	private final ICoverageVisitor coverageVisitor;
 
 	private final StringPool stringPool;
 
+	private AnalysisCache cache;
+
+	private boolean probeElisionKnown;
+
+	private boolean probeElision;
+
 	/**
 	 * Creates a new analyzer reporting to the given output.
 	 * 
@@ -60,43 +67,117 @@ public class Analyzer {
 	 */
 	public Analyzer(final ExecutionDataStore executionData,
 			final ICoverageVisitor coverageVisitor) {
+		this((IExecutionDataProvider) executionData, coverageVisitor);
+	}
+
+	/**
+	 * Creates a new analyzer reporting to the given output. Execution data is
+	 * requested from the given provider only for the classes which are
+	 * actually analyzed.
+	 * 
+	 * @param executionData
+	 *            provider for execution data
+	 * @param coverageVisitor
+	 *            the output instance that will coverage data for every analyzed
+	 *            class
+	 */
+	public Analyzer(final IExecutionDataProvider executionData,
+			final ICoverageVisitor coverageVisitor) {
 		this.executionData = executionData;
 		this.coverageVisitor = coverageVisitor;
 		this.stringPool = new StringPool();
 	}
 
 	/**
-	 * Creates an ASM class visitor for analysis.
+	 * Sets a cache for the structure of analyzed classes. Classes contained in
+	 * the cache are not parsed again, the structure of all other analyzed
+	 * classes is added to the cache.
+	 * 
+	 * @param cache
+	 *            cache to use or <code>null</code> to disable caching
+	 */
+	public void setCache(final AnalysisCache cache) {
+		this.cache = cache;
+	}
+
+	/**
+	 * Declares whether the analyzed classes have been instrumented with probe
+	 * elision, see
+	 * {@link org.jacoco.core.instr.Instrumenter#setProbeElision(boolean)}. If
+	 * the instrumentation mode is declared every class is parsed only once.
+	 * Otherwise the mode is detected from the length of the probe arrays,
+	 * which requires a second parse for classes instrumented with probe
+	 * elision.
+	 * 
+	 * @param flag
+	 *            <code>true</code> if the classes have been instrumented with
+	 *            probe elision
+	 */
+	public void setProbeElision(final boolean flag) {
+		this.probeElisionKnown = true;
+		this.probeElision = flag;
+	}
+
+	private boolean[] getProbes(final long classid) {
+		final ExecutionData data = executionData.get(classid);
+		return data == null ? null : data.getProbes();
+	}
+
+	/**
+	 * Analyzes the structure of the given class. No coverage is calculated.
+	 * 
+	 * @param reader
+	 *            reader with class definitions
+	 * @param probeElision
+	 *            <code>true</code> if the class has been instrumented without
+	 *            probes which are implied by other probes
+	 * @return structure of the class
+	 */
+	private ClassStructure analyzeStructure(final ClassReader reader,
+			final boolean probeElision) {
+		final ClassAnalyzer analyzer = new ClassAnalyzer(
+				reader.getClassName(), stringPool);
+		reader.accept(new ClassProbesAdapter(analyzer, false, probeElision),
+				0);
+		return analyzer.getStructure();
+	}
+
+	private static boolean isCompatible(final ClassStructure structure,
+			final boolean[] probes) {
+		return probes == null || probes.length == structure.getProbeCount();
+	}
+
+	private void visitCoverage(final long classid,
+			final ClassStructure structure, final boolean[] probes) {
+		final boolean noMatch = probes == null
+				&& executionData.contains(structure.getName());
+		coverageVisitor.visitCoverage(structure.createCoverage(classid,
+				noMatch, probes));
+	}
+
+	/**
+	 * Reports the coverage of the class with the given id if its structure is
+	 * available from the cache.
 	 * 
 	 * @param classid
 	 *            id of the class calculated with {@link CRC64}
-	 * @param className
-	 *            VM name of the class
-	 * @return ASM visitor to write class definition to
+	 * @return <code>true</code> if the class has been found in the cache
 	 */
-	private ClassVisitor createAnalyzingVisitor(final long classid,
-			final String className) {
-		final ExecutionData data = executionData.get(classid);
-		final boolean[] probes;
-		final boolean noMatch;
-		if (data == null) {
-			probes = null;
-			noMatch = executionData.contains(className);
-		} else {
-			probes = data.getProbes();
-			noMatch = false;
+	private boolean analyzeCachedClass(final long classid) {
+		if (cache == null) {
+			return false;
 		}
-		final ClassCoverageImpl coverage = new ClassCoverageImpl(className,
-				classid, noMatch);
-		final ClassAnalyzer analyzer = new ClassAnalyzer(coverage, probes,
-				stringPool) {
-			@Override
-			public void visitEnd() {
-				super.visitEnd();
-				coverageVisitor.visitCoverage(coverage);
-			}
-		};
-		return new ClassProbesAdapter(analyzer, false);
+		final ClassStructure structure = cache.get(classid, stringPool);
+		if (structure == null) {
+			return false;
+		}
+		final boolean[] probes = getProbes(classid);
+		if (!isCompatible(structure, probes)) {
+			// The structure has been cached for another instrumentation mode
+			return false;
+		}
+		visitCoverage(classid, structure, probes);
+		return true;
 	}
 
 	/**
@@ -106,9 +187,26 @@ public class Analyzer {
 	 *            reader with class definitions
 	 */
 	public void analyzeClass(final ClassReader reader) {
-		final ClassVisitor visitor = createAnalyzingVisitor(
-				CRC64.checksum(reader.b), reader.getClassName());
-		reader.accept(visitor, 0);
+		final long classid = CRC64.checksum(reader.b);
+		if (!analyzeCachedClass(classid)) {
+			analyzeClass(classid, reader);
+		}
+	}
+
+	private void analyzeClass(final long classid, final ClassReader reader) {
+		final boolean[] probes = getProbes(classid);
+		ClassStructure structure = analyzeStructure(reader, probeElision);
+		if (!probeElisionKnown && !isCompatible(structure, probes)) {
+			// Classes instrumented with probe elision have less probes
+			final ClassStructure elided = analyzeStructure(reader, true);
+			if (isCompatible(elided, probes)) {
+				structure = elided;
+			}
+		}
+		if (cache != null) {
+			cache.put(classid, structure);
+		}
+		visitCoverage(classid, structure, probes);
 	}
 
 	/**
@@ -124,8 +222,12 @@ public class Analyzer {
 	public void analyzeClass(final byte[] buffer, final String location)
 			throws IOException {
 		try {
-			analyzeClass(
-					new ClassReader(Java9Support.downgradeIfRequired(buffer)));
+			final byte[] b = Java9Support.downgradeIfRequired(buffer);
+			// Cached classes are reported without parsing the class file
+			final long classid = CRC64.checksum(b);
+			if (!analyzeCachedClass(classid)) {
+				analyzeClass(classid, new ClassReader(b));
+			}
 		} catch (final RuntimeException cause) {
 			throw analyzerError(location, cause);
 		}
@@ -0,0 +1,389 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.core.analysis;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.StringTokenizer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.internal.ContentTypeDetector;
+
+/**
+ * Analyzes class files from folders and archives with multiple threads. Class
+ * files in folders and entries of ZIP files are analyzed independently of each
+ * other, ZIP files are accessed randomly through {@link ZipFile}. Every worker
+ * thread uses its own {@link Analyzer} instance.
+ * 
+ * The results are reported to the given {@link ICoverageVisitor} on the calling
+ * thread in the same order as {@link Analyzer#analyzeAll(File)} would report
+ * them. Therefore the visitor does not need to be thread safe and the resulting
+ * coverage data, e.g. a {@link IBundleCoverage} created by a
+ * {@link CoverageBuilder}, does not depend on the scheduling of the threads.
+ */
+public class ParallelAnalyzer {
+
+	private final ExecutionDataStore executionData;
+
+	private final ICoverageVisitor coverageVisitor;
+
+	private final int threads;
+
+	private AnalysisCache cache;
+
+	/**
+	 * Creates a new analyzer reporting to the given output.
+	 * 
+	 * @param executionData
+	 *            execution data
+	 * @param coverageVisitor
+	 *            the output instance that will coverage data for every analyzed
+	 *            class
+	 * @param threads
+	 *            number of worker threads
+	 */
+	public ParallelAnalyzer(final ExecutionDataStore executionData,
+			final ICoverageVisitor coverageVisitor, final int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException(String.format(
+					"Invalid number of threads %s.", Integer.valueOf(threads)));
+		}
+		this.executionData = executionData;
+		this.coverageVisitor = coverageVisitor;
+		this.threads = threads;
+	}
+
+	/**
+	 * Sets a cache for the structure of analyzed classes which is shared by
+	 * all worker threads.
+	 * 
+	 * @param cache
+	 *            cache to use or <code>null</code> to disable caching
+	 * @see Analyzer#setCache(AnalysisCache)
+	 */
+	public void setCache(final AnalysisCache cache) {
+		this.cache = cache;
+	}
+
+	/**
+	 * Analyzes all class files contained in the given file or folder. Class
+	 * files as well as ZIP files are considered. Folders are searched
+	 * recursively.
+	 * 
+	 * @param file
+	 *            file or folder to look for class files
+	 * @return number of class files found
+	 * @throws IOException
+	 *             if the file can't be read or a class can't be analyzed
+	 */
+	public int analyzeAll(final File file) throws IOException {
+		return analyzeAll(Collections.singletonList(file));
+	}
+
+	/**
+	 * Analyzes all classes from the given class path. Directories containing
+	 * class files as well as archive files are considered.
+	 * 
+	 * @param path
+	 *            path definition
+	 * @param basedir
+	 *            optional base directory, if <code>null</code> the current
+	 *            working directory is used as the base for relative path
+	 *            entries
+	 * @return number of class files found
+	 * @throws IOException
+	 *             if a file can't be read or a class can't be analyzed
+	 */
+	public int analyzeAll(final String path, final File basedir)
+			throws IOException {
+		final List<File> files = new ArrayList<File>();
+		final StringTokenizer st = new StringTokenizer(path,
+				File.pathSeparator);
+		while (st.hasMoreTokens()) {
+			files.add(new File(basedir, st.nextToken()));
+		}
+		return analyzeAll(files);
+	}
+
+	/**
+	 * Analyzes all class files contained in the given files or folders in the
+	 * given order. Class files as well as ZIP files are considered. Folders are
+	 * searched recursively.
+	 * 
+	 * @param files
+	 *            files or folders to look for class files
+	 * @return number of class files found
+	 * @throws IOException
+	 *             if a file can't be read or a class can't be analyzed
+	 */
+	public int analyzeAll(final Collection<File> files) throws IOException {
+		final List<Task> tasks = new ArrayList<Task>();
+		final List<ZipFile> zipFiles = new ArrayList<ZipFile>();
+		final ExecutorService executor = Executors.newFixedThreadPool(threads,
+				new WorkerThreadFactory());
+		try {
+			for (final File file : files) {
+				collectTasks(file, tasks, zipFiles);
+			}
+			final ThreadLocal<Worker> workers = new ThreadLocal<Worker>() {
+				@Override
+				protected Worker initialValue() {
+					return new Worker();
+				}
+			};
+			final List<Future<Result>> results = new ArrayList<Future<Result>>(
+					tasks.size());
+			for (final Task task : tasks) {
+				task.workers = workers;
+				results.add(executor.submit(task));
+			}
+			int count = 0;
+			for (final Future<Result> future : results) {
+				count += report(getResult(future));
+			}
+			return count;
+		} finally {
+			shutdown(executor);
+			for (final ZipFile zipFile : zipFiles) {
+				zipFile.close();
+			}
+		}
+	}
+
+	private void collectTasks(final File file, final List<Task> tasks,
+			final List<ZipFile> zipFiles) throws IOException {
+		if (file.isDirectory()) {
+			for (final File f : file.listFiles()) {
+				collectTasks(f, tasks, zipFiles);
+			}
+			return;
+		}
+		if (isZipFile(file)) {
+			final ZipFile zipFile;
+			try {
+				zipFile = new ZipFile(file);
+			} catch (final IOException e) {
+				// Let the analyzer report archives which can't be opened
+				tasks.add(new FileTask(file));
+				return;
+			}
+			zipFiles.add(zipFile);
+			final Enumeration<? extends ZipEntry> entries = zipFile.entries();
+			while (entries.hasMoreElements()) {
+				final ZipEntry entry = entries.nextElement();
+				if (!entry.isDirectory()) {
+					tasks.add(new ZipEntryTask(zipFile, entry, file.getPath()));
+				}
+			}
+			return;
+		}
+		tasks.add(new FileTask(file));
+	}
+
+	private static boolean isZipFile(final File file) throws IOException {
+		final InputStream in = new FileInputStream(file);
+		try {
+			final int type = new ContentTypeDetector(in).getType();
+			return type == ContentTypeDetector.ZIPFILE;
+		} finally {
+			in.close();
+		}
+	}
+
+	private int report(final Result result) throws IOException {
+		for (final IClassCoverage coverage : result.classes) {
+			coverageVisitor.visitCoverage(coverage);
+		}
+		if (result.exception != null) {
+			throw result.exception;
+		}
+		return result.count;
+	}
+
+	private static Result getResult(final Future<Result> future)
+			throws IOException {
+		try {
+			return future.get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		} catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			final IOException ex = new IOException(cause.getMessage());
+			ex.initCause(cause);
+			throw ex;
+		}
+	}
+
+	private static void shutdown(final ExecutorService executor) {
+		executor.shutdownNow();
+		try {
+			// Running tasks must not access ZIP files after they are closed
+			while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+				// keep waiting
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Result of a single task.
+	 */
+	private static class Result {
+
+		final List<IClassCoverage> classes = new ArrayList<IClassCoverage>();
+
+		int count;
+
+		IOException exception;
+
+	}
+
+	/**
+	 * Per thread analyzer which collects the result of the current task.
+	 */
+	private class Worker implements ICoverageVisitor {
+
+		private final Analyzer analyzer = new Analyzer(executionData, this);
+
+		private Result result;
+
+		Worker() {
+			analyzer.setCache(cache);
+		}
+
+		public void visitCoverage(final IClassCoverage coverage) {
+			result.classes.add(coverage);
+		}
+
+	}
+
+	/**
+	 * Analysis of a single file or ZIP entry.
+	 */
+	private abstract static class Task implements Callable<Result> {
+
+		ThreadLocal<Worker> workers;
+
+		public Result call() {
+			final Worker worker = workers.get();
+			final Result result = new Result();
+			worker.result = result;
+			try {
+				result.count = analyze(worker.analyzer);
+			} catch (final IOException e) {
+				result.exception = e;
+			} finally {
+				worker.result = null;
+			}
+			return result;
+		}
+
+		abstract int analyze(Analyzer analyzer) throws IOException;
+
+	}
+
+	private static class FileTask extends Task {
+
+		private final File file;
+
+		FileTask(final File file) {
+			this.file = file;
+		}
+
+		@Override
+		int analyze(final Analyzer analyzer) throws IOException {
+			final InputStream in = new FileInputStream(file);
+			try {
+				return analyzer.analyzeAll(in, file.getPath());
+			} finally {
+				in.close();
+			}
+		}
+
+	}
+
+	private static class ZipEntryTask extends Task {
+
+		private final ZipFile zipFile;
+
+		private final ZipEntry entry;
+
+		private final String location;
+
+		ZipEntryTask(final ZipFile zipFile, final ZipEntry entry,
+				final String location) {
+			this.zipFile = zipFile;
+			this.entry = entry;
+			this.location = location;
+		}
+
+		@Override
+		int analyze(final Analyzer analyzer) throws IOException {
+			final InputStream in;
+			try {
+				in = zipFile.getInputStream(entry);
+			} catch (final IOException e) {
+				final IOException ex = new IOException(String.format(
+						"Error while analyzing %s.", location));
+				ex.initCause(e);
+				throw ex;
+			}
+			try {
+				return analyzer.analyzeAll(in,
+						location + "@" + entry.getName());
+			} finally {
+				in.close();
+			}
+		}
+
+	}
+
+	private static class WorkerThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger counter = new AtomicInteger();
+
+		public Thread newThread(final Runnable r) {
+			final Thread thread = new Thread(r, "jacoco-analyzer-"
+					+ counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+
+	}
+
+}
@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.core.data;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * In-memory data store for executed classes without their probes. This class
+ * is not thread safe.
+ */
+public class ClassHitStore implements IClassHitVisitor {
+
+	private final Map<Long, String> entries = new TreeMap<Long, String>();
+
+	/**
+	 * Checks whether the class with the given id has been executed.
+	 * 
+	 * @param id
+	 *            class identifier
+	 * @return <code>true</code> if the class has been executed
+	 */
+	public boolean contains(final long id) {
+		return entries.containsKey(Long.valueOf(id));
+	}
+
+	/**
+	 * Returns the VM name of the executed class with the given id.
+	 * 
+	 * @param id
+	 *            class identifier
+	 * @return VM name of the class or <code>null</code> if the class has not
+	 *         been executed
+	 */
+	public String getName(final long id) {
+		return entries.get(Long.valueOf(id));
+	}
+
+	/**
+	 * Returns the ids of all executed classes in ascending order.
+	 * 
+	 * @return ids of all executed classes
+	 */
+	public Set<Long> getIds() {
+		return entries.keySet();
+	}
+
+	/**
+	 * Checks whether the store is empty.
+	 * 
+	 * @return <code>true</code> if no class is contained
+	 */
+	public boolean isEmpty() {
+		return entries.isEmpty();
+	}
+
+	/**
+	 * Writes the content of the store to the given visitor interface.
+	 * 
+	 * @param visitor
+	 *            interface to write content to
+	 */
+	public void accept(final IClassHitVisitor visitor) {
+		for (final Map.Entry<Long, String> entry : entries.entrySet()) {
+			visitor.visitClassHit(entry.getKey().longValue(), entry.getValue());
+		}
+	}
+
+	// === IClassHitVisitor ===
+
+	public void visitClassHit(final long id, final String name) {
+		entries.put(Long.valueOf(id), name);
+	}
+
+}
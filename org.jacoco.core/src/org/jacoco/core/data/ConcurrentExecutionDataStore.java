@@ -0,0 +1,291 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.core.data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Thread safe in-memory data store for execution data which is designed for
+ * concurrent access from many threads at runtime. Entries are kept in an open
+ * addressing hash table keyed by the primitive class id. Lookups and inserts of
+ * new entries do not acquire any lock, new entries are published with a single
+ * compare-and-set operation. Only growing the table and iterating the contents
+ * is serialized on the monitor of this instance.
+ * 
+ * In contrast to {@link ExecutionDataStore} this store does not keep track of
+ * class names and does not support subtraction.
+ */
+public final class ConcurrentExecutionDataStore implements
+		IExecutionDataVisitor {
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	/** Marker for slots which have been copied to a new table. */
+	private static final ExecutionData MOVED = new ExecutionData(0,
+			"<moved>", 0);
+
+	private volatile AtomicReferenceArray<ExecutionData> table;
+
+	private final AtomicInteger size = new AtomicInteger();
+
+	/**
+	 * Creates a new empty store.
+	 */
+	public ConcurrentExecutionDataStore() {
+		this(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Creates a new empty store with the given initial capacity.
+	 * 
+	 * @param capacity
+	 *            expected number of entries
+	 */
+	public ConcurrentExecutionDataStore(final int capacity) {
+		int length = 16;
+		while (length < capacity * 2) {
+			length <<= 1;
+		}
+		table = new AtomicReferenceArray<ExecutionData>(length);
+	}
+
+	/**
+	 * Returns the {@link ExecutionData} entry with the given id if it exists in
+	 * this store.
+	 * 
+	 * @param id
+	 *            class id
+	 * @return execution data or <code>null</code>
+	 */
+	public ExecutionData get(final long id) {
+		for (;;) {
+			final AtomicReferenceArray<ExecutionData> t = table;
+			final int mask = t.length() - 1;
+			int i = hash(id) & mask;
+			for (;;) {
+				final ExecutionData entry = t.get(i);
+				if (entry == null) {
+					return null;
+				}
+				if (entry == MOVED) {
+					awaitResize();
+					break;
+				}
+				if (entry.getId() == id) {
+					return entry;
+				}
+				i = (i + 1) & mask;
+			}
+		}
+	}
+
+	/**
+	 * Returns the coverage data for the class with the given identifier. If
+	 * there is no data available under the given id a new entry is created.
+	 * 
+	 * @param id
+	 *            class identifier
+	 * @param name
+	 *            VM name of the class
+	 * @param probecount
+	 *            probe data length
+	 * @return execution data
+	 * @throws IllegalStateException
+	 *             if an existing entry is not compatible with the given
+	 *             parameters
+	 * @see ExecutionData#assertCompatibility(long, String, int)
+	 */
+	public ExecutionData get(final long id, final String name,
+			final int probecount) throws IllegalStateException {
+		ExecutionData created = null;
+		for (;;) {
+			final AtomicReferenceArray<ExecutionData> t = table;
+			final int mask = t.length() - 1;
+			int i = hash(id) & mask;
+			for (;;) {
+				final ExecutionData entry = t.get(i);
+				if (entry == null) {
+					if (created == null) {
+						created = new ExecutionData(id, name, probecount);
+					}
+					if (t.compareAndSet(i, null, created)) {
+						added(t);
+						return created;
+					}
+					// Slot has been taken concurrently, inspect it again
+					continue;
+				}
+				if (entry == MOVED) {
+					awaitResize();
+					break;
+				}
+				if (entry.getId() == id) {
+					entry.assertCompatibility(id, name, probecount);
+					return entry;
+				}
+				i = (i + 1) & mask;
+			}
+		}
+	}
+
+	/**
+	 * Adds the given {@link ExecutionData} object into the store. If there is
+	 * already execution data with this same class id, this structure is merged
+	 * with the given one.
+	 * 
+	 * @param data
+	 *            execution data to add or merge
+	 * @throws IllegalStateException
+	 *             if the given {@link ExecutionData} object is not compatible
+	 *             to a corresponding one, that is already contained
+	 * @see ExecutionData#assertCompatibility(long, String, int)
+	 */
+	public void put(final ExecutionData data) throws IllegalStateException {
+		final long id = data.getId();
+		for (;;) {
+			final AtomicReferenceArray<ExecutionData> t = table;
+			final int mask = t.length() - 1;
+			int i = hash(id) & mask;
+			for (;;) {
+				final ExecutionData entry = t.get(i);
+				if (entry == null) {
+					if (t.compareAndSet(i, null, data)) {
+						added(t);
+						return;
+					}
+					continue;
+				}
+				if (entry == MOVED) {
+					awaitResize();
+					break;
+				}
+				if (entry.getId() == id) {
+					entry.merge(data);
+					return;
+				}
+				i = (i + 1) & mask;
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of entries in this store.
+	 * 
+	 * @return number of entries
+	 */
+	public int size() {
+		return size.get();
+	}
+
+	/**
+	 * Resets all execution data probes, i.e. marks them as not executed. The
+	 * execution data objects itself are not removed.
+	 */
+	public synchronized void reset() {
+		final AtomicReferenceArray<ExecutionData> t = table;
+		for (int i = 0; i < t.length(); i++) {
+			final ExecutionData entry = t.get(i);
+			if (entry != null && entry != MOVED) {
+				entry.reset();
+			}
+		}
+	}
+
+	/**
+	 * Returns a collection that represents current contents of the store.
+	 * 
+	 * @return current contents
+	 */
+	public synchronized Collection<ExecutionData> getContents() {
+		final AtomicReferenceArray<ExecutionData> t = table;
+		final Collection<ExecutionData> contents = new ArrayList<ExecutionData>(
+				size.get());
+		for (int i = 0; i < t.length(); i++) {
+			final ExecutionData entry = t.get(i);
+			if (entry != null && entry != MOVED) {
+				contents.add(entry);
+			}
+		}
+		return contents;
+	}
+
+	/**
+	 * Writes the content of the store to the given visitor interface.
+	 * 
+	 * @param visitor
+	 *            interface to write content to
+	 */
+	public void accept(final IExecutionDataVisitor visitor) {
+		for (final ExecutionData data : getContents()) {
+			visitor.visitClassExecution(data);
+		}
+	}
+
+	// === IExecutionDataVisitor ===
+
+	public void visitClassExecution(final ExecutionData data) {
+		put(data);
+	}
+
+	// === Table management ===
+
+	private static int hash(final long id) {
+		// Class ids are CRC64 checksums, spread all bits to the lower ones
+		long h = id ^ (id >>> 33);
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		return (int) h;
+	}
+
+	private void added(final AtomicReferenceArray<ExecutionData> t) {
+		// Keep load factor below 1/2 to keep probe sequences short
+		if (size.incrementAndGet() * 2 > t.length()) {
+			resize(t);
+		}
+	}
+
+	private synchronized void resize(final AtomicReferenceArray<ExecutionData> t) {
+		if (table != t) {
+			// Already resized by another thread
+			return;
+		}
+		final AtomicReferenceArray<ExecutionData> newTable = new AtomicReferenceArray<ExecutionData>(
+				t.length() * 2);
+		final int mask = newTable.length() - 1;
+		for (int i = 0; i < t.length(); i++) {
+			ExecutionData entry;
+			do {
+				entry = t.get(i);
+			} while (!t.compareAndSet(i, entry, MOVED));
+			if (entry != null) {
+				int j = hash(entry.getId()) & mask;
+				while (newTable.get(j) != null) {
+					j = (j + 1) & mask;
+				}
+				newTable.set(j, entry);
+			}
+		}
+		table = newTable;
+	}
+
+	private void awaitResize() {
+		// The resizing thread holds the monitor until the new table has been
+		// published.
+		synchronized (this) {
+			// nothing to do
+		}
+	}
+
+}
@@ -19,6 +19,15 @@ import java.util.Arrays;
  * Execution data for a single Java class. While instances are immutable care
  * has to be taken about the probe data array of type <code>boolean[]</code>
  * which can be modified.
+ * 
+ * Execution data can alternatively be backed by a bit set of type
+ * <code>long[]</code> with one bit per probe. This representation needs only a
+ * eighth of the memory and allows merging, subtracting and checking for hits
+ * 64 probes at a time. It is used by {@link ExecutionDataReader} for data read
+ * from execution data files. The bit set is expanded to a
+ * <code>boolean[]</code> once {@link #getProbes()} is called. The expansion is
+ * thread safe, therefore objects can be read by multiple threads concurrently.
+ * Once expanded the bit set is not used any more.
  */
 public final class ExecutionData {
 
@@ -26,7 +35,12 @@ public final class ExecutionData {
 
 	private final String name;
 
-	private final boolean[] probes;
+	private final int probeCount;
+
+	/** <code>null</code> until a bit set has been expanded */
+	private volatile boolean[] probes;
+
+	private final long[] bits;
 
 	/**
 	 * Creates a new {@link ExecutionData} object with the given probe data.
@@ -42,7 +56,9 @@ public final class ExecutionData {
 			final boolean[] probes) {
 		this.id = id;
 		this.name = name;
+		this.probeCount = probes.length;
 		this.probes = probes;
+		this.bits = null;
 	}
 
 	/**
@@ -59,7 +75,36 @@ public final class ExecutionData {
 	public ExecutionData(final long id, final String name, final int probeCount) {
 		this.id = id;
 		this.name = name;
+		this.probeCount = probeCount;
 		this.probes = new boolean[probeCount];
+		this.bits = null;
+	}
+
+	/**
+	 * Creates a new {@link ExecutionData} object backed by the given bit set.
+	 * Probe <code>i</code> is stored in bit <code>i % 64</code> of word
+	 * <code>i / 64</code>. Bits beyond the probe count must not be set.
+	 * 
+	 * @param id
+	 *            class identifier
+	 * @param name
+	 *            VM name
+	 * @param bits
+	 *            probe data with one bit per probe
+	 * @param probeCount
+	 *            probe count
+	 */
+	public ExecutionData(final long id, final String name, final long[] bits,
+			final int probeCount) {
+		if (bits.length != getWordCount(probeCount)) {
+			throw new IllegalArgumentException(format(
+					"Bit set of %s words does not match probe count %s.",
+					Integer.valueOf(bits.length), Integer.valueOf(probeCount)));
+		}
+		this.id = id;
+		this.name = name;
+		this.probeCount = probeCount;
+		this.bits = bits;
 	}
 
 	/**
@@ -81,21 +126,59 @@ public final class ExecutionData {
 		return name;
 	}
 
+	/**
+	 * Returns the number of probes of this class.
+	 * 
+	 * @return number of probes
+	 */
+	public int getProbeCount() {
+		return probeCount;
+	}
+
 	/**
 	 * Returns the execution data probes. A value of <code>true</code> indicates
-	 * that the corresponding probe was executed.
+	 * that the corresponding probe was executed. If this object is backed by a
+	 * bit set it is converted to a <code>boolean[]</code> by this call.
 	 * 
 	 * @return probe data
 	 */
 	public boolean[] getProbes() {
-		return probes;
+		final boolean[] p = probes;
+		return p == null ? expand() : p;
+	}
+
+	private synchronized boolean[] expand() {
+		boolean[] p = probes;
+		if (p == null) {
+			p = new boolean[probeCount];
+			for (int i = 0; i < probeCount; i++) {
+				p[i] = (bits[i >>> 6] & (1L << i)) != 0;
+			}
+			probes = p;
+		}
+		return p;
+	}
+
+	/**
+	 * Returns the bit set backing this object.
+	 * 
+	 * @return bit set or <code>null</code> if this object is backed by a
+	 *         <code>boolean[]</code>
+	 */
+	long[] getBits() {
+		return probes == null ? bits : null;
 	}
 
 	/**
 	 * Sets all probes to <code>false</code>.
 	 */
 	public void reset() {
-		Arrays.fill(probes, false);
+		final boolean[] p = probes;
+		if (p == null) {
+			Arrays.fill(bits, 0L);
+		} else {
+			Arrays.fill(p, false);
+		}
 	}
 
 	/**
@@ -104,14 +187,45 @@ public final class ExecutionData {
 	 * @return <code>true</code>, if at least one probe has been hit
 	 */
 	public boolean hasHits() {
-		for (final boolean p : probes) {
-			if (p) {
+		final boolean[] p = probes;
+		if (p == null) {
+			for (final long w : bits) {
+				if (w != 0) {
+					return true;
+				}
+			}
+			return false;
+		}
+		for (final boolean b : p) {
+			if (b) {
 				return true;
 			}
 		}
 		return false;
 	}
 
+	/**
+	 * Counts the number of probes that have been hit.
+	 * 
+	 * @return number of executed probes
+	 */
+	public int getHitCount() {
+		int count = 0;
+		final boolean[] p = probes;
+		if (p == null) {
+			for (final long w : bits) {
+				count += Long.bitCount(w);
+			}
+			return count;
+		}
+		for (final boolean b : p) {
+			if (b) {
+				count++;
+			}
+		}
+		return count;
+	}
+
 	/**
 	 * Merges the given execution data into the probe data of this object. I.e.
 	 * a probe entry in this object is marked as executed (<code>true</code>) if
@@ -156,11 +270,40 @@ public final class ExecutionData {
 	 */
 	public void merge(final ExecutionData other, final boolean flag) {
 		assertCompatibility(other.getId(), other.getName(),
-				other.getProbes().length);
-		final boolean[] otherData = other.getProbes();
-		for (int i = 0; i < probes.length; i++) {
-			if (otherData[i]) {
-				probes[i] = flag;
+				other.getProbeCount());
+		final long[] b = getBits();
+		final long[] otherBits = other.getBits();
+		final boolean[] p = b == null ? getProbes() : null;
+		if (b != null && otherBits != null) {
+			if (flag) {
+				for (int w = 0; w < b.length; w++) {
+					b[w] |= otherBits[w];
+				}
+			} else {
+				for (int w = 0; w < b.length; w++) {
+					b[w] &= ~otherBits[w];
+				}
+			}
+		} else if (otherBits != null) {
+			for (int w = 0; w < otherBits.length; w++) {
+				long word = otherBits[w];
+				while (word != 0) {
+					p[(w << 6) + Long.numberOfTrailingZeros(word)] = flag;
+					word &= word - 1;
+				}
+			}
+		} else {
+			final boolean[] otherData = other.getProbes();
+			for (int i = 0; i < probeCount; i++) {
+				if (otherData[i]) {
+					if (b == null) {
+						p[i] = flag;
+					} else if (flag) {
+						b[i >>> 6] |= 1L << i;
+					} else {
+						b[i >>> 6] &= ~(1L << i);
+					}
+				}
 			}
 		}
 	}
@@ -191,13 +334,25 @@ public final class ExecutionData {
 					"Different class names %s and %s for id %016x.", this.name,
 					name, Long.valueOf(id)));
 		}
-		if (this.probes.length != probecount) {
+		if (this.probeCount != probecount) {
 			throw new IllegalStateException(format(
 					"Incompatible execution data for class %s with id %016x.",
 					name, Long.valueOf(id)));
 		}
 	}
 
+	/**
+	 * Returns the number of <code>long</code> words required to store the given
+	 * number of probes as a bit set.
+	 * 
+	 * @param probeCount
+	 *            number of probes
+	 * @return number of words
+	 */
+	public static int getWordCount(final int probeCount) {
+		return (probeCount + 63) >>> 6;
+	}
+
 	@Override
 	public String toString() {
 		return String.format("ExecutionData[name=%s, id=%016x]", name,
@@ -13,8 +13,11 @@ package org.jacoco.core.data;
 
 import static java.lang.String.format;
 
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.zip.InflaterInputStream;
 
 import org.jacoco.core.internal.data.CompactDataInput;
 
@@ -30,6 +33,8 @@ public class ExecutionDataReader {
 
 	private IExecutionDataVisitor executionDataVisitor = null;
 
+	private IClassHitVisitor classHitVisitor = null;
+
 	private boolean firstBlock = true;
 
 	/**
@@ -64,6 +69,16 @@ public class ExecutionDataReader {
 		this.executionDataVisitor = visitor;
 	}
 
+	/**
+	 * Sets an listener for executed classes without probes.
+	 * 
+	 * @param visitor
+	 *            visitor to retrieve class hit events
+	 */
+	public void setClassHitVisitor(final IClassHitVisitor visitor) {
+		this.classHitVisitor = visitor;
+	}
+
 	/**
 	 * Reads all data and reports it to the corresponding visitors. The stream
 	 * is read until its end or a command confirmation has been sent.
@@ -114,6 +129,15 @@ public class ExecutionDataReader {
 		case ExecutionDataWriter.BLOCK_EXECUTIONDATA:
 			readExecutionData();
 			return true;
+		case ExecutionDataWriter.BLOCK_DEFLATED:
+			readDeflated();
+			return true;
+		case ExecutionDataWriter.BLOCK_MAPPED:
+			readMapped();
+			return true;
+		case ExecutionDataWriter.BLOCK_CLASSHIT:
+			readClassHit();
+			return true;
 		default:
 			throw new IOException(format("Unknown block type %x.",
 					Byte.valueOf(blocktype)));
@@ -146,9 +170,72 @@ public class ExecutionDataReader {
 		}
 		final long id = in.readLong();
 		final String name = in.readUTF();
-		final boolean[] probes = in.readBooleanArray();
+		final int probeCount = in.readVarInt();
+		final long[] bits = in.readBitArray(probeCount);
 		executionDataVisitor.visitClassExecution(new ExecutionData(id, name,
-				probes));
+				bits, probeCount));
+	}
+
+	private void readClassHit() throws IOException {
+		if (classHitVisitor == null) {
+			throw new IOException("No class hit visitor.");
+		}
+		final long id = in.readLong();
+		final String name = in.readUTF();
+		classHitVisitor.visitClassHit(id, name);
+	}
+
+	private void readDeflated() throws IOException {
+		final byte[] deflated = new byte[in.readVarInt()];
+		in.readFully(deflated);
+		final ExecutionDataReader reader = new ExecutionDataReader(
+				new InflaterInputStream(new ByteArrayInputStream(deflated)));
+		reader.setSessionInfoVisitor(sessionInfoVisitor);
+		reader.setExecutionDataVisitor(executionDataVisitor);
+		reader.setClassHitVisitor(classHitVisitor);
+		reader.read();
+	}
+
+	private void readMapped() throws IOException {
+		if (sessionInfoVisitor == null) {
+			throw new IOException("No session info visitor.");
+		}
+		if (executionDataVisitor == null) {
+			throw new IOException("No execution data visitor.");
+		}
+		final int length = in.readInt();
+		final int used = in.readInt();
+		final long start = in.readLong();
+		final long dump = in.readLong();
+		final byte[] slot = new byte[MappedExecutionDataWriter.SESSION_SLOT];
+		in.readFully(slot);
+		final String id = new DataInputStream(new ByteArrayInputStream(slot))
+				.readUTF();
+		sessionInfoVisitor.visitSessionInfo(new SessionInfo(id, start, dump));
+		int remaining = used;
+		while (remaining > 0) {
+			remaining -= in.readInt();
+			final long classid = in.readLong();
+			final String name = in.readUTF();
+			final int probeCount = in.readInt();
+			final long[] bits = new long[(probeCount + 63) >>> 6];
+			for (int i = 0; i < bits.length; i++) {
+				bits[i] = in.readLong();
+			}
+			executionDataVisitor.visitClassExecution(new ExecutionData(classid,
+					name, bits, probeCount));
+		}
+		// Skip unused space at the end of the file:
+		int unused = length - 20 - slot.length - used;
+		while (unused > 0) {
+			final int skipped = in.skipBytes(unused);
+			if (skipped == 0) {
+				in.readByte();
+				unused--;
+			} else {
+				unused -= skipped;
+			}
+		}
 	}
 
 }
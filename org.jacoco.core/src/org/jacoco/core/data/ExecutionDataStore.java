@@ -26,7 +26,8 @@ import java.util.Set;
  * coverage date from multiple runs. A instance of this class is not thread
  * safe.
  */
-public final class ExecutionDataStore implements IExecutionDataVisitor {
+public final class ExecutionDataStore implements IExecutionDataVisitor,
+		IExecutionDataProvider {
 
 	private final Map<Long, ExecutionData> entries = new HashMap<Long, ExecutionData>();
 
@@ -21,7 +21,7 @@ import org.jacoco.core.internal.data.CompactDataOutput;
  * Serialization of execution data into binary streams.
  */
 public class ExecutionDataWriter implements ISessionInfoVisitor,
-		IExecutionDataVisitor {
+		IExecutionDataVisitor, IClassHitVisitor {
 
 	/** File format version, will be incremented for each incompatible change. */
 	public static final char FORMAT_VERSION = 0x1007;
@@ -38,6 +38,21 @@ public class ExecutionDataWriter implements ISessionInfoVisitor,
 	/** Block identifier for execution data of a single class. */
 	public static final byte BLOCK_EXECUTIONDATA = 0x11;
 
+	/**
+	 * Block identifier for a complete execution data stream compressed with
+	 * the deflate algorithm.
+	 */
+	public static final byte BLOCK_DEFLATED = 0x12;
+
+	/**
+	 * Block identifier for the content of a memory mapped execution data file
+	 * written by {@link MappedExecutionDataWriter}.
+	 */
+	public static final byte BLOCK_MAPPED = 0x13;
+
+	/** Block identifier for an executed class without its probes. */
+	public static final byte BLOCK_CLASSHIT = 0x14;
+
 	/** Underlying data output */
 	protected final CompactDataOutput out;
 
@@ -78,6 +93,23 @@ public class ExecutionDataWriter implements ISessionInfoVisitor,
 		out.flush();
 	}
 
+	/**
+	 * Writes a block which embeds a complete execution data stream, including
+	 * its header, compressed in the format of
+	 * {@link java.util.zip.DeflaterOutputStream}. Readers report the contents
+	 * of the embedded stream like the contents of uncompressed blocks.
+	 * 
+	 * @param deflated
+	 *            compressed execution data stream
+	 * @throws IOException
+	 *             if the block can't be written
+	 */
+	public void writeDeflated(final byte[] deflated) throws IOException {
+		out.writeByte(BLOCK_DEFLATED);
+		out.writeVarInt(deflated.length);
+		out.write(deflated);
+	}
+
 	public void visitSessionInfo(final SessionInfo info) {
 		try {
 			out.writeByte(BLOCK_SESSIONINFO);
@@ -95,13 +127,29 @@ public class ExecutionDataWriter implements ISessionInfoVisitor,
 				out.writeByte(BLOCK_EXECUTIONDATA);
 				out.writeLong(data.getId());
 				out.writeUTF(data.getName());
-				out.writeBooleanArray(data.getProbes());
+				final long[] bits = data.getBits();
+				if (bits == null) {
+					out.writeBooleanArray(data.getProbes());
+				} else {
+					out.writeVarInt(data.getProbeCount());
+					out.writeBitArray(bits, data.getProbeCount());
+				}
 			} catch (final IOException e) {
 				throw new RuntimeException(e);
 			}
 		}
 	}
 
+	public void visitClassHit(final long id, final String name) {
+		try {
+			out.writeByte(BLOCK_CLASSHIT);
+			out.writeLong(id);
+			out.writeUTF(name);
+		} catch (final IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
 	/**
 	 * Returns the first bytes of a file that represents a valid execution data
 	 * file. In any case every execution data file starts with the three bytes
@@ -0,0 +1,31 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.core.data;
+
+/**
+ * Interface for data output of executed classes without their probes. This
+ * projection of execution data is requested with filtered dump commands if
+ * only the set of executed classes is of interest.
+ */
+public interface IClassHitVisitor {
+
+	/**
+	 * Provides the information that a class has been executed.
+	 * 
+	 * @param id
+	 *            class identifier
+	 * @param name
+	 *            VM name of the class
+	 */
+	public void visitClassHit(long id, String name);
+
+}
@@ -0,0 +1,41 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.core.data;
+
+/**
+ * Read access to execution data by class id. Implementations may keep all data
+ * in memory like {@link ExecutionDataStore} or load the data of individual
+ * classes on demand.
+ */
+public interface IExecutionDataProvider {
+
+	/**
+	 * Returns the {@link ExecutionData} entry with the given id if it exists.
+	 * 
+	 * @param id
+	 *            class id
+	 * @return execution data or <code>null</code>
+	 */
+	public ExecutionData get(long id);
+
+	/**
+	 * Checks whether execution data for classes with the given name are
+	 * available.
+	 * 
+	 * @param name
+	 *            VM name
+	 * @return <code>true</code> if at least one class with the name is
+	 *         contained.
+	 */
+	public boolean contains(String name);
+
+}
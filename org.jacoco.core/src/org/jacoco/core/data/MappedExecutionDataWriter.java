@@ -0,0 +1,222 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.core.data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writer for execution data files which are mapped into memory. In contrast
+ * to {@link ExecutionDataWriter} the data of a class is written only once and
+ * its probes are updated in place on every subsequent visit. The probes of a
+ * visit are combined with the probes already written, therefore execution
+ * data is never lost when the probes are reset between visits. All changes
+ * are immediately visible in the file system cache of the operating system,
+ * therefore the file contains the data of all visits even if the VM is
+ * terminated abnormally.
+ * 
+ * The file starts with a regular header block followed by a single
+ * {@link ExecutionDataWriter#BLOCK_MAPPED} block, therefore it can be read
+ * with {@link ExecutionDataReader} like any other execution data file. The
+ * block has the following layout:
+ * 
+ * <ul>
+ * <li>int: length of the remaining block</li>
+ * <li>int: length of all class entries</li>
+ * <li>long: session start time stamp</li>
+ * <li>long: session dump time stamp</li>
+ * <li>UTF: session id, padded to {@value #SESSION_SLOT} bytes</li>
+ * <li>class entries: int entry length, long id, UTF name, int probe count and
+ * the probes as bits in longs</li>
+ * <li>unused space</li>
+ * </ul>
+ * 
+ * The file grows as needed. The length of all entries is updated after a new
+ * entry has been written completely.
+ */
+public class MappedExecutionDataWriter implements ISessionInfoVisitor,
+		IExecutionDataVisitor {
+
+	/** Maximum length of the encoded session id. */
+	public static final int SESSION_SLOT = 256;
+
+	private static final int INITIAL_CAPACITY = 0x10000;
+
+	private static final int POS_LENGTH = 6;
+
+	private static final int POS_USED = 10;
+
+	private static final int POS_START = 14;
+
+	private static final int POS_DUMP = 22;
+
+	private static final int POS_SESSION = 30;
+
+	private static final int POS_ENTRIES = POS_SESSION + SESSION_SLOT;
+
+	private final RandomAccessFile file;
+
+	private final FileChannel channel;
+
+	private final Map<Long, Integer> entries = new HashMap<Long, Integer>();
+
+	private MappedByteBuffer buffer;
+
+	private int capacity;
+
+	private int used;
+
+	private String sessionId;
+
+	/**
+	 * Creates a new writer for the given file. An existing file is
+	 * overwritten.
+	 * 
+	 * @param file
+	 *            file to write to
+	 * @throws IOException
+	 *             if the file can't be created
+	 */
+	public MappedExecutionDataWriter(final File file) throws IOException {
+		this.file = new RandomAccessFile(file, "rw");
+		this.channel = this.file.getChannel();
+		this.file.setLength(0);
+		map(INITIAL_CAPACITY);
+		buffer.put(ExecutionDataWriter.getFileHeader());
+		buffer.put(ExecutionDataWriter.BLOCK_MAPPED);
+		buffer.putInt(POS_USED, 0);
+	}
+
+	private void map(final int newCapacity) throws IOException {
+		buffer = channel.map(MapMode.READ_WRITE, 0, newCapacity);
+		capacity = newCapacity;
+		buffer.putInt(POS_LENGTH, capacity - POS_USED);
+	}
+
+	public void visitSessionInfo(final SessionInfo info) {
+		buffer.putLong(POS_START, info.getStartTimeStamp());
+		buffer.putLong(POS_DUMP, info.getDumpTimeStamp());
+		if (!info.getId().equals(sessionId)) {
+			sessionId = info.getId();
+			final byte[] utf = encodeSessionId(sessionId);
+			for (int i = 0; i < SESSION_SLOT; i++) {
+				buffer.put(POS_SESSION + i, i < utf.length ? utf[i] : 0);
+			}
+		}
+	}
+
+	private static byte[] encodeSessionId(final String id) {
+		String s = id;
+		while (true) {
+			final byte[] utf = toUTF(s);
+			if (utf.length <= SESSION_SLOT) {
+				return utf;
+			}
+			s = s.substring(0, s.length() - 1);
+		}
+	}
+
+	private static byte[] toUTF(final String s) {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try {
+			new DataOutputStream(bytes).writeUTF(s);
+		} catch (final IOException e) {
+			// Must not happen with ByteArrayOutputStream
+			throw new AssertionError(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	public void visitClassExecution(final ExecutionData data) {
+		final Long id = Long.valueOf(data.getId());
+		Integer position = entries.get(id);
+		if (position == null) {
+			try {
+				position = Integer.valueOf(addEntry(data));
+			} catch (final IOException e) {
+				throw new RuntimeException(e);
+			}
+			entries.put(id, position);
+		}
+		writeProbes(position.intValue(), data.getProbes());
+	}
+
+	private int addEntry(final ExecutionData data) throws IOException {
+		final byte[] name = toUTF(data.getName());
+		final int length = 4 + 8 + name.length + 4
+				+ getWordCount(data.getProbeCount()) * 8;
+		final int start = POS_ENTRIES + used;
+		if (start + length > capacity) {
+			int newCapacity = capacity;
+			while (start + length > newCapacity) {
+				newCapacity *= 2;
+			}
+			map(newCapacity);
+		}
+		buffer.position(start);
+		buffer.putInt(length);
+		buffer.putLong(data.getId());
+		buffer.put(name);
+		buffer.putInt(data.getProbeCount());
+		used += length;
+		buffer.putInt(POS_USED, used);
+		return buffer.position();
+	}
+
+	private void writeProbes(final int position, final boolean[] probes) {
+		final int words = getWordCount(probes.length);
+		for (int w = 0; w < words; w++) {
+			long word = 0;
+			final int end = Math.min(probes.length, (w + 1) * 64);
+			for (int i = w * 64; i < end; i++) {
+				if (probes[i]) {
+					word |= 1L << i;
+				}
+			}
+			final int p = position + w * 8;
+			buffer.putLong(p, buffer.getLong(p) | word);
+		}
+	}
+
+	private static int getWordCount(final int probeCount) {
+		return (probeCount + 63) >>> 6;
+	}
+
+	/**
+	 * Forces all changes to the storage device. This is only required to keep
+	 * the data in case of an operating system crash.
+	 */
+	public void flush() {
+		buffer.force();
+	}
+
+	/**
+	 * Writes all changes to the storage device and closes the file. The
+	 * writer can't be used after this method has been called.
+	 * 
+	 * @throws IOException
+	 *             if the file can't be closed
+	 */
+	public void close() throws IOException {
+		buffer.force();
+		file.close();
+	}
+
+}
@@ -24,15 +24,18 @@ import java.util.zip.ZipOutputStream;
 import org.jacoco.core.internal.ContentTypeDetector;
 import org.jacoco.core.internal.Java9Support;
 import org.jacoco.core.internal.Pack200Streams;
+import org.jacoco.core.internal.data.CRC64;
 import org.jacoco.core.internal.flow.ClassProbesAdapter;
 import org.jacoco.core.internal.instr.ClassInstrumenter;
 import org.jacoco.core.internal.instr.IProbeArrayStrategy;
+import org.jacoco.core.internal.instr.InitializationHookAdapter;
 import org.jacoco.core.internal.instr.ProbeArrayStrategyFactory;
 import org.jacoco.core.internal.instr.SignatureRemover;
 import org.jacoco.core.runtime.IExecutionDataAccessorGenerator;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
 
 /**
  * Several APIs to instrument Java class definitions for coverage tracing.
@@ -43,6 +46,12 @@ public class Instrumenter {
 
 	private final SignatureRemover signatureRemover;
 
+	private int probeStripes;
+
+	private boolean hookCompatible;
+
+	private boolean probeElision;
+
 	/**
 	 * Creates a new instance based on the given runtime.
 	 * 
@@ -52,6 +61,64 @@ public class Instrumenter {
 	public Instrumenter(final IExecutionDataAccessorGenerator runtime) {
 		this.accessorGenerator = runtime;
 		this.signatureRemover = new SignatureRemover();
+		this.probeStripes = 1;
+	}
+
+	/**
+	 * Sets the number of probe array stripes for instrumented classes. With
+	 * more than one stripe every thread records its executions in the stripe
+	 * selected by its thread id, which avoids contention on the probe array of
+	 * heavily used classes. The runtime combines all stripes when execution
+	 * data is collected. Interfaces are always instrumented with a single
+	 * probe array. Default is <code>1</code>.
+	 * 
+	 * @param stripes
+	 *            number of stripes, must be a positive power of two
+	 * @throws IllegalArgumentException
+	 *             if the number of stripes is not a positive power of two
+	 */
+	public void setProbeStripes(final int stripes)
+			throws IllegalArgumentException {
+		if (stripes <= 0 || (stripes & (stripes - 1)) != 0) {
+			throw new IllegalArgumentException(String.format(
+					"Invalid number of probe stripes %s.",
+					Integer.valueOf(stripes)));
+		}
+		this.probeStripes = stripes;
+	}
+
+	/**
+	 * Determines whether instrumented classes must be compatible with the
+	 * initialization hook created by {@link #instrumentHook(byte[], String)}.
+	 * If set, a static initializer is added to classes which do not have one,
+	 * so that a hooked class can be retransformed into its instrumented
+	 * version. The probes and the class id are not affected. Default is
+	 * <code>false</code>.
+	 * 
+	 * @param flag
+	 *            <code>true</code> if instrumented classes must be compatible
+	 *            with the initialization hook
+	 */
+	public void setHookCompatible(final boolean flag) {
+		this.hookCompatible = flag;
+	}
+
+	/**
+	 * Determines whether probes which are implied by other probes are omitted.
+	 * A probe on an edge to a jump target is implied if every path to the
+	 * target passes this edge, e.g. the initial jump into a loop. This results
+	 * in smaller probe arrays and less executed probes. The
+	 * {@link org.jacoco.core.analysis.Analyzer} detects such classes from the
+	 * length of their probe arrays. As the class id is the same in both modes
+	 * execution data of classes instrumented with and without probe elision
+	 * can't be merged. Code which is directly followed by an exception might
+	 * be reported as not covered in more cases. Default is <code>false</code>.
+	 * 
+	 * @param flag
+	 *            <code>true</code> if implied probes should be omitted
+	 */
+	public void setProbeElision(final boolean flag) {
+		this.probeElision = flag;
 	}
 
 	/**
@@ -78,13 +145,118 @@ public class Instrumenter {
 	public byte[] instrument(final ClassReader reader) {
 		final ClassWriter writer = new ClassWriter(reader, 0);
 		final IProbeArrayStrategy strategy = ProbeArrayStrategyFactory
-				.createFor(reader, accessorGenerator);
+				.createFor(reader, accessorGenerator, probeStripes,
+						probeElision);
+		ClassVisitor next = writer;
+		if (hookCompatible && isHookable(reader)) {
+			next = new InitializationHookAdapter(false, writer);
+		}
+		// Frames are passed compressed, the instrumentation does not need to
+		// calculate frames:
 		final ClassVisitor visitor = new ClassProbesAdapter(
-				new ClassInstrumenter(strategy, writer), true);
-		reader.accept(visitor, ClassReader.EXPAND_FRAMES);
+				new ClassInstrumenter(strategy, next), false, probeElision);
+		reader.accept(visitor, 0);
 		return writer.toByteArray();
 	}
 
+	/**
+	 * Creates a version of the given class which only reports its
+	 * initialization to the runtime. The runtime does not create execution
+	 * data for such classes, instead the class is expected to be retransformed
+	 * into its instrumented version by an instrumenter which is set up to be
+	 * hook compatible (see {@link #setHookCompatible(boolean)}). The method
+	 * bodies are copied without being analyzed, therefore this is much cheaper
+	 * than the full instrumentation. Interfaces can not be hooked, also with
+	 * probe array stripes the full instrumentation would add different
+	 * members.
+	 * 
+	 * @param buffer
+	 *            definition of the class
+	 * @param name
+	 *            a name used for exception messages
+	 * @return definition with initialization hook or <code>null</code> if the
+	 *         class can not be hooked
+	 * @throws IOException
+	 *             if the class can't be instrumented
+	 */
+	public byte[] instrumentHook(final byte[] buffer, final String name)
+			throws IOException {
+		try {
+			if (Java9Support.isPatchRequired(buffer)) {
+				final byte[] result = instrumentHook(new ClassReader(
+						Java9Support.downgrade(buffer)));
+				if (result != null) {
+					Java9Support.upgrade(result);
+				}
+				return result;
+			} else {
+				return instrumentHook(new ClassReader(buffer));
+			}
+		} catch (final RuntimeException e) {
+			throw instrumentError(name, e);
+		}
+	}
+
+	private byte[] instrumentHook(final ClassReader reader) {
+		if (!isHookable(reader)) {
+			return null;
+		}
+		final ClassWriter writer = new ClassWriter(reader, 0);
+		reader.accept(new InitializationHookAdapter(CRC64.checksum(reader.b),
+				accessorGenerator, writer), 0);
+		return writer.toByteArray();
+	}
+
+	/**
+	 * Creates a version of the given class without probes which can replace
+	 * its instrumented version through retransformation. The members added by
+	 * the instrumentation are kept with a trivial implementation, all methods
+	 * of the class are copied without modification. This requires an
+	 * instrumenter which is set up to be hook compatible (see
+	 * {@link #setHookCompatible(boolean)}). Interfaces and classes with probe
+	 * array stripes can not be detached.
+	 * 
+	 * @param buffer
+	 *            definition of the class
+	 * @param name
+	 *            a name used for exception messages
+	 * @return detached definition or <code>null</code> if the class can not
+	 *         be detached
+	 * @throws IOException
+	 *             if the class can't be processed
+	 */
+	public byte[] instrumentDetached(final byte[] buffer, final String name)
+			throws IOException {
+		try {
+			if (Java9Support.isPatchRequired(buffer)) {
+				final byte[] result = instrumentDetached(new ClassReader(
+						Java9Support.downgrade(buffer)));
+				if (result != null) {
+					Java9Support.upgrade(result);
+				}
+				return result;
+			} else {
+				return instrumentDetached(new ClassReader(buffer));
+			}
+		} catch (final RuntimeException e) {
+			throw instrumentError(name, e);
+		}
+	}
+
+	private byte[] instrumentDetached(final ClassReader reader) {
+		if (!isHookable(reader)) {
+			return null;
+		}
+		final ClassWriter writer = new ClassWriter(reader, 0);
+		reader.accept(new InitializationHookAdapter(true, writer), 0);
+		return writer.toByteArray();
+	}
+
+	private boolean isHookable(final ClassReader reader) {
+		return probeStripes == 1
+				&& (reader.getAccess() & Opcodes.ACC_INTERFACE) == 0;
+	}
+
 	/**
 	 * Creates a instrumented version of the given class if possible.
 	 * 
@@ -112,6 +284,26 @@ public class Instrumenter {
 		}
 	}
 
+	/**
+	 * Instruments a buffer which is owned by this instance, so the version
+	 * can be patched in place instead of copying the buffer.
+	 */
+	private byte[] instrumentOwned(final byte[] buffer, final String name)
+			throws IOException {
+		try {
+			if (Java9Support.isPatchRequired(buffer)) {
+				Java9Support.downgradeInPlace(buffer);
+				final byte[] result = instrument(new ClassReader(buffer));
+				Java9Support.upgrade(result);
+				return result;
+			} else {
+				return instrument(new ClassReader(buffer));
+			}
+		} catch (final RuntimeException e) {
+			throw instrumentError(name, e);
+		}
+	}
+
 	/**
 	 * Creates a instrumented version of the given class if possible.
 	 * 
@@ -127,7 +319,7 @@ public class Instrumenter {
 	public byte[] instrument(final InputStream input, final String name)
 			throws IOException {
 		try {
-			return instrument(Java9Support.readFully(input), name);
+			return instrumentOwned(Java9Support.readFully(input), name);
 		} catch (final RuntimeException e) {
 			throw instrumentError(name, e);
 		}
@@ -149,7 +341,7 @@ public class Instrumenter {
 	public void instrument(final InputStream input, final OutputStream output,
 			final String name) throws IOException {
 		try {
-			output.write(instrument(Java9Support.readFully(input), name));
+			output.write(instrumentOwned(Java9Support.readFully(input), name));
 		} catch (final RuntimeException e) {
 			throw instrumentError(name, e);
 		}
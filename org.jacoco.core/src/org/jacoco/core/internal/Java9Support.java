@@ -102,6 +102,17 @@ public final class Java9Support {
 		return result;
 	}
 
+	/**
+	 * Replaces version in the given definition of class on
+	 * {@link Opcodes#V1_8} without creating a copy.
+	 *
+	 * @param b
+	 *             definition of the class which is modified
+	 */
+	public static void downgradeInPlace(byte[] b) {
+		putShort(b, 6, Opcodes.V1_8);
+	}
+
 	/**
 	 * Replaces version in the definition of class on {@link #V1_9}.
 	 *
@@ -26,6 +26,7 @@ public class ClassAnalyzer extends ClassProbesVisitor {
 	private final ClassCoverageImpl coverage;
 	private final boolean[] probes;
 	private final StringPool stringPool;
+	private final ClassStructure structure;
 
 	/**
 	 * Creates a new analyzer that builds coverage data for a class.
@@ -42,46 +43,100 @@ public class ClassAnalyzer extends ClassProbesVisitor {
 		this.coverage = coverage;
 		this.probes = probes;
 		this.stringPool = stringPool;
+		this.structure = new ClassStructure(coverage.getName());
+	}
+
+	/**
+	 * Creates a new analyzer that only builds the structure of a class. The
+	 * coverage can be calculated from the structure afterwards.
+	 * 
+	 * @param name
+	 *            VM name of the analyzed class
+	 * @param stringPool
+	 *            shared pool to minimize the number of {@link String} instances
+	 */
+	public ClassAnalyzer(final String name, final StringPool stringPool) {
+		this.coverage = null;
+		this.probes = null;
+		this.stringPool = stringPool;
+		this.structure = new ClassStructure(name);
+	}
+
+	/**
+	 * Returns the structure of the analyzed class which allows to calculate
+	 * its coverage for other probe arrays. The structure is complete after
+	 * this visitor has been processed.
+	 * 
+	 * @return structure of the analyzed class
+	 */
+	public ClassStructure getStructure() {
+		return structure;
 	}
 
 	@Override
 	public void visit(final int version, final int access, final String name,
 			final String signature, final String superName,
 			final String[] interfaces) {
-		coverage.setSignature(stringPool.get(signature));
-		coverage.setSuperName(stringPool.get(superName));
-		coverage.setInterfaces(stringPool.get(interfaces));
+		structure.setSignature(stringPool.get(signature));
+		structure.setSuperName(stringPool.get(superName));
+		structure.setInterfaces(stringPool.get(interfaces));
+		if (coverage != null) {
+			coverage.setSignature(structure.getSignature());
+			coverage.setSuperName(structure.getSuperName());
+			coverage.setInterfaces(structure.getInterfaces());
+		}
 	}
 
 	@Override
 	public void visitSource(final String source, final String debug) {
-		coverage.setSourceFileName(stringPool.get(source));
+		structure.setSourceFileName(stringPool.get(source));
+		if (coverage != null) {
+			coverage.setSourceFileName(structure.getSourceFileName());
+		}
 	}
 
 	@Override
 	public MethodProbesVisitor visitMethod(final int access, final String name,
 			final String desc, final String signature, final String[] exceptions) {
 
-		InstrSupport.assertNotInstrumented(name, coverage.getName());
+		InstrSupport.assertNotInstrumented(name, structure.getName());
 
 		if (isMethodFiltered(access, name)) {
 			return null;
 		}
 
-		return new MethodAnalyzer(stringPool.get(name), stringPool.get(desc),
-				stringPool.get(signature), probes) {
+		final String n = stringPool.get(name);
+		final String d = stringPool.get(desc);
+		final String s = stringPool.get(signature);
+		if (coverage == null) {
+			return new MethodAnalyzer(n, d, s) {
+				@Override
+				public void visitEnd() {
+					super.visitEnd();
+					addMethod(getStructure(), null);
+				}
+			};
+		}
+		return new MethodAnalyzer(n, d, s, probes) {
 			@Override
 			public void visitEnd() {
 				super.visitEnd();
-				final IMethodCoverage methodCoverage = getCoverage();
-				if (methodCoverage.getInstructionCounter().getTotalCount() > 0) {
-					// Only consider methods that actually contain code
-					coverage.addMethod(methodCoverage);
-				}
+				addMethod(getStructure(), getCoverage());
 			}
 		};
 	}
 
+	private void addMethod(final MethodStructure method,
+			final IMethodCoverage methodCoverage) {
+		// Only consider methods that actually contain code
+		if (method.hasInstructions()) {
+			structure.addMethod(method);
+			if (coverage != null) {
+				coverage.addMethod(methodCoverage);
+			}
+		}
+	}
+
 	// TODO: Use filter hook in future
 	private boolean isMethodFiltered(final int access, final String name) {
 		return (access & Opcodes.ACC_SYNTHETIC) != 0
@@ -91,13 +146,13 @@ public class ClassAnalyzer extends ClassProbesVisitor {
 	@Override
 	public FieldVisitor visitField(final int access, final String name,
 			final String desc, final String signature, final Object value) {
-		InstrSupport.assertNotInstrumented(name, coverage.getName());
+		InstrSupport.assertNotInstrumented(name, structure.getName());
 		return super.visitField(access, name, desc, signature, value);
 	}
 
 	@Override
 	public void visitTotalProbeCount(final int count) {
-		// nothing to do
+		structure.setProbeCount(count);
 	}
 
 }
@@ -0,0 +1,204 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.core.internal.analysis;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jacoco.core.internal.data.CompactDataInput;
+import org.jacoco.core.internal.data.CompactDataOutput;
+
+/**
+ * Structure of a class which is sufficient to calculate its coverage for any
+ * given probe array without reading the byte code again.
+ */
+public class ClassStructure {
+
+	private final String name;
+
+	private String signature;
+
+	private String superName;
+
+	private String[] interfaces;
+
+	private String sourceFileName;
+
+	private int probeCount;
+
+	private final List<MethodStructure> methods = new ArrayList<MethodStructure>();
+
+	/**
+	 * Creates a new empty structure for the class with the given name.
+	 * 
+	 * @param name
+	 *            VM name of the class
+	 */
+	public ClassStructure(final String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Returns the VM name of the class.
+	 * 
+	 * @return VM name of the class
+	 */
+	public String getName() {
+		return name;
+	}
+
+	void setSignature(final String signature) {
+		this.signature = signature;
+	}
+
+	String getSignature() {
+		return signature;
+	}
+
+	void setSuperName(final String superName) {
+		this.superName = superName;
+	}
+
+	String getSuperName() {
+		return superName;
+	}
+
+	void setInterfaces(final String[] interfaces) {
+		this.interfaces = interfaces;
+	}
+
+	String[] getInterfaces() {
+		return interfaces;
+	}
+
+	void setSourceFileName(final String sourceFileName) {
+		this.sourceFileName = sourceFileName;
+	}
+
+	String getSourceFileName() {
+		return sourceFileName;
+	}
+
+	void addMethod(final MethodStructure method) {
+		methods.add(method);
+	}
+
+	void setProbeCount(final int probeCount) {
+		this.probeCount = probeCount;
+	}
+
+	/**
+	 * Returns the number of probes of the class. Execution data for the class
+	 * has a probe array of this length.
+	 * 
+	 * @return number of probes
+	 */
+	public int getProbeCount() {
+		return probeCount;
+	}
+
+	/**
+	 * Creates the coverage of this class for the given probes.
+	 * 
+	 * @param id
+	 *            class id
+	 * @param noMatch
+	 *            <code>true</code>, if class id does not match with execution
+	 *            data
+	 * @param probes
+	 *            probe array of the class or <code>null</code> if the class
+	 *            has not been executed
+	 * @return class coverage
+	 */
+	public ClassCoverageImpl createCoverage(final long id,
+			final boolean noMatch, final boolean[] probes) {
+		final ClassCoverageImpl coverage = new ClassCoverageImpl(name, id,
+				noMatch);
+		coverage.setSignature(signature);
+		coverage.setSuperName(superName);
+		coverage.setInterfaces(interfaces);
+		coverage.setSourceFileName(sourceFileName);
+		for (final MethodStructure method : methods) {
+			coverage.addMethod(method.createCoverage(probes));
+		}
+		return coverage;
+	}
+
+	// === Serialization ===
+
+	/**
+	 * Writes this structure in a compact binary form.
+	 * 
+	 * @param out
+	 *            output to write to
+	 * @throws IOException
+	 *             if the output can't be written
+	 */
+	public void write(final CompactDataOutput out) throws IOException {
+		out.writeUTF(name);
+		MethodStructure.writeOptionalString(out, signature);
+		MethodStructure.writeOptionalString(out, superName);
+		if (interfaces == null) {
+			out.writeVarInt(0);
+		} else {
+			out.writeVarInt(interfaces.length + 1);
+			for (final String i : interfaces) {
+				out.writeUTF(i);
+			}
+		}
+		MethodStructure.writeOptionalString(out, sourceFileName);
+		out.writeVarInt(probeCount);
+		out.writeVarInt(methods.size());
+		for (final MethodStructure method : methods) {
+			method.write(out);
+		}
+	}
+
+	/**
+	 * Reads a structure written by {@link #write(CompactDataOutput)}.
+	 * 
+	 * @param in
+	 *            input to read from
+	 * @param stringPool
+	 *            pool for all strings of the structure
+	 * @return structure read
+	 * @throws IOException
+	 *             if the input can't be read
+	 */
+	public static ClassStructure read(final CompactDataInput in,
+			final StringPool stringPool) throws IOException {
+		final ClassStructure structure = new ClassStructure(
+				stringPool.get(in.readUTF()));
+		structure.signature = stringPool.get(MethodStructure
+				.readOptionalString(in));
+		structure.superName = stringPool.get(MethodStructure
+				.readOptionalString(in));
+		final int interfaceCount = in.readVarInt();
+		if (interfaceCount > 0) {
+			final String[] interfaces = new String[interfaceCount - 1];
+			for (int i = 0; i < interfaces.length; i++) {
+				interfaces[i] = in.readUTF();
+			}
+			structure.interfaces = stringPool.get(interfaces);
+		}
+		structure.sourceFileName = stringPool.get(MethodStructure
+				.readOptionalString(in));
+		structure.probeCount = in.readVarInt();
+		final int methodCount = in.readVarInt();
+		for (int i = 0; i < methodCount; i++) {
+			structure.methods.add(MethodStructure.read(in, stringPool));
+		}
+		return structure;
+	}
+
+}
@@ -14,7 +14,6 @@ package org.jacoco.core.internal.analysis;
 import java.util.ArrayList;
 import java.util.List;
 
-import org.jacoco.core.analysis.ICounter;
 import org.jacoco.core.analysis.IMethodCoverage;
 import org.jacoco.core.analysis.ISourceNode;
 import org.jacoco.core.internal.flow.IFrame;
@@ -30,6 +29,12 @@ import org.objectweb.asm.Label;
  */
 public class MethodAnalyzer extends MethodProbesVisitor {
 
+	private final String name;
+
+	private final String desc;
+
+	private final String signature;
+
 	private final boolean[] probes;
 
 	private final MethodCoverageImpl coverage;
@@ -47,7 +52,9 @@ public class MethodAnalyzer extends MethodProbesVisitor {
 	private final List<Instruction> instructions = new ArrayList<Instruction>();
 
 	/** List of all predecessors of covered probes */
-	private final List<Instruction> coveredProbes = new ArrayList<Instruction>();
+	private final List<Integer> probeIds = new ArrayList<Integer>();
+
+	private final List<Instruction> probeInstructions = new ArrayList<Instruction>();
 
 	/** List of all jumps encountered */
 	private final List<Jump> jumps = new ArrayList<Jump>();
@@ -55,6 +62,8 @@ public class MethodAnalyzer extends MethodProbesVisitor {
 	/** Last instruction in byte code sequence */
 	private Instruction lastInsn;
 
+	private MethodStructure structure;
+
 	/**
 	 * New Method analyzer for the given probe data.
 	 * 
@@ -71,21 +80,59 @@ public class MethodAnalyzer extends MethodProbesVisitor {
 	 */
 	public MethodAnalyzer(final String name, final String desc,
 			final String signature, final boolean[] probes) {
+		this(name, desc, signature, probes, true);
+	}
+
+	/**
+	 * New Method analyzer which only builds the structure of the method. No
+	 * coverage data is calculated.
+	 * 
+	 * @param name
+	 *            method name
+	 * @param desc
+	 *            method descriptor
+	 * @param signature
+	 *            optional parameterized signature
+	 */
+	public MethodAnalyzer(final String name, final String desc,
+			final String signature) {
+		this(name, desc, signature, null, false);
+	}
+
+	private MethodAnalyzer(final String name, final String desc,
+			final String signature, final boolean[] probes,
+			final boolean createCoverage) {
 		super();
+		this.name = name;
+		this.desc = desc;
+		this.signature = signature;
 		this.probes = probes;
-		this.coverage = new MethodCoverageImpl(name, desc, signature);
+		this.coverage = createCoverage ? new MethodCoverageImpl(name, desc,
+				signature) : null;
 	}
 
 	/**
 	 * Returns the coverage data for this method after this visitor has been
 	 * processed.
 	 * 
-	 * @return coverage data for this method
+	 * @return coverage data for this method or <code>null</code> if this
+	 *         analyzer only builds the structure
 	 */
 	public IMethodCoverage getCoverage() {
 		return coverage;
 	}
 
+	/**
+	 * Returns the structure of this method after this visitor has been
+	 * processed. The structure allows to calculate the coverage of the method
+	 * for other probe arrays.
+	 * 
+	 * @return structure of this method
+	 */
+	public MethodStructure getStructure() {
+		return structure;
+	}
+
 	@Override
 	public void visitLabel(final Label label) {
 		currentLabel.add(label);
@@ -265,29 +312,18 @@ public class MethodAnalyzer extends MethodProbesVisitor {
 		for (final Jump j : jumps) {
 			LabelInfo.getInstruction(j.target).setPredecessor(j.source);
 		}
-		// Propagate probe values:
-		for (final Instruction p : coveredProbes) {
-			p.setCovered();
-		}
-		// Report result:
-		coverage.ensureCapacity(firstLine, lastLine);
-		for (final Instruction i : instructions) {
-			final int total = i.getBranches();
-			final int covered = i.getCoveredBranches();
-			final ICounter instrCounter = covered == 0 ? CounterImpl.COUNTER_1_0
-					: CounterImpl.COUNTER_0_1;
-			final ICounter branchCounter = total > 1 ? CounterImpl.getInstance(
-					total - covered, covered) : CounterImpl.COUNTER_0_0;
-			coverage.increment(instrCounter, branchCounter, i.getLine());
+		structure = MethodStructure.create(name, desc, signature, firstLine,
+				lastLine, instructions, probeIds, probeInstructions);
+		if (coverage != null) {
+			// Propagate probe values and report result:
+			structure.increment(coverage, probes);
 		}
-		coverage.incrementMethodCounter();
 	}
 
 	private void addProbe(final int probeId) {
 		lastInsn.addBranch();
-		if (probes != null && probes[probeId]) {
-			coveredProbes.add(lastInsn);
-		}
+		probeIds.add(Integer.valueOf(probeId));
+		probeInstructions.add(lastInsn);
 	}
 
 	private static class Jump {
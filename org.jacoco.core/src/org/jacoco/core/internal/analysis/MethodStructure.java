@@ -0,0 +1,277 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.core.internal.analysis;
+
+import java.io.IOException;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jacoco.core.analysis.ICounter;
+import org.jacoco.core.analysis.ISourceNode;
+import org.jacoco.core.internal.data.CompactDataInput;
+import org.jacoco.core.internal.data.CompactDataOutput;
+import org.jacoco.core.internal.flow.Instruction;
+
+/**
+ * Structure of a method which is sufficient to calculate its coverage for any
+ * given probe array without reading the byte code again: The source lines,
+ * branches and predecessors of all instructions and the instructions directly
+ * covered by every probe.
+ */
+public class MethodStructure {
+
+	private final String name;
+
+	private final String desc;
+
+	private final String signature;
+
+	private final int firstLine;
+
+	private final int lastLine;
+
+	private final int[] lines;
+
+	private final int[] branches;
+
+	private final int[] predecessors;
+
+	private final int[] probeIds;
+
+	private final int[] probeInstructions;
+
+	private MethodStructure(final String name, final String desc,
+			final String signature, final int firstLine, final int lastLine,
+			final int[] lines, final int[] branches, final int[] predecessors,
+			final int[] probeIds, final int[] probeInstructions) {
+		this.name = name;
+		this.desc = desc;
+		this.signature = signature;
+		this.firstLine = firstLine;
+		this.lastLine = lastLine;
+		this.lines = lines;
+		this.branches = branches;
+		this.predecessors = predecessors;
+		this.probeIds = probeIds;
+		this.probeInstructions = probeInstructions;
+	}
+
+	/**
+	 * Creates the structure from the analyzed instructions of a method. The
+	 * control flow between the instructions must already be wired.
+	 * 
+	 * @param name
+	 *            method name
+	 * @param desc
+	 *            method descriptor
+	 * @param signature
+	 *            generic signature or <code>null</code>
+	 * @param firstLine
+	 *            first line number of the method
+	 * @param lastLine
+	 *            last line number of the method
+	 * @param instructions
+	 *            all instructions of the method in the order of the byte code
+	 * @param probeIds
+	 *            ids of all probes of the method
+	 * @param probeInstructions
+	 *            instruction for every probe in <code>probeIds</code>
+	 * @return structure of the method
+	 */
+	public static MethodStructure create(final String name, final String desc,
+			final String signature, final int firstLine, final int lastLine,
+			final List<Instruction> instructions, final List<Integer> probeIds,
+			final List<Instruction> probeInstructions) {
+		final int size = instructions.size();
+		final Map<Instruction, Integer> index = new IdentityHashMap<Instruction, Integer>(
+				size);
+		for (int i = 0; i < size; i++) {
+			index.put(instructions.get(i), Integer.valueOf(i));
+		}
+		final int[] lines = new int[size];
+		final int[] branches = new int[size];
+		final int[] predecessors = new int[size];
+		for (int i = 0; i < size; i++) {
+			final Instruction insn = instructions.get(i);
+			lines[i] = insn.getLine();
+			branches[i] = insn.getBranches();
+			final Instruction predecessor = insn.getPredecessor();
+			predecessors[i] = predecessor == null ? -1 : index.get(
+					predecessor).intValue();
+		}
+		final int probeCount = probeIds.size();
+		final int[] ids = new int[probeCount];
+		final int[] targets = new int[probeCount];
+		for (int i = 0; i < probeCount; i++) {
+			ids[i] = probeIds.get(i).intValue();
+			targets[i] = index.get(probeInstructions.get(i)).intValue();
+		}
+		return new MethodStructure(name, desc, signature, firstLine,
+				lastLine, lines, branches, predecessors, ids, targets);
+	}
+
+	/**
+	 * Checks whether the method contains any instructions. Methods without
+	 * instructions are not considered for coverage.
+	 * 
+	 * @return <code>true</code> if the method contains instructions
+	 */
+	public boolean hasInstructions() {
+		return lines.length > 0;
+	}
+
+	/**
+	 * Creates the coverage of this method for the given probes.
+	 * 
+	 * @param probes
+	 *            probe array of the class or <code>null</code> if the class
+	 *            has not been executed
+	 * @return method coverage
+	 */
+	public MethodCoverageImpl createCoverage(final boolean[] probes) {
+		final MethodCoverageImpl coverage = new MethodCoverageImpl(name, desc,
+				signature);
+		increment(coverage, probes);
+		return coverage;
+	}
+
+	/**
+	 * Adds the coverage of this method for the given probes to the given
+	 * coverage node.
+	 * 
+	 * @param coverage
+	 *            coverage node of this method
+	 * @param probes
+	 *            probe array of the class or <code>null</code> if the class
+	 *            has not been executed
+	 */
+	public void increment(final MethodCoverageImpl coverage,
+			final boolean[] probes) {
+		// Propagate probe values:
+		final int[] coveredBranches = new int[lines.length];
+		if (probes != null) {
+			for (int p = 0; p < probeIds.length; p++) {
+				if (probes[probeIds[p]]) {
+					int i = probeInstructions[p];
+					while (i != -1 && coveredBranches[i]++ == 0) {
+						i = predecessors[i];
+					}
+				}
+			}
+		}
+		// Report result:
+		coverage.ensureCapacity(firstLine, lastLine);
+		for (int i = 0; i < lines.length; i++) {
+			final int total = branches[i];
+			final int covered = coveredBranches[i];
+			final ICounter instrCounter = covered == 0 ? CounterImpl.COUNTER_1_0
+					: CounterImpl.COUNTER_0_1;
+			final ICounter branchCounter = total > 1 ? CounterImpl.getInstance(
+					total - covered, covered) : CounterImpl.COUNTER_0_0;
+			coverage.increment(instrCounter, branchCounter, lines[i]);
+		}
+		coverage.incrementMethodCounter();
+	}
+
+	// === Serialization ===
+
+	/**
+	 * Writes this structure in a compact binary form.
+	 * 
+	 * @param out
+	 *            output to write to
+	 * @throws IOException
+	 *             if the output can't be written
+	 */
+	public void write(final CompactDataOutput out) throws IOException {
+		out.writeUTF(name);
+		out.writeUTF(desc);
+		writeOptionalString(out, signature);
+		writeLine(out, firstLine);
+		writeLine(out, lastLine);
+		out.writeVarInt(lines.length);
+		for (int i = 0; i < lines.length; i++) {
+			writeLine(out, lines[i]);
+			out.writeVarInt(branches[i]);
+			out.writeVarInt(predecessors[i] + 1);
+		}
+		out.writeVarInt(probeIds.length);
+		for (int p = 0; p < probeIds.length; p++) {
+			out.writeVarInt(probeIds[p]);
+			out.writeVarInt(probeInstructions[p]);
+		}
+	}
+
+	/**
+	 * Reads a structure written by {@link #write(CompactDataOutput)}.
+	 * 
+	 * @param in
+	 *            input to read from
+	 * @param stringPool
+	 *            pool for all strings of the structure
+	 * @return structure read
+	 * @throws IOException
+	 *             if the input can't be read
+	 */
+	public static MethodStructure read(final CompactDataInput in,
+			final StringPool stringPool) throws IOException {
+		final String name = stringPool.get(in.readUTF());
+		final String desc = stringPool.get(in.readUTF());
+		final String signature = stringPool.get(readOptionalString(in));
+		final int firstLine = readLine(in);
+		final int lastLine = readLine(in);
+		final int size = in.readVarInt();
+		final int[] lines = new int[size];
+		final int[] branches = new int[size];
+		final int[] predecessors = new int[size];
+		for (int i = 0; i < size; i++) {
+			lines[i] = readLine(in);
+			branches[i] = in.readVarInt();
+			predecessors[i] = in.readVarInt() - 1;
+		}
+		final int probeCount = in.readVarInt();
+		final int[] probeIds = new int[probeCount];
+		final int[] probeInstructions = new int[probeCount];
+		for (int p = 0; p < probeCount; p++) {
+			probeIds[p] = in.readVarInt();
+			probeInstructions[p] = in.readVarInt();
+		}
+		return new MethodStructure(name, desc, signature, firstLine,
+				lastLine, lines, branches, predecessors, probeIds,
+				probeInstructions);
+	}
+
+	private static void writeLine(final CompactDataOutput out, final int line)
+			throws IOException {
+		// UNKNOWN_LINE is -1, shift to keep the var int short
+		out.writeVarInt(line - ISourceNode.UNKNOWN_LINE);
+	}
+
+	private static int readLine(final CompactDataInput in) throws IOException {
+		return in.readVarInt() + ISourceNode.UNKNOWN_LINE;
+	}
+
+	static void writeOptionalString(final CompactDataOutput out,
+			final String s) throws IOException {
+		out.writeBoolean(s != null);
+		if (s != null) {
+			out.writeUTF(s);
+		}
+	}
+
+	static String readOptionalString(final CompactDataInput in)
+			throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+}
@@ -68,4 +68,28 @@ public class CompactDataInput extends DataInputStream {
 		return value;
 	}
 
+	/**
+	 * Reads the packed content of a boolean array with the given length into a
+	 * bit set. The length itself is not read, this method reads the same
+	 * format as {@link #readBooleanArray()} after the length.
+	 * 
+	 * @param length
+	 *            number of boolean values
+	 * @return bit set with <code>(length + 63) / 64</code> words
+	 * @throws IOException
+	 *             if thrown by the underlying stream
+	 */
+	public long[] readBitArray(final int length) throws IOException {
+		final long[] value = new long[(length + 63) >>> 6];
+		final int bytes = (length + 7) >>> 3;
+		for (int i = 0; i < bytes; i++) {
+			value[i >>> 3] |= (0xFFL & readByte()) << ((i & 7) << 3);
+		}
+		if ((length & 63) != 0) {
+			// Ignore padding bits of the last byte
+			value[value.length - 1] &= (1L << length) - 1;
+		}
+		return value;
+	}
+
 }
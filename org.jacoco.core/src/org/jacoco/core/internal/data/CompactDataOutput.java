@@ -80,4 +80,24 @@ public class CompactDataOutput extends DataOutputStream {
 		}
 	}
 
+	/**
+	 * Writes the given number of bits of a bit set in the same packed format as
+	 * {@link #writeBooleanArray(boolean[])}. The length itself is not written.
+	 * 
+	 * @param value
+	 *            bit set
+	 * @param length
+	 *            number of bits to write
+	 * @throws IOException
+	 *             if thrown by the underlying stream
+	 * @see CompactDataInput#readBitArray(int)
+	 */
+	public void writeBitArray(final long[] value, final int length)
+			throws IOException {
+		final int bytes = (length + 7) >>> 3;
+		for (int i = 0; i < bytes; i++) {
+			writeByte((int) (value[i >>> 3] >>> ((i & 7) << 3)));
+		}
+	}
+
 }
@@ -30,6 +30,8 @@ public class ClassProbesAdapter extends ClassVisitor implements
 
 	private final boolean trackFrames;
 
+	private final boolean probeElision;
+
 	private int counter = 0;
 
 	private String name;
@@ -44,9 +46,26 @@ public class ClassProbesAdapter extends ClassVisitor implements
 	 */
 	public ClassProbesAdapter(final ClassProbesVisitor cv,
 			final boolean trackFrames) {
+		this(cv, trackFrames, false);
+	}
+
+	/**
+	 * Creates a new adapter that delegates to the given visitor.
+	 * 
+	 * @param cv
+	 *            instance to delegate to
+	 * @param trackFrames
+	 *            if <code>true</code> stackmap frames are tracked and provided
+	 * @param probeElision
+	 *            if <code>true</code> probes which are implied by other probes
+	 *            are omitted, see {@link ProbeElisionAnalyzer}
+	 */
+	public ClassProbesAdapter(final ClassProbesVisitor cv,
+			final boolean trackFrames, final boolean probeElision) {
 		super(JaCoCo.ASM_API_VERSION, cv);
 		this.cv = cv;
 		this.trackFrames = trackFrames;
+		this.probeElision = probeElision;
 	}
 
 	@Override
@@ -77,8 +96,15 @@ public class ClassProbesAdapter extends ClassVisitor implements
 			public void visitEnd() {
 				super.visitEnd();
 				LabelFlowAnalyzer.markLabels(this);
+				final IProbeIdGenerator idGenerator;
+				if (probeElision) {
+					idGenerator = ProbeElisionAnalyzer.createIdGenerator(this,
+							ClassProbesAdapter.this);
+				} else {
+					idGenerator = ClassProbesAdapter.this;
+				}
 				final MethodProbesAdapter probesAdapter = new MethodProbesAdapter(
-						methodProbes, ClassProbesAdapter.this);
+						methodProbes, idGenerator);
 				if (trackFrames) {
 					final AnalyzerAdapter analyzer = new AnalyzerAdapter(
 							ClassProbesAdapter.this.name, access, name, desc,
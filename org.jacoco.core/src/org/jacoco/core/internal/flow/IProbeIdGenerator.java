@@ -19,7 +19,8 @@ public interface IProbeIdGenerator {
 	/**
 	 * Returns the next unique probe id.
 	 * 
-	 * @return unique probe id
+	 * @return unique probe id or {@link LabelInfo#NO_PROBE} if the probe is
+	 *         omitted as it is implied by other probes
 	 */
 	int nextId();
 
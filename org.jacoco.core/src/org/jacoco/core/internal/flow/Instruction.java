@@ -78,6 +78,15 @@ public class Instruction {
 		return line;
 	}
 
+	/**
+	 * Returns the predecessor of this instruction.
+	 * 
+	 * @return predecessor instruction or <code>null</code>
+	 */
+	public Instruction getPredecessor() {
+		return predecessor;
+	}
+
 	/**
 	 * Returns the total number of branches starting from this instruction.
 	 * 
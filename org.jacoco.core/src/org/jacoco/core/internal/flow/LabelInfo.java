@@ -41,6 +41,8 @@ public final class LabelInfo {
 
 	private Instruction instruction = null;
 
+	private IFrame frame = null;
+
 	// instances are only created within this class
 	private LabelInfo() {
 	}
@@ -268,6 +270,31 @@ public final class LabelInfo {
 		return info == null ? null : info.instruction;
 	}
 
+	/**
+	 * Sets the stackmap frame at the position of this label.
+	 * 
+	 * @param label
+	 *            label to set the frame for
+	 * @param frame
+	 *            frame at the label
+	 */
+	public static void setFrame(final Label label, final IFrame frame) {
+		create(label).frame = frame;
+	}
+
+	/**
+	 * Returns the stackmap frame at the position of this label if one has been
+	 * defined.
+	 * 
+	 * @param label
+	 *            label to look for
+	 * @return frame at the label or <code>null</code>
+	 */
+	public static IFrame getFrame(final Label label) {
+		final LabelInfo info = get(label);
+		return info == null ? null : info.frame;
+	}
+
 	private static LabelInfo get(final Label label) {
 		final Object info = label.info;
 		return info instanceof LabelInfo ? (LabelInfo) info : null;
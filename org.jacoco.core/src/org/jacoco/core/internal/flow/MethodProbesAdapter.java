@@ -22,7 +22,9 @@ import org.objectweb.asm.commons.AnalyzerAdapter;
 
 /**
  * Adapter that creates additional visitor events for probes to be inserted into
- * a method.
+ * a method. If the id generator returns {@link LabelInfo#NO_PROBE} for a probe
+ * on an edge to a jump target, the edge is reported like an edge to a target
+ * without probe.
  */
 public final class MethodProbesAdapter extends MethodVisitor {
 
@@ -83,7 +85,10 @@ public final class MethodProbesAdapter extends MethodVisitor {
 			if (tryCatchProbeLabels.containsKey(label)) {
 				probesVisitor.visitLabel(tryCatchProbeLabels.get(label));
 			}
-			probesVisitor.visitProbe(idGenerator.nextId());
+			final int id = idGenerator.nextId();
+			if (id != LabelInfo.NO_PROBE) {
+				probesVisitor.visitProbe(id);
+			}
 		}
 		probesVisitor.visitLabel(label);
 	}
@@ -108,9 +113,11 @@ public final class MethodProbesAdapter extends MethodVisitor {
 
 	@Override
 	public void visitJumpInsn(final int opcode, final Label label) {
-		if (LabelInfo.isMultiTarget(label)) {
-			probesVisitor.visitJumpInsnWithProbe(opcode, label,
-					idGenerator.nextId(), frame(jumpPopCount(opcode)));
+		final int id = LabelInfo.isMultiTarget(label) ? idGenerator.nextId()
+				: LabelInfo.NO_PROBE;
+		if (id != LabelInfo.NO_PROBE) {
+			probesVisitor.visitJumpInsnWithProbe(opcode, label, id,
+					frame(jumpPopCount(opcode)));
 		} else {
 			probesVisitor.visitJumpInsn(opcode, label);
 		}
@@ -160,20 +167,24 @@ public final class MethodProbesAdapter extends MethodVisitor {
 		boolean probe = false;
 		LabelInfo.resetDone(labels);
 		if (LabelInfo.isMultiTarget(dflt)) {
-			LabelInfo.setProbeId(dflt, idGenerator.nextId());
-			probe = true;
+			probe |= markLabel(dflt);
 		}
 		LabelInfo.setDone(dflt);
 		for (final Label l : labels) {
 			if (LabelInfo.isMultiTarget(l) && !LabelInfo.isDone(l)) {
-				LabelInfo.setProbeId(l, idGenerator.nextId());
-				probe = true;
+				probe |= markLabel(l);
 			}
 			LabelInfo.setDone(l);
 		}
 		return probe;
 	}
 
+	private boolean markLabel(final Label label) {
+		final int id = idGenerator.nextId();
+		LabelInfo.setProbeId(label, id);
+		return id != LabelInfo.NO_PROBE;
+	}
+
 	private IFrame frame(final int popCount) {
 		return FrameSnapshot.create(analyzer, popCount);
 	}
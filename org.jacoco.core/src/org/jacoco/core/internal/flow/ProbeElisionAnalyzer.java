@@ -0,0 +1,348 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.core.internal.flow;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
+
+/**
+ * Method visitor to determine the probes of a method which are implied by
+ * other probes. A probe on an edge to a jump target is implied if every path to
+ * the target passes this edge, i.e. the edge dominates the target: Whenever
+ * the code at the target is executed, the edge has been executed before. Such
+ * probes are omitted and the coverage of the edge is derived from the code at
+ * the target, exactly like for jump targets with a single predecessor.
+ *
+ * The control flow graph only contains the labels of the method. Exception
+ * handlers are considered to be reachable from the method entry directly.
+ * Probes before try blocks and before lines with method invocations are always
+ * kept, so the preceding code is still reported as covered if the following
+ * code throws an exception.
+ */
+public final class ProbeElisionAnalyzer extends MethodProbesVisitor implements
+		IProbeIdGenerator {
+
+	/**
+	 * Creates a probe id generator for the given method which omits all probes
+	 * implied by other probes. For omitted probes {@link LabelInfo#NO_PROBE}
+	 * is returned. The labels of the method must already be marked by the
+	 * {@link LabelFlowAnalyzer}.
+	 *
+	 * @param method
+	 *            method to create probe ids for
+	 * @param generator
+	 *            generator for the ids of all probes which are not omitted
+	 * @return generator which must be used for the probes of the method
+	 */
+	public static IProbeIdGenerator createIdGenerator(final MethodNode method,
+			final IProbeIdGenerator generator) {
+		final ProbeElisionAnalyzer analyzer = new ProbeElisionAnalyzer();
+		final MethodProbesAdapter adapter = new MethodProbesAdapter(analyzer,
+				analyzer);
+		// We do not use the accept() method as ASM resets labels after every
+		// call to accept()
+		for (final TryCatchBlockNode block : method.tryCatchBlocks) {
+			analyzer.tryStarts.add(block.start.getLabel());
+			block.accept(adapter);
+		}
+		method.instructions.accept(adapter);
+		final BitSet implied = analyzer.getImpliedProbes();
+		return new IProbeIdGenerator() {
+
+			private int index = 0;
+
+			public int nextId() {
+				return implied.get(index++) ? LabelInfo.NO_PROBE : generator
+						.nextId();
+			}
+		};
+	}
+
+	private final Node entry = new Node();
+
+	private final Map<Label, Node> nodes = new HashMap<Label, Node>();
+
+	private final Set<Label> tryStarts = new HashSet<Label>();
+
+	private final List<Edge> probeEdges = new ArrayList<Edge>();
+
+	private int counter = 0;
+
+	/** Node of the current instruction, <code>null</code> if unreachable */
+	private Node current = entry;
+
+	/** Probe of the edge to the next label */
+	private int probe = LabelInfo.NO_PROBE;
+
+	private ProbeElisionAnalyzer() {
+		super();
+	}
+
+	public int nextId() {
+		return counter++;
+	}
+
+	private Node node(final Label label) {
+		Node node = nodes.get(label);
+		if (node == null) {
+			node = new Node();
+			nodes.put(label, node);
+		}
+		return node;
+	}
+
+	private void addEdge(final Node source, final Label target,
+			final int probeId) {
+		final Edge edge = new Edge(source, node(target), probeId);
+		edge.target.incoming.add(edge);
+		source.successors.add(edge.target);
+		if (probeId != LabelInfo.NO_PROBE && !tryStarts.contains(target)
+				&& !LabelInfo.isMethodInvocationLine(target)) {
+			probeEdges.add(edge);
+		}
+	}
+
+	@Override
+	public void visitTryCatchBlock(final Label start, final Label end,
+			final Label handler, final String type) {
+		addEdge(entry, handler, LabelInfo.NO_PROBE);
+	}
+
+	@Override
+	public void visitProbe(final int probeId) {
+		probe = probeId;
+	}
+
+	@Override
+	public void visitLabel(final Label label) {
+		if (current != null) {
+			addEdge(current, label, probe);
+		}
+		probe = LabelInfo.NO_PROBE;
+		current = node(label);
+	}
+
+	@Override
+	public void visitJumpInsn(final int opcode, final Label label) {
+		visitJumpInsn(opcode, label, LabelInfo.NO_PROBE);
+	}
+
+	@Override
+	public void visitJumpInsnWithProbe(final int opcode, final Label label,
+			final int probeId, final IFrame frame) {
+		visitJumpInsn(opcode, label, probeId);
+	}
+
+	private void visitJumpInsn(final int opcode, final Label label,
+			final int probeId) {
+		if (current != null) {
+			addEdge(current, label, probeId);
+			if (opcode == Opcodes.GOTO) {
+				current = null;
+			}
+		}
+	}
+
+	@Override
+	public void visitInsnWithProbe(final int opcode, final int probeId) {
+		current = null;
+	}
+
+	@Override
+	public void visitTableSwitchInsn(final int min, final int max,
+			final Label dflt, final Label... labels) {
+		visitSwitchInsn(dflt, labels, false);
+	}
+
+	@Override
+	public void visitLookupSwitchInsn(final Label dflt, final int[] keys,
+			final Label[] labels) {
+		visitSwitchInsn(dflt, labels, false);
+	}
+
+	@Override
+	public void visitTableSwitchInsnWithProbes(final int min, final int max,
+			final Label dflt, final Label[] labels, final IFrame frame) {
+		visitSwitchInsn(dflt, labels, true);
+	}
+
+	@Override
+	public void visitLookupSwitchInsnWithProbes(final Label dflt,
+			final int[] keys, final Label[] labels, final IFrame frame) {
+		visitSwitchInsn(dflt, labels, true);
+	}
+
+	private void visitSwitchInsn(final Label dflt, final Label[] labels,
+			final boolean probes) {
+		if (current != null) {
+			LabelInfo.resetDone(dflt);
+			LabelInfo.resetDone(labels);
+			visitSwitchTarget(dflt, probes);
+			for (final Label l : labels) {
+				visitSwitchTarget(l, probes);
+			}
+			current = null;
+		}
+	}
+
+	private void visitSwitchTarget(final Label label, final boolean probes) {
+		if (!LabelInfo.isDone(label)) {
+			addEdge(current, label, probes ? LabelInfo.getProbeId(label)
+					: LabelInfo.NO_PROBE);
+			LabelInfo.setDone(label);
+		}
+	}
+
+	/**
+	 * Calculates the dominators of all reachable nodes and returns the method
+	 * local ids of all probes on edges which dominate their target.
+	 */
+	private BitSet getImpliedProbes() {
+		final List<Node> order = postorder();
+		entry.idom = entry;
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (int i = order.size() - 1; --i >= 0;) {
+				final Node node = order.get(i);
+				Node idom = null;
+				for (final Edge e : node.incoming) {
+					if (e.source.idom != null) {
+						idom = idom == null ? e.source : intersect(e.source,
+								idom);
+					}
+				}
+				if (idom != node.idom) {
+					node.idom = idom;
+					changed = true;
+				}
+			}
+		}
+		final BitSet implied = new BitSet();
+		for (final Edge e : probeEdges) {
+			if (isDominating(e)) {
+				implied.set(e.probe);
+			}
+		}
+		return implied;
+	}
+
+	/**
+	 * Returns all nodes reachable from the entry in postorder, the entry is
+	 * the last node.
+	 */
+	private List<Node> postorder() {
+		final List<Node> order = new ArrayList<Node>();
+		final List<Node> stack = new ArrayList<Node>();
+		entry.postorder = Node.VISITED;
+		stack.add(entry);
+		while (!stack.isEmpty()) {
+			final Node node = stack.get(stack.size() - 1);
+			if (node.next < node.successors.size()) {
+				final Node successor = node.successors.get(node.next++);
+				if (successor.postorder == Node.UNVISITED) {
+					successor.postorder = Node.VISITED;
+					stack.add(successor);
+				}
+			} else {
+				stack.remove(stack.size() - 1);
+				node.postorder = order.size();
+				order.add(node);
+			}
+		}
+		return order;
+	}
+
+	private static Node intersect(Node a, Node b) {
+		while (a != b) {
+			while (a.postorder < b.postorder) {
+				a = a.idom;
+			}
+			while (b.postorder < a.postorder) {
+				b = b.idom;
+			}
+		}
+		return a;
+	}
+
+	private static boolean isDominating(final Edge edge) {
+		if (edge.source.idom == null) {
+			return false;
+		}
+		for (final Edge e : edge.target.incoming) {
+			if (e != edge && !edge.target.dominates(e.source)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static class Node {
+
+		static final int UNVISITED = -2;
+
+		static final int VISITED = -1;
+
+		final List<Edge> incoming = new ArrayList<Edge>();
+
+		final List<Node> successors = new ArrayList<Node>();
+
+		int next = 0;
+
+		int postorder = UNVISITED;
+
+		Node idom;
+
+		/**
+		 * Dominators of a reachable node have a higher postorder number as
+		 * they are visited before the node on every path.
+		 */
+		boolean dominates(final Node node) {
+			if (node.idom == null) {
+				return false;
+			}
+			Node n = node;
+			while (n.postorder < postorder) {
+				n = n.idom;
+			}
+			return n == this;
+		}
+
+	}
+
+	private static class Edge {
+
+		final Node source;
+
+		final Node target;
+
+		final int probe;
+
+		Edge(final Node source, final Node target, final int probe) {
+			this.source = source;
+			this.target = target;
+			this.probe = probe;
+		}
+
+	}
+
+}
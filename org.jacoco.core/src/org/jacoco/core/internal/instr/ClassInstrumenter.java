@@ -18,7 +18,10 @@ import org.objectweb.asm.FieldVisitor;
 import org.objectweb.asm.MethodVisitor;
 
 /**
- * Adapter that instruments a class for coverage tracing.
+ * Adapter that instruments a class for coverage tracing. The class may be read
+ * with compressed or expanded stackmap frames: Probes for conditional jumps
+ * and switches are inserted in trampolines which only require the frames of
+ * the jump targets, no frames have to be calculated.
  */
 public class ClassInstrumenter extends ClassProbesVisitor {
 
@@ -69,10 +72,11 @@ public class ClassInstrumenter extends ClassProbesVisitor {
 			return null;
 		}
 		final MethodVisitor frameEliminator = new DuplicateFrameEliminator(mv);
-		final ProbeInserter probeVariableInserter = new ProbeInserter(access,
-				desc, frameEliminator, probeArrayStrategy);
+		final ProbeInserter probeVariableInserter = new ProbeInserter(
+				className, access, name, desc, frameEliminator,
+				probeArrayStrategy);
 		return new MethodInstrumenter(probeVariableInserter,
-				probeVariableInserter);
+				probeVariableInserter, true);
 	}
 
 	@Override
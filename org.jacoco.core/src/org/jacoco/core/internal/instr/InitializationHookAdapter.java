@@ -0,0 +1,189 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.core.internal.instr;
+
+import org.jacoco.core.JaCoCo;
+import org.jacoco.core.runtime.IExecutionDataAccessorGenerator;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Adapter for lazy instrumentation and detached classes. In hook mode the
+ * static initializer of the class reports the initialization to the runtime
+ * and the members of the {@link FieldProbeArrayStrategy} are added with a
+ * trivial implementation, all other methods are copied without modification.
+ * Detached mode is the same without the report. In compatible mode an empty
+ * static initializer is added if the class has none. All modes result in the
+ * same set of members, therefore classes can be retransformed from one mode
+ * into another.
+ */
+public class InitializationHookAdapter extends ClassVisitor {
+
+	private static final String CLINIT_NAME = "<clinit>";
+
+	private static final String CLINIT_DESC = "()V";
+
+	private final long classId;
+
+	private final IExecutionDataAccessorGenerator accessorGenerator;
+
+	private final boolean members;
+
+	private String className;
+
+	private boolean hasInitializer;
+
+	/**
+	 * Creates an adapter which inserts the initialization hook.
+	 * 
+	 * @param classId
+	 *            id of the class
+	 * @param accessorGenerator
+	 *            accessor to the coverage runtime
+	 * @param cv
+	 *            next delegate in the visitor chain
+	 */
+	public InitializationHookAdapter(final long classId,
+			final IExecutionDataAccessorGenerator accessorGenerator,
+			final ClassVisitor cv) {
+		this(classId, accessorGenerator, true, cv);
+	}
+
+	/**
+	 * Creates an adapter which only adds a static initializer if required and
+	 * optionally the trivial members for detached classes.
+	 * 
+	 * @param detached
+	 *            <code>true</code> if the members should be added
+	 * @param cv
+	 *            next delegate in the visitor chain
+	 */
+	public InitializationHookAdapter(final boolean detached,
+			final ClassVisitor cv) {
+		this(0, null, detached, cv);
+	}
+
+	private InitializationHookAdapter(final long classId,
+			final IExecutionDataAccessorGenerator accessorGenerator,
+			final boolean members, final ClassVisitor cv) {
+		super(JaCoCo.ASM_API_VERSION, cv);
+		this.classId = classId;
+		this.accessorGenerator = accessorGenerator;
+		this.members = members;
+	}
+
+	@Override
+	public void visit(final int version, final int access, final String name,
+			final String signature, final String superName,
+			final String[] interfaces) {
+		this.className = name;
+		super.visit(version, access, name, signature, superName, interfaces);
+	}
+
+	@Override
+	public FieldVisitor visitField(final int access, final String name,
+			final String desc, final String signature, final Object value) {
+		if (members) {
+			InstrSupport.assertNotInstrumented(name, className);
+		}
+		return super.visitField(access, name, desc, signature, value);
+	}
+
+	@Override
+	public MethodVisitor visitMethod(final int access, final String name,
+			final String desc, final String signature,
+			final String[] exceptions) {
+		final MethodVisitor mv = super.visitMethod(access, name, desc,
+				signature, exceptions);
+		if (CLINIT_NAME.equals(name)) {
+			hasInitializer = true;
+			if (accessorGenerator != null && mv != null) {
+				return new HookMethodVisitor(mv);
+			}
+		} else if (members) {
+			InstrSupport.assertNotInstrumented(name, className);
+		}
+		return mv;
+	}
+
+	@Override
+	public void visitEnd() {
+		if (members) {
+			createDataField();
+			createInitMethod();
+		}
+		if (!hasInitializer) {
+			createInitializer();
+		}
+		super.visitEnd();
+	}
+
+	private void createDataField() {
+		cv.visitField(InstrSupport.DATAFIELD_ACC, InstrSupport.DATAFIELD_NAME,
+				InstrSupport.DATAFIELD_DESC, null, null);
+	}
+
+	private void createInitMethod() {
+		final MethodVisitor mv = cv.visitMethod(InstrSupport.INITMETHOD_ACC,
+				InstrSupport.INITMETHOD_NAME, InstrSupport.INITMETHOD_DESC,
+				null, null);
+		mv.visitCode();
+		mv.visitInsn(Opcodes.ACONST_NULL);
+		mv.visitInsn(Opcodes.ARETURN);
+		mv.visitMaxs(1, 0);
+		mv.visitEnd();
+	}
+
+	private void createInitializer() {
+		final MethodVisitor mv = cv.visitMethod(Opcodes.ACC_STATIC,
+				CLINIT_NAME, CLINIT_DESC, null, null);
+		mv.visitCode();
+		int size = 0;
+		if (accessorGenerator != null) {
+			size = generateHook(mv);
+		}
+		mv.visitInsn(Opcodes.RETURN);
+		mv.visitMaxs(size, 0);
+		mv.visitEnd();
+	}
+
+	private int generateHook(final MethodVisitor mv) {
+		final int size = accessorGenerator.generateDataAccessor(classId,
+				className, InstrSupport.HOOK_PROBECOUNT, mv);
+		mv.visitInsn(Opcodes.POP);
+		return size;
+	}
+
+	private class HookMethodVisitor extends MethodVisitor {
+
+		private int hookSize;
+
+		HookMethodVisitor(final MethodVisitor mv) {
+			super(JaCoCo.ASM_API_VERSION, mv);
+		}
+
+		@Override
+		public void visitCode() {
+			super.visitCode();
+			hookSize = generateHook(mv);
+		}
+
+		@Override
+		public void visitMaxs(final int maxStack, final int maxLocals) {
+			super.visitMaxs(Math.max(maxStack, hookSize), maxLocals);
+		}
+
+	}
+
+}
@@ -52,6 +52,25 @@ public final class InstrSupport {
 	 */
 	public static final String DATAFIELD_DESC = "[Z";
 
+	/**
+	 * Data type of the field that stores the probe array stripes of a class (
+	 * <code>boolean[][]</code>).
+	 */
+	public static final String STRIPED_DATAFIELD_DESC = "[[Z";
+
+	/**
+	 * Separator between the VM class name and the stripe index for probe array
+	 * stripes. The character can not be part of a VM class name.
+	 */
+	public static final char STRIPE_SEPARATOR = ';';
+
+	/**
+	 * Probe count requested from the runtime by the initialization hook of
+	 * lazily instrumented classes. The runtime does not create execution data
+	 * for such requests.
+	 */
+	public static final int HOOK_PROBECOUNT = -1;
+
 	// === Init Method ===
 
 	/**
@@ -91,6 +110,21 @@ public final class InstrSupport {
 		}
 	}
 
+	/**
+	 * Returns the name used to request the probe array stripe with the given
+	 * index from the runtime.
+	 * 
+	 * @param className
+	 *            VM name of the class
+	 * @param stripe
+	 *            index of the stripe
+	 * @return stripe qualified class name
+	 */
+	public static String getStripeName(final String className,
+			final int stripe) {
+		return className + STRIPE_SEPARATOR + stripe;
+	}
+
 	/**
 	 * Generates the instruction to push the given int value on the stack.
 	 * Implementation taken from
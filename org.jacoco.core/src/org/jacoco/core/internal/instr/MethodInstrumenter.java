@@ -11,6 +11,9 @@
  *******************************************************************************/
 package org.jacoco.core.internal.instr;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.jacoco.core.internal.flow.IFrame;
 import org.jacoco.core.internal.flow.LabelInfo;
 import org.jacoco.core.internal.flow.MethodProbesVisitor;
@@ -21,13 +24,23 @@ import org.objectweb.asm.Opcodes;
 /**
  * This method adapter inserts probes as requested by the
  * {@link MethodProbesVisitor} events.
+ * 
+ * Probes for conditional jumps and switches are either inserted directly
+ * after the instruction, which requires the frame at the instruction, or in
+ * trampolines at the end of the method. A trampoline executes the probe and
+ * jumps to the original target, therefore it only requires the frame of the
+ * jump target (see {@link LabelInfo#getFrame(Label)}).
  */
 class MethodInstrumenter extends MethodProbesVisitor {
 
 	private final IProbeInserter probeInserter;
 
+	/** Trampolines to emit or <code>null</code> if probes are inserted. */
+	private final List<Trampoline> trampolines;
+
 	/**
-	 * Create a new instrumenter instance for the given method.
+	 * Create a new instrumenter instance for the given method which inserts
+	 * probes directly after the instructions.
 	 * 
 	 * @param mv
 	 *            next method visitor in the chain
@@ -36,8 +49,26 @@ class MethodInstrumenter extends MethodProbesVisitor {
 	 */
 	public MethodInstrumenter(final MethodVisitor mv,
 			final IProbeInserter probeInserter) {
+		this(mv, probeInserter, false);
+	}
+
+	/**
+	 * Create a new instrumenter instance for the given method.
+	 * 
+	 * @param mv
+	 *            next method visitor in the chain
+	 * @param probeInserter
+	 *            call-back to insert probes where required
+	 * @param trampolines
+	 *            if <code>true</code> probes for conditional jumps and
+	 *            switches are inserted in trampolines at the end of the
+	 *            method
+	 */
+	public MethodInstrumenter(final MethodVisitor mv,
+			final IProbeInserter probeInserter, final boolean trampolines) {
 		super(mv);
 		this.probeInserter = probeInserter;
+		this.trampolines = trampolines ? new ArrayList<Trampoline>() : null;
 	}
 
 	// === IMethodProbesVisitor ===
@@ -59,6 +90,10 @@ class MethodInstrumenter extends MethodProbesVisitor {
 		if (opcode == Opcodes.GOTO) {
 			probeInserter.insertProbe(probeId);
 			mv.visitJumpInsn(Opcodes.GOTO, label);
+		} else if (trampolines != null) {
+			final Label trampoline = new Label();
+			trampolines.add(new Trampoline(trampoline, label, probeId));
+			mv.visitJumpInsn(opcode, trampoline);
 		} else {
 			final Label intermediate = new Label();
 			mv.visitJumpInsn(getInverted(opcode), intermediate);
@@ -162,10 +197,15 @@ class MethodInstrumenter extends MethodProbesVisitor {
 	private void insertIntermediateProbe(final Label label, final IFrame frame) {
 		final int probeId = LabelInfo.getProbeId(label);
 		if (probeId != LabelInfo.NO_PROBE && !LabelInfo.isDone(label)) {
-			mv.visitLabel(LabelInfo.getIntermediateLabel(label));
-			frame.accept(mv);
-			probeInserter.insertProbe(probeId);
-			mv.visitJumpInsn(Opcodes.GOTO, label);
+			final Label intermediate = LabelInfo.getIntermediateLabel(label);
+			if (trampolines != null) {
+				trampolines.add(new Trampoline(intermediate, label, probeId));
+			} else {
+				mv.visitLabel(intermediate);
+				frame.accept(mv);
+				probeInserter.insertProbe(probeId);
+				mv.visitJumpInsn(Opcodes.GOTO, label);
+			}
 			LabelInfo.setDone(label);
 		}
 	}
@@ -180,4 +220,37 @@ class MethodInstrumenter extends MethodProbesVisitor {
 		}
 	}
 
+	@Override
+	public void visitMaxs(final int maxStack, final int maxLocals) {
+		if (trampolines != null) {
+			for (final Trampoline t : trampolines) {
+				mv.visitLabel(t.label);
+				final IFrame frame = LabelInfo.getFrame(t.target);
+				if (frame != null) {
+					frame.accept(mv);
+				}
+				probeInserter.insertProbe(t.probeId);
+				mv.visitJumpInsn(Opcodes.GOTO, t.target);
+			}
+			trampolines.clear();
+		}
+		mv.visitMaxs(maxStack, maxLocals);
+	}
+
+	private static class Trampoline {
+
+		final Label label;
+
+		final Label target;
+
+		final int probeId;
+
+		Trampoline(final Label label, final Label target, final int probeId) {
+			this.label = label;
+			this.target = target;
+			this.probeId = probeId;
+		}
+
+	}
+
 }
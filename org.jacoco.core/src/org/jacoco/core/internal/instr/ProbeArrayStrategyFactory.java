@@ -38,6 +38,47 @@ public final class ProbeArrayStrategyFactory {
 	 */
 	public static IProbeArrayStrategy createFor(final ClassReader reader,
 			final IExecutionDataAccessorGenerator accessorGenerator) {
+		return createFor(reader, accessorGenerator, 1);
+	}
+
+	/**
+	 * Creates a suitable strategy instance for the class described by the given
+	 * reader. For regular classes the probe array is split into the given
+	 * number of stripes.
+	 * 
+	 * @param reader
+	 *            reader to get information about the class
+	 * @param accessorGenerator
+	 *            accessor to the coverage runtime
+	 * @param stripes
+	 *            number of probe array stripes, must be a power of two
+	 * @return strategy instance
+	 */
+	public static IProbeArrayStrategy createFor(final ClassReader reader,
+			final IExecutionDataAccessorGenerator accessorGenerator,
+			final int stripes) {
+		return createFor(reader, accessorGenerator, stripes, false);
+	}
+
+	/**
+	 * Creates a suitable strategy instance for the class described by the given
+	 * reader. For regular classes the probe array is split into the given
+	 * number of stripes.
+	 * 
+	 * @param reader
+	 *            reader to get information about the class
+	 * @param accessorGenerator
+	 *            accessor to the coverage runtime
+	 * @param stripes
+	 *            number of probe array stripes, must be a power of two
+	 * @param probeElision
+	 *            <code>true</code> if the class is instrumented without probes
+	 *            which are implied by other probes
+	 * @return strategy instance
+	 */
+	public static IProbeArrayStrategy createFor(final ClassReader reader,
+			final IExecutionDataAccessorGenerator accessorGenerator,
+			final int stripes, final boolean probeElision) {
 
 		final String className = reader.getClassName();
 		final int version = getVersion(reader);
@@ -45,18 +86,29 @@ public final class ProbeArrayStrategyFactory {
 		final boolean withFrames = version >= Opcodes.V1_6;
 
 		if (isInterface(reader)) {
-			final ProbeCounter counter = getProbeCounter(reader);
-			if (counter.getCount() == 0) {
+			// Only the method headers are read, method bodies are skipped
+			final ProbeCounter counter = new ProbeCounter();
+			reader.accept(counter, 0);
+			if (!counter.hasCode()) {
 				return new NoneProbeArrayStrategy();
 			}
 			if (version >= Opcodes.V1_8 && counter.hasMethods()) {
 				return new FieldProbeArrayStrategy(className, classId,
 						withFrames, true, InstrSupport.DATAFIELD_INTF_ACC,
 						accessorGenerator);
-			} else {
-				return new LocalProbeArrayStrategy(className, classId,
-						counter.getCount(), accessorGenerator);
 			}
+			// Only the static initializer has code, the probe count is
+			// required before it is instrumented:
+			reader.accept(new ClassProbesAdapter(counter, false, probeElision),
+					0);
+			if (counter.getCount() == 0) {
+				return new NoneProbeArrayStrategy();
+			}
+			return new LocalProbeArrayStrategy(className, classId,
+					counter.getCount(), accessorGenerator);
+		} else if (stripes > 1) {
+			return new StripedProbeArrayStrategy(className, classId,
+					withFrames, stripes, accessorGenerator);
 		} else {
 			return new FieldProbeArrayStrategy(className, classId, withFrames,
 					false, InstrSupport.DATAFIELD_ACC, accessorGenerator);
@@ -71,10 +123,4 @@ public final class ProbeArrayStrategyFactory {
 		return reader.readShort(6);
 	}
 
-	private static ProbeCounter getProbeCounter(final ClassReader reader) {
-		final ProbeCounter counter = new ProbeCounter();
-		reader.accept(new ClassProbesAdapter(counter, false), 0);
-		return counter;
-	}
-
 }
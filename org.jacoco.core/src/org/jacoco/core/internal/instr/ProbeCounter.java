@@ -13,18 +13,23 @@ package org.jacoco.core.internal.instr;
 
 import org.jacoco.core.internal.flow.ClassProbesVisitor;
 import org.jacoco.core.internal.flow.MethodProbesVisitor;
+import org.objectweb.asm.Opcodes;
 
 /**
  * Internal class to remember the total number of probes required for a class.
+ * If this visitor is used without a probes adapter only the kinds of methods
+ * are recorded and the method bodies are skipped.
  */
 class ProbeCounter extends ClassProbesVisitor {
 
 	private int count;
 	private boolean methods;
+	private boolean code;
 
 	ProbeCounter() {
 		count = 0;
 		methods = false;
+		code = false;
 	}
 
 	@Override
@@ -33,6 +38,9 @@ class ProbeCounter extends ClassProbesVisitor {
 		if (!"<clinit>".equals(name)) {
 			methods = true;
 		}
+		if ((access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE)) == 0) {
+			code = true;
+		}
 		return null;
 	}
 
@@ -53,4 +61,12 @@ class ProbeCounter extends ClassProbesVisitor {
 		return methods;
 	}
 
+	/**
+	 * @return <code>true</code> if the class has methods with code, i.e.
+	 *         methods which get probes
+	 */
+	boolean hasCode() {
+		return code;
+	}
+
 }
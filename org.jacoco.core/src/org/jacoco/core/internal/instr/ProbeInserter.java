@@ -11,7 +11,12 @@
  *******************************************************************************/
 package org.jacoco.core.internal.instr;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.jacoco.core.JaCoCo;
+import org.jacoco.core.internal.flow.IFrame;
+import org.jacoco.core.internal.flow.LabelInfo;
 import org.objectweb.asm.Label;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
@@ -22,22 +27,52 @@ import org.objectweb.asm.Type;
  * for a probe simply sets a certain slot of a boolean array to true. In
  * addition the probe array has to be retrieved at the beginning of the method
  * and stored in a local variable.
+ * 
+ * The local variable is inserted into all stackmap frames, which may be
+ * expanded or compressed. For compressed frames the locals of the original
+ * method are tracked, frames which can not be expressed relative to the
+ * previous frame any more are emitted as full frames. The frames of labels
+ * which are jump targets are attached to the labels (see
+ * {@link LabelInfo#getFrame(Label)}).
  */
 class ProbeInserter extends MethodVisitor implements IProbeInserter {
 
 	private final IProbeArrayStrategy arrayStrategy;
 
+	private final String owner;
+
+	private final int access;
+
+	private final String name;
+
+	private final String desc;
+
 	/** Position of the inserted variable. */
 	private final int variable;
 
 	/** Maximum stack usage of the code to access the probe array. */
 	private int accessorStackSize;
 
+	/** Locals of the original method at the last compressed frame. */
+	private Object[] locals;
+
+	private int localsSize;
+
+	/** Whether compressed frames are relative to an emitted frame. */
+	private boolean frameEmitted;
+
+	/** Jump targets visited since the last frame. */
+	private final List<Label> targets = new ArrayList<Label>(2);
+
 	/**
 	 * Creates a new {@link ProbeInserter}.
 	 * 
+	 * @param owner
+	 *            internal name of the class declaring the method
 	 * @param access
 	 *            access flags of the adapted method.
+	 * @param name
+	 *            the method's name
 	 * @param desc
 	 *            the method's descriptor
 	 * @param mv
@@ -46,10 +81,15 @@ class ProbeInserter extends MethodVisitor implements IProbeInserter {
 	 *            callback to create the code that retrieves the reference to
 	 *            the probe array
 	 */
-	ProbeInserter(final int access, final String desc, final MethodVisitor mv,
+	ProbeInserter(final String owner, final int access, final String name,
+			final String desc, final MethodVisitor mv,
 			final IProbeArrayStrategy arrayStrategy) {
 		super(JaCoCo.ASM_API_VERSION, mv);
 		this.arrayStrategy = arrayStrategy;
+		this.owner = owner;
+		this.access = access;
+		this.name = name;
+		this.desc = desc;
 		int pos = (Opcodes.ACC_STATIC & access) == 0 ? 1 : 0;
 		for (final Type t : Type.getArgumentTypes(desc)) {
 			pos += t.getSize();
@@ -121,15 +161,73 @@ class ProbeInserter extends MethodVisitor implements IProbeInserter {
 		}
 	}
 
+	@Override
+	public void visitLabel(final Label label) {
+		// The frame of a jump target directly follows its label
+		if (LabelInfo.isMultiTarget(label)) {
+			targets.add(label);
+		}
+		mv.visitLabel(label);
+	}
+
 	@Override
 	public final void visitFrame(final int type, final int nLocal,
 			final Object[] local, final int nStack, final Object[] stack) {
-
-		if (type != Opcodes.F_NEW) { // uncompressed frame
-			throw new IllegalArgumentException(
-					"ClassReader.accept() should be called with EXPAND_FRAMES flag");
+		switch (type) {
+		case Opcodes.F_NEW:
+			visitFrame(type, local, nLocal, nStack, stack);
+			setTargetFrames(type, local, nLocal, nStack, stack);
+			return;
+		case Opcodes.F_FULL:
+			setLocals(local, nLocal);
+			visitFrame(type, local, nLocal, nStack, stack);
+			break;
+		case Opcodes.F_SAME:
+		case Opcodes.F_SAME1:
+			initLocals();
+			if (frameEmitted) {
+				mv.visitFrame(type, nLocal, local, nStack, stack);
+			} else if (type == Opcodes.F_SAME) {
+				mv.visitFrame(Opcodes.F_APPEND, 1,
+						new Object[] { InstrSupport.DATAFIELD_DESC }, 0, null);
+			} else {
+				visitFrame(Opcodes.F_FULL, locals, localsSize, nStack, stack);
+			}
+			break;
+		case Opcodes.F_APPEND:
+			initLocals();
+			final boolean relative = frameEmitted && getInsertIndex() != -1;
+			appendLocals(local, nLocal);
+			if (relative) {
+				mv.visitFrame(type, nLocal, local, nStack, stack);
+			} else if (!frameEmitted && nLocal < 3) {
+				// The implicit frame ends with the arguments
+				final Object[] newLocal = new Object[nLocal + 1];
+				newLocal[0] = InstrSupport.DATAFIELD_DESC;
+				System.arraycopy(local, 0, newLocal, 1, nLocal);
+				mv.visitFrame(type, nLocal + 1, newLocal, 0, null);
+			} else {
+				visitFrame(Opcodes.F_FULL, locals, localsSize, 0, null);
+			}
+			break;
+		case Opcodes.F_CHOP:
+			initLocals();
+			localsSize -= nLocal;
+			if (frameEmitted && getInsertIndex() != -1) {
+				mv.visitFrame(type, nLocal, local, nStack, stack);
+			} else {
+				visitFrame(Opcodes.F_FULL, locals, localsSize, 0, null);
+			}
+			break;
+		default:
+			throw new IllegalArgumentException();
 		}
+		frameEmitted = true;
+		setTargetFrames(Opcodes.F_FULL, locals, localsSize, nStack, stack);
+	}
 
+	private void visitFrame(final int type, final Object[] local,
+			final int nLocal, final int nStack, final Object[] stack) {
 		final Object[] newLocal = new Object[Math.max(nLocal, variable) + 1];
 		int idx = 0; // Arrays index for existing locals
 		int newIdx = 0; // Array index for new locals
@@ -156,4 +254,121 @@ class ProbeInserter extends MethodVisitor implements IProbeInserter {
 		mv.visitFrame(type, newIdx, newLocal, nStack, stack);
 	}
 
+	/**
+	 * Returns the index in the current locals where the probe variable is
+	 * inserted or <code>-1</code> if the locals do not end or have an entry
+	 * at the position of the variable.
+	 */
+	private int getInsertIndex() {
+		int pos = 0;
+		for (int i = 0; i < localsSize; i++) {
+			if (pos == variable) {
+				return i;
+			}
+			final Object t = locals[i];
+			pos += t == Opcodes.LONG || t == Opcodes.DOUBLE ? 2 : 1;
+		}
+		return pos == variable ? localsSize : -1;
+	}
+
+	/**
+	 * Initializes the locals with the implicit frame of the method, if no
+	 * frame has been visited before.
+	 */
+	private void initLocals() {
+		if (locals != null) {
+			return;
+		}
+		final Type[] args = Type.getArgumentTypes(desc);
+		locals = new Object[args.length + 1];
+		if ((Opcodes.ACC_STATIC & access) == 0) {
+			final boolean constructor = "<init>".equals(name);
+			locals[localsSize++] = constructor ? Opcodes.UNINITIALIZED_THIS
+					: owner;
+		}
+		for (final Type t : args) {
+			locals[localsSize++] = getFrameType(t);
+		}
+	}
+
+	private static Object getFrameType(final Type type) {
+		switch (type.getSort()) {
+		case Type.BOOLEAN:
+		case Type.CHAR:
+		case Type.BYTE:
+		case Type.SHORT:
+		case Type.INT:
+			return Opcodes.INTEGER;
+		case Type.FLOAT:
+			return Opcodes.FLOAT;
+		case Type.LONG:
+			return Opcodes.LONG;
+		case Type.DOUBLE:
+			return Opcodes.DOUBLE;
+		default:
+			return type.getInternalName();
+		}
+	}
+
+	private void setLocals(final Object[] local, final int nLocal) {
+		localsSize = 0;
+		appendLocals(local, nLocal);
+	}
+
+	private void appendLocals(final Object[] local, final int nLocal) {
+		final int size = localsSize + nLocal;
+		if (locals == null || locals.length < size) {
+			final Object[] newLocals = new Object[size + 4];
+			if (locals != null) {
+				System.arraycopy(locals, 0, newLocals, 0, localsSize);
+			}
+			locals = newLocals;
+		}
+		System.arraycopy(local, 0, locals, localsSize, nLocal);
+		localsSize = size;
+	}
+
+	private void setTargetFrames(final int type, final Object[] local,
+			final int nLocal, final int nStack, final Object[] stack) {
+		if (targets.isEmpty()) {
+			return;
+		}
+		final Object[] frameLocals = new Object[nLocal];
+		System.arraycopy(local, 0, frameLocals, 0, nLocal);
+		final Object[] frameStack = new Object[nStack];
+		if (nStack > 0) {
+			System.arraycopy(stack, 0, frameStack, 0, nStack);
+		}
+		final IFrame frame = new TargetFrame(type, frameLocals, frameStack);
+		for (final Label target : targets) {
+			LabelInfo.setFrame(target, frame);
+		}
+		targets.clear();
+	}
+
+	/**
+	 * Full frame of the original method at a jump target. When emitted to this
+	 * inserter the probe variable is added.
+	 */
+	private static class TargetFrame implements IFrame {
+
+		private final int type;
+
+		private final Object[] locals;
+
+		private final Object[] stack;
+
+		TargetFrame(final int type, final Object[] locals,
+				final Object[] stack) {
+			this.type = type;
+			this.locals = locals;
+			this.stack = stack;
+		}
+
+		public void accept(final MethodVisitor mv) {
+			mv.visitFrame(type, locals.length, locals, stack.length, stack);
+		}
+
+	}
+
 }
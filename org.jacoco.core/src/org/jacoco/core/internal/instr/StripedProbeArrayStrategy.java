@@ -0,0 +1,179 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.core.internal.instr;
+
+import org.jacoco.core.runtime.IExecutionDataAccessorGenerator;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * The strategy for heavily used classes which keeps a separate probe array for
+ * every stripe. Each thread writes to the stripe selected by its thread id, so
+ * threads running on different cores do not contend for the same cache lines.
+ * The stripes are requested from the runtime with the stripe qualified class
+ * name (see {@link InstrSupport#getStripeName(String, int)}) and are combined
+ * by the runtime when execution data is collected.
+ */
+class StripedProbeArrayStrategy implements IProbeArrayStrategy {
+
+	/**
+	 * Frame stack with a single array of boolean arrays.
+	 */
+	private static final Object[] FRAME_STACK_ARRZ = new Object[] { InstrSupport.STRIPED_DATAFIELD_DESC };
+
+	/**
+	 * Empty frame locals.
+	 */
+	private static final Object[] FRAME_LOCALS_EMPTY = new Object[0];
+
+	private final String className;
+	private final long classId;
+	private final boolean withFrames;
+	private final int stripes;
+	private final IExecutionDataAccessorGenerator accessorGenerator;
+
+	StripedProbeArrayStrategy(final String className, final long classId,
+			final boolean withFrames, final int stripes,
+			final IExecutionDataAccessorGenerator accessorGenerator) {
+		this.className = className;
+		this.classId = classId;
+		this.withFrames = withFrames;
+		this.stripes = stripes;
+		this.accessorGenerator = accessorGenerator;
+	}
+
+	public int storeInstance(final MethodVisitor mv, final int variable) {
+		mv.visitMethodInsn(Opcodes.INVOKESTATIC, className,
+				InstrSupport.INITMETHOD_NAME, InstrSupport.INITMETHOD_DESC,
+				false);
+		mv.visitVarInsn(Opcodes.ASTORE, variable);
+		return 1;
+	}
+
+	public void addMembers(final ClassVisitor cv, final int probeCount) {
+		createDataField(cv);
+		createInitMethod(cv, probeCount);
+	}
+
+	private void createDataField(final ClassVisitor cv) {
+		cv.visitField(InstrSupport.DATAFIELD_ACC, InstrSupport.DATAFIELD_NAME,
+				InstrSupport.STRIPED_DATAFIELD_DESC, null, null);
+	}
+
+	private void createInitMethod(final ClassVisitor cv, final int probeCount) {
+		final MethodVisitor mv = cv.visitMethod(InstrSupport.INITMETHOD_ACC,
+				InstrSupport.INITMETHOD_NAME, InstrSupport.INITMETHOD_DESC,
+				null, null);
+		mv.visitCode();
+
+		// Load the value of the static data field:
+		mv.visitFieldInsn(Opcodes.GETSTATIC, className,
+				InstrSupport.DATAFIELD_NAME,
+				InstrSupport.STRIPED_DATAFIELD_DESC);
+		mv.visitInsn(Opcodes.DUP);
+
+		// Stack[1]: [[Z
+		// Stack[0]: [[Z
+
+		// Skip initialization when we already have the stripes:
+		final Label alreadyInitialized = new Label();
+		mv.visitJumpInsn(Opcodes.IFNONNULL, alreadyInitialized);
+
+		// Stack[0]: [[Z
+
+		mv.visitInsn(Opcodes.POP);
+		final int size = genInitializeDataField(mv, probeCount);
+
+		// Stack[0]: [[Z
+
+		if (withFrames) {
+			mv.visitFrame(Opcodes.F_NEW, 0, FRAME_LOCALS_EMPTY, 1,
+					FRAME_STACK_ARRZ);
+		}
+		mv.visitLabel(alreadyInitialized);
+
+		// Select the stripe of the current thread:
+		mv.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/Thread",
+				"currentThread", "()Ljava/lang/Thread;", false);
+		mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/lang/Thread", "getId",
+				"()J", false);
+		mv.visitInsn(Opcodes.L2I);
+		InstrSupport.push(mv, stripes - 1);
+		mv.visitInsn(Opcodes.IAND);
+
+		// Stack[1]: I
+		// Stack[0]: [[Z
+
+		mv.visitInsn(Opcodes.AALOAD);
+
+		// Stack[0]: [Z
+
+		mv.visitInsn(Opcodes.ARETURN);
+
+		mv.visitMaxs(Math.max(size, 3), 0); // Maximum local stack size is 3
+		mv.visitEnd();
+	}
+
+	/**
+	 * Generates the byte code to initialize the static data field with all
+	 * stripes of this class.
+	 * 
+	 * The code will push the [[Z data array on the operand stack.
+	 * 
+	 * @param mv
+	 *            generator to emit code to
+	 */
+	private int genInitializeDataField(final MethodVisitor mv,
+			final int probeCount) {
+		InstrSupport.push(mv, stripes);
+		mv.visitTypeInsn(Opcodes.ANEWARRAY, InstrSupport.DATAFIELD_DESC);
+
+		// Stack[0]: [[Z
+
+		int size = 0;
+		for (int i = 0; i < stripes; i++) {
+			mv.visitInsn(Opcodes.DUP);
+			InstrSupport.push(mv, i);
+
+			// Stack[2]: I
+			// Stack[1]: [[Z
+			// Stack[0]: [[Z
+
+			size = Math.max(size, accessorGenerator.generateDataAccessor(
+					classId, InstrSupport.getStripeName(className, i),
+					probeCount, mv));
+
+			// Stack[3]: [Z
+			// Stack[2]: I
+			// Stack[1]: [[Z
+			// Stack[0]: [[Z
+
+			mv.visitInsn(Opcodes.AASTORE);
+		}
+
+		mv.visitInsn(Opcodes.DUP);
+
+		// Stack[1]: [[Z
+		// Stack[0]: [[Z
+
+		mv.visitFieldInsn(Opcodes.PUTSTATIC, className,
+				InstrSupport.DATAFIELD_NAME,
+				InstrSupport.STRIPED_DATAFIELD_DESC);
+
+		// Stack[0]: [[Z
+
+		return size + 3;
+	}
+
+}
@@ -108,8 +108,11 @@ public final class AgentOptions {
 	 * Specifies the output mode. Default is {@link OutputMode#file}.
 	 * 
 	 * @see OutputMode#file
+	 * @see OutputMode#mapped
 	 * @see OutputMode#tcpserver
+	 * @see OutputMode#tcpmultiserver
 	 * @see OutputMode#tcpclient
+	 * @see OutputMode#tcpbatchclient
 	 * @see OutputMode#none
 	 */
 	public static final String OUTPUT = "output";
@@ -129,6 +132,15 @@ public final class AgentOptions {
 		 */
 		file,
 
+		/**
+		 * Value for the {@link AgentOptions#OUTPUT} parameter: Execution data
+		 * is continuously written to the memory mapped file specified by
+		 * {@link AgentOptions#DESTFILE} in the interval specified by
+		 * {@link AgentOptions#SYNCINTERVAL}. The file keeps its content if
+		 * the VM terminates abnormally.
+		 */
+		mapped,
+
 		/**
 		 * Value for the {@link AgentOptions#OUTPUT} parameter: The agent
 		 * listens for incoming connections on a TCP port specified by
@@ -136,6 +148,14 @@ public final class AgentOptions {
 		 */
 		tcpserver,
 
+		/**
+		 * Value for the {@link AgentOptions#OUTPUT} parameter: The agent
+		 * listens for incoming connections on a TCP port specified by
+		 * {@link AgentOptions#ADDRESS} and {@link AgentOptions#PORT} and
+		 * serves any number of connections concurrently.
+		 */
+		tcpmultiserver,
+
 		/**
 		 * Value for the {@link AgentOptions#OUTPUT} parameter: At startup the
 		 * agent connects to a TCP port specified by the
@@ -143,6 +163,15 @@ public final class AgentOptions {
 		 */
 		tcpclient,
 
+		/**
+		 * Value for the {@link AgentOptions#OUTPUT} parameter: Every dump
+		 * is compressed and sent as a batch to the TCP port specified by the
+		 * {@link AgentOptions#ADDRESS} and {@link AgentOptions#PORT}
+		 * attribute. Batches are queued in {@link AgentOptions#SPOOLDIR}
+		 * while the port is not reachable.
+		 */
+		tcpbatchclient,
+
 		/**
 		 * Value for the {@link AgentOptions#OUTPUT} parameter: Do not produce
 		 * any output.
@@ -175,6 +204,56 @@ public final class AgentOptions {
 	 */
 	public static final int DEFAULT_PORT = 6300;
 
+	/**
+	 * Specifies whether every dump should only contain classes with probes
+	 * executed since the previous dump of the same output. For the
+	 * <code>file</code> output all dumps after the first one are appended to
+	 * the execution data file. Default is <code>false</code>.
+	 */
+	public static final String DELTA = "delta";
+
+	/**
+	 * Location of a directory where the <code>tcpbatchclient</code> output
+	 * queues batches which could not be sent yet. Queued batches are sent on
+	 * the next successful connection, also by later JVM starts using the same
+	 * directory. The location is specified as a relative path to the working
+	 * directory. Default is <code>null</code> (batches are only queued in
+	 * memory).
+	 */
+	public static final String SPOOLDIR = "spooldir";
+
+	/**
+	 * Maximum total size in bytes of all batches queued by the
+	 * <code>tcpbatchclient</code> output. If the limit is exceeded all queued
+	 * batches are merged into a single batch, therefore no hits are lost.
+	 * Default is defined by {@link #DEFAULT_SPOOLLIMIT}.
+	 */
+	public static final String SPOOLLIMIT = "spoollimit";
+
+	/**
+	 * Default value for the "spoollimit" agent option.
+	 */
+	public static final int DEFAULT_SPOOLLIMIT = 16 * 1024 * 1024;
+
+	/**
+	 * Interval in seconds in which the <code>tcpbatchclient</code> output
+	 * sends batches. Default is <code>0</code> (batches are only sent on
+	 * explicit dumps and on VM exit).
+	 */
+	public static final String BATCHINTERVAL = "batchinterval";
+
+	/**
+	 * Interval in milliseconds in which the <code>mapped</code> output copies
+	 * the probes to the memory mapped file. Default is defined by
+	 * {@link #DEFAULT_SYNCINTERVAL}.
+	 */
+	public static final String SYNCINTERVAL = "syncinterval";
+
+	/**
+	 * Default value for the "syncinterval" agent option.
+	 */
+	public static final int DEFAULT_SYNCINTERVAL = 1000;
+
 	/**
 	 * Specifies where the agent dumps all class files it encounters. The
 	 * location is specified as a relative path to the working directory.
@@ -182,16 +261,97 @@ public final class AgentOptions {
 	 */
 	public static final String CLASSDUMPDIR = "classdumpdir";
 
+	/**
+	 * Location of a directory where instrumented class files are cached and
+	 * reused by later JVM starts. The cache is keyed by the id of the original
+	 * class file, the JaCoCo version and the instrumentation strategy and can
+	 * be shared by multiple JVMs running concurrently. The location is
+	 * specified as a relative path to the working directory. Default is
+	 * <code>null</code> (no cache).
+	 */
+	public static final String CLASSCACHEDIR = "classcachedir";
+
 	/**
 	 * Specifies whether the agent should expose functionality via JMX under the
 	 * name "org.jacoco:type=Runtime". Default is <code>false</code>.
 	 */
 	public static final String JMX = "jmx";
 
+	/**
+	 * Specifies whether instrumented classes should obtain their probe arrays
+	 * through a static accessor class which is added to the bootstrap class
+	 * path. This avoids boxing and allocation in the generated code but
+	 * requires that all class loaders delegate to the bootstrap class loader
+	 * for the agent's runtime package. Default is <code>false</code>.
+	 */
+	public static final String BOOTSTRAPACCESSOR = "bootstrapaccessor";
+
+	/**
+	 * Wildcard expression for class names which are executed concurrently by
+	 * many threads. These classes get multiple probe arrays, each thread
+	 * writes to one of them depending on its id. This avoids contention on the
+	 * cache lines of a single shared array. Default is the empty string (no
+	 * classes striped).
+	 * 
+	 * @see WildcardMatcher
+	 */
+	public static final String STRIPEDCLASSES = "stripedclasses";
+
+	/**
+	 * Number of probe arrays for classes matched by {@link #STRIPEDCLASSES}.
+	 * Must be a power of two. Default is defined by
+	 * {@link #DEFAULT_PROBESTRIPES}.
+	 */
+	public static final String PROBESTRIPES = "probestripes";
+
+	/**
+	 * Default value for the "probestripes" agent option.
+	 */
+	public static final int DEFAULT_PROBESTRIPES = 8;
+
+	/**
+	 * Specifies whether classes should first be loaded with a trivial
+	 * initialization hook only. Classes are retransformed with full
+	 * instrumentation when they get initialized, therefore the costs of
+	 * instrumentation only apply to classes which are actually used. Requires
+	 * a JVM which supports the retransformation of classes. Default is
+	 * <code>false</code>.
+	 */
+	public static final String LAZYINSTRUMENTATION = "lazyinstrumentation";
+
+	/**
+	 * Interval in seconds in which the agent checks the execution data of all
+	 * classes. Saturated classes, i.e. classes where all probes have been
+	 * executed, are retransformed into their original version so that they do
+	 * not cause any overhead any more. Requires a JVM which supports the
+	 * retransformation of classes. Default is <code>0</code> (classes are
+	 * never detached).
+	 */
+	public static final String DETACHINTERVAL = "detachinterval";
+
+	/**
+	 * Time in seconds after which executed classes without new executed probes
+	 * are detached like saturated classes. Only used if
+	 * {@link #DETACHINTERVAL} is set. Default is <code>0</code> (only
+	 * saturated classes are detached).
+	 */
+	public static final String DETACHQUIETTIME = "detachquiettime";
+
+	/**
+	 * Specifies whether probes which are implied by other probes should be
+	 * omitted, e.g. the probe at the end of a loop body. Reports detect such
+	 * execution data automatically. Execution data recorded with and without
+	 * this option can't be merged. Default is <code>false</code>.
+	 */
+	public static final String PROBEELISION = "probeelision";
+
 	private static final Collection<String> VALID_OPTIONS = Arrays.asList(
 			DESTFILE, APPEND, INCLUDES, EXCLUDES, EXCLCLASSLOADER,
 			INCLBOOTSTRAPCLASSES, INCLNOLOCATIONCLASSES, SESSIONID, DUMPONEXIT,
-			OUTPUT, ADDRESS, PORT, CLASSDUMPDIR, JMX);
+			OUTPUT, ADDRESS, PORT, DELTA, SPOOLDIR, SPOOLLIMIT, BATCHINTERVAL,
+			SYNCINTERVAL, CLASSDUMPDIR, CLASSCACHEDIR, JMX, BOOTSTRAPACCESSOR,
+			STRIPEDCLASSES, PROBESTRIPES, LAZYINSTRUMENTATION, DETACHINTERVAL,
+			DETACHQUIETTIME, PROBEELISION);
 
 	private final Map<String, String> options;
 
@@ -249,6 +409,12 @@ public final class AgentOptions {
 
 	private void validateAll() {
 		validatePort(getPort());
+		validateProbeStripes(getProbeStripes());
+		validateSpoolLimit(getSpoolLimit());
+		validateBatchInterval(getBatchInterval());
+		validateSyncInterval(getSyncInterval());
+		validateDetachInterval(getDetachInterval());
+		validateDetachQuietTime(getDetachQuietTime());
 		getOutput();
 	}
 
@@ -258,6 +424,46 @@ public final class AgentOptions {
 		}
 	}
 
+	private void validateProbeStripes(final int stripes) {
+		if (stripes <= 0 || (stripes & (stripes - 1)) != 0) {
+			throw new IllegalArgumentException(
+					"probestripes must be a positive power of two");
+		}
+	}
+
+	private void validateSpoolLimit(final int limit) {
+		if (limit <= 0) {
+			throw new IllegalArgumentException("spoollimit must be positive");
+		}
+	}
+
+	private void validateBatchInterval(final int interval) {
+		if (interval < 0) {
+			throw new IllegalArgumentException(
+					"batchinterval must not be negative");
+		}
+	}
+
+	private void validateSyncInterval(final int interval) {
+		if (interval <= 0) {
+			throw new IllegalArgumentException("syncinterval must be positive");
+		}
+	}
+
+	private void validateDetachInterval(final int interval) {
+		if (interval < 0) {
+			throw new IllegalArgumentException(
+					"detachinterval must not be negative");
+		}
+	}
+
+	private void validateDetachQuietTime(final int time) {
+		if (time < 0) {
+			throw new IllegalArgumentException(
+					"detachquiettime must not be negative");
+		}
+	}
+
 	/**
 	 * Returns the output file location.
 	 * 
@@ -537,6 +743,128 @@ public final class AgentOptions {
 		setOption(CLASSDUMPDIR, location);
 	}
 
+	/**
+	 * Returns the location of the directory where instrumented class files
+	 * are cached.
+	 * 
+	 * @return cache location or <code>null</code> (no cache)
+	 */
+	public String getClassCacheDir() {
+		return getOption(CLASSCACHEDIR, null);
+	}
+
+	/**
+	 * Sets the directory where instrumented class files are cached.
+	 * 
+	 * @param location
+	 *            cache location or <code>null</code> (no cache)
+	 */
+	public void setClassCacheDir(final String location) {
+		setOption(CLASSCACHEDIR, location);
+	}
+
+	/**
+	 * Returns whether dumps only contain classes with probes executed since
+	 * the previous dump.
+	 * 
+	 * @return <code>true</code>, when delta dumps are enabled
+	 */
+	public boolean getDelta() {
+		return getOption(DELTA, false);
+	}
+
+	/**
+	 * Sets whether dumps should only contain classes with probes executed
+	 * since the previous dump.
+	 * 
+	 * @param delta
+	 *            <code>true</code> if delta dumps should be enabled
+	 */
+	public void setDelta(final boolean delta) {
+		setOption(DELTA, delta);
+	}
+
+	/**
+	 * Returns the location of the directory where unsent batches are queued.
+	 * 
+	 * @return spool location or <code>null</code> (queue in memory)
+	 */
+	public String getSpoolDir() {
+		return getOption(SPOOLDIR, null);
+	}
+
+	/**
+	 * Sets the directory where unsent batches are queued.
+	 * 
+	 * @param location
+	 *            spool location or <code>null</code> (queue in memory)
+	 */
+	public void setSpoolDir(final String location) {
+		setOption(SPOOLDIR, location);
+	}
+
+	/**
+	 * Returns the maximum total size of all queued batches.
+	 * 
+	 * @return maximum size in bytes
+	 */
+	public int getSpoolLimit() {
+		return getOption(SPOOLLIMIT, DEFAULT_SPOOLLIMIT);
+	}
+
+	/**
+	 * Sets the maximum total size of all queued batches.
+	 * 
+	 * @param limit
+	 *            maximum size in bytes, must be positive
+	 */
+	public void setSpoolLimit(final int limit) {
+		validateSpoolLimit(limit);
+		setOption(SPOOLLIMIT, limit);
+	}
+
+	/**
+	 * Returns the interval in which batches are sent.
+	 * 
+	 * @return interval in seconds or <code>0</code> if batches are only sent
+	 *         on explicit dumps
+	 */
+	public int getBatchInterval() {
+		return getOption(BATCHINTERVAL, 0);
+	}
+
+	/**
+	 * Sets the interval in which batches are sent.
+	 * 
+	 * @param interval
+	 *            interval in seconds or <code>0</code> if batches should only
+	 *            be sent on explicit dumps
+	 */
+	public void setBatchInterval(final int interval) {
+		validateBatchInterval(interval);
+		setOption(BATCHINTERVAL, interval);
+	}
+
+	/**
+	 * Returns the interval in which probes are copied to the mapped file.
+	 * 
+	 * @return interval in milliseconds
+	 */
+	public int getSyncInterval() {
+		return getOption(SYNCINTERVAL, DEFAULT_SYNCINTERVAL);
+	}
+
+	/**
+	 * Sets the interval in which probes are copied to the mapped file.
+	 * 
+	 * @param interval
+	 *            interval in milliseconds, must be positive
+	 */
+	public void setSyncInterval(final int interval) {
+		validateSyncInterval(interval);
+		setOption(SYNCINTERVAL, interval);
+	}
+
 	/**
 	 * Returns whether the agent exposes functionality via JMX.
 	 * 
@@ -556,6 +884,155 @@ public final class AgentOptions {
 		setOption(JMX, jmx);
 	}
 
+	/**
+	 * Returns whether probe arrays are obtained through a static accessor on
+	 * the bootstrap class path.
+	 * 
+	 * @return <code>true</code>, when the static accessor is used
+	 */
+	public boolean getBootstrapAccessor() {
+		return getOption(BOOTSTRAPACCESSOR, false);
+	}
+
+	/**
+	 * Sets whether probe arrays should be obtained through a static accessor
+	 * on the bootstrap class path.
+	 * 
+	 * @param bootstrapAccessor
+	 *            <code>true</code> if the static accessor should be used
+	 */
+	public void setBootstrapAccessor(final boolean bootstrapAccessor) {
+		setOption(BOOTSTRAPACCESSOR, bootstrapAccessor);
+	}
+
+	/**
+	 * Returns the wildcard expression for classes with striped probe arrays.
+	 * 
+	 * @return wildcard expression for classes with striped probe arrays
+	 * @see WildcardMatcher
+	 */
+	public String getStripedClasses() {
+		return getOption(STRIPEDCLASSES, "");
+	}
+
+	/**
+	 * Sets the wildcard expression for classes with striped probe arrays.
+	 * 
+	 * @param expression
+	 *            wildcard expression for classes with striped probe arrays
+	 * @see WildcardMatcher
+	 */
+	public void setStripedClasses(final String expression) {
+		setOption(STRIPEDCLASSES, expression);
+	}
+
+	/**
+	 * Returns the number of probe arrays for striped classes.
+	 * 
+	 * @return number of probe arrays for striped classes
+	 */
+	public int getProbeStripes() {
+		return getOption(PROBESTRIPES, DEFAULT_PROBESTRIPES);
+	}
+
+	/**
+	 * Sets the number of probe arrays for striped classes.
+	 * 
+	 * @param stripes
+	 *            number of probe arrays, must be a power of two
+	 */
+	public void setProbeStripes(final int stripes) {
+		validateProbeStripes(stripes);
+		setOption(PROBESTRIPES, stripes);
+	}
+
+	/**
+	 * Returns whether classes are instrumented lazily when they get
+	 * initialized.
+	 * 
+	 * @return <code>true</code>, when classes are instrumented lazily
+	 */
+	public boolean getLazyInstrumentation() {
+		return getOption(LAZYINSTRUMENTATION, false);
+	}
+
+	/**
+	 * Sets whether classes should be instrumented lazily when they get
+	 * initialized.
+	 * 
+	 * @param lazyInstrumentation
+	 *            <code>true</code> if classes should be instrumented lazily
+	 */
+	public void setLazyInstrumentation(final boolean lazyInstrumentation) {
+		setOption(LAZYINSTRUMENTATION, lazyInstrumentation);
+	}
+
+	/**
+	 * Returns the interval in which saturated classes are detached.
+	 * 
+	 * @return interval in seconds or <code>0</code> if classes are never
+	 *         detached
+	 */
+	public int getDetachInterval() {
+		return getOption(DETACHINTERVAL, 0);
+	}
+
+	/**
+	 * Sets the interval in which saturated classes are detached.
+	 * 
+	 * @param interval
+	 *            interval in seconds or <code>0</code> if classes should
+	 *            never be detached
+	 */
+	public void setDetachInterval(final int interval) {
+		validateDetachInterval(interval);
+		setOption(DETACHINTERVAL, interval);
+	}
+
+	/**
+	 * Returns the time after which classes without new executed probes are
+	 * detached.
+	 * 
+	 * @return time in seconds or <code>0</code> if only saturated classes are
+	 *         detached
+	 */
+	public int getDetachQuietTime() {
+		return getOption(DETACHQUIETTIME, 0);
+	}
+
+	/**
+	 * Sets the time after which classes without new executed probes are
+	 * detached.
+	 * 
+	 * @param time
+	 *            time in seconds or <code>0</code> if only saturated classes
+	 *            should be detached
+	 */
+	public void setDetachQuietTime(final int time) {
+		validateDetachQuietTime(time);
+		setOption(DETACHQUIETTIME, time);
+	}
+
+	/**
+	 * Returns whether probes which are implied by other probes are omitted.
+	 * 
+	 * @return <code>true</code>, when implied probes are omitted
+	 */
+	public boolean getProbeElision() {
+		return getOption(PROBEELISION, false);
+	}
+
+	/**
+	 * Sets whether probes which are implied by other probes should be
+	 * omitted.
+	 * 
+	 * @param probeElision
+	 *            <code>true</code> if implied probes should be omitted
+	 */
+	public void setProbeElision(final boolean probeElision) {
+		setOption(PROBEELISION, probeElision);
+	}
+
 	private void setOption(final String key, final int value) {
 		setOption(key, Integer.toString(value));
 	}
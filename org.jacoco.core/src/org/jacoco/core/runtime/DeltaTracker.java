@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.core.runtime;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jacoco.core.data.ExecutionData;
+
+/**
+ * Remembers the execution data reported by previous collects of a
+ * {@link RuntimeData} instance. If a tracker is passed to
+ * {@link RuntimeData#collect(org.jacoco.core.data.IExecutionDataVisitor, org.jacoco.core.data.ISessionInfoVisitor, boolean, DeltaTracker)}
+ * only classes with probes which have been executed since the previous collect
+ * with the same tracker are reported. Merging all data collected with a
+ * tracker gives the same result as a single full collect.
+ * 
+ * Every consumer of execution data, e.g. an output of the agent, needs its own
+ * tracker instance. Trackers are not thread safe, they are only accessed
+ * while the runtime data takes a snapshot of the execution data.
+ */
+public class DeltaTracker {
+
+	private final Map<Long, Integer> hitCounts = new HashMap<Long, Integer>();
+
+	private int resetCount;
+
+	/**
+	 * Creates a new tracker. The first collect with this tracker reports all
+	 * classes with executed probes.
+	 */
+	public DeltaTracker() {
+		resetCount = -1;
+	}
+
+	/**
+	 * Makes sure the tracker is in sync with the given number of resets of the
+	 * runtime data. As resets clear probes the remembered hit counts become
+	 * invalid and all classes with executed probes are reported again.
+	 * 
+	 * @param resetCount
+	 *            number of resets of the runtime data
+	 */
+	void sync(final int resetCount) {
+		if (this.resetCount != resetCount) {
+			hitCounts.clear();
+			this.resetCount = resetCount;
+		}
+	}
+
+	/**
+	 * Checks whether the given execution data has new executed probes since
+	 * the last call of this method for the same class. As probes are only set
+	 * but never cleared between resets, a new executed probe always increases
+	 * the number of executed probes.
+	 * 
+	 * @param data
+	 *            execution data to check
+	 * @return <code>true</code> if probes have been executed since the last
+	 *         check
+	 */
+	boolean update(final ExecutionData data) {
+		final int count = data.getHitCount();
+		if (count == 0) {
+			return false;
+		}
+		final Integer last = hitCounts.put(Long.valueOf(data.getId()),
+				Integer.valueOf(count));
+		return last == null || last.intValue() < count;
+	}
+
+}
@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.core.runtime;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.IExecutionDataVisitor;
+
+/**
+ * Visitor which writes only the execution data of selected classes. This is
+ * used by runtimes to answer filtered dump commands, see
+ * {@link IRemoteCommandVisitor#visitFilteredDumpCommand(boolean, String, String, boolean)}
+ * . Classes are selected by their Java name with {@link WildcardMatcher}
+ * expressions. Optionally only executed classes are written without their
+ * probes.
+ */
+public class DumpFilter implements IExecutionDataVisitor {
+
+	private final WildcardMatcher includes;
+
+	private final WildcardMatcher excludes;
+
+	private final boolean classHits;
+
+	private final ExecutionDataWriter writer;
+
+	/**
+	 * Creates a new filter for the given writer.
+	 * 
+	 * @param includes
+	 *            Java names of classes to write
+	 * @param excludes
+	 *            Java names of classes not to write
+	 * @param classHits
+	 *            <code>true</code> if only executed classes should be written
+	 *            without their probes
+	 * @param writer
+	 *            writer for the selected data
+	 */
+	public DumpFilter(final String includes, final String excludes,
+			final boolean classHits, final ExecutionDataWriter writer) {
+		this.includes = new WildcardMatcher(includes);
+		this.excludes = new WildcardMatcher(excludes);
+		this.classHits = classHits;
+		this.writer = writer;
+	}
+
+	public void visitClassExecution(final ExecutionData data) {
+		final String name = data.getName().replace('/', '.');
+		if (!includes.matches(name) || excludes.matches(name)) {
+			return;
+		}
+		if (classHits) {
+			if (data.hasHits()) {
+				writer.visitClassHit(data.getId(), data.getName());
+			}
+		} else {
+			writer.visitClassExecution(data);
+		}
+	}
+
+}
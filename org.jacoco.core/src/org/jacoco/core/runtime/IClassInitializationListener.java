@@ -0,0 +1,33 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.core.runtime;
+
+/**
+ * Callback for the initialization of classes which have been instrumented with
+ * an initialization hook only.
+ * 
+ * @see RuntimeData#setInitializationListener(IClassInitializationListener)
+ */
+public interface IClassInitializationListener {
+
+	/**
+	 * Called when the static initializer of a hooked class is executed. The
+	 * call happens on the initializing thread.
+	 * 
+	 * @param id
+	 *            class identifier
+	 * @param name
+	 *            VM name of the class
+	 */
+	void classInitialized(long id, String name);
+
+}
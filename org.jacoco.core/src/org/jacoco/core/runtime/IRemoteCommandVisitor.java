@@ -31,4 +31,27 @@ public interface IRemoteCommandVisitor {
 	public void visitDumpCommand(final boolean dump, final boolean reset)
 			throws IOException;
 
+	/**
+	 * Requests a execution data dump of selected classes only with an optional
+	 * reset. The reset always applies to all classes.
+	 * 
+	 * @param reset
+	 *            <code>true</code> if the reset should be executed
+	 * @param includes
+	 *            Java names of classes to dump, may use wildcard characters
+	 *            (* and ?) and list multiple patterns separated by colons
+	 * @param excludes
+	 *            Java names of classes to exclude, same syntax as
+	 *            <code>includes</code>
+	 * @param classHits
+	 *            <code>true</code> if only the executed classes should be
+	 *            dumped without their probes
+	 * @throws IOException
+	 *             in case of problems with the remote connection
+	 * @see WildcardMatcher
+	 */
+	public void visitFilteredDumpCommand(final boolean reset,
+			final String includes, final String excludes,
+			final boolean classHits) throws IOException;
+
 }
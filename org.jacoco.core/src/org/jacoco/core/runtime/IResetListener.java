@@ -0,0 +1,30 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.core.runtime;
+
+/**
+ * Callback for resets of the execution data of a {@link RuntimeData}
+ * instance.
+ * 
+ * @see RuntimeData#setResetListener(IResetListener)
+ */
+public interface IResetListener {
+
+	/**
+	 * Called after probes have been cleared, e.g. by
+	 * {@link RuntimeData#reset()}, a collect with reset or the begin and end
+	 * of a test. The call happens on the resetting thread after the runtime
+	 * data has been unlocked.
+	 */
+	void executionDataReset();
+
+}
@@ -12,9 +12,6 @@
 package org.jacoco.core.runtime;
 
 import org.jacoco.core.JaCoCo;
-import org.jacoco.core.internal.instr.InstrSupport;
-import org.objectweb.asm.MethodVisitor;
-import org.objectweb.asm.Opcodes;
 
 /**
  * This implementation of {@link IExecutionDataAccessorGenerator} generate a
@@ -22,10 +19,8 @@ import org.objectweb.asm.Opcodes;
  * obtain probe arrays. This generator is designed for offline instrumentation
  * only.
  */
-public class OfflineInstrumentationAccessGenerator implements
-		IExecutionDataAccessorGenerator {
-
-	private final String runtimeClassName;
+public class OfflineInstrumentationAccessGenerator extends
+		StaticAccessorGenerator {
 
 	/**
 	 * Creates a new instance for offline instrumentation.
@@ -42,17 +37,7 @@ public class OfflineInstrumentationAccessGenerator implements
 	 *            VM name of the runtime class
 	 */
 	OfflineInstrumentationAccessGenerator(final String runtimeClassName) {
-		this.runtimeClassName = runtimeClassName;
-	}
-
-	public int generateDataAccessor(final long classid, final String classname,
-			final int probecount, final MethodVisitor mv) {
-		mv.visitLdcInsn(Long.valueOf(classid));
-		mv.visitLdcInsn(classname);
-		InstrSupport.push(mv, probecount);
-		mv.visitMethodInsn(Opcodes.INVOKESTATIC, runtimeClassName, "getProbes",
-				"(JLjava/lang/String;I)[Z", false);
-		return 4;
+		super(runtimeClassName);
 	}
 
 }
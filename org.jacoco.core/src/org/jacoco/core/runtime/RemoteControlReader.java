@@ -41,6 +41,9 @@ public class RemoteControlReader extends ExecutionDataReader {
 		case RemoteControlWriter.BLOCK_CMDDUMP:
 			readDumpCommand();
 			return true;
+		case RemoteControlWriter.BLOCK_CMDDUMPFILTERED:
+			readFilteredDumpCommand();
+			return true;
 		case RemoteControlWriter.BLOCK_CMDOK:
 			return false;
 		default:
@@ -67,4 +70,16 @@ public class RemoteControlReader extends ExecutionDataReader {
 		remoteCommandVisitor.visitDumpCommand(dump, reset);
 	}
 
+	private void readFilteredDumpCommand() throws IOException {
+		if (remoteCommandVisitor == null) {
+			throw new IOException("No remote command visitor.");
+		}
+		final boolean reset = in.readBoolean();
+		final String includes = in.readUTF();
+		final String excludes = in.readUTF();
+		final boolean classHits = in.readBoolean();
+		remoteCommandVisitor.visitFilteredDumpCommand(reset, includes,
+				excludes, classHits);
+	}
+
 }
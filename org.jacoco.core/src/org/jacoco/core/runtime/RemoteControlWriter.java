@@ -28,6 +28,9 @@ public class RemoteControlWriter extends ExecutionDataWriter implements
 	/** Block identifier for dump command */
 	public static final byte BLOCK_CMDDUMP = 0x40;
 
+	/** Block identifier for dump command with class filter */
+	public static final byte BLOCK_CMDDUMPFILTERED = 0x41;
+
 	/**
 	 * Creates a new writer based on the given output stream.
 	 * 
@@ -58,4 +61,14 @@ public class RemoteControlWriter extends ExecutionDataWriter implements
 		out.writeBoolean(reset);
 	}
 
+	public void visitFilteredDumpCommand(final boolean reset,
+			final String includes, final String excludes,
+			final boolean classHits) throws IOException {
+		out.writeByte(RemoteControlWriter.BLOCK_CMDDUMPFILTERED);
+		out.writeBoolean(reset);
+		out.writeUTF(includes);
+		out.writeUTF(excludes);
+		out.writeBoolean(classHits);
+	}
+
 }
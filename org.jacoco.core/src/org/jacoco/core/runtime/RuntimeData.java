@@ -11,8 +11,14 @@
  *******************************************************************************/
 package org.jacoco.core.runtime;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.jacoco.core.data.ConcurrentExecutionDataStore;
 import org.jacoco.core.data.ExecutionData;
-import org.jacoco.core.data.ExecutionDataStore;
 import org.jacoco.core.data.IExecutionDataVisitor;
 import org.jacoco.core.data.ISessionInfoVisitor;
 import org.jacoco.core.data.SessionInfo;
@@ -27,17 +33,41 @@ import org.objectweb.asm.Opcodes;
 public class RuntimeData {
 
 	/** store for execution data */
-	protected final ExecutionDataStore store;
+	protected final ConcurrentExecutionDataStore store;
+
+	/**
+	 * Additional probe arrays of striped classes, keyed by class id plus
+	 * stripe index. They are combined into the store on collect.
+	 */
+	private final ConcurrentExecutionDataStore stripes;
+
+	/** padding to avoid false sharing between adjacent stripes */
+	private static final int STRIPE_PADDING = 64;
 
 	private long startTimeStamp;
 
+	private int resetCount;
+
 	private String sessionId;
 
+	private String testName;
+
+	private long testStartTimeStamp;
+
+	/** dummy data returned to initialization hooks */
+	private static final ExecutionData HOOK_DATA = new ExecutionData(0,
+			"<hook>", 0);
+
+	private volatile IClassInitializationListener initializationListener;
+
+	private volatile IResetListener resetListener;
+
 	/**
 	 * Creates a new runtime.
 	 */
 	public RuntimeData() {
-		store = new ExecutionDataStore();
+		store = new ConcurrentExecutionDataStore();
+		stripes = new ConcurrentExecutionDataStore(16);
 		sessionId = "<none>";
 		startTimeStamp = System.currentTimeMillis();
 	}
@@ -56,6 +86,29 @@ public class RuntimeData {
 		sessionId = id;
 	}
 
+	/**
+	 * Sets the listener which is notified when a class which has been
+	 * instrumented with an initialization hook only is initialized.
+	 * 
+	 * @see org.jacoco.core.instr.Instrumenter#instrumentHook(byte[], String)
+	 * @param listener
+	 *            listener or <code>null</code> to ignore initialization hooks
+	 */
+	public void setInitializationListener(
+			final IClassInitializationListener listener) {
+		initializationListener = listener;
+	}
+
+	/**
+	 * Sets the listener which is notified whenever probes have been cleared.
+	 * 
+	 * @param listener
+	 *            listener or <code>null</code> to ignore resets
+	 */
+	public void setResetListener(final IResetListener listener) {
+		resetListener = listener;
+	}
+
 	/**
 	 * Get the current a session identifier for this runtime.
 	 * 
@@ -80,13 +133,177 @@ public class RuntimeData {
 	 */
 	public final void collect(final IExecutionDataVisitor executionDataVisitor,
 			final ISessionInfoVisitor sessionInfoVisitor, final boolean reset) {
+		collect(executionDataVisitor, sessionInfoVisitor, reset, null);
+	}
+
+	/**
+	 * Collects the current execution data and writes it to the given
+	 * {@link IExecutionDataVisitor} object. If a {@link DeltaTracker} is given
+	 * only classes with probes executed since the previous collect with the
+	 * same tracker are written.
+	 * 
+	 * The runtime data is only locked while a snapshot of all probe arrays is
+	 * taken. The visitors are called with the snapshot after the lock has been
+	 * released, therefore classes can be registered concurrently while the
+	 * data is written to slow outputs. If the data is reset every probe is
+	 * cleared right when it is copied to the snapshot, so no probe executed
+	 * during the collect is lost.
+	 * 
+	 * @param executionDataVisitor
+	 *            handler to write coverage data to
+	 * @param sessionInfoVisitor
+	 *            handler to write session information to
+	 * @param reset
+	 *            if <code>true</code> the current coverage information is also
+	 *            cleared
+	 * @param tracker
+	 *            tracker for the previously collected data or
+	 *            <code>null</code> to write all execution data
+	 */
+	public final void collect(final IExecutionDataVisitor executionDataVisitor,
+			final ISessionInfoVisitor sessionInfoVisitor, final boolean reset,
+			final DeltaTracker tracker) {
+		final SessionInfo info;
+		final Collection<ExecutionData> snapshot;
 		synchronized (store) {
-			final SessionInfo info = new SessionInfo(sessionId, startTimeStamp,
+			info = new SessionInfo(sessionId, startTimeStamp,
 					System.currentTimeMillis());
-			sessionInfoVisitor.visitSessionInfo(info);
-			store.accept(executionDataVisitor);
+			snapshot = snapshot(reset, false);
+			if (tracker != null) {
+				tracker.sync(resetCount);
+				for (final Iterator<ExecutionData> i = snapshot.iterator(); i
+						.hasNext();) {
+					if (!tracker.update(i.next())) {
+						i.remove();
+					}
+				}
+			}
 			if (reset) {
-				reset();
+				resetCount++;
+				startTimeStamp = System.currentTimeMillis();
+			}
+		}
+		if (reset) {
+			fireReset();
+		}
+		sessionInfoVisitor.visitSessionInfo(info);
+		for (final ExecutionData data : snapshot) {
+			executionDataVisitor.visitClassExecution(data);
+		}
+	}
+
+	/**
+	 * Starts capturing the execution data of the test with the given name.
+	 * Probes executed before the test starts are discarded. Instrumented
+	 * classes write their probes directly, therefore the probe arrays of all
+	 * registered classes are scanned. Only the arrays of executed classes are
+	 * copied and cleared.
+	 * 
+	 * @see #endTest(IExecutionDataVisitor, ISessionInfoVisitor)
+	 * @param name
+	 *            name of the test, used as session identifier of the captured
+	 *            data
+	 */
+	public final void beginTest(final String name) {
+		synchronized (store) {
+			snapshot(true, true);
+			resetCount++;
+			testName = name;
+			testStartTimeStamp = System.currentTimeMillis();
+		}
+		fireReset();
+	}
+
+	/**
+	 * Ends capturing the execution data of the current test and writes the
+	 * data of all classes executed by the test to the given visitors. The
+	 * session information carries the name of the test. Like
+	 * {@link #beginTest(String)} this scans the probe arrays of all registered
+	 * classes, but only the classes executed by the test are copied, cleared
+	 * and written, so the next test starts with a clean state.
+	 * 
+	 * @see #beginTest(String)
+	 * @param executionDataVisitor
+	 *            handler to write coverage data of the test to
+	 * @param sessionInfoVisitor
+	 *            handler to write session information of the test to
+	 * @throws IllegalStateException
+	 *             if no test has been started
+	 */
+	public final void endTest(final IExecutionDataVisitor executionDataVisitor,
+			final ISessionInfoVisitor sessionInfoVisitor)
+			throws IllegalStateException {
+		final SessionInfo info;
+		final Collection<ExecutionData> snapshot;
+		synchronized (store) {
+			if (testName == null) {
+				throw new IllegalStateException("No test started.");
+			}
+			info = new SessionInfo(testName, testStartTimeStamp,
+					System.currentTimeMillis());
+			snapshot = snapshot(true, true);
+			resetCount++;
+			testName = null;
+		}
+		fireReset();
+		sessionInfoVisitor.visitSessionInfo(info);
+		for (final ExecutionData data : snapshot) {
+			executionDataVisitor.visitClassExecution(data);
+		}
+	}
+
+	/**
+	 * Creates a copy of the execution data. Classes which have not been
+	 * executed are only scanned but not copied or cleared if only touched
+	 * classes are requested.
+	 */
+	private Collection<ExecutionData> snapshot(final boolean reset,
+			final boolean touchedOnly) {
+		final Map<Long, ExecutionData> snapshot = new LinkedHashMap<Long, ExecutionData>();
+		for (final ExecutionData data : store.getContents()) {
+			if (!touchedOnly || data.hasHits()) {
+				final ExecutionData copy = copy(data);
+				drain(data.getProbes(), copy.getProbes(), reset);
+				snapshot.put(Long.valueOf(data.getId()), copy);
+			}
+		}
+		for (final ExecutionData stripe : stripes.getContents()) {
+			if (touchedOnly && !stripe.hasHits()) {
+				continue;
+			}
+			final String name = stripe.getName();
+			final int separator = name.indexOf(InstrSupport.STRIPE_SEPARATOR);
+			final int index = Integer.parseInt(name.substring(separator + 1));
+			final Long id = Long.valueOf(stripe.getId() - index);
+			ExecutionData target = snapshot.get(id);
+			if (target == null) {
+				target = copy(store.get(id.longValue()));
+				snapshot.put(id, target);
+			}
+			drain(stripe.getProbes(), target.getProbes(), reset);
+		}
+		return new ArrayList<ExecutionData>(snapshot.values());
+	}
+
+	private static ExecutionData copy(final ExecutionData data) {
+		return new ExecutionData(data.getId(), data.getName(),
+				data.getProbeCount());
+	}
+
+	/**
+	 * Copies the executed probes of the source array to the target array. If
+	 * requested the copied probes are cleared in the source array. Only probes
+	 * which have been read as executed are cleared, so a concurrent execution
+	 * of a probe is either contained in the target or remains in the source.
+	 */
+	private static void drain(final boolean[] source, final boolean[] target,
+			final boolean reset) {
+		for (int i = 0; i < target.length; i++) {
+			if (source[i]) {
+				target[i] = true;
+				if (reset) {
+					source[i] = false;
+				}
 			}
 		}
 	}
@@ -97,14 +314,23 @@ public class RuntimeData {
 	public final void reset() {
 		synchronized (store) {
 			store.reset();
+			stripes.reset();
+			resetCount++;
 			startTimeStamp = System.currentTimeMillis();
 		}
+		fireReset();
+	}
+
+	private void fireReset() {
+		final IResetListener listener = resetListener;
+		if (listener != null) {
+			listener.executionDataReset();
+		}
 	}
 
 	/**
 	 * Returns the coverage data for the class with the given identifier. If
 	 * there is no data available under the given id a new entry is created.
-	 * This is a synchronized access to the underlying store.
 	 * 
 	 * @param id
 	 *            class identifier
@@ -113,12 +339,58 @@ public class RuntimeData {
 	 * @param probecount
 	 *            probe data length
 	 * @return execution data
+	 * @see #getExecutionData(long, String, int)
 	 */
 	public ExecutionData getExecutionData(final Long id, final String name,
 			final int probecount) {
-		synchronized (store) {
-			return store.get(id, name, probecount);
+		return getExecutionData(id.longValue(), name, probecount);
+	}
+
+	/**
+	 * Returns the coverage data for the class with the given identifier. If
+	 * there is no data available under the given id a new entry is created.
+	 * This method does not block, concurrent callers only contend if they
+	 * register a class at the same time.
+	 * 
+	 * If the name is qualified with a stripe index (see
+	 * {@link InstrSupport#getStripeName(String, int)}) the returned object
+	 * holds a separate probe array for this stripe. All stripes of a class are
+	 * combined into its regular execution data when the data is collected.
+	 * 
+	 * Requests with the probe count {@link InstrSupport#HOOK_PROBECOUNT} come
+	 * from initialization hooks. They are passed to the initialization
+	 * listener and a dummy object is returned which is not registered.
+	 * 
+	 * @param id
+	 *            class identifier
+	 * @param name
+	 *            VM name of the class
+	 * @param probecount
+	 *            probe data length
+	 * @return execution data
+	 */
+	public ExecutionData getExecutionData(final long id, final String name,
+			final int probecount) {
+		if (probecount == InstrSupport.HOOK_PROBECOUNT) {
+			final IClassInitializationListener listener = initializationListener;
+			if (listener != null) {
+				listener.classInitialized(id, name);
+			}
+			return HOOK_DATA;
 		}
+		final int separator = name.indexOf(InstrSupport.STRIPE_SEPARATOR);
+		if (separator != -1) {
+			return getStripe(id, name, separator, probecount);
+		}
+		return store.get(id, name, probecount);
+	}
+
+	private ExecutionData getStripe(final long id, final String name,
+			final int separator, final int probecount) {
+		// Register the class itself so that it is also reported without hits:
+		store.get(id, name.substring(0, separator), probecount);
+		final int stripe = Integer.parseInt(name.substring(separator + 1));
+		return stripes.get(id + stripe, name, probecount + STRIPE_PADDING);
 	}
 
 	/**
@@ -142,7 +414,7 @@ public class RuntimeData {
 	 *            parameter array of length 3
 	 */
 	public void getProbes(final Object[] args) {
-		final Long classid = (Long) args[0];
+		final long classid = ((Long) args[0]).longValue();
 		final String name = (String) args[1];
 		final int probecount = ((Integer) args[2]).intValue();
 		args[0] = getExecutionData(classid, name, probecount).getProbes();
@@ -0,0 +1,61 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.core.runtime;
+
+import org.jacoco.core.internal.instr.InstrSupport;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * This implementation of {@link IExecutionDataAccessorGenerator} passes the
+ * class id, the class name and the probe count as primitive values to a static
+ * accessor method. In contrast to the access through
+ * {@link Object#equals(Object)} the generated code does not allocate an
+ * argument array and does not box any values. The accessor class must be
+ * visible to all instrumented classes and has to provide a method with the
+ * following signature:
+ * 
+ * <pre>
+ * public static boolean[] getProbes(long classid, String classname, int probecount)
+ * </pre>
+ */
+public class StaticAccessorGenerator implements IExecutionDataAccessorGenerator {
+
+	/** Name of the static accessor method. */
+	public static final String ACCESSOR_NAME = "getProbes";
+
+	/** Descriptor of the static accessor method. */
+	public static final String ACCESSOR_DESC = "(JLjava/lang/String;I)[Z";
+
+	private final String accessorClassName;
+
+	/**
+	 * Creates a new generator for the given accessor class.
+	 * 
+	 * @param accessorClassName
+	 *            VM name of the class providing the static accessor method
+	 */
+	public StaticAccessorGenerator(final String accessorClassName) {
+		this.accessorClassName = accessorClassName;
+	}
+
+	public int generateDataAccessor(final long classid, final String classname,
+			final int probecount, final MethodVisitor mv) {
+		mv.visitLdcInsn(Long.valueOf(classid));
+		mv.visitLdcInsn(classname);
+		InstrSupport.push(mv, probecount);
+		mv.visitMethodInsn(Opcodes.INVOKESTATIC, accessorClassName,
+				ACCESSOR_NAME, ACCESSOR_DESC, false);
+		return 4;
+	}
+
+}
@@ -11,16 +11,39 @@
  *******************************************************************************/
 package org.jacoco.core.runtime;
 
-import java.util.regex.Pattern;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Matches strings against <code>?</code>/<code>*</code> wildcard expressions.
  * Multiple expressions can be separated with a colon (:). In this case the
  * expression matches if at least one part matches.
+ * 
+ * All expressions are compiled into a single trie. Strings are matched with a
+ * deterministic automaton over the trie nodes, which is built lazily and
+ * shared by all threads. Therefore every character of a string is processed
+ * only once, independent of the number of expressions. The number of cached
+ * automaton states is bounded, if the limit is exceeded further states are
+ * calculated on demand.
  */
 public class WildcardMatcher {
 
-	private final Pattern pattern;
+	private static final int MAX_STATES = 1024;
+
+	private static final int CACHED_CHARS = 128;
+
+	private final List<Node> nodes = new ArrayList<Node>();
+
+	private final ConcurrentHashMap<Key, State> states = new ConcurrentHashMap<Key, State>();
+
+	private final State start;
 
 	/**
 	 * Creates a new matcher with the given expression.
@@ -29,35 +52,126 @@ public class WildcardMatcher {
 	 *            wildcard expressions
 	 */
 	public WildcardMatcher(final String expression) {
+		this(split(expression));
+	}
+
+	/**
+	 * Creates a new matcher which matches if at least one of the given
+	 * expressions matches. The expressions themselves are not split at
+	 * colons.
+	 * 
+	 * @param expressions
+	 *            wildcard expressions
+	 */
+	public WildcardMatcher(final Collection<String> expressions) {
+		final Node root = newNode();
+		for (final String expression : expressions) {
+			add(root, expression);
+		}
+		final BitSet set = new BitSet();
+		closure(root, set);
+		start = intern(set);
+	}
+
+	private static Collection<String> split(final String expression) {
 		final String[] parts = expression.split("\\:");
-		final StringBuilder regex = new StringBuilder(expression.length() * 2);
-		boolean next = false;
-		for (final String part : parts) {
-			if (next) {
-				regex.append('|');
-			}
-			regex.append('(').append(toRegex(part)).append(')');
-			next = true;
+		if (parts.length == 0) {
+			return Collections.singleton("");
 		}
-		pattern = Pattern.compile(regex.toString());
+		return Arrays.asList(parts);
+	}
+
+	private Node newNode() {
+		final Node node = new Node(nodes.size());
+		nodes.add(node);
+		return node;
 	}
 
-	private static CharSequence toRegex(final String expression) {
-		final StringBuilder regex = new StringBuilder(expression.length() * 2);
+	private void add(final Node root, final String expression) {
+		Node node = root;
 		for (final char c : expression.toCharArray()) {
 			switch (c) {
 			case '?':
-				regex.append(".?");
+				if (node.any == null) {
+					node.any = newNode();
+				}
+				node = node.any;
 				break;
 			case '*':
-				regex.append(".*");
+				if (node.star == null) {
+					node.star = newNode();
+					node.star.loop = true;
+				}
+				node = node.star;
 				break;
 			default:
-				regex.append(Pattern.quote(String.valueOf(c)));
+				final Character key = Character.valueOf(c);
+				Node next = node.literals.get(key);
+				if (next == null) {
+					next = newNode();
+					node.literals.put(key, next);
+				}
+				node = next;
 				break;
 			}
 		}
-		return regex;
+		node.terminal = true;
+	}
+
+	/**
+	 * Adds the given node and all nodes reachable without consuming a
+	 * character: <code>*</code> and <code>?</code> may match the empty string.
+	 */
+	private static void closure(final Node node, final BitSet set) {
+		if (set.get(node.id)) {
+			return;
+		}
+		set.set(node.id);
+		if (node.star != null) {
+			closure(node.star, set);
+		}
+		if (node.any != null) {
+			closure(node.any, set);
+		}
+	}
+
+	private State step(final State state, final char c) {
+		final BitSet set = new BitSet();
+		for (final int id : state.nodes) {
+			final Node node = nodes.get(id);
+			final Node literal = node.literals.get(Character.valueOf(c));
+			if (literal != null) {
+				closure(literal, set);
+			}
+			if (node.any != null) {
+				closure(node.any, set);
+			}
+			if (node.loop) {
+				closure(node, set);
+			}
+		}
+		return intern(set);
+	}
+
+	private State intern(final BitSet set) {
+		final int[] ids = new int[set.cardinality()];
+		boolean accept = false;
+		for (int i = 0, id = set.nextSetBit(0); id >= 0; id = set
+				.nextSetBit(id + 1)) {
+			ids[i++] = id;
+			accept |= nodes.get(id).terminal;
+		}
+		final Key key = new Key(ids);
+		final State state = states.get(key);
+		if (state != null) {
+			return state;
+		}
+		if (states.size() >= MAX_STATES) {
+			return new State(ids, accept, false);
+		}
+		final State created = new State(ids, accept, true);
+		final State existing = states.putIfAbsent(key, created);
+		return existing == null ? created : existing;
 	}
 
 	/**
@@ -68,7 +182,83 @@ public class WildcardMatcher {
 	 * @return <code>true</code>, if the expression matches
 	 */
 	public boolean matches(final String s) {
-		return pattern.matcher(s).matches();
+		State state = start;
+		final int length = s.length();
+		for (int i = 0; i < length && state.nodes.length > 0; i++) {
+			final char c = s.charAt(i);
+			final State[] transitions = state.transitions;
+			if (transitions != null && c < CACHED_CHARS) {
+				State next = transitions[c];
+				if (next == null) {
+					next = step(state, c);
+					// Concurrent updates only result in duplicate work
+					transitions[c] = next;
+				}
+				state = next;
+			} else {
+				state = step(state, c);
+			}
+		}
+		return state.accept;
+	}
+
+	private static class Node {
+
+		final int id;
+
+		final Map<Character, Node> literals = new HashMap<Character, Node>();
+
+		Node any;
+
+		Node star;
+
+		boolean loop;
+
+		boolean terminal;
+
+		Node(final int id) {
+			this.id = id;
+		}
+
+	}
+
+	private static class State {
+
+		final int[] nodes;
+
+		final boolean accept;
+
+		final State[] transitions;
+
+		State(final int[] nodes, final boolean accept, final boolean cached) {
+			this.nodes = nodes;
+			this.accept = accept;
+			this.transitions = cached ? new State[CACHED_CHARS] : null;
+		}
+
+	}
+
+	private static class Key {
+
+		private final int[] ids;
+
+		private final int hash;
+
+		Key(final int[] ids) {
+			this.ids = ids;
+			this.hash = Arrays.hashCode(ids);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			return obj instanceof Key && Arrays.equals(ids, ((Key) obj).ids);
+		}
+
 	}
 
 }
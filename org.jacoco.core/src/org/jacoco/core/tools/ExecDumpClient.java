@@ -14,8 +14,21 @@ package org.jacoco.core.tools;
 import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.jacoco.core.data.IClassHitVisitor;
+import org.jacoco.core.data.IExecutionDataVisitor;
+import org.jacoco.core.data.ISessionInfoVisitor;
 import org.jacoco.core.runtime.RemoteControlReader;
 import org.jacoco.core.runtime.RemoteControlWriter;
 
@@ -28,17 +41,24 @@ public class ExecDumpClient {
 	private boolean reset;
 	private int retryCount;
 	private long retryDelay;
+	private String includes;
+	private String excludes;
+	private boolean classHits;
 
 	/**
 	 * New instance with the defaults <code>dump==true</code>,
-	 * <code>reset==false</code>, <code>retryCount==0</code> and
-	 * <code>retryDelay=1000</code>.
+	 * <code>reset==false</code>, <code>retryCount==0</code>,
+	 * <code>retryDelay=1000</code>, <code>includes="*"</code>,
+	 * <code>excludes=""</code> and <code>classHits==false</code>.
 	 */
 	public ExecDumpClient() {
 		this.dump = true;
 		this.reset = false;
 		this.retryCount = 0;
 		this.setRetryDelay(1000);
+		this.includes = "*";
+		this.excludes = "";
+		this.classHits = false;
 	}
 
 	/**
@@ -82,6 +102,42 @@ public class ExecDumpClient {
 		this.retryDelay = retryDelay;
 	}
 
+	/**
+	 * Sets the Java names of the classes to dump. Only the execution data of
+	 * matching classes is transferred. Agents older than this version do not
+	 * support filtered dumps.
+	 * 
+	 * @param includes
+	 *            class names, may use wildcard characters (* and ?) and list
+	 *            multiple patterns separated by colons
+	 */
+	public void setIncludes(final String includes) {
+		this.includes = includes;
+	}
+
+	/**
+	 * Sets the Java names of the classes which should not be dumped.
+	 * 
+	 * @param excludes
+	 *            class names, same syntax as for
+	 *            {@link #setIncludes(String)}
+	 */
+	public void setExcludes(final String excludes) {
+		this.excludes = excludes;
+	}
+
+	/**
+	 * Specifies whether only the executed classes should be dumped without
+	 * their probes. The executed classes are reported in
+	 * {@link ExecFileLoader#getClassHitStore()}.
+	 * 
+	 * @param classHits
+	 *            <code>true</code> if only executed classes should be dumped
+	 */
+	public void setClassHits(final boolean classHits) {
+		this.classHits = classHits;
+	}
+
 	/**
 	 * Requests a dump from the given end-point.
 	 * 
@@ -112,23 +168,212 @@ public class ExecDumpClient {
 	public ExecFileLoader dump(final InetAddress address, final int port)
 			throws IOException {
 		final ExecFileLoader loader = new ExecFileLoader();
+		dump(address, port, loader.getSessionInfoStore(),
+				loader.getExecutionDataStore(), loader.getClassHitStore());
+		return loader;
+	}
+
+	/**
+	 * Requests dumps from all given end-points concurrently, therefore the
+	 * total time is determined by the slowest end-point. The data of every
+	 * end-point is merged into a single container once its dump has been
+	 * completed successfully. Every end-point is connected with the configured
+	 * retries. A failing end-point does not abort the dumps of the other
+	 * end-points, instead
+	 * {@link #onDumpFailure(InetSocketAddress, IOException)} is called for it
+	 * and the data received from it so far is discarded.
+	 * Note that all callback methods are called from multiple threads
+	 * concurrently.
+	 * 
+	 * @param targets
+	 *            end-points to request dumps from, unresolved addresses are
+	 *            resolved concurrently
+	 * @param threads
+	 *            maximum number of concurrent connections
+	 * @return container for the merged data of all successful dumps
+	 * @throws IOException
+	 *             if the calling thread is interrupted
+	 */
+	public ExecFileLoader dump(final Collection<InetSocketAddress> targets,
+			final int threads) throws IOException {
+		if (threads < 1) {
+			throw new IllegalArgumentException("Invalid number of threads "
+					+ threads);
+		}
+		final ExecFileLoader loader = new ExecFileLoader();
+		final int count = Math.min(threads, targets.size());
+		if (count == 0) {
+			return loader;
+		}
+		final ExecutorService executor = Executors.newFixedThreadPool(count,
+				new WorkerThreadFactory());
+		try {
+			final List<Future<?>> results = new ArrayList<Future<?>>();
+			for (final InetSocketAddress target : targets) {
+				results.add(executor.submit(new Runnable() {
+					public void run() {
+						final ExecFileLoader data;
+						try {
+							data = dump(resolve(target), target.getPort());
+						} catch (final IOException e) {
+							onDumpFailure(target, e);
+							return;
+						}
+						merge(data, loader);
+					}
+				}));
+			}
+			for (final Future<?> future : results) {
+				getResult(future);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		return loader;
+	}
+
+	/**
+	 * Parses a list of end-points separated by commas or whitespace. Every
+	 * end-point has the form <code>host[:port]</code>, IPv6 addresses with a
+	 * port have to be enclosed in brackets. The returned addresses are not
+	 * resolved yet.
+	 * 
+	 * @param targets
+	 *            list of end-points
+	 * @param defaultPort
+	 *            port for end-points without explicit port
+	 * @return unresolved addresses of all end-points
+	 * @throws IllegalArgumentException
+	 *             if a port is not a valid number
+	 */
+	public static List<InetSocketAddress> parseTargets(final String targets,
+			final int defaultPort) throws IllegalArgumentException {
+		final List<InetSocketAddress> result = new ArrayList<InetSocketAddress>();
+		for (final String target : targets.split("[,\\s]+")) {
+			if (target.length() > 0) {
+				result.add(parseTarget(target, defaultPort));
+			}
+		}
+		return result;
+	}
+
+	private static InetSocketAddress parseTarget(final String target,
+			final int defaultPort) {
+		String host = target;
+		String port = null;
+		if (target.startsWith("[")) {
+			final int end = target.indexOf(']');
+			if (end == -1) {
+				throw new IllegalArgumentException("Invalid target " + target);
+			}
+			host = target.substring(1, end);
+			if (end + 1 < target.length()) {
+				if (target.charAt(end + 1) != ':') {
+					throw new IllegalArgumentException("Invalid target "
+							+ target);
+				}
+				port = target.substring(end + 2);
+			}
+		} else {
+			final int colon = target.indexOf(':');
+			// More than one colon is an IPv6 address without port
+			if (colon != -1 && colon == target.lastIndexOf(':')) {
+				host = target.substring(0, colon);
+				port = target.substring(colon + 1);
+			}
+		}
+		if (port == null) {
+			return InetSocketAddress.createUnresolved(host, defaultPort);
+		}
+		try {
+			return InetSocketAddress.createUnresolved(host,
+					Integer.parseInt(port));
+		} catch (final IllegalArgumentException e) {
+			// also covers NumberFormatException
+			throw new IllegalArgumentException("Invalid target " + target);
+		}
+	}
+
+	private void dump(final InetAddress address, final int port,
+			final ISessionInfoVisitor sessionInfoVisitor,
+			final IExecutionDataVisitor executionDataVisitor,
+			final IClassHitVisitor classHitVisitor) throws IOException {
 		final Socket socket = tryConnect(address, port);
 		try {
 			final RemoteControlWriter remoteWriter = new RemoteControlWriter(
 					socket.getOutputStream());
 			final RemoteControlReader remoteReader = new RemoteControlReader(
 					socket.getInputStream());
-			remoteReader.setSessionInfoVisitor(loader.getSessionInfoStore());
-			remoteReader
-					.setExecutionDataVisitor(loader.getExecutionDataStore());
+			remoteReader.setSessionInfoVisitor(sessionInfoVisitor);
+			remoteReader.setExecutionDataVisitor(executionDataVisitor);
+			remoteReader.setClassHitVisitor(classHitVisitor);
 
-			remoteWriter.visitDumpCommand(dump, reset);
-			remoteReader.read();
+			if (dump && isFiltered()) {
+				filteredDump(remoteWriter, remoteReader);
+			} else {
+				remoteWriter.visitDumpCommand(dump, reset);
+				remoteReader.read();
+			}
 
 		} finally {
 			socket.close();
 		}
-		return loader;
+	}
+
+	private void filteredDump(final RemoteControlWriter remoteWriter,
+			final RemoteControlReader remoteReader) throws IOException {
+		// Older agents reject the command and close the connection
+		IOException cause = null;
+		try {
+			remoteWriter.visitFilteredDumpCommand(reset, includes, excludes,
+					classHits);
+			if (remoteReader.read()) {
+				return;
+			}
+		} catch (final IOException e) {
+			cause = e;
+		}
+		final IOException ex = new IOException(
+				"Filtered dump failed, the agent might not support filtered dumps.");
+		ex.initCause(cause);
+		throw ex;
+	}
+
+	private boolean isFiltered() {
+		return classHits || !"*".equals(includes) || excludes.length() > 0;
+	}
+
+	private static InetAddress resolve(final InetSocketAddress target)
+			throws IOException {
+		if (target.isUnresolved()) {
+			return InetAddress.getByName(target.getHostName());
+		}
+		return target.getAddress();
+	}
+
+	private static void merge(final ExecFileLoader source,
+			final ExecFileLoader target) {
+		synchronized (target) {
+			source.getSessionInfoStore().accept(target.getSessionInfoStore());
+			source.getExecutionDataStore().accept(
+					target.getExecutionDataStore());
+			source.getClassHitStore().accept(target.getClassHitStore());
+		}
+	}
+
+	private static void getResult(final Future<?> future) throws IOException {
+		try {
+			future.get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		} catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw (Error) cause;
+		}
 	}
 
 	private Socket tryConnect(final InetAddress address, final int port)
@@ -181,4 +426,36 @@ public class ExecDumpClient {
 			@SuppressWarnings("unused") final IOException exception) {
 	}
 
+	/**
+	 * This method can be overwritten to get an event if a dump from one of
+	 * multiple end-points fails.
+	 * 
+	 * @param target
+	 *            end-point which could not be dumped
+	 * @param exception
+	 *            reason of the failure
+	 * @see #dump(Collection, int)
+	 */
+	protected void onDumpFailure(
+			@SuppressWarnings("unused") final InetSocketAddress target,
+			@SuppressWarnings("unused") final IOException exception) {
+	}
+
+	/**
+	 * Visitor which merges data received from multiple connections into a
+	 * single container.
+	 */
+	private static class WorkerThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger counter = new AtomicInteger();
+
+		public Thread newThread(final Runnable r) {
+			final Thread thread = new Thread(r, "jacoco-dump-"
+					+ counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+
+	}
+
 }
@@ -20,6 +20,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 
+import org.jacoco.core.data.ClassHitStore;
 import org.jacoco.core.data.ExecutionDataReader;
 import org.jacoco.core.data.ExecutionDataStore;
 import org.jacoco.core.data.ExecutionDataWriter;
@@ -33,6 +34,7 @@ public class ExecFileLoader {
 
 	private final SessionInfoStore sessionInfos;
 	private final ExecutionDataStore executionData;
+	private final ClassHitStore classHits;
 
 	/**
 	 * New instance to combine session infos and execution data from multiple
@@ -41,6 +43,7 @@ public class ExecFileLoader {
 	public ExecFileLoader() {
 		sessionInfos = new SessionInfoStore();
 		executionData = new ExecutionDataStore();
+		classHits = new ClassHitStore();
 	}
 
 	/**
@@ -56,6 +59,7 @@ public class ExecFileLoader {
 				new BufferedInputStream(stream));
 		reader.setExecutionDataVisitor(executionData);
 		reader.setSessionInfoVisitor(sessionInfos);
+		reader.setClassHitVisitor(classHits);
 		reader.read();
 	}
 
@@ -88,6 +92,7 @@ public class ExecFileLoader {
 		final ExecutionDataWriter dataWriter = new ExecutionDataWriter(stream);
 		sessionInfos.accept(dataWriter);
 		executionData.accept(dataWriter);
+		classHits.accept(dataWriter);
 	}
 
 	/**
@@ -137,4 +142,14 @@ public class ExecFileLoader {
 		return executionData;
 	}
 
+	/**
+	 * Returns the store of executed classes which have been loaded without
+	 * probes, e.g. from a dump which only requested class hits.
+	 * 
+	 * @return class hit store
+	 */
+	public ClassHitStore getClassHitStore() {
+		return classHits;
+	}
+
 }
@@ -0,0 +1,554 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.core.tools;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataReader;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.IExecutionDataVisitor;
+import org.jacoco.core.data.SessionInfoStore;
+
+/**
+ * Merges a large number of *.exec files with bounded memory. In contrast to
+ * {@link ExecFileLoader} the execution data is never loaded completely into
+ * memory: The input files are split into partitions which are processed by
+ * separate threads. Every partition is sorted by class id into temporary run
+ * files containing at most {@link #setRunSize(int)} classes each, which are
+ * merged again into a single sorted run per partition. Finally the runs of
+ * all partitions are merged and written to the output. Probes of the same
+ * class are combined on the fly, therefore the memory consumption of the merge
+ * phases only depends on the number of runs, not the number of classes.
+ * 
+ * The execution data in the output file is sorted by class id. An instance of
+ * this class is not thread safe.
+ */
+public class ExecFileMerger {
+
+	/**
+	 * Default maximum number of classes kept in memory per partition.
+	 */
+	public static final int DEFAULT_RUN_SIZE = 10000;
+
+	private final int threads;
+
+	private final List<File> files = new ArrayList<File>();
+
+	private int runSize = DEFAULT_RUN_SIZE;
+
+	private File tempDirectory;
+
+	private boolean writeEmpty = true;
+
+	/**
+	 * Creates a new merger which uses the given number of threads.
+	 * 
+	 * @param threads
+	 *            number of worker threads
+	 */
+	public ExecFileMerger(final int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException(String.format(
+					"Invalid number of threads %s.", Integer.valueOf(threads)));
+		}
+		this.threads = threads;
+	}
+
+	/**
+	 * Sets the maximum number of classes kept in memory per partition before
+	 * they are written to a temporary run file.
+	 * 
+	 * @param runSize
+	 *            maximum number of classes per run
+	 */
+	public void setRunSize(final int runSize) {
+		if (runSize < 1) {
+			throw new IllegalArgumentException(String.format(
+					"Invalid run size %s.", Integer.valueOf(runSize)));
+		}
+		this.runSize = runSize;
+	}
+
+	/**
+	 * Sets the directory for temporary run files.
+	 * 
+	 * @param tempDirectory
+	 *            directory for temporary files or <code>null</code> for the
+	 *            default temporary directory
+	 */
+	public void setTempDirectory(final File tempDirectory) {
+		this.tempDirectory = tempDirectory;
+	}
+
+	/**
+	 * Determines whether {@link #merge(File)} writes the destination file if
+	 * the input files do not contain any execution data, i.e. only session
+	 * infos. Default is <code>true</code>.
+	 * 
+	 * @param flag
+	 *            <code>false</code> if the destination file should not be
+	 *            written without execution data
+	 */
+	public void setWriteEmpty(final boolean flag) {
+		this.writeEmpty = flag;
+	}
+
+	/**
+	 * Adds an exec file to the list of files to merge.
+	 * 
+	 * @param file
+	 *            exec file to merge
+	 */
+	public void add(final File file) {
+		files.add(file);
+	}
+
+	/**
+	 * Merges all added files into the given file. Parent directories are
+	 * created if required. Note that the file is written only after all input
+	 * files have been read, therefore it may also be one of the input files.
+	 * The file is not touched if the input files contain no execution data
+	 * and {@link #setWriteEmpty(boolean)} has been set to <code>false</code>.
+	 * 
+	 * @param destfile
+	 *            file to write the merged data to
+	 * @return number of classes written
+	 * @throws IOException
+	 *             if an input file can't be read or the output can't be
+	 *             written, the message contains the affected file
+	 */
+	public int merge(final File destfile) throws IOException {
+		final List<Partition> partitions = sort();
+		try {
+			if (!writeEmpty && isEmpty(partitions)) {
+				return 0;
+			}
+			final File folder = destfile.getAbsoluteFile().getParentFile();
+			if (folder != null) {
+				folder.mkdirs();
+			}
+			final OutputStream out = new BufferedOutputStream(
+					new FileOutputStream(destfile));
+			try {
+				return write(partitions, out);
+			} finally {
+				out.close();
+			}
+		} catch (final IOException e) {
+			final IOException ex = new IOException(String.format(
+					"Unable to write merged file %s.", destfile.getPath()));
+			ex.initCause(e);
+			throw ex;
+		} finally {
+			delete(partitions);
+		}
+	}
+
+	/**
+	 * Merges all added files and writes the result to the given stream.
+	 * 
+	 * @param output
+	 *            stream to write the merged data to
+	 * @return number of classes written
+	 * @throws IOException
+	 *             if an input file can't be read, the message contains the
+	 *             affected file, or the output can't be written
+	 */
+	public int merge(final OutputStream output) throws IOException {
+		final List<Partition> partitions = sort();
+		try {
+			return write(partitions, output);
+		} finally {
+			delete(partitions);
+		}
+	}
+
+	private List<Partition> sort() throws IOException {
+		final int count = Math.min(threads, files.size());
+		final List<Partition> partitions = new ArrayList<Partition>();
+		if (count == 0) {
+			return partitions;
+		}
+		final ExecutorService executor = Executors.newFixedThreadPool(count,
+				new WorkerThreadFactory());
+		boolean success = false;
+		try {
+			final List<Future<Void>> results = new ArrayList<Future<Void>>();
+			for (int i = 0; i < count; i++) {
+				final Partition partition = new Partition(files.subList(
+						i * files.size() / count, (i + 1) * files.size()
+								/ count));
+				partitions.add(partition);
+				results.add(executor.submit(partition));
+			}
+			for (final Future<Void> future : results) {
+				getResult(future);
+			}
+			success = true;
+			return partitions;
+		} finally {
+			shutdown(executor);
+			if (!success) {
+				delete(partitions);
+			}
+		}
+	}
+
+	private static int write(final List<Partition> partitions,
+			final OutputStream output) throws IOException {
+		final ExecutionDataWriter writer = new ExecutionDataWriter(output);
+		final SessionInfoStore sessionInfos = new SessionInfoStore();
+		final List<File> runs = new ArrayList<File>();
+		for (final Partition partition : partitions) {
+			partition.sessionInfos.accept(sessionInfos);
+			runs.addAll(partition.runs);
+		}
+		sessionInfos.accept(writer);
+		final int count = mergeRuns(runs, writer);
+		writer.flush();
+		return count;
+	}
+
+	private static boolean isEmpty(final List<Partition> partitions) {
+		for (final Partition partition : partitions) {
+			if (!partition.runs.isEmpty()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static void delete(final List<Partition> partitions) {
+		for (final Partition partition : partitions) {
+			for (final File run : partition.runs) {
+				run.delete();
+			}
+		}
+	}
+
+	private static void shutdown(final ExecutorService executor) {
+		executor.shutdownNow();
+		try {
+			// Running tasks must not create run files after the cleanup
+			while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+				// keep waiting
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void getResult(final Future<Void> future)
+			throws IOException {
+		try {
+			future.get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		} catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			final IOException ex = new IOException(cause.getMessage());
+			ex.initCause(cause);
+			throw ex;
+		}
+	}
+
+	/**
+	 * Merges the given sorted run files. Only the current execution data
+	 * object of every run is kept in memory.
+	 * 
+	 * @return number of classes written to the visitor
+	 */
+	private static int mergeRuns(final List<File> runs,
+			final IExecutionDataVisitor visitor) throws IOException {
+		final PriorityQueue<RunReader> queue = new PriorityQueue<RunReader>(
+				Math.max(1, runs.size()), new Comparator<RunReader>() {
+					public int compare(final RunReader r1, final RunReader r2) {
+						final long id1 = r1.current.getId();
+						final long id2 = r2.current.getId();
+						return id1 < id2 ? -1 : (id1 == id2 ? 0 : 1);
+					}
+				});
+		try {
+			for (final File run : runs) {
+				advance(new RunReader(run), queue);
+			}
+			int count = 0;
+			while (!queue.isEmpty()) {
+				final RunReader reader = queue.poll();
+				final ExecutionData data = reader.current;
+				advance(reader, queue);
+				while (!queue.isEmpty()
+						&& queue.peek().current.getId() == data.getId()) {
+					final RunReader other = queue.poll();
+					data.merge(other.current);
+					advance(other, queue);
+				}
+				visitor.visitClassExecution(data);
+				count++;
+			}
+			return count;
+		} finally {
+			for (final RunReader reader : queue) {
+				reader.close();
+			}
+		}
+	}
+
+	private static void advance(final RunReader reader,
+			final PriorityQueue<RunReader> queue) throws IOException {
+		boolean success = false;
+		try {
+			if (reader.next()) {
+				queue.add(reader);
+				success = true;
+			}
+		} finally {
+			if (!success) {
+				reader.close();
+			}
+		}
+	}
+
+	/**
+	 * Files processed by a single thread.
+	 */
+	private class Partition implements Callable<Void> {
+
+		private final List<File> inputs;
+
+		final SessionInfoStore sessionInfos = new SessionInfoStore();
+
+		final List<File> runs = new ArrayList<File>();
+
+		private final Map<Long, ExecutionData> buffer = new HashMap<Long, ExecutionData>();
+
+		Partition(final List<File> inputs) {
+			this.inputs = inputs;
+		}
+
+		public Void call() throws IOException {
+			final List<File> sortedRuns = new ArrayList<File>();
+			for (final File file : inputs) {
+				read(file, sortedRuns);
+			}
+			if (!buffer.isEmpty()) {
+				sortedRuns.add(spill());
+			}
+			if (sortedRuns.size() > 1) {
+				// Combine to a single run to keep the final merge small
+				final File run = newRun();
+				final OutputStream out = new BufferedOutputStream(
+						new FileOutputStream(run));
+				try {
+					final ExecutionDataWriter writer = new ExecutionDataWriter(
+							out);
+					mergeRuns(sortedRuns, writer);
+				} finally {
+					out.close();
+				}
+				for (final File sortedRun : sortedRuns) {
+					sortedRun.delete();
+					runs.remove(sortedRun);
+				}
+			}
+			return null;
+		}
+
+		private void read(final File file, final List<File> sortedRuns)
+				throws IOException {
+			try {
+				readFile(file, sortedRuns);
+			} catch (final IOException e) {
+				final IOException ex = new IOException(String.format(
+						"Unable to read %s.", file.getPath()));
+				ex.initCause(e);
+				throw ex;
+			}
+		}
+
+		private void readFile(final File file, final List<File> sortedRuns)
+				throws IOException {
+			final InputStream in = new BufferedInputStream(
+					new FileInputStream(file));
+			try {
+				final ExecutionDataReader reader = new ExecutionDataReader(in);
+				reader.setSessionInfoVisitor(sessionInfos);
+				reader.setExecutionDataVisitor(new IExecutionDataVisitor() {
+					public void visitClassExecution(final ExecutionData data) {
+						final Long id = Long.valueOf(data.getId());
+						final ExecutionData entry = buffer.get(id);
+						if (entry != null) {
+							entry.merge(data);
+						} else if (buffer.size() < runSize) {
+							buffer.put(id, data);
+						} else {
+							try {
+								sortedRuns.add(spill());
+								buffer.put(id, data);
+							} catch (final IOException e) {
+								throw new SpillException(e);
+							}
+						}
+					}
+				});
+				reader.read();
+			} catch (final SpillException e) {
+				throw e.getCause();
+			} finally {
+				in.close();
+			}
+		}
+
+		private File spill() throws IOException {
+			final List<ExecutionData> contents = new ArrayList<ExecutionData>(
+					buffer.values());
+			Collections.sort(contents, new Comparator<ExecutionData>() {
+				public int compare(final ExecutionData d1,
+						final ExecutionData d2) {
+					final long id1 = d1.getId();
+					final long id2 = d2.getId();
+					return id1 < id2 ? -1 : (id1 == id2 ? 0 : 1);
+				}
+			});
+			buffer.clear();
+			final File run = newRun();
+			final OutputStream out = new BufferedOutputStream(
+					new FileOutputStream(run));
+			try {
+				final ExecutionDataWriter writer = new ExecutionDataWriter(out);
+				for (final ExecutionData data : contents) {
+					writer.visitClassExecution(data);
+				}
+			} finally {
+				out.close();
+			}
+			return run;
+		}
+
+		private File newRun() throws IOException {
+			final File run = File.createTempFile("jacoco-merge", ".exec",
+					tempDirectory);
+			runs.add(run);
+			return run;
+		}
+
+	}
+
+	/**
+	 * Reads the execution data of a run file one by one.
+	 */
+	private static class RunReader extends ExecutionDataReader implements
+			IExecutionDataVisitor {
+
+		private final InputStream in;
+
+		ExecutionData current;
+
+		RunReader(final File run) throws IOException {
+			this(new BufferedInputStream(new FileInputStream(run)));
+		}
+
+		private RunReader(final InputStream in) {
+			super(in);
+			this.in = in;
+			setExecutionDataVisitor(this);
+		}
+
+		boolean next() throws IOException {
+			current = null;
+			read();
+			return current != null;
+		}
+
+		@Override
+		protected boolean readBlock(final byte blocktype) throws IOException {
+			super.readBlock(blocktype);
+			// Return after every execution data block
+			return blocktype != ExecutionDataWriter.BLOCK_EXECUTIONDATA;
+		}
+
+		public void visitClassExecution(final ExecutionData data) {
+			current = data;
+		}
+
+		void close() throws IOException {
+			in.close();
+		}
+
+	}
+
+	/**
+	 * Passes an {@link IOException} through the visitor interface.
+	 */
+	private static class SpillException extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		SpillException(final IOException cause) {
+			super(cause);
+		}
+
+		@Override
+		public IOException getCause() {
+			return (IOException) super.getCause();
+		}
+
+	}
+
+	private static class WorkerThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger counter = new AtomicInteger();
+
+		public Thread newThread(final Runnable r) {
+			final Thread thread = new Thread(r, "jacoco-merger-"
+					+ counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+
+	}
+
+}
@@ -0,0 +1,706 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.core.tools;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.InflaterInputStream;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataReader;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.IClassHitVisitor;
+import org.jacoco.core.data.IExecutionDataProvider;
+import org.jacoco.core.data.IExecutionDataVisitor;
+import org.jacoco.core.data.ISessionInfoVisitor;
+import org.jacoco.core.data.IncompatibleExecDataVersionException;
+import org.jacoco.core.data.MappedExecutionDataWriter;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.internal.data.CompactDataInput;
+
+/**
+ * Random access to the execution data of a *.exec file. The file is mapped
+ * into memory and an index from class ids to the positions of the
+ * corresponding execution data blocks is created. Execution data is only read
+ * when it is requested for a particular class, which makes this class suitable
+ * for analyzing a small subset of the classes contained in large exec files.
+ * Instances can be passed directly to an
+ * {@link org.jacoco.core.analysis.Analyzer}.
+ * 
+ * Besides regular blocks the contents of files written by
+ * {@link org.jacoco.core.data.MappedExecutionDataWriter} are indexed, every
+ * class entry of the mapped block can be read directly. Entries of
+ * {@link ExecutionDataWriter#BLOCK_DEFLATED} blocks are indexed by their
+ * position within the block. Such blocks are inflated again when their
+ * entries are read, the most recently used blocks are kept in memory. Class
+ * hits without probes are ignored.
+ * 
+ * The index is stored in a file next to the exec file with the suffix
+ * {@link #INDEX_SUFFIX} and reused as long as the exec file has not been
+ * modified. If the index file can't be written the index is kept in memory
+ * only. Instances of this class can be used by multiple threads concurrently.
+ * 
+ * Instances should be closed with {@link #close()} when they are not needed
+ * any more. The mapped memory is released by the VM once it has been garbage
+ * collected, until then some platforms like Windows do not allow to modify or
+ * delete the exec file.
+ */
+public class IndexedExecFile implements IExecutionDataProvider, Closeable {
+
+	/**
+	 * Suffix appended to the name of the exec file for its index file.
+	 */
+	public static final String INDEX_SUFFIX = ".idx";
+
+	private static final int INDEX_MAGIC = 0x4A434958;
+
+	private static final int INDEX_VERSION = 2;
+
+	/** Entry kind for regular session info and execution data blocks */
+	private static final int ENTRY_PLAIN = -1;
+
+	/** Entry kind for the session and the classes of a mapped block */
+	private static final int ENTRY_MAPPED = -2;
+
+	/** Number of inflated blocks kept in memory */
+	private static final int DEFLATED_CACHE_SIZE = 16;
+
+	private static final int SEGMENT_BITS = 30;
+
+	private static final long SEGMENT_MASK = (1L << SEGMENT_BITS) - 1;
+
+	private final long length;
+
+	private volatile ByteBuffer[] segments;
+
+	private long[] sessionOffsets;
+
+	private int[] sessionEntries;
+
+	private long[] classIds;
+
+	private long[] classOffsets;
+
+	private int[] classEntries;
+
+	private Set<String> names;
+
+	private final Map<Long, DeflatedBlock> deflatedCache = new LinkedHashMap<Long, DeflatedBlock>(
+			DEFLATED_CACHE_SIZE, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(
+				final Map.Entry<Long, DeflatedBlock> eldest) {
+			return size() > DEFLATED_CACHE_SIZE;
+		}
+	};
+
+	/**
+	 * Opens the given exec file. An existing index file is used if it is up
+	 * to date, otherwise the index is created and written.
+	 * 
+	 * @param file
+	 *            exec file to open
+	 * @throws IOException
+	 *             if the file can't be read or has an invalid format
+	 */
+	public IndexedExecFile(final File file) throws IOException {
+		final RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			length = raf.length();
+			segments = map(raf.getChannel(), length);
+		} finally {
+			raf.close();
+		}
+		final File indexFile = new File(file.getPath() + INDEX_SUFFIX);
+		final long lastModified = file.lastModified();
+		if (!readIndex(indexFile, lastModified)) {
+			createIndex();
+			writeIndex(indexFile, lastModified);
+		}
+	}
+
+	private static ByteBuffer[] map(final FileChannel channel,
+			final long length) throws IOException {
+		final int count = (int) ((length + SEGMENT_MASK) >>> SEGMENT_BITS);
+		final ByteBuffer[] segments = new ByteBuffer[count];
+		for (int i = 0; i < count; i++) {
+			final long start = (long) i << SEGMENT_BITS;
+			segments[i] = channel.map(MapMode.READ_ONLY, start,
+					Math.min(SEGMENT_MASK + 1, length - start));
+		}
+		return segments;
+	}
+
+	/**
+	 * Returns the execution data for the class with the given id. If the file
+	 * contains multiple blocks for this class their probes are merged. Every
+	 * call reads the data from the file and returns a new instance.
+	 * 
+	 * @param id
+	 *            class id
+	 * @return execution data or <code>null</code>
+	 * @throws IllegalStateException
+	 *             if the blocks for this id are not compatible
+	 */
+	public ExecutionData get(final long id) {
+		int i = Arrays.binarySearch(classIds, id);
+		if (i < 0) {
+			return null;
+		}
+		while (i > 0 && classIds[i - 1] == id) {
+			i--;
+		}
+		try {
+			final ExecutionData data = readExecutionData(i);
+			while (++i < classIds.length && classIds[i] == id) {
+				data.merge(readExecutionData(i));
+			}
+			return data;
+		} catch (final IOException e) {
+			// The file content has already been validated while indexing
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public boolean contains(final String name) {
+		return getNames().contains(name);
+	}
+
+	/**
+	 * Releases the mapped file content and the cached blocks. Afterwards no
+	 * more data can be read from this instance.
+	 */
+	public void close() {
+		segments = null;
+		synchronized (deflatedCache) {
+			deflatedCache.clear();
+		}
+	}
+
+	/**
+	 * Returns the number of execution data blocks in the file.
+	 * 
+	 * @return number of execution data blocks
+	 */
+	public int getBlockCount() {
+		return classIds.length;
+	}
+
+	/**
+	 * Reads all session infos contained in the file.
+	 * 
+	 * @return session infos in the order of the file
+	 * @throws IOException
+	 *             if the file can't be read
+	 */
+	public List<SessionInfo> getSessionInfos() throws IOException {
+		final List<SessionInfo> infos = new ArrayList<SessionInfo>(
+				sessionOffsets.length);
+		for (int i = 0; i < sessionOffsets.length; i++) {
+			infos.add(readSessionInfo(i));
+		}
+		return infos;
+	}
+
+	private SessionInfo readSessionInfo(final int index) throws IOException {
+		if (sessionEntries[index] >= 0) {
+			return readDeflated(sessionOffsets[index]).sessions
+					.get(sessionEntries[index]);
+		}
+		final CompactDataInput in = new CompactDataInput(new MappedInputStream(
+				sessionOffsets[index]));
+		if (sessionEntries[index] == ENTRY_MAPPED) {
+			// Skip block length and length of all entries
+			in.readLong();
+			final long start = in.readLong();
+			final long dump = in.readLong();
+			return new SessionInfo(in.readUTF(), start, dump);
+		}
+		final String id = in.readUTF();
+		final long start = in.readLong();
+		final long dump = in.readLong();
+		return new SessionInfo(id, start, dump);
+	}
+
+	private synchronized Set<String> getNames() {
+		if (names == null) {
+			final Set<String> set = new HashSet<String>();
+			final Set<Long> deflated = new HashSet<Long>();
+			try {
+				for (int i = 0; i < classOffsets.length; i++) {
+					if (classEntries[i] >= 0) {
+						deflated.add(Long.valueOf(classOffsets[i]));
+						continue;
+					}
+					final CompactDataInput in = new CompactDataInput(
+							new MappedInputStream(classOffsets[i] + 8));
+					set.add(in.readUTF());
+				}
+				for (final Long offset : deflated) {
+					for (final ExecutionData data : readDeflated(offset
+							.longValue()).classes) {
+						set.add(data.getName());
+					}
+				}
+			} catch (final IOException e) {
+				throw new IllegalStateException(e);
+			}
+			names = set;
+		}
+		return names;
+	}
+
+	private ExecutionData readExecutionData(final int index)
+			throws IOException {
+		if (classEntries[index] >= 0) {
+			final ExecutionData data = readDeflated(classOffsets[index]).classes
+					.get(classEntries[index]);
+			// Return a copy as the caller may merge other blocks into it
+			return new ExecutionData(data.getId(), data.getName(), data
+					.getProbes().clone());
+		}
+		final CompactDataInput in = new CompactDataInput(new MappedInputStream(
+				classOffsets[index]));
+		final long id = in.readLong();
+		final String name = in.readUTF();
+		if (classEntries[index] == ENTRY_MAPPED) {
+			final int probeCount = in.readInt();
+			final long[] bits = new long[(probeCount + 63) >>> 6];
+			for (int i = 0; i < bits.length; i++) {
+				bits[i] = in.readLong();
+			}
+			return new ExecutionData(id, name, bits, probeCount);
+		}
+		final int probeCount = in.readVarInt();
+		return new ExecutionData(id, name, in.readBitArray(probeCount),
+				probeCount);
+	}
+
+	// === Index ===
+
+	private void createIndex() throws IOException {
+		final MappedInputStream stream = new MappedInputStream(0);
+		final CompactDataInput in = new CompactDataInput(stream);
+		final Index index = new Index();
+		boolean firstBlock = true;
+		while (stream.position < length) {
+			final byte type = in.readByte();
+			if (firstBlock && type != ExecutionDataWriter.BLOCK_HEADER) {
+				throw new IOException("Invalid execution data file.");
+			}
+			firstBlock = false;
+			switch (type) {
+			case ExecutionDataWriter.BLOCK_HEADER:
+				if (in.readChar() != ExecutionDataWriter.MAGIC_NUMBER) {
+					throw new IOException("Invalid execution data file.");
+				}
+				final char version = in.readChar();
+				if (version != ExecutionDataWriter.FORMAT_VERSION) {
+					throw new IncompatibleExecDataVersionException(version);
+				}
+				break;
+			case ExecutionDataWriter.BLOCK_SESSIONINFO:
+				index.addSession(stream.position, ENTRY_PLAIN);
+				stream.skipFully(in.readUnsignedShort() + 16);
+				break;
+			case ExecutionDataWriter.BLOCK_EXECUTIONDATA:
+				index.addClass(in.readLong(), stream.position - 8,
+						ENTRY_PLAIN);
+				stream.skipFully(in.readUnsignedShort());
+				stream.skipFully((in.readVarInt() + 7) >>> 3);
+				break;
+			case ExecutionDataWriter.BLOCK_MAPPED:
+				indexMapped(stream, in, index);
+				break;
+			case ExecutionDataWriter.BLOCK_DEFLATED:
+				indexDeflated(stream, in, index);
+				break;
+			case ExecutionDataWriter.BLOCK_CLASSHIT:
+				in.readLong();
+				stream.skipFully(in.readUnsignedShort());
+				break;
+			default:
+				throw new IOException(String.format("Unknown block type %x.",
+						Byte.valueOf(type)));
+			}
+		}
+		sessionOffsets = index.sessionOffsets.toArray();
+		sessionEntries = index.sessionEntries.toArray();
+		sortIndex(index.classIds.toArray(), index.classOffsets.toArray(),
+				index.classEntries.toArray());
+	}
+
+	/**
+	 * Adds the session and all class entries of a
+	 * {@link ExecutionDataWriter#BLOCK_MAPPED} block to the index.
+	 */
+	private static void indexMapped(final MappedInputStream stream,
+			final CompactDataInput in, final Index index) throws IOException {
+		index.addSession(stream.position, ENTRY_MAPPED);
+		final int length = in.readInt();
+		final long end = stream.position + length;
+		final int used = in.readInt();
+		stream.skipFully(16 + MappedExecutionDataWriter.SESSION_SLOT);
+		final long entriesEnd = stream.position + used;
+		while (stream.position < entriesEnd) {
+			final int entryLength = in.readInt();
+			if (entryLength < 12) {
+				throw new IOException("Invalid execution data file.");
+			}
+			index.addClass(in.readLong(), stream.position - 8, ENTRY_MAPPED);
+			stream.skipFully(entryLength - 12);
+		}
+		if (stream.position != entriesEnd || end < entriesEnd) {
+			throw new IOException("Invalid execution data file.");
+		}
+		stream.skipFully(end - stream.position);
+	}
+
+	/**
+	 * Adds all sessions and classes of a
+	 * {@link ExecutionDataWriter#BLOCK_DEFLATED} block to the index. The
+	 * entries are identified by their position within the block.
+	 */
+	private static void indexDeflated(final MappedInputStream stream,
+			final CompactDataInput in, final Index index) throws IOException {
+		final long offset = stream.position;
+		final DeflatedBlock block = inflate(in);
+		for (int i = 0; i < block.sessions.size(); i++) {
+			index.addSession(offset, i);
+		}
+		for (int i = 0; i < block.classes.size(); i++) {
+			index.addClass(block.classes.get(i).getId(), offset, i);
+		}
+	}
+
+	private DeflatedBlock readDeflated(final long offset) throws IOException {
+		final Long key = Long.valueOf(offset);
+		synchronized (deflatedCache) {
+			final DeflatedBlock cached = deflatedCache.get(key);
+			if (cached != null) {
+				return cached;
+			}
+		}
+		final DeflatedBlock block = inflate(new CompactDataInput(
+				new MappedInputStream(offset)));
+		synchronized (deflatedCache) {
+			deflatedCache.put(key, block);
+		}
+		return block;
+	}
+
+	private static DeflatedBlock inflate(final CompactDataInput in)
+			throws IOException {
+		final byte[] deflated = new byte[in.readVarInt()];
+		in.readFully(deflated);
+		final DeflatedBlock block = new DeflatedBlock();
+		final ExecutionDataReader reader = new ExecutionDataReader(
+				new InflaterInputStream(new ByteArrayInputStream(deflated)));
+		reader.setSessionInfoVisitor(block);
+		reader.setExecutionDataVisitor(block);
+		reader.setClassHitVisitor(block);
+		reader.read();
+		return block;
+	}
+
+	private void sortIndex(final long[] ids, final long[] offsets,
+			final int[] entries) {
+		final Integer[] order = new Integer[ids.length];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = Integer.valueOf(i);
+		}
+		// Stable sort, blocks of the same class stay in file order
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(final Integer i1, final Integer i2) {
+				final long id1 = ids[i1.intValue()];
+				final long id2 = ids[i2.intValue()];
+				return id1 < id2 ? -1 : (id1 == id2 ? 0 : 1);
+			}
+		});
+		classIds = new long[ids.length];
+		classOffsets = new long[ids.length];
+		classEntries = new int[ids.length];
+		for (int i = 0; i < order.length; i++) {
+			classIds[i] = ids[order[i].intValue()];
+			classOffsets[i] = offsets[order[i].intValue()];
+			classEntries[i] = entries[order[i].intValue()];
+		}
+	}
+
+	private boolean readIndex(final File indexFile, final long lastModified) {
+		if (!indexFile.isFile()) {
+			return false;
+		}
+		try {
+			final DataInputStream in = new DataInputStream(
+					new BufferedInputStream(new FileInputStream(indexFile)));
+			try {
+				if (in.readInt() != INDEX_MAGIC
+						|| in.readInt() != INDEX_VERSION
+						|| in.readLong() != length
+						|| in.readLong() != lastModified) {
+					return false;
+				}
+				final long[] sessions = new long[in.readInt()];
+				final int[] sessionKinds = new int[sessions.length];
+				for (int i = 0; i < sessions.length; i++) {
+					sessions[i] = in.readLong();
+					sessionKinds[i] = in.readInt();
+				}
+				final long[] ids = new long[in.readInt()];
+				final long[] offsets = new long[ids.length];
+				final int[] entries = new int[ids.length];
+				for (int i = 0; i < ids.length; i++) {
+					ids[i] = in.readLong();
+					offsets[i] = in.readLong();
+					entries[i] = in.readInt();
+				}
+				sessionOffsets = sessions;
+				sessionEntries = sessionKinds;
+				classIds = ids;
+				classOffsets = offsets;
+				classEntries = entries;
+				return true;
+			} finally {
+				in.close();
+			}
+		} catch (final IOException e) {
+			// Corrupt or unreadable index files are simply recreated
+			return false;
+		}
+	}
+
+	private void writeIndex(final File indexFile, final long lastModified) {
+		File tmp = null;
+		try {
+			tmp = File.createTempFile(indexFile.getName(), ".tmp",
+					indexFile.getAbsoluteFile().getParentFile());
+			final DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(tmp)));
+			try {
+				out.writeInt(INDEX_MAGIC);
+				out.writeInt(INDEX_VERSION);
+				out.writeLong(length);
+				out.writeLong(lastModified);
+				out.writeInt(sessionOffsets.length);
+				for (int i = 0; i < sessionOffsets.length; i++) {
+					out.writeLong(sessionOffsets[i]);
+					out.writeInt(sessionEntries[i]);
+				}
+				out.writeInt(classIds.length);
+				for (int i = 0; i < classIds.length; i++) {
+					out.writeLong(classIds[i]);
+					out.writeLong(classOffsets[i]);
+					out.writeInt(classEntries[i]);
+				}
+			} finally {
+				out.close();
+			}
+			// Concurrent processes may write the same index, the last one wins
+			indexFile.delete();
+			if (tmp.renameTo(indexFile)) {
+				tmp = null;
+			}
+		} catch (final IOException e) {
+			// The index is optional, e.g. the folder might be read-only
+		} finally {
+			if (tmp != null) {
+				tmp.delete();
+			}
+		}
+	}
+
+	/**
+	 * Stream on the mapped file content starting at a given position.
+	 */
+	private class MappedInputStream extends InputStream {
+
+		private final ByteBuffer[] buffers;
+
+		private long position;
+
+		MappedInputStream(final long position) {
+			this.buffers = segments;
+			if (buffers == null) {
+				throw new IllegalStateException("Exec file has been closed.");
+			}
+			this.position = position;
+		}
+
+		@Override
+		public int read() {
+			if (position >= length) {
+				return -1;
+			}
+			final ByteBuffer segment = segment();
+			return 0xFF & segment.get((int) (position++ & SEGMENT_MASK));
+		}
+
+		@Override
+		public int read(final byte[] b, final int off, final int len) {
+			if (len == 0) {
+				return 0;
+			}
+			if (position >= length) {
+				return -1;
+			}
+			final ByteBuffer segment = segment().duplicate();
+			segment.position((int) (position & SEGMENT_MASK));
+			final int n = Math.min(len, segment.remaining());
+			segment.get(b, off, n);
+			position += n;
+			return n;
+		}
+
+		private ByteBuffer segment() {
+			return buffers[(int) (position >>> SEGMENT_BITS)];
+		}
+
+		void skipFully(final long n) throws EOFException {
+			if (length - position < n) {
+				throw new EOFException();
+			}
+			position += n;
+		}
+
+	}
+
+	/**
+	 * Contents of an inflated {@link ExecutionDataWriter#BLOCK_DEFLATED} block
+	 * in stream order.
+	 */
+	private static class DeflatedBlock implements ISessionInfoVisitor,
+			IExecutionDataVisitor, IClassHitVisitor {
+
+		final List<SessionInfo> sessions = new ArrayList<SessionInfo>();
+
+		final List<ExecutionData> classes = new ArrayList<ExecutionData>();
+
+		public void visitSessionInfo(final SessionInfo info) {
+			sessions.add(info);
+		}
+
+		public void visitClassExecution(final ExecutionData data) {
+			classes.add(data);
+		}
+
+		public void visitClassHit(final long id, final String name) {
+			// Class hits are not indexed
+		}
+
+	}
+
+	/**
+	 * Index entries in file order.
+	 */
+	private static class Index {
+
+		final LongList sessionOffsets = new LongList();
+
+		final IntList sessionEntries = new IntList();
+
+		final LongList classIds = new LongList();
+
+		final LongList classOffsets = new LongList();
+
+		final IntList classEntries = new IntList();
+
+		void addSession(final long offset, final int entry) {
+			sessionOffsets.add(offset);
+			sessionEntries.add(entry);
+		}
+
+		void addClass(final long id, final long offset, final int entry) {
+			classIds.add(id);
+			classOffsets.add(offset);
+			classEntries.add(entry);
+		}
+
+	}
+
+	/**
+	 * Minimal growable list of primitive long values.
+	 */
+	private static class LongList {
+
+		private long[] values = new long[64];
+
+		private int size;
+
+		void add(final long value) {
+			if (size == values.length) {
+				final long[] newValues = new long[size * 2];
+				System.arraycopy(values, 0, newValues, 0, size);
+				values = newValues;
+			}
+			values[size++] = value;
+		}
+
+		long[] toArray() {
+			final long[] result = new long[size];
+			System.arraycopy(values, 0, result, 0, size);
+			return result;
+		}
+
+	}
+
+	/**
+	 * Minimal growable list of primitive int values.
+	 */
+	private static class IntList {
+
+		private int[] values = new int[64];
+
+		private int size;
+
+		void add(final int value) {
+			if (size == values.length) {
+				final int[] newValues = new int[size * 2];
+				System.arraycopy(values, 0, newValues, 0, size);
+				values = newValues;
+			}
+			values[size++] = value;
+		}
+
+		int[] toArray() {
+			final int[] result = new int[size];
+			System.arraycopy(values, 0, result, 0, size);
+			return result;
+		}
+
+	}
+
+}
@@ -0,0 +1,507 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *    
+ *******************************************************************************/
+package org.jacoco.core.tools;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataReader;
+import org.jacoco.core.data.IClassHitVisitor;
+import org.jacoco.core.data.IExecutionDataVisitor;
+import org.jacoco.core.data.ISessionInfoVisitor;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.internal.data.CompactDataInput;
+import org.jacoco.core.internal.data.CompactDataOutput;
+
+/**
+ * Inverted index from classes to the tests executing them. The index is built
+ * from execution data which contains a separate session for every test, e.g.
+ * data captured with <code>IAgent.endTest()</code>: All classes following a
+ * session info block are attributed to the test with the session id. Classes
+ * are identified by their id, i.e. the CRC64 checksum of the class file, and
+ * by their VM name. As a changed class gets a new id, tests for changed classes
+ * are typically selected by name.
+ * 
+ * For every class the covering tests are kept as a sorted list of test
+ * numbers. In the index file every list is stored either as delta encoded
+ * numbers or as a bitmap over all tests, whichever is smaller. Therefore
+ * classes executed by a few tests as well as classes executed by almost all
+ * tests are stored compactly.
+ */
+public class TestImpactIndex {
+
+	private static final int MAGIC = 0x4A435449;
+
+	private static final int FORMAT_VERSION = 1;
+
+	private static final int ENCODING_DELTAS = 0;
+
+	private static final int ENCODING_BITMAP = 1;
+
+	private final List<String> tests = new ArrayList<String>();
+
+	private final Map<String, Integer> testNumbers = new HashMap<String, Integer>();
+
+	private final Map<Long, Entry> classes = new LinkedHashMap<Long, Entry>();
+
+	private final Map<String, List<Entry>> names = new HashMap<String, List<Entry>>();
+
+	/**
+	 * Creates a new empty index.
+	 */
+	public TestImpactIndex() {
+	}
+
+	// === Building ===
+
+	/**
+	 * Adds all tests contained in the given execution data to this index.
+	 * Execution data before the first session info block is ignored.
+	 * 
+	 * @param stream
+	 *            execution data to read
+	 * @throws IOException
+	 *             if the data can't be read
+	 */
+	public void load(final InputStream stream) throws IOException {
+		final int[] current = new int[] { -1 };
+		final ExecutionDataReader reader = new ExecutionDataReader(
+				new BufferedInputStream(stream));
+		reader.setSessionInfoVisitor(new ISessionInfoVisitor() {
+			public void visitSessionInfo(final SessionInfo info) {
+				current[0] = getTestNumber(info.getId());
+			}
+		});
+		reader.setExecutionDataVisitor(new IExecutionDataVisitor() {
+			public void visitClassExecution(final ExecutionData data) {
+				if (current[0] != -1 && data.hasHits()) {
+					add(current[0], data.getId(), data.getName());
+				}
+			}
+		});
+		reader.setClassHitVisitor(new IClassHitVisitor() {
+			public void visitClassHit(final long id, final String name) {
+				if (current[0] != -1) {
+					add(current[0], id, name);
+				}
+			}
+		});
+		reader.read();
+	}
+
+	/**
+	 * Adds all tests contained in the given execution data file to this
+	 * index.
+	 * 
+	 * @param file
+	 *            execution data file to read
+	 * @throws IOException
+	 *             if the file can't be read
+	 */
+	public void load(final File file) throws IOException {
+		final InputStream stream = new FileInputStream(file);
+		try {
+			load(stream);
+		} finally {
+			stream.close();
+		}
+	}
+
+	/**
+	 * Records that the given test executed the given class.
+	 * 
+	 * @param test
+	 *            name of the test
+	 * @param id
+	 *            class id
+	 * @param name
+	 *            VM name of the class
+	 */
+	public void add(final String test, final long id, final String name) {
+		add(getTestNumber(test), id, name);
+	}
+
+	private int getTestNumber(final String test) {
+		Integer number = testNumbers.get(test);
+		if (number == null) {
+			number = Integer.valueOf(tests.size());
+			tests.add(test);
+			testNumbers.put(test, number);
+		}
+		return number.intValue();
+	}
+
+	private void add(final int test, final long id, final String name) {
+		final Long key = Long.valueOf(id);
+		Entry entry = classes.get(key);
+		if (entry == null) {
+			entry = new Entry(id, name, new int[4], 0);
+			putEntry(entry);
+		}
+		entry.add(test);
+	}
+
+	private void putEntry(final Entry entry) {
+		classes.put(Long.valueOf(entry.id), entry);
+		List<Entry> list = names.get(entry.name);
+		if (list == null) {
+			list = new ArrayList<Entry>(1);
+			names.put(entry.name, list);
+		}
+		list.add(entry);
+	}
+
+	// === Queries ===
+
+	/**
+	 * Returns the names of all tests contained in this index.
+	 * 
+	 * @return unmodifiable list of test names
+	 */
+	public List<String> getTests() {
+		return Collections.unmodifiableList(tests);
+	}
+
+	/**
+	 * Returns the VM names of all classes contained in this index.
+	 * 
+	 * @return unmodifiable set of class names
+	 */
+	public Set<String> getClassNames() {
+		return Collections.unmodifiableSet(names.keySet());
+	}
+
+	/**
+	 * Returns the number of distinct class ids contained in this index.
+	 * 
+	 * @return number of classes
+	 */
+	public int getClassCount() {
+		return classes.size();
+	}
+
+	/**
+	 * Returns the tests which executed the class with the given id.
+	 * 
+	 * @param id
+	 *            class id
+	 * @return sorted set of test names, empty if the class is unknown
+	 */
+	public Set<String> getTestsForClass(final long id) {
+		final BitSet result = new BitSet(tests.size());
+		final Entry entry = classes.get(Long.valueOf(id));
+		if (entry != null) {
+			entry.addTo(result);
+		}
+		return toNames(result);
+	}
+
+	/**
+	 * Returns the tests which executed any version of the classes with the
+	 * given VM names.
+	 * 
+	 * @param classNames
+	 *            VM names of the classes
+	 * @return sorted set of test names, empty if none of the classes is known
+	 */
+	public Set<String> getTestsForClasses(final Collection<String> classNames) {
+		final BitSet result = new BitSet(tests.size());
+		for (final String name : classNames) {
+			final List<Entry> list = names.get(name);
+			if (list != null) {
+				for (final Entry entry : list) {
+					entry.addTo(result);
+				}
+			}
+		}
+		return toNames(result);
+	}
+
+	private Set<String> toNames(final BitSet bits) {
+		final Set<String> result = new TreeSet<String>();
+		for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+			result.add(tests.get(i));
+		}
+		return result;
+	}
+
+	// === Serialization ===
+
+	/**
+	 * Writes this index to the given stream.
+	 * 
+	 * @param stream
+	 *            stream to write the index to
+	 * @throws IOException
+	 *             if the index can't be written
+	 */
+	public void save(final OutputStream stream) throws IOException {
+		final CompactDataOutput out = new CompactDataOutput(
+				new BufferedOutputStream(stream));
+		out.writeInt(MAGIC);
+		out.writeInt(FORMAT_VERSION);
+		out.writeVarInt(tests.size());
+		for (final String test : tests) {
+			out.writeUTF(test);
+		}
+		out.writeVarInt(classes.size());
+		for (final Entry entry : classes.values()) {
+			entry.write(out, tests.size());
+		}
+		out.flush();
+	}
+
+	/**
+	 * Writes this index to the given file. Parent directories are created if
+	 * required.
+	 * 
+	 * @param file
+	 *            file to write the index to
+	 * @throws IOException
+	 *             if the file can't be written
+	 */
+	public void save(final File file) throws IOException {
+		final File folder = file.getParentFile();
+		if (folder != null) {
+			folder.mkdirs();
+		}
+		final OutputStream stream = new FileOutputStream(file);
+		try {
+			save(stream);
+		} finally {
+			stream.close();
+		}
+	}
+
+	/**
+	 * Reads an index written by {@link #save(OutputStream)} and adds its
+	 * content to this index.
+	 * 
+	 * @param stream
+	 *            stream to read the index from
+	 * @throws IOException
+	 *             if the stream can't be read or does not contain an index
+	 */
+	public void loadIndex(final InputStream stream) throws IOException {
+		final CompactDataInput in = new CompactDataInput(
+				new BufferedInputStream(stream));
+		if (in.readInt() != MAGIC) {
+			throw new IOException("Invalid test impact index file.");
+		}
+		final int version = in.readInt();
+		if (version != FORMAT_VERSION) {
+			throw new IOException(String.format(
+					"Unsupported test impact index version %s.",
+					Integer.valueOf(version)));
+		}
+		final int testCount = in.readVarInt();
+		final int[] mapping = new int[testCount];
+		for (int i = 0; i < testCount; i++) {
+			mapping[i] = getTestNumber(in.readUTF());
+		}
+		final int classCount = in.readVarInt();
+		for (int i = 0; i < classCount; i++) {
+			final Entry read = Entry.read(in, testCount);
+			final Entry existing = classes.get(Long.valueOf(read.id));
+			for (int t = 0; t < read.size; t++) {
+				final int test = mapping[read.tests[t]];
+				if (existing == null) {
+					read.tests[t] = test;
+				} else {
+					existing.add(test);
+				}
+			}
+			if (existing == null) {
+				read.sort();
+				putEntry(read);
+			}
+		}
+	}
+
+	/**
+	 * Reads an index written by {@link #save(File)} and adds its content to
+	 * this index.
+	 * 
+	 * @param file
+	 *            file to read the index from
+	 * @throws IOException
+	 *             if the file can't be read or does not contain an index
+	 */
+	public void loadIndex(final File file) throws IOException {
+		final InputStream stream = new FileInputStream(file);
+		try {
+			loadIndex(stream);
+		} finally {
+			stream.close();
+		}
+	}
+
+	/**
+	 * Sorted list of the numbers of all tests which executed a class.
+	 */
+	private static class Entry {
+
+		final long id;
+
+		final String name;
+
+		int[] tests;
+
+		int size;
+
+		Entry(final long id, final String name, final int[] tests,
+				final int size) {
+			this.id = id;
+			this.name = name;
+			this.tests = tests;
+			this.size = size;
+		}
+
+		void add(final int test) {
+			// Tests are typically added in ascending order
+			if (size > 0 && tests[size - 1] >= test) {
+				if (indexOf(test) >= 0) {
+					return;
+				}
+			}
+			if (size == tests.length) {
+				final int[] newTests = new int[size * 2];
+				System.arraycopy(tests, 0, newTests, 0, size);
+				tests = newTests;
+			}
+			tests[size++] = test;
+			if (size > 1 && tests[size - 2] > test) {
+				sort();
+			}
+		}
+
+		private int indexOf(final int test) {
+			int low = 0;
+			int high = size - 1;
+			while (low <= high) {
+				final int mid = (low + high) >>> 1;
+				if (tests[mid] < test) {
+					low = mid + 1;
+				} else if (tests[mid] > test) {
+					high = mid - 1;
+				} else {
+					return mid;
+				}
+			}
+			return -1;
+		}
+
+		void sort() {
+			Arrays.sort(tests, 0, size);
+		}
+
+		void addTo(final BitSet result) {
+			for (int i = 0; i < size; i++) {
+				result.set(tests[i]);
+			}
+		}
+
+		void write(final CompactDataOutput out, final int testCount)
+				throws IOException {
+			out.writeLong(id);
+			out.writeUTF(name);
+			int deltaBytes = 0;
+			int last = -1;
+			for (int i = 0; i < size; i++) {
+				deltaBytes += getVarIntLength(tests[i] - last);
+				last = tests[i];
+			}
+			final int bitmapBytes = (testCount + 7) >>> 3;
+			if (deltaBytes <= bitmapBytes) {
+				out.writeByte(ENCODING_DELTAS);
+				out.writeVarInt(size);
+				last = -1;
+				for (int i = 0; i < size; i++) {
+					out.writeVarInt(tests[i] - last);
+					last = tests[i];
+				}
+			} else {
+				out.writeByte(ENCODING_BITMAP);
+				final long[] bits = new long[(testCount + 63) >>> 6];
+				for (int i = 0; i < size; i++) {
+					bits[tests[i] >>> 6] |= 1L << (tests[i] & 63);
+				}
+				out.writeBitArray(bits, testCount);
+			}
+		}
+
+		static Entry read(final CompactDataInput in, final int testCount)
+				throws IOException {
+			final long id = in.readLong();
+			final String name = in.readUTF();
+			final int encoding = in.readByte();
+			switch (encoding) {
+			case ENCODING_DELTAS:
+				final int size = in.readVarInt();
+				final int[] tests = new int[Math.max(size, 1)];
+				int last = -1;
+				for (int i = 0; i < size; i++) {
+					last += in.readVarInt();
+					tests[i] = last;
+				}
+				return new Entry(id, name, tests, size);
+			case ENCODING_BITMAP:
+				final long[] bits = in.readBitArray(testCount);
+				int count = 0;
+				for (final long w : bits) {
+					count += Long.bitCount(w);
+				}
+				final int[] set = new int[Math.max(count, 1)];
+				int n = 0;
+				for (int w = 0; w < bits.length; w++) {
+					long word = bits[w];
+					while (word != 0) {
+						set[n++] = (w << 6) + Long.numberOfTrailingZeros(word);
+						word &= word - 1;
+					}
+				}
+				return new Entry(id, name, set, count);
+			default:
+				throw new IOException(String.format(
+						"Unknown encoding 0x%x.", Integer.valueOf(encoding)));
+			}
+		}
+
+		private static int getVarIntLength(final int value) {
+			int length = 1;
+			for (int v = value >>> 7; v != 0; v >>>= 7) {
+				length++;
+			}
+			return length;
+		}
+
+	}
+
+}
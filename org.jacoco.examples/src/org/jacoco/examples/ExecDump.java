@@ -71,8 +71,8 @@ public final class ExecDump {
 			public void visitClassExecution(final ExecutionData data) {
 				out.printf("%016x  %3d of %3d   %s%n",
 						Long.valueOf(data.getId()),
-						Integer.valueOf(getHitCount(data.getProbes())),
-						Integer.valueOf(data.getProbes().length),
+						Integer.valueOf(data.getHitCount()),
+						Integer.valueOf(data.getProbeCount()),
 						data.getName());
 			}
 		});
@@ -81,16 +81,6 @@ public final class ExecDump {
 		out.println();
 	}
 
-	private int getHitCount(final boolean[] data) {
-		int count = 0;
-		for (final boolean hit : data) {
-			if (hit) {
-				count++;
-			}
-		}
-		return count;
-	}
-
 	/**
 	 * Entry point to run this examples as a Java application.
 	 * 